@@ -3,10 +3,22 @@ package com.s1steam.veloauth.api;
 import com.google.inject.Inject;
 import com.s1steam.veloauth.api.commands.VaCommand;
 import com.s1steam.veloauth.api.config.ConfigManager;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.config.ConfigWatcher;
+import com.s1steam.veloauth.api.listeners.ConnectionListener;
+import com.s1steam.veloauth.api.listeners.FingerprintListener;
+import com.s1steam.veloauth.api.listeners.HandshakeListener;
+import com.s1steam.veloauth.api.listeners.LobbyListener;
+import com.s1steam.veloauth.api.listeners.LoginAttemptListener;
+import com.s1steam.veloauth.api.listeners.PingListener;
+import com.s1steam.veloauth.api.listeners.SessionResumeListener;
 import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.registry.SessionResumeTokens;
+import com.s1steam.veloauth.api.messaging.OutboundMessenger;
 import com.s1steam.veloauth.api.messaging.PluginMessageHandler;
 import com.s1steam.veloauth.api.security.ddos.DDoSProtection;
 import com.s1steam.veloauth.api.security.ddos.DDoSProtectionManager;
+import com.s1steam.veloauth.api.time.TimeSource;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
@@ -16,6 +28,8 @@ import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.scheduler.ScheduledTask;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
@@ -28,15 +42,22 @@ import java.util.concurrent.TimeUnit;
 )
 public class VeloAuthAPI {
     
+    // Maximum number of session resume tokens held at once
+    private static final int MAX_SESSION_TOKENS = 65536;
+    
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
     
     private ConfigManager configManager;
     private AuthRegistry authRegistry;
+    private SessionResumeTokens sessionTokens;
     private PluginMessageHandler messageHandler;
     private DDoSProtection ddosProtection;
     private ScheduledTask cleanupTask;
+    private ScheduledTask lobbyHealthTask;
+    private ScheduledTask outboundFlushTask;
+    private ConfigWatcher configWatcher;
     
     @Inject
     public VeloAuthAPI(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -59,8 +80,18 @@ public class VeloAuthAPI {
             authRegistry = new AuthRegistry();
             logger.info("AuthRegistry initialized");
             
+            // Restore resume tokens saved at the last shutdown
+            ConfigSnapshot config = configManager.getSnapshot();
+            sessionTokens = SessionResumeTokens.fromSecret(config.getSessionResumeSecret(),
+                    config.getSessionResumeTtl(), MAX_SESSION_TOKENS, TimeSource.system());
+            loadSessions();
+            
             // Initialize DDoS Protection
             ddosProtection = new DDoSProtectionManager(this, authRegistry);
+            ddosProtection.loadReputations();
+            ddosProtection.reloadHostingRanges();
+            ddosProtection.reloadBlocklists();
+            ddosProtection.startReplication();
             logger.info("DDoS Protection initialized");
             
             // Schedule cleanup task (every hour)
@@ -70,17 +101,67 @@ public class VeloAuthAPI {
                     .schedule();
             logger.info("DDoS Protection cleanup task scheduled");
             
+            // Watch config and list files for changes
+            if (configManager.getSnapshot().isAutoReload()) {
+                configWatcher = new ConfigWatcher(this);
+                configWatcher.start();
+                logger.info("Config file watcher started");
+            }
+            
             // Initialize PluginMessageHandler
             messageHandler = new PluginMessageHandler(this, authRegistry);
             messageHandler.registerChannel();
             logger.info("Plugin messaging channel registered");
             
+            // Push DDoS verdicts, reputation and registry changes to backend servers
+            OutboundMessenger outbound = messageHandler.getOutbound();
+            authRegistry.setChangeListener(outbound::sendAuthStatus);
+            ddosProtection.setVerdictListener(outbound::sendVerdict);
+            outboundFlushTask = server.getScheduler()
+                    .buildTask(this, () -> outbound.flush())
+                    .repeat(50, TimeUnit.MILLISECONDS)
+                    .schedule();
+            logger.info("Outbound message queues started");
+            
+            // Check every login against blocks, rate limits and the reconnect challenge
+            server.getEventManager().register(this, new ConnectionListener(this));
+            logger.info("Connection listener registered");
+            
+            // Load reputation from shared storage while the client is still logging in
+            server.getEventManager().register(this, new HandshakeListener(this));
+            logger.info("Handshake listener registered");
+            
+            // Let players who were logged in when they disconnected skip the backend login
+            server.getEventManager().register(this, new SessionResumeListener(this, authRegistry, sessionTokens));
+            logger.info("Session resume listener registered");
+            
+            // Spread unauthenticated players across the auth lobbies that answer pings
+            LobbyListener lobbyListener = new LobbyListener(this, authRegistry);
+            server.getEventManager().register(this, lobbyListener);
+            lobbyHealthTask = server.getScheduler()
+                    .buildTask(this, lobbyListener::checkHealth)
+                    .repeat(1, TimeUnit.SECONDS)
+                    .schedule();
+            logger.info("Lobby listener registered (" + configManager.getSnapshot().getLobbies().size() + " lobbies)");
+            
+            // Stop login commands of locked accounts before they reach the backend
+            server.getEventManager().register(this, new LoginAttemptListener(this, authRegistry));
+            logger.info("Login attempt listener registered");
+            
+            // Throttle bot waves sharing one client fingerprint
+            server.getEventManager().register(this, new FingerprintListener(this, authRegistry));
+            logger.info("Fingerprint listener registered");
+            
+            // Rate limit server list pings
+            server.getEventManager().register(this, new PingListener(this));
+            logger.info("Ping listener registered");
+            
             // Register commands
             server.getCommandManager().register("va", new VaCommand(this));
             logger.info("Commands registered");
             
             logger.info("VeloAuth API successfully initialized!");
-            
+        
         } catch (Exception e) {
             logger.error("Failed to initialize VeloAuth API", e);
         }
@@ -95,14 +176,61 @@ public class VeloAuthAPI {
             cleanupTask.cancel();
         }
         
+        // Stop lobby health checks
+        if (lobbyHealthTask != null) {
+            lobbyHealthTask.cancel();
+        }
+        
+        // Stop outbound message flushes
+        if (outboundFlushTask != null) {
+            outboundFlushTask.cancel();
+        }
+        
+        // Stop config file watcher
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        
+        // Stop DDoS protection shard threads
+        if (ddosProtection != null) {
+            ddosProtection.shutdown();
+        }
+        
         // Clear auth registry
         if (authRegistry != null) {
             authRegistry.clear();
         }
         
+        // Keep resume tokens of players disconnected by the shutdown
+        if (sessionTokens != null) {
+            saveSessions();
+        }
+        
         logger.info("VeloAuth API shutdown complete");
     }
     
+    private void loadSessions() {
+        Path file = dataDirectory.resolve(configManager.getSnapshot().getSessionResumeFile());
+        try {
+            int loaded = sessionTokens.load(file);
+            if (loaded > 0) {
+                logger.info("Restored " + loaded + " resumable sessions");
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read saved sessions from " + file + ": " + e.getMessage());
+        }
+    }
+    
+    private void saveSessions() {
+        Path file = dataDirectory.resolve(configManager.getSnapshot().getSessionResumeFile());
+        try {
+            Files.createDirectories(dataDirectory);
+            sessionTokens.save(file);
+        } catch (IOException e) {
+            logger.warn("Failed to save sessions to " + file + ": " + e.getMessage());
+        }
+    }
+    
     public ProxyServer getServer() {
         return server;
     }
@@ -0,0 +1,35 @@
+package com.s1steam.veloauth.api.cluster;
+
+/**
+ * Итог локальных событий ключа узла за окно для {@link DistributedCounter}
+ */
+public final class CounterDelta {
+    
+    private final long keyHash;
+    private final long window;
+    private final long total;
+    
+    public CounterDelta(long keyHash, long window, long total) {
+        this.keyHash = keyHash;
+        this.window = window;
+        this.total = total;
+    }
+    
+    public long getKeyHash() {
+        return keyHash;
+    }
+    
+    /**
+     * Номер окна (время / размер окна)
+     */
+    public long getWindow() {
+        return window;
+    }
+    
+    /**
+     * Количество событий узла за окно на момент рассылки
+     */
+    public long getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,259 @@
+package com.s1steam.veloauth.api.cluster;
+
+import com.s1steam.veloauth.api.models.BlockReason;
+import com.s1steam.veloauth.api.net.IPAddresses;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Формат пакета репликации: заголовок (магическое число, номер узла),
+ * изменения состояния IP и итоги распределенных счетчиков, сжатые Deflate,
+ * и усеченный HMAC-SHA256 на общем секрете.
+ * Пакеты без верной подписи отбрасываются до распаковки, поэтому чужой узел
+ * не может заблокировать IP. Повтор старого пакета безопасен - его версии
+ * не новее уже примененных
+ */
+public final class DeltaCodec {
+    
+    // "VAG1"
+    private static final int MAGIC = 0x56414731;
+    
+    private static final String ALGORITHM = "HmacSHA256";
+    
+    private static final int HEADER_BYTES = 6;
+    private static final int MAC_BYTES = 16;
+    
+    /**
+     * Максимум изменений в одном пакете
+     */
+    public static final int MAX_DELTAS = 32;
+    
+    /**
+     * Максимум итогов счетчиков в одном пакете
+     */
+    public static final int MAX_COUNTERS = 128;
+    
+    // Предел распакованного размера (защита от сжатых бомб)
+    private static final int MAX_PAYLOAD = 8192;
+    
+    // Максимальная длина IPv6 адреса в текстовом виде
+    private static final int MAX_IP_LENGTH = 45;
+    
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+    
+    /**
+     * @param secret Общий секрет всех узлов кластера
+     */
+    public DeltaCodec(byte[] secret) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("Cluster secret must not be empty");
+        }
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+    }
+    
+    /**
+     * Кодирует пакет изменений
+     *
+     * @param nodeId Номер узла-отправителя
+     * @param deltas Не более MAX_DELTAS изменений
+     */
+    public byte[] encode(int nodeId, List<ReplicaDelta> deltas) {
+        return encode(nodeId, deltas, List.of());
+    }
+    
+    /**
+     * Кодирует пакет изменений и итогов счетчиков
+     *
+     * @param nodeId Номер узла-отправителя
+     * @param deltas Не более MAX_DELTAS изменений
+     * @param counters Не более MAX_COUNTERS итогов счетчиков
+     */
+    public byte[] encode(int nodeId, List<ReplicaDelta> deltas, List<CounterDelta> counters) {
+        if (deltas.size() > MAX_DELTAS || counters.size() > MAX_COUNTERS || deltas.isEmpty() && counters.isEmpty()) {
+            throw new IllegalArgumentException("Invalid packet size: " + deltas.size() + " deltas, "
+                + counters.size() + " counters");
+        }
+        try {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(deltas.size() * 32);
+            DataOutputStream out = new DataOutputStream(raw);
+            out.writeShort(deltas.size());
+            for (ReplicaDelta delta : deltas) {
+                out.writeByte(delta.getType().ordinal());
+                out.writeUTF(delta.getIp());
+                out.writeLong(delta.getValue());
+                out.writeByte(delta.getReason().getCode());
+                out.writeLong(delta.getVersion());
+            }
+            out.writeShort(counters.size());
+            for (CounterDelta counter : counters) {
+                out.writeLong(counter.getKeyHash());
+                out.writeLong(counter.getWindow());
+                out.writeLong(counter.getTotal());
+            }
+            
+            ByteArrayOutputStream packet = new ByteArrayOutputStream(raw.size() + HEADER_BYTES + MAC_BYTES);
+            DataOutputStream header = new DataOutputStream(packet);
+            header.writeInt(MAGIC);
+            header.writeShort(nodeId);
+            deflate(raw.toByteArray(), packet);
+            
+            byte[] signature = sign(packet.toByteArray(), packet.size());
+            packet.write(signature, 0, MAC_BYTES);
+            return packet.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode deltas", e);
+        }
+    }
+    
+    /**
+     * Декодирует и проверяет пакет
+     *
+     * @throws IOException если подпись, заголовок или содержимое неверны
+     */
+    public Batch decode(byte[] data, int length) throws IOException {
+        if (length < HEADER_BYTES + MAC_BYTES + 1) {
+            throw new IOException("Packet too short");
+        }
+        byte[] expected = sign(data, length - MAC_BYTES);
+        if (!MessageDigest.isEqual(Arrays.copyOf(expected, MAC_BYTES),
+                Arrays.copyOfRange(data, length - MAC_BYTES, length))) {
+            throw new IOException("Invalid packet signature");
+        }
+        
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(data, 0, HEADER_BYTES));
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Unknown packet format");
+        }
+        int sender = header.readUnsignedShort();
+        
+        byte[] payload = inflate(data, HEADER_BYTES, length - MAC_BYTES - HEADER_BYTES);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = in.readUnsignedShort();
+        if (count > MAX_DELTAS) {
+            throw new IOException("Invalid delta count: " + count);
+        }
+        List<ReplicaDelta> deltas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ReplicaDelta.Type type = ReplicaDelta.Type.fromOrdinal(in.readUnsignedByte());
+            String ip = in.readUTF();
+            long value = in.readLong();
+            BlockReason reason = BlockReason.fromCode(in.readUnsignedByte());
+            long version = in.readLong();
+            if (type == null || ip.length() > MAX_IP_LENGTH || IPAddresses.parse(ip) == null) {
+                throw new IOException("Invalid delta");
+            }
+            deltas.add(new ReplicaDelta(type, ip, value, reason, version));
+        }
+        int counterCount = in.readUnsignedShort();
+        if (counterCount > MAX_COUNTERS) {
+            throw new IOException("Invalid counter count: " + counterCount);
+        }
+        List<CounterDelta> counters = new ArrayList<>(counterCount);
+        for (int i = 0; i < counterCount; i++) {
+            counters.add(new CounterDelta(in.readLong(), in.readLong(), in.readLong()));
+        }
+        return new Batch(sender, deltas, counters);
+    }
+    
+    private static void deflate(byte[] raw, ByteArrayOutputStream out) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int written = deflater.deflate(buffer);
+                out.write(buffer, 0, written);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] inflate(byte[] data, int offset, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] buffer = new byte[MAX_PAYLOAD];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == buffer.length) {
+                    throw new IOException("Payload too large");
+                }
+                int read = inflater.inflate(buffer, size, buffer.length - size);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated payload");
+                }
+                size += read;
+            }
+            return Arrays.copyOf(buffer, size);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private byte[] sign(byte[] data, int length) {
+        Mac hmac = mac.get();
+        hmac.update(data, 0, length);
+        return hmac.doFinal();
+    }
+    
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+    
+    /**
+     * Декодированный пакет
+     */
+    public static final class Batch {
+        
+        private final int sender;
+        private final List<ReplicaDelta> deltas;
+        private final List<CounterDelta> counters;
+        
+        private Batch(int sender, List<ReplicaDelta> deltas, List<CounterDelta> counters) {
+            this.sender = sender;
+            this.deltas = deltas;
+            this.counters = counters;
+        }
+        
+        /**
+         * Номер узла-отправителя (при пересылке - соседа, а не автора изменения)
+         */
+        public int getSender() {
+            return sender;
+        }
+        
+        public List<ReplicaDelta> getDeltas() {
+            return deltas;
+        }
+        
+        public List<CounterDelta> getCounters() {
+            return counters;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.s1steam.veloauth.api.cluster;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Счетчики по ключу в фиксированном окне, общие для всех прокси кластера (G-counter)
+ * Каждый узел считает свои события локально, периодически рассылает свои итоги
+ * за окно, а от соседей хранит максимум полученного итога каждого узла - слияние
+ * идемпотентно и не зависит от порядка пакетов. Оценка ключа - локальный счет плюс
+ * сумма итогов соседей, устаревших не более чем на интервал синхронизации.
+ * Таблица фиксированного размера с открытой адресацией, ячейка занимается через CAS,
+ * поэтому увеличение и оценка не берут блокировок. Окно - поколение таблицы:
+ * при смене окна создается новое поколение
+ */
+public final class DistributedCounter {
+    
+    // Максимальная длина цепочки проб при поиске ячейки
+    private static final int MAX_PROBES = 4;
+    
+    // Пустая ячейка (хэш 0 заменяется на 1)
+    private static final long EMPTY = 0;
+    
+    private final long windowMs;
+    private final int capacity;
+    private final AtomicReference<Generation> current;
+    
+    /**
+     * @param capacity Количество ключей за окно, округляется вверх до степени двойки
+     * @param windowMs Размер окна в миллисекундах
+     */
+    public DistributedCounter(int capacity, long windowMs) {
+        if (capacity <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException("Invalid counter parameters");
+        }
+        int slots = Integer.highestOneBit(Math.max(MAX_PROBES, capacity));
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.windowMs = windowMs;
+        this.capacity = slots;
+        this.current = new AtomicReference<>(new Generation(-1, 1));
+    }
+    
+    /**
+     * Учитывает локальное событие ключа (любой поток)
+     *
+     * @param keyHash 64-битный хэш ключа
+     * @return Оценка количества событий ключа в окне по всему кластеру
+     *         или -1, если в таблице окна нет места
+     */
+    public long increment(long keyHash, long now) {
+        Generation generation = generation(now / windowMs);
+        int slot = generation.findOrClaim(normalize(keyHash));
+        if (slot < 0) {
+            return -1;
+        }
+        return generation.local.incrementAndGet(slot) + generation.remote.get(slot);
+    }
+    
+    /**
+     * Оценка количества событий ключа в текущем окне по всему кластеру
+     */
+    public long estimate(long keyHash, long now) {
+        Generation generation = current.get();
+        if (generation.window != now / windowMs) {
+            return 0;
+        }
+        int slot = generation.find(normalize(keyHash));
+        return slot < 0 ? 0 : generation.local.get(slot) + generation.remote.get(slot);
+    }
+    
+    /**
+     * Собирает локальные итоги, изменившиеся с прошлой рассылки (только поток синхронизации)
+     *
+     * @param out Список для итогов
+     * @param max Максимум итогов за вызов
+     * @return Количество добавленных итогов
+     */
+    public int collect(List<CounterDelta> out, int max, long now) {
+        Generation generation = current.get();
+        if (generation.window != now / windowMs) {
+            return 0;
+        }
+        int added = 0;
+        for (int slot = 0; slot < generation.keys.length() && added < max; slot++) {
+            long total = generation.local.get(slot);
+            if (total != generation.sent[slot]) {
+                generation.sent[slot] = total;
+                out.add(new CounterDelta(generation.keys.get(slot), generation.window, total));
+                added++;
+            }
+        }
+        return added;
+    }
+    
+    /**
+     * Сливает итог соседа (только поток приема)
+     * Итоги чужих окон отбрасываются, меньший или повторный итог ничего не меняет
+     *
+     * @param node Номер узла-автора итога
+     */
+    public void merge(int node, CounterDelta delta, long now) {
+        if (delta.getWindow() != now / windowMs) {
+            return;
+        }
+        Generation generation = generation(delta.getWindow());
+        if (generation.window != delta.getWindow()) {
+            return;
+        }
+        long keyHash = normalize(delta.getKeyHash());
+        int slot = generation.findOrClaim(keyHash);
+        if (slot < 0) {
+            return;
+        }
+        long nodeKey = keyHash * 31 + node;
+        long previous = generation.nodeTotals.getOrDefault(nodeKey, 0L);
+        if (delta.getTotal() > previous) {
+            generation.nodeTotals.put(nodeKey, delta.getTotal());
+            generation.remote.addAndGet(slot, delta.getTotal() - previous);
+        }
+    }
+    
+    /**
+     * Поколение окна; при смене окна старое поколение заменяется новым
+     */
+    private Generation generation(long window) {
+        while (true) {
+            Generation latest = current.get();
+            if (latest.window >= window) {
+                return latest;
+            }
+            Generation fresh = new Generation(window, capacity);
+            if (current.compareAndSet(latest, fresh)) {
+                return fresh;
+            }
+        }
+    }
+    
+    private static long normalize(long keyHash) {
+        return keyHash == EMPTY ? 1 : keyHash;
+    }
+    
+    private static final class Generation {
+        
+        private final long window;
+        private final AtomicLongArray keys;
+        private final AtomicLongArray local;
+        private final AtomicLongArray remote;
+        private final int mask;
+        
+        // Последний разосланный локальный итог (только поток синхронизации)
+        private final long[] sent;
+        
+        // Итоги соседей по ключу и узлу (только поток приема)
+        private final Map<Long, Long> nodeTotals = new HashMap<>();
+        
+        private Generation(long window, int capacity) {
+            this.window = window;
+            this.keys = new AtomicLongArray(capacity);
+            this.local = new AtomicLongArray(capacity);
+            this.remote = new AtomicLongArray(capacity);
+            this.sent = new long[capacity];
+            this.mask = capacity - 1;
+        }
+        
+        private int find(long keyHash) {
+            int start = (int) (keyHash ^ (keyHash >>> 32));
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (start + probe) & mask;
+                long key = keys.get(slot);
+                if (key == keyHash) {
+                    return slot;
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+        
+        private int findOrClaim(long keyHash) {
+            int start = (int) (keyHash ^ (keyHash >>> 32));
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (start + probe) & mask;
+                long key = keys.get(slot);
+                if (key == keyHash) {
+                    return slot;
+                }
+                if (key == EMPTY) {
+                    if (keys.compareAndSet(slot, EMPTY, keyHash)) {
+                        return slot;
+                    }
+                    if (keys.get(slot) == keyHash) {
+                        return slot;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.s1steam.veloauth.api.cluster;
+
+import com.s1steam.veloauth.api.time.TimeSource;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Узел gossip репликации состояния IP между прокси по UDP
+ * Изменения копятся в ограниченной очереди и раз в интервал отправляются всем
+ * соседям пакетами по {@link DeltaCodec#MAX_DELTAS}. Получатель пересылает
+ * дальше только изменения, которые изменили его состояние, поэтому пересылка
+ * затухает сама, а потерянный пакет доходит через других соседей.
+ * Версии изменений - гибридные часы: время в миллисекундах << 16 | номер узла,
+ * не меньше любой увиденной версии, поэтому действие после полученного
+ * изменения всегда побеждает его.
+ * К узлу можно подключить распределенный счетчик: его итоги рассылаются
+ * соседям напрямую (без пересылки) со своим интервалом синхронизации
+ */
+public final class GossipNode implements AutoCloseable {
+    
+    /**
+     * Максимальный номер узла (младшие 16 бит версии)
+     */
+    public static final int MAX_NODE_ID = 0xFFFF;
+    
+    // Изменений в очереди отправки (при переполнении новые отбрасываются)
+    private static final int QUEUE_CAPACITY = 65536;
+    
+    private static final int MAX_PACKET_SIZE = 65507;
+    
+    private final int nodeId;
+    private final List<InetSocketAddress> peers;
+    private final DeltaCodec codec;
+    private final TimeSource timeSource;
+    private final Consumer<ReplicaDelta> receiver;
+    private final Logger logger;
+    private final DatagramSocket socket;
+    private final BlockingQueue<ReplicaDelta> outbound;
+    private final ScheduledExecutorService flusher;
+    private final Thread listener;
+    private final AtomicLong clock;
+    
+    // Распределенный счетчик (null - не подключен)
+    private volatile DistributedCounter counter;
+    
+    private final LongAdder packetsSent = new LongAdder();
+    private final LongAdder deltasReceived = new LongAdder();
+    private final LongAdder deltasDropped = new LongAdder();
+    private final LongAdder packetsRejected = new LongAdder();
+    
+    /**
+     * Открывает сокет и запускает прием и отправку
+     *
+     * @param nodeId Номер узла, уникальный в кластере (1-65535)
+     * @param bind Адрес приема пакетов
+     * @param peers Адреса остальных узлов
+     * @param secret Общий секрет кластера
+     * @param intervalMs Интервал отправки накопленных изменений
+     * @param receiver Обработчик полученных изменений (вызывается в потоке приема)
+     * @throws SocketException если адрес приема недоступен
+     */
+    public GossipNode(int nodeId, InetSocketAddress bind, List<InetSocketAddress> peers, byte[] secret,
+                      long intervalMs, TimeSource timeSource, Consumer<ReplicaDelta> receiver, Logger logger)
+            throws SocketException {
+        if (nodeId < 1 || nodeId > MAX_NODE_ID || intervalMs <= 0) {
+            throw new IllegalArgumentException("Invalid gossip node parameters");
+        }
+        this.nodeId = nodeId;
+        this.peers = List.copyOf(peers);
+        this.codec = new DeltaCodec(secret);
+        this.timeSource = timeSource;
+        this.receiver = receiver;
+        this.logger = logger;
+        this.socket = new DatagramSocket(bind);
+        this.outbound = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.clock = new AtomicLong();
+        
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VeloAuth-Gossip-Send");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        
+        this.listener = new Thread(this::receiveLoop, "VeloAuth-Gossip-Receive");
+        listener.setDaemon(true);
+        listener.start();
+    }
+    
+    /**
+     * Версия нового локального изменения
+     */
+    public long nextVersion() {
+        long now = timeSource.currentTimeMillis() << 16;
+        return clock.updateAndGet(last -> Math.max(now, (last & ~(long) MAX_NODE_ID) + (1L << 16))) | nodeId;
+    }
+    
+    /**
+     * Учитывает версию полученного изменения в часах узла
+     */
+    public void observe(long version) {
+        clock.accumulateAndGet(version, Math::max);
+    }
+    
+    /**
+     * Ставит изменение в очередь отправки всем соседям
+     * Используется и для локальных изменений, и для пересылки полученных
+     *
+     * @return false если очередь переполнена и изменение отброшено
+     */
+    public boolean publish(ReplicaDelta delta) {
+        if (!outbound.offer(delta)) {
+            deltasDropped.increment();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Подключает распределенный счетчик и запускает рассылку его итогов
+     *
+     * @param syncIntervalMs Интервал рассылки - предел устаревания чужих итогов
+     */
+    public void attachCounter(DistributedCounter counter, long syncIntervalMs) {
+        if (this.counter != null || syncIntervalMs <= 0) {
+            throw new IllegalStateException("Counter is already attached or interval is invalid");
+        }
+        this.counter = counter;
+        flusher.scheduleWithFixedDelay(this::syncCounters, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Рассылает изменившиеся итоги счетчика (поток отправки)
+     */
+    void syncCounters() {
+        DistributedCounter attached = counter;
+        long now = timeSource.currentTimeMillis();
+        List<CounterDelta> batch = new ArrayList<>(DeltaCodec.MAX_COUNTERS);
+        while (attached.collect(batch, DeltaCodec.MAX_COUNTERS, now) > 0) {
+            if (!send(codec.encode(nodeId, List.of(), batch))) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Отправляет накопленные изменения (поток отправки)
+     */
+    void flush() {
+        List<ReplicaDelta> batch = new ArrayList<>(DeltaCodec.MAX_DELTAS);
+        while (outbound.drainTo(batch, DeltaCodec.MAX_DELTAS) > 0) {
+            if (!send(codec.encode(nodeId, batch))) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+    
+    /**
+     * Отправляет пакет всем соседям
+     *
+     * @return false если сокет закрыт
+     */
+    private boolean send(byte[] data) {
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(data, data.length, peer));
+                packetsSent.increment();
+            } catch (IOException e) {
+                if (socket.isClosed()) {
+                    return false;
+                }
+                logger.warn("Failed to send gossip packet to " + peer + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+    
+    private void receiveLoop() {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                DeltaCodec.Batch batch = codec.decode(buffer, packet.getLength());
+                if (batch.getSender() == nodeId) {
+                    continue;
+                }
+                for (ReplicaDelta delta : batch.getDeltas()) {
+                    // Свое изменение, вернувшееся через соседей, уже применено
+                    if (delta.getOrigin() == nodeId) {
+                        continue;
+                    }
+                    observe(delta.getVersion());
+                    deltasReceived.increment();
+                    receiver.accept(delta);
+                }
+                DistributedCounter attached = counter;
+                if (attached != null && !batch.getCounters().isEmpty()) {
+                    long now = timeSource.currentTimeMillis();
+                    for (CounterDelta delta : batch.getCounters()) {
+                        attached.merge(batch.getSender(), delta, now);
+                    }
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    packetsRejected.increment();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to apply gossip deltas", e);
+            }
+        }
+    }
+    
+    public int getNodeId() {
+        return nodeId;
+    }
+    
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+    
+    public long getDeltasReceived() {
+        return deltasReceived.sum();
+    }
+    
+    public long getDeltasDropped() {
+        return deltasDropped.sum();
+    }
+    
+    /**
+     * Пакеты с неверной подписью или содержимым
+     */
+    public long getPacketsRejected() {
+        return packetsRejected.sum();
+    }
+    
+    /**
+     * Разбирает адрес вида host:port или [ipv6]:port
+     *
+     * @throws IllegalArgumentException если адрес неверен
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1) {
+            throw new IllegalArgumentException("Expected host:port, got " + address);
+        }
+        String host = address.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port in " + address);
+        }
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port in " + address);
+        }
+        return new InetSocketAddress(host, port);
+    }
+    
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        socket.close();
+    }
+}
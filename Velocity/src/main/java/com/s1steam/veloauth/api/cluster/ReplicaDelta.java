@@ -0,0 +1,97 @@
+package com.s1steam.veloauth.api.cluster;
+
+import com.s1steam.veloauth.api.models.BlockReason;
+
+/**
+ * Изменение состояния IP для репликации между прокси
+ * Каждое поле (блокировка, белый и черный список) - регистр last-writer-wins:
+ * изменение применяется, только если его версия больше последней примененной,
+ * поэтому повторы, переупорядочивание и пересылка через соседей безопасны
+ */
+public final class ReplicaDelta {
+    
+    /**
+     * Реплицируемое поле, порядковый номер передается по сети и не должен меняться
+     */
+    public enum Type {
+        // value - время окончания блокировки (0 - разблокировка)
+        BLOCK,
+        // value - 1 в списке, 0 удален из списка
+        WHITELIST,
+        BLACKLIST;
+        
+        private static final Type[] VALUES = values();
+        
+        /**
+         * Поле по порядковому номеру (null для неизвестного)
+         */
+        public static Type fromOrdinal(int ordinal) {
+            return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+        }
+    }
+    
+    private final Type type;
+    private final String ip;
+    private final long value;
+    private final BlockReason reason;
+    private final long version;
+    
+    public ReplicaDelta(Type type, String ip, long value, BlockReason reason, long version) {
+        this.type = type;
+        this.ip = ip;
+        this.value = value;
+        this.reason = reason;
+        this.version = version;
+    }
+    
+    /**
+     * Блокировка до времени blockUntil (0 - разблокировка)
+     */
+    public static ReplicaDelta block(String ip, long blockUntil, BlockReason reason, long version) {
+        return new ReplicaDelta(Type.BLOCK, ip, blockUntil, reason, version);
+    }
+    
+    /**
+     * Добавление в список или удаление из него
+     */
+    public static ReplicaDelta listed(Type type, String ip, boolean listed, long version) {
+        return new ReplicaDelta(type, ip, listed ? 1 : 0, BlockReason.OTHER, version);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getIp() {
+        return ip;
+    }
+    
+    public long getValue() {
+        return value;
+    }
+    
+    /**
+     * Установлено ли поле (IP заблокирован или в списке)
+     */
+    public boolean isSet() {
+        return value != 0;
+    }
+    
+    public BlockReason getReason() {
+        return reason;
+    }
+    
+    /**
+     * Версия изменения: время в миллисекундах << 16 | номер узла
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Номер узла, создавшего изменение
+     */
+    public int getOrigin() {
+        return (int) (version & GossipNode.MAX_NODE_ID);
+    }
+}
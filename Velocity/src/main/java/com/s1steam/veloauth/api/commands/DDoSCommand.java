@@ -1,7 +1,10 @@
 package com.s1steam.veloauth.api.commands;
 
 import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.models.BlockRecord;
+import com.s1steam.veloauth.api.models.HeavyHitter;
 import com.s1steam.veloauth.api.models.IPReputationData;
+import com.s1steam.veloauth.api.models.TrafficCategory;
 import com.velocitypowered.api.command.SimpleCommand;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
@@ -11,7 +14,7 @@ import java.util.List;
 
 /**
  * /va ddos command for DDoS Protection management
- * Subcommands: stats, whitelist, blacklist, block, unblock
+ * Subcommands: stats, top, whitelist, blacklist, blocklist, block, unblock
  */
 public class DDoSCommand implements SimpleCommand {
     
@@ -45,6 +48,10 @@ public class DDoSCommand implements SimpleCommand {
                 handleStats(invocation);
                 break;
                 
+            case "top":
+                handleTop(invocation, args);
+                break;
+            
             case "whitelist":
                 handleWhitelist(invocation, args);
                 break;
@@ -52,6 +59,10 @@ public class DDoSCommand implements SimpleCommand {
             case "blacklist":
                 handleBlacklist(invocation, args);
                 break;
+            
+            case "blocklist":
+                handleBlocklist(invocation, args);
+                break;
                 
             case "block":
                 handleBlock(invocation, args);
@@ -66,6 +77,14 @@ public class DDoSCommand implements SimpleCommand {
                 handleReputation(invocation, args);
                 break;
                 
+            case "unlockaccount":
+                handleUnlockAccount(invocation, args);
+                break;
+            
+            case "fingerprints":
+                handleFingerprints(invocation, args);
+                break;
+            
             default:
                 sendMessage(invocation, "§cНеизвестная подкоманда: " + subcommand);
                 showUsage(invocation);
@@ -76,11 +95,15 @@ public class DDoSCommand implements SimpleCommand {
     private void showUsage(Invocation invocation) {
         sendMessage(invocation, "§6§l=== DDoS Protection ===");
         sendMessage(invocation, "§e/va ddos stats §7- Статистика защиты");
+        sendMessage(invocation, "§e/va ddos top [ips|prefixes|failures|usernames] [count] §7- Самые активные источники");
         sendMessage(invocation, "§e/va ddos whitelist <add|remove|list> [ip] §7- Управление whitelist");
         sendMessage(invocation, "§e/va ddos blacklist <add|remove|list> [ip] §7- Управление blacklist");
+        sendMessage(invocation, "§e/va ddos blocklist reload §7- Перечитать внешние blocklist");
         sendMessage(invocation, "§e/va ddos block <ip> [duration] §7- Заблокировать IP");
         sendMessage(invocation, "§e/va ddos unblock <ip> §7- Разблокировать IP");
         sendMessage(invocation, "§e/va ddos reputation <ip> §7- Проверить репутацию IP");
+        sendMessage(invocation, "§e/va ddos unlockaccount <ник> §7- Снять блокировку входа в аккаунт");
+        sendMessage(invocation, "§e/va ddos fingerprints [count] §7- Самые частые отпечатки клиентов");
     }
     
     private void handleStats(Invocation invocation) {
@@ -88,6 +111,65 @@ public class DDoSCommand implements SimpleCommand {
         sendMessage(invocation, stats);
     }
     
+    private void handleTop(Invocation invocation, String[] args) {
+        TrafficCategory category = TrafficCategory.CONNECTIONS_BY_IP;
+        if (args.length >= 2) {
+            category = TrafficCategory.fromName(args[1]);
+            if (category == null) {
+                sendMessage(invocation, "§cИспользование: /va ddos top [ips|prefixes|failures|usernames] [count]");
+                return;
+            }
+        }
+        
+        int limit = 10;
+        if (args.length >= 3) {
+            try {
+                limit = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                sendMessage(invocation, "§cНеверный формат количества!");
+                return;
+            }
+        }
+        
+        String title = category.getDescription();
+        plugin.getDDoSProtection().getTopOffenders(category, limit).thenAccept(top -> {
+            if (top.isEmpty()) {
+                sendMessage(invocation, "§e" + title + ": нет данных");
+                return;
+            }
+            
+            sendMessage(invocation, "§6§l=== " + title + " ===");
+            int place = 1;
+            for (HeavyHitter hitter : top) {
+                sendMessage(invocation, "§e" + place++ + ". §f" + hitter.getKey() + " §7- ~" + hitter.getCount());
+            }
+        });
+    }
+    
+    private void handleFingerprints(Invocation invocation, String[] args) {
+        int limit = 10;
+        if (args.length >= 2) {
+            try {
+                limit = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                sendMessage(invocation, "§cНеверный формат количества!");
+                return;
+            }
+        }
+        
+        List<HeavyHitter> top = plugin.getDDoSProtection().getTopFingerprints(limit);
+        if (top.isEmpty()) {
+            sendMessage(invocation, "§eОтпечатки клиентов: нет данных");
+            return;
+        }
+        
+        sendMessage(invocation, "§6§l=== Отпечатки клиентов (подключений за минуту) ===");
+        int place = 1;
+        for (HeavyHitter hitter : top) {
+            sendMessage(invocation, "§e" + place++ + ". §f" + hitter.getKey() + " §7- ~" + hitter.getCount());
+        }
+    }
+    
     private void handleWhitelist(Invocation invocation, String[] args) {
         if (args.length < 2) {
             sendMessage(invocation, "§cИспользование: /va ddos whitelist <add|remove|list> [ip]");
@@ -116,8 +198,8 @@ public class DDoSCommand implements SimpleCommand {
                 break;
                 
             case "list":
-                // TODO: Implement list functionality
-                sendMessage(invocation, "§eСписок whitelist пока не реализован");
+                plugin.getDDoSProtection().getWhitelistedIPs()
+                        .thenAccept(ips -> sendList(invocation, "Whitelist", ips));
                 break;
                 
             default:
@@ -154,8 +236,8 @@ public class DDoSCommand implements SimpleCommand {
                 break;
                 
             case "list":
-                // TODO: Implement list functionality
-                sendMessage(invocation, "§eСписок blacklist пока не реализован");
+                plugin.getDDoSProtection().getBlacklistedIPs()
+                        .thenAccept(ips -> sendList(invocation, "Blacklist", ips));
                 break;
                 
             default:
@@ -164,6 +246,17 @@ public class DDoSCommand implements SimpleCommand {
         }
     }
     
+    private void handleBlocklist(Invocation invocation, String[] args) {
+        if (args.length < 2 || !args[1].equalsIgnoreCase("reload")) {
+            sendMessage(invocation, "§cИспользование: /va ddos blocklist reload");
+            return;
+        }
+        
+        sendMessage(invocation, "§eЗагрузка blocklist...");
+        plugin.getDDoSProtection().reloadBlocklists()
+                .thenAccept(ranges -> sendMessage(invocation, "§aBlocklist загружены: §f" + ranges + " §aдиапазонов"));
+    }
+    
     private void handleBlock(Invocation invocation, String[] args) {
         if (args.length < 2) {
             sendMessage(invocation, "§cИспользование: /va ddos block <ip> [duration_ms]");
@@ -215,19 +308,73 @@ public class DDoSCommand implements SimpleCommand {
             sendMessage(invocation, "§eУспешных входов: §f" + reputation.getSuccessfulLogins());
             sendMessage(invocation, "§eНеудачных попыток: §f" + reputation.getFailedAttempts());
             sendMessage(invocation, "§eКоличество блокировок: §f" + reputation.getBlockCount());
+            String country = reputation.getCountry();
+            sendMessage(invocation, "§eСтрана: §f" + (country != null ? country : "неизвестно") +
+                (reputation.getASN() > 0 ? " §7(AS" + reputation.getASN() + ")" : ""));
+            sendMessage(invocation, "§eVPN/хостинг: §f" + (reputation.isVPN() ? "§cДа" : "§aНет"));
             sendMessage(invocation, "§eWhitelist: §f" + (reputation.isWhitelisted() ? "§aДа" : "§cНет"));
             sendMessage(invocation, "§eBlacklist: §f" + (reputation.isBlacklisted() ? "§cДа" : "§aНет"));
             
-            if (reputation.getBlockedUntil() > System.currentTimeMillis()) {
-                long remaining = (reputation.getBlockedUntil() - System.currentTimeMillis()) / 1000;
+            long now = System.currentTimeMillis();
+            if (reputation.getBlockedUntil() > now) {
+                long remaining = (reputation.getBlockedUntil() - now) / 1000;
                 sendMessage(invocation, "§eЗаблокирован на: §f" + remaining + " секунд");
             }
+            
+            List<BlockRecord> history = reputation.getBlockHistory();
+            if (!history.isEmpty()) {
+                sendMessage(invocation, "§eПоследние блокировки:");
+                for (BlockRecord record : history) {
+                    long ago = Math.max(0, now - record.getTimestamp()) / 1000;
+                    sendMessage(invocation, "§7- §f" + formatDuration(ago) + " назад§7: §f" +
+                        record.getReason().getDescription() + " §7(" + formatDuration(record.getDurationMs() / 1000) + ")");
+                }
+            }
         }).exceptionally(ex -> {
             sendMessage(invocation, "§cОшибка при получении репутации: " + ex.getMessage());
             return null;
         });
     }
     
+    private void handleUnlockAccount(Invocation invocation, String[] args) {
+        if (args.length < 2) {
+            sendMessage(invocation, "§cИспользование: /va ddos unlockaccount <ник>");
+            return;
+        }
+        
+        String username = args[1];
+        plugin.getDDoSProtection().unlockAccount(username).thenAccept(existed -> {
+            if (existed) {
+                sendMessage(invocation, "§aАккаунт " + username + " разблокирован, счетчик неудач сброшен");
+            } else {
+                sendMessage(invocation, "§eПо аккаунту " + username + " нет неудачных входов");
+            }
+        });
+    }
+    
+    private String formatDuration(long seconds) {
+        if (seconds < 60) {
+            return seconds + "с";
+        }
+        if (seconds < 3600) {
+            return (seconds / 60) + "м";
+        }
+        if (seconds < 86400) {
+            return (seconds / 3600) + "ч " + (seconds % 3600 / 60) + "м";
+        }
+        return (seconds / 86400) + "д " + (seconds % 86400 / 3600) + "ч";
+    }
+    
+    private void sendList(Invocation invocation, String title, List<String> ips) {
+        if (ips.isEmpty()) {
+            sendMessage(invocation, "§e" + title + " пуст");
+            return;
+        }
+        
+        sendMessage(invocation, "§6§l=== " + title + " (" + ips.size() + ") ===");
+        sendMessage(invocation, "§f" + String.join("§7, §f", ips));
+    }
+    
     private void sendMessage(Invocation invocation, String message) {
         Component component = LegacyComponentSerializer.legacySection().deserialize(message);
         invocation.source().sendMessage(component);
@@ -246,11 +393,15 @@ public class DDoSCommand implements SimpleCommand {
         // First argument - subcommands
         if (args.length == 0 || args.length == 1) {
             suggestions.add("stats");
+            suggestions.add("top");
             suggestions.add("whitelist");
             suggestions.add("blacklist");
+            suggestions.add("blocklist");
             suggestions.add("block");
             suggestions.add("unblock");
             suggestions.add("reputation");
+            suggestions.add("unlockaccount");
+            suggestions.add("fingerprints");
             
             // Filter by current input
             if (args.length == 1) {
@@ -258,7 +409,7 @@ public class DDoSCommand implements SimpleCommand {
                 suggestions.removeIf(s -> !s.startsWith(input));
             }
         }
-        // Second argument - actions for whitelist/blacklist
+        // Second argument - actions for whitelist/blacklist/blocklist, categories for top
         else if (args.length == 2) {
             String subcommand = args[0].toLowerCase();
             if ("whitelist".equals(subcommand) || "blacklist".equals(subcommand)) {
@@ -268,6 +419,14 @@ public class DDoSCommand implements SimpleCommand {
                 
                 String input = args[1].toLowerCase();
                 suggestions.removeIf(s -> !s.startsWith(input));
+            } else if ("blocklist".equals(subcommand) && "reload".startsWith(args[1].toLowerCase())) {
+                suggestions.add("reload");
+            } else if ("top".equals(subcommand)) {
+                for (TrafficCategory category : TrafficCategory.values()) {
+                    if (category.getName().startsWith(args[1].toLowerCase())) {
+                        suggestions.add(category.getName());
+                    }
+                }
             }
         }
         
@@ -14,7 +14,7 @@ import java.util.Map;
 
 /**
  * /va command for VeloAuth API
- * Subcommands: reload, info
+ * Subcommands: reload, info, ddos, queue
  */
 public class VaCommand implements SimpleCommand {
     
@@ -42,6 +42,7 @@ public class VaCommand implements SimpleCommand {
             sendMessage(invocation, "§e/va reload §7- Перезагрузить конфигурацию");
             sendMessage(invocation, "§e/va info §7- Информация о плагине");
             sendMessage(invocation, "§e/va ddos §7- Управление DDoS защитой");
+            sendMessage(invocation, "§e/va queue §7- Очереди сообщений на backend серверы");
             return;
         }
         
@@ -60,16 +61,23 @@ public class VaCommand implements SimpleCommand {
                 handleDDoS(invocation, args);
                 break;
                 
+            case "queue":
+                handleQueue(invocation);
+                break;
+            
             default:
                 sendMessage(invocation, "§cНеизвестная подкоманда: " + subcommand);
-                sendMessage(invocation, "§eИспользуйте: /va reload, /va info или /va ddos");
+                sendMessage(invocation, "§eИспользуйте: /va reload, /va info, /va ddos или /va queue");
                 break;
         }
     }
     
     private void handleReload(Invocation invocation) {
         try {
-            plugin.getConfigManager().loadConfig();
+            if (!plugin.getConfigManager().loadConfig()) {
+                sendMessage(invocation, "§cОшибка в конфигурации! Оставлены предыдущие настройки, подробности в консоли.");
+                return;
+            }
             sendMessage(invocation, plugin.getConfigManager().getMessage("reload"));
             plugin.getLogger().info("Configuration reloaded by " + getSourceName(invocation));
         } catch (Exception e) {
@@ -88,6 +96,10 @@ public class VaCommand implements SimpleCommand {
         sendMessage(invocation, message);
     }
     
+    private void handleQueue(Invocation invocation) {
+        sendMessage(invocation, plugin.getMessageHandler().getOutbound().getStatistics());
+    }
+    
     private void handleDDoS(Invocation invocation, String[] args) {
         // Remove "ddos" from args and pass the rest to DDoSCommand
         String[] ddosArgs = Arrays.copyOfRange(args, 1, args.length);
@@ -143,6 +155,7 @@ public class VaCommand implements SimpleCommand {
             suggestions.add("reload");
             suggestions.add("info");
             suggestions.add("ddos");
+            suggestions.add("queue");
             
             // Filter by current input
             if (args.length == 1) {
@@ -2,26 +2,34 @@ package com.s1steam.veloauth.api.config;
 
 import com.s1steam.veloauth.api.VeloAuthAPI;
 import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.Map;
 
 public class ConfigManager {
     
     private final VeloAuthAPI plugin;
     private final Path configPath;
-    private Map<String, Object> config;
+    
+    // Current compiled configuration, replaced atomically on reload
+    private volatile ConfigSnapshot snapshot;
     
     public ConfigManager(VeloAuthAPI plugin) {
         this.plugin = plugin;
         this.configPath = plugin.getDataDirectory().resolve("config.yml");
-        this.config = new HashMap<>();
+        this.snapshot = ConfigSnapshot.defaults();
     }
     
-    public void loadConfig() {
+    /**
+     * Loads, compiles and validates config.yml, then publishes it in one step.
+     * If the file cannot be read or is invalid, the previous configuration stays active.
+     *
+     * @return true if the new configuration was applied
+     */
+    public boolean loadConfig() {
         try {
             // Create data directory if it doesn't exist
             if (!Files.exists(plugin.getDataDirectory())) {
@@ -34,21 +42,22 @@ public class ConfigManager {
             }
             
             // Load config
+            Map<String, Object> root;
             Yaml yaml = new Yaml();
             try (InputStream inputStream = Files.newInputStream(configPath)) {
-                config = yaml.load(inputStream);
-                if (config == null) {
-                    config = new HashMap<>();
-                }
+                root = yaml.load(inputStream);
             }
             
-            // Validate config
-            validateConfig();
+            // Compile and validate before publishing
+            snapshot = ConfigSnapshot.compile(root, snapshot, plugin.getLogger()::warn);
+            return true;
             
-        } catch (IOException e) {
-            plugin.getLogger().error("Failed to load configuration", e);
-            config = new HashMap<>();
+        } catch (IOException | YAMLException | ClassCastException e) {
+            plugin.getLogger().error("Failed to load configuration, keeping previous settings", e);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().error("Invalid configuration, keeping previous settings: " + e.getMessage());
         }
+        return false;
     }
     
     public void saveDefaultConfig() {
@@ -117,80 +126,31 @@ public class ConfigManager {
                "  backend-unavailable: \"§cBackend сервер недоступен! Обратитесь к администратору.\"\n";
     }
     
-    private void validateConfig() {
-        // Validate backend server name
-        String backendServer = getBackendServer();
-        if (backendServer == null || backendServer.isEmpty()) {
-            plugin.getLogger().warn("Backend server name is not configured, using default: lobby");
-            setDefault("backend.server-name", "lobby");
-        }
-        
-        // Validate sync channel
-        String channel = getSyncChannel();
-        if (channel == null || channel.isEmpty()) {
-            plugin.getLogger().warn("Sync channel is not configured, using default: veloauth:sync");
-            setDefault("sync.channel", "veloauth:sync");
-        }
+    /**
+     * Returns the current immutable configuration
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
     }
     
-    @SuppressWarnings("unchecked")
-    private <T> T get(String path, T defaultValue) {
-        String[] keys = path.split("\\.");
-        Map<String, Object> current = config;
-        
-        for (int i = 0; i < keys.length - 1; i++) {
-            Object next = current.get(keys[i]);
-            if (!(next instanceof Map)) {
-                return defaultValue;
-            }
-            current = (Map<String, Object>) next;
-        }
-        
-        Object value = current.get(keys[keys.length - 1]);
-        if (value == null) {
-            return defaultValue;
-        }
-        
-        try {
-            return (T) value;
-        } catch (ClassCastException e) {
-            return defaultValue;
-        }
-    }
-    
-    @SuppressWarnings("unchecked")
-    private void setDefault(String path, Object value) {
-        String[] keys = path.split("\\.");
-        Map<String, Object> current = config;
-        
-        for (int i = 0; i < keys.length - 1; i++) {
-            Object next = current.get(keys[i]);
-            if (!(next instanceof Map)) {
-                Map<String, Object> newMap = new HashMap<>();
-                current.put(keys[i], newMap);
-                current = newMap;
-            } else {
-                current = (Map<String, Object>) next;
-            }
-        }
-        
-        current.put(keys[keys.length - 1], value);
+    public DDoSSettings getDDoSSettings() {
+        return snapshot.getDDoS();
     }
     
     public String getBackendServer() {
-        return get("backend.server-name", "lobby");
+        return snapshot.getBackendServer();
     }
     
     public boolean isDebugMode() {
-        return get("sync.debug", false);
+        return snapshot.isDebugMode();
     }
     
     public String getSyncChannel() {
-        return get("sync.channel", "veloauth:sync");
+        return snapshot.getSyncChannel();
     }
     
     public String getMessage(String key) {
-        return get("messages." + key, "§cMessage not found: " + key);
+        return snapshot.getMessage(key);
     }
     
     public String getMessage(String key, Map<String, String> placeholders) {
@@ -205,42 +165,46 @@ public class ConfigManager {
     
     // DDoS Protection settings
     public boolean isDDoSProtectionEnabled() {
-        return get("ddos-protection.enabled", true);
+        return snapshot.getDDoS().isEnabled();
     }
     
     public int getMaxConnectionsPerSecond() {
-        return get("ddos-protection.max-connections-per-second", 5);
+        return snapshot.getDDoS().getMaxConnectionsPerSecond();
     }
     
     public int getMaxConnectionsPerMinute() {
-        return get("ddos-protection.max-connections-per-minute", 20);
+        return snapshot.getDDoS().getMaxConnectionsPerMinute();
     }
     
     public int getMaxAuthAttemptsPerMinute() {
-        return get("ddos-protection.max-auth-attempts-per-minute", 5);
+        return snapshot.getDDoS().getMaxAuthAttemptsPerMinute();
     }
     
     public int getMaxCommandsPerSecond() {
-        return get("ddos-protection.max-commands-per-second", 10);
+        return snapshot.getDDoS().getMaxCommandsPerSecond();
     }
     
     public int getMinReputationForConnection() {
-        return get("ddos-protection.min-reputation-for-connection", 20);
+        return snapshot.getDDoS().getMinReputationForConnection();
     }
     
     public long getBaseBlockDuration() {
-        Object value = get("ddos-protection.base-block-duration", 60000);
-        if (value instanceof Integer) {
-            return ((Integer) value).longValue();
-        }
-        return (Long) value;
+        return snapshot.getDDoS().getBaseBlockDuration();
+    }
+    
+    public long getReputationHalfLife() {
+        return snapshot.getDDoS().getReputationHalfLife();
+    }
+    
+    public long getBlockEscalationWindow() {
+        return snapshot.getDDoS().getBlockEscalationWindow();
+    }
+    
+    public long getClockResolution() {
+        return snapshot.getDDoS().getClockResolution();
     }
     
     public double getBackoffMultiplier() {
-        Object value = get("ddos-protection.backoff-multiplier", 2.0);
-        if (value instanceof Integer) {
-            return ((Integer) value).doubleValue();
-        }
-        return (Double) value;
+        return snapshot.getDDoS().getBackoffMultiplier();
     }
 }
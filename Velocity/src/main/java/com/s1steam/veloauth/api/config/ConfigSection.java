@@ -0,0 +1,168 @@
+package com.s1steam.veloauth.api.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Типизированное чтение секции YAML при компиляции конфигурации
+ * Неверный тип значения приводит к IllegalArgumentException с полным путем ключа
+ */
+public final class ConfigSection {
+    
+    private final String path;
+    private final Map<String, Object> values;
+    
+    private ConfigSection(String path, Map<String, Object> values) {
+        this.path = path;
+        this.values = values;
+    }
+    
+    /**
+     * Корневая секция документа
+     */
+    public static ConfigSection root(Map<String, Object> values) {
+        return new ConfigSection("", values != null ? values : Collections.emptyMap());
+    }
+    
+    /**
+     * Вложенная секция (пустая, если ключ отсутствует)
+     */
+    @SuppressWarnings("unchecked")
+    public ConfigSection getSection(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return new ConfigSection(pathOf(key), Collections.emptyMap());
+        }
+        if (!(value instanceof Map)) {
+            throw invalid(key, "section", value);
+        }
+        return new ConfigSection(pathOf(key), (Map<String, Object>) value);
+    }
+    
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+    
+    public Set<String> getKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Object key : values.keySet()) {
+            keys.add(String.valueOf(key));
+        }
+        return keys;
+    }
+    
+    public String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Map || value instanceof List) {
+            throw invalid(key, "string", value);
+        }
+        return value.toString();
+    }
+    
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Boolean)) {
+            throw invalid(key, "boolean", value);
+        }
+        return (Boolean) value;
+    }
+    
+    public int getInt(String key, int defaultValue) {
+        long value = getLong(key, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalid(key, "int", value);
+        }
+        return (int) value;
+    }
+    
+    public long getLong(String key, long defaultValue) {
+        Object value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Integer || value instanceof Long)) {
+            throw invalid(key, "integer", value);
+        }
+        return ((Number) value).longValue();
+    }
+    
+    public double getDouble(String key, double defaultValue) {
+        Object value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Number)) {
+            throw invalid(key, "number", value);
+        }
+        return ((Number) value).doubleValue();
+    }
+    
+    public List<String> getStringList(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw invalid(key, "list", value);
+        }
+        List<String> result = new ArrayList<>();
+        for (Object element : (List<?>) value) {
+            result.add(String.valueOf(element));
+        }
+        return Collections.unmodifiableList(result);
+    }
+    
+    /**
+     * Таблица целых чисел (ключи YAML приводятся к строке, например номера ASN)
+     */
+    public Map<String, Integer> getIntMap(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return Collections.emptyMap();
+        }
+        if (!(value instanceof Map)) {
+            throw invalid(key, "section", value);
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!(entry.getValue() instanceof Integer)) {
+                throw invalid(key + "." + entry.getKey(), "int", entry.getValue());
+            }
+            result.put(String.valueOf(entry.getKey()), (Integer) entry.getValue());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+    
+    /**
+     * Проверяет, что значение лежит в допустимом диапазоне
+     */
+    public void require(boolean condition, String key, String requirement) {
+        if (!condition) {
+            throw new IllegalArgumentException("Invalid value for " + pathOf(key) + ": " + requirement);
+        }
+    }
+    
+    public String getPath() {
+        return path;
+    }
+    
+    private String pathOf(String key) {
+        return path.isEmpty() ? key : path + "." + key;
+    }
+    
+    private IllegalArgumentException invalid(String key, String expected, Object value) {
+        return new IllegalArgumentException("Invalid value for " + pathOf(key) +
+            ": expected " + expected + ", got '" + value + "'");
+    }
+}
@@ -0,0 +1,472 @@
+package com.s1steam.veloauth.api.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Неизменяемый снимок конфигурации
+ * YAML компилируется в типизированные поля один раз при загрузке,
+ * ConfigManager публикует снимок одной volatile ссылкой
+ */
+public final class ConfigSnapshot {
+    
+    private static final String DEFAULT_BACKEND_SERVER = "lobby";
+    private static final String DEFAULT_SYNC_CHANNEL = "veloauth:sync";
+    
+    // Секции верхнего уровня, изменения которых отслеживаются при перезагрузке
+    public static final String BACKEND = "backend";
+    public static final String SYNC = "sync";
+    public static final String DDOS_PROTECTION = "ddos-protection";
+    public static final String AUTO_RELOAD = "auto-reload";
+    public static final String GEOIP = "geoip";
+    public static final String VPN_DETECTION = "vpn-detection";
+    public static final String BLOCKLISTS = "blocklists";
+    public static final String STORAGE = "storage";
+    public static final String SESSION_RESUME = "session-resume";
+    public static final String MESSAGES = "messages";
+    private static final List<String> SECTIONS = List.of(BACKEND, SYNC, DDOS_PROTECTION, AUTO_RELOAD, GEOIP, VPN_DETECTION,
+        BLOCKLISTS, STORAGE, SESSION_RESUME, MESSAGES);
+    
+    // Стратегии выбора сервера авторизации
+    public static final String BALANCING_LEAST_CONNECTIONS = "least-connections";
+    public static final String BALANCING_WEIGHTED = "weighted";
+    
+    // Поведение переполненной очереди сообщений на backend
+    public static final String OVERFLOW_DROP_OLDEST = "drop-oldest";
+    public static final String OVERFLOW_REJECT = "reject";
+    
+    // Типы хранилища репутации
+    public static final String STORAGE_MEMORY = "memory";
+    public static final String STORAGE_FILE = "file";
+    public static final String STORAGE_JDBC = "jdbc";
+    
+    private final String backendServer;
+    private final Map<String, Integer> lobbies;
+    private final String lobbyBalancing;
+    private final long lobbyCheckInterval;
+    private final long lobbyCheckTimeout;
+    private final int lobbyFailureThreshold;
+    private final long lobbyOpenDuration;
+    private final boolean debugMode;
+    private final String syncChannel;
+    private final boolean outboundEnabled;
+    private final int outboundQueueCapacity;
+    private final String outboundOverflow;
+    private final long outboundFlushInterval;
+    private final Map<String, String> messages;
+    private final DDoSSettings ddos;
+    
+    private final boolean autoReload;
+    private final long reloadDebounce;
+    private final String whitelistFile;
+    private final String blacklistFile;
+    
+    private final boolean geoIPEnabled;
+    private final String geoIPDatabase;
+    private final String geoIPAsnDatabase;
+    private final int geoIPCacheSize;
+    
+    private final boolean vpnDetectionEnabled;
+    private final String vpnRangesFile;
+    
+    private final boolean blocklistsEnabled;
+    private final List<String> blocklistFiles;
+    
+    private final String storageType;
+    private final String storageFile;
+    private final long storageFlushInterval;
+    private final int storageBatchSize;
+    private final String jdbcUrl;
+    private final String jdbcUsername;
+    private final String jdbcPassword;
+    private final int jdbcPoolSize;
+    
+    private final boolean sessionResumeEnabled;
+    private final long sessionResumeTtl;
+    private final String sessionResumeSecret;
+    private final String sessionResumeServer;
+    private final String sessionResumeFile;
+    
+    // Исходные секции YAML для определения изменившихся частей
+    private final Map<String, Object> sources;
+    
+    private ConfigSnapshot(Map<String, Object> document, ConfigSnapshot previous, Consumer<String> warnings) {
+        ConfigSection root = ConfigSection.root(document);
+        Map<String, Object> rawSections = new HashMap<>();
+        for (String section : SECTIONS) {
+            if (document != null && document.get(section) != null) {
+                rawSections.put(section, document.get(section));
+            }
+        }
+        this.sources = Collections.unmodifiableMap(rawSections);
+        
+        ConfigSection backend = root.getSection(BACKEND);
+        String server = backend.getString("server-name", "");
+        if (server.isEmpty()) {
+            warnings.accept("Backend server name is not configured, using default: " + DEFAULT_BACKEND_SERVER);
+            server = DEFAULT_BACKEND_SERVER;
+        }
+        this.backendServer = server;
+        
+        // Пул серверов авторизации: "имя" или "имя:вес", без пула - только server-name
+        Map<String, Integer> compiledLobbies = new LinkedHashMap<>();
+        for (String lobby : backend.getStringList("lobbies")) {
+            int colon = lobby.lastIndexOf(':');
+            String name = (colon < 0 ? lobby : lobby.substring(0, colon)).trim();
+            int weight = 1;
+            if (colon >= 0) {
+                try {
+                    weight = Integer.parseInt(lobby.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    weight = 0;
+                }
+            }
+            backend.require(!name.isEmpty() && weight > 0, "lobbies", "expected name or name:weight with positive weight");
+            compiledLobbies.put(name, weight);
+        }
+        if (compiledLobbies.isEmpty()) {
+            compiledLobbies.put(server, 1);
+        }
+        this.lobbies = Collections.unmodifiableMap(compiledLobbies);
+        this.lobbyBalancing = backend.getString("balancing", BALANCING_LEAST_CONNECTIONS).toLowerCase(Locale.ROOT);
+        backend.require(lobbyBalancing.equals(BALANCING_LEAST_CONNECTIONS) || lobbyBalancing.equals(BALANCING_WEIGHTED),
+            "balancing", "must be least-connections or weighted");
+        ConfigSection health = backend.getSection("health-check");
+        this.lobbyCheckInterval = health.getLong("interval", 5000);
+        this.lobbyCheckTimeout = health.getLong("timeout", 2000);
+        this.lobbyFailureThreshold = health.getInt("failure-threshold", 3);
+        this.lobbyOpenDuration = health.getLong("open-duration", 30000);
+        health.require(lobbyCheckInterval >= 1000, "interval", "must be at least 1000");
+        health.require(lobbyCheckTimeout > 0, "timeout", "must be positive");
+        health.require(lobbyFailureThreshold > 0, "failure-threshold", "must be positive");
+        health.require(lobbyOpenDuration >= 0, "open-duration", "must not be negative");
+        
+        ConfigSection sync = root.getSection(SYNC);
+        this.debugMode = sync.getBoolean("debug", false);
+        String channel = sync.getString("channel", "");
+        if (channel.isEmpty()) {
+            warnings.accept("Sync channel is not configured, using default: " + DEFAULT_SYNC_CHANNEL);
+            channel = DEFAULT_SYNC_CHANNEL;
+        }
+        this.syncChannel = channel;
+        
+        // Очередь сообщений на backend серверы
+        ConfigSection outbound = sync.getSection("outbound");
+        this.outboundEnabled = outbound.getBoolean("enabled", true);
+        this.outboundQueueCapacity = outbound.getInt("queue-capacity", 1024);
+        this.outboundOverflow = outbound.getString("overflow", OVERFLOW_DROP_OLDEST).toLowerCase(Locale.ROOT);
+        this.outboundFlushInterval = outbound.getLong("flush-interval", 250);
+        outbound.require(outboundQueueCapacity > 0, "queue-capacity", "must be positive");
+        outbound.require(outboundOverflow.equals(OVERFLOW_DROP_OLDEST) || outboundOverflow.equals(OVERFLOW_REJECT),
+            "overflow", "must be drop-oldest or reject");
+        outbound.require(outboundFlushInterval >= 50, "flush-interval", "must be at least 50");
+        
+        ConfigSection messagesSection = root.getSection(MESSAGES);
+        Map<String, String> compiledMessages = new HashMap<>();
+        for (String key : messagesSection.getKeys()) {
+            compiledMessages.put(key, messagesSection.getString(key, ""));
+        }
+        this.messages = Collections.unmodifiableMap(compiledMessages);
+        
+        // Неизменившаяся секция DDoS не компилируется заново
+        if (previous != null && previous.isSameSection(DDOS_PROTECTION, rawSections)) {
+            this.ddos = previous.ddos;
+        } else {
+            this.ddos = DDoSSettings.compile(root.getSection(DDOS_PROTECTION));
+        }
+        
+        ConfigSection reload = root.getSection(AUTO_RELOAD);
+        this.autoReload = reload.getBoolean("enabled", true);
+        this.reloadDebounce = reload.getLong("debounce", 500);
+        this.whitelistFile = reload.getString("whitelist-file", "whitelist.txt");
+        this.blacklistFile = reload.getString("blacklist-file", "blacklist.txt");
+        reload.require(reloadDebounce >= 0, "debounce", "must not be negative");
+        
+        ConfigSection geoip = root.getSection(GEOIP);
+        this.geoIPEnabled = geoip.getBoolean("enabled", true);
+        this.geoIPDatabase = geoip.getString("database", "GeoLite2-Country.mmdb");
+        this.geoIPAsnDatabase = geoip.getString("asn-database", "GeoLite2-ASN.mmdb");
+        this.geoIPCacheSize = geoip.getInt("cache-size", 65536);
+        geoip.require(geoIPCacheSize > 0, "cache-size", "must be positive");
+        
+        ConfigSection vpn = root.getSection(VPN_DETECTION);
+        this.vpnDetectionEnabled = vpn.getBoolean("enabled", true);
+        this.vpnRangesFile = vpn.getString("ranges-file", "hosting-ranges.txt");
+        
+        ConfigSection blocklists = root.getSection(BLOCKLISTS);
+        this.blocklistsEnabled = blocklists.getBoolean("enabled", true);
+        this.blocklistFiles = blocklists.contains("files")
+            ? blocklists.getStringList("files")
+            : List.of("blocklist.netset");
+        
+        ConfigSection storage = root.getSection(STORAGE);
+        this.storageType = storage.getString("type", STORAGE_MEMORY).toLowerCase(Locale.ROOT);
+        this.storageFile = storage.getString("file", "reputation.dat");
+        this.storageFlushInterval = storage.getLong("flush-interval", 1000);
+        this.storageBatchSize = storage.getInt("batch-size", 500);
+        storage.require(List.of(STORAGE_MEMORY, STORAGE_FILE, STORAGE_JDBC).contains(storageType), "type",
+            "must be memory, file or jdbc");
+        storage.require(storageFlushInterval >= 100, "flush-interval", "must be at least 100");
+        storage.require(storageBatchSize > 0, "batch-size", "must be positive");
+        ConfigSection jdbc = storage.getSection("jdbc");
+        this.jdbcUrl = jdbc.getString("url", "jdbc:mysql://localhost:3306/veloauth");
+        this.jdbcUsername = jdbc.getString("username", "veloauth");
+        this.jdbcPassword = jdbc.getString("password", "");
+        this.jdbcPoolSize = jdbc.getInt("pool-size", 4);
+        jdbc.require(jdbcPoolSize > 0, "pool-size", "must be positive");
+        
+        ConfigSection resume = root.getSection(SESSION_RESUME);
+        this.sessionResumeEnabled = resume.getBoolean("enabled", false);
+        this.sessionResumeTtl = resume.getLong("window", 120000);
+        this.sessionResumeSecret = resume.getString("secret", "");
+        this.sessionResumeServer = resume.getString("server", "");
+        this.sessionResumeFile = resume.getString("file", "sessions.dat");
+        resume.require(sessionResumeTtl >= 1000, "window", "must be at least 1000");
+    }
+    
+    /**
+     * Компилирует и валидирует дерево YAML
+     *
+     * @param root Корень документа (null - пустая конфигурация)
+     * @param warnings Получатель предупреждений о подставленных значениях
+     * @throws IllegalArgumentException если конфигурация невалидна
+     */
+    public static ConfigSnapshot compile(Map<String, Object> root, Consumer<String> warnings) {
+        return compile(root, null, warnings);
+    }
+    
+    /**
+     * Компилирует дерево YAML, переиспользуя неизменившиеся секции предыдущего снимка
+     *
+     * @param previous Текущий снимок (null при первой загрузке)
+     * @throws IllegalArgumentException если конфигурация невалидна
+     */
+    public static ConfigSnapshot compile(Map<String, Object> root, ConfigSnapshot previous, Consumer<String> warnings) {
+        return new ConfigSnapshot(root, previous, warnings);
+    }
+    
+    /**
+     * Снимок со значениями по умолчанию
+     */
+    public static ConfigSnapshot defaults() {
+        return compile(Collections.emptyMap(), warning -> { });
+    }
+    
+    public String getBackendServer() {
+        return backendServer;
+    }
+    
+    /**
+     * @return Серверы авторизации и их веса в порядке объявления (не пусто)
+     */
+    public Map<String, Integer> getLobbies() {
+        return lobbies;
+    }
+    
+    /**
+     * @return Стратегия выбора сервера авторизации: least-connections или weighted
+     */
+    public String getLobbyBalancing() {
+        return lobbyBalancing;
+    }
+    
+    public long getLobbyCheckInterval() {
+        return lobbyCheckInterval;
+    }
+    
+    public long getLobbyCheckTimeout() {
+        return lobbyCheckTimeout;
+    }
+    
+    public int getLobbyFailureThreshold() {
+        return lobbyFailureThreshold;
+    }
+    
+    /**
+     * @return Время, на которое недоступный сервер исключается из выбора до повторной проверки (мс)
+     */
+    public long getLobbyOpenDuration() {
+        return lobbyOpenDuration;
+    }
+    
+    public boolean isDebugMode() {
+        return debugMode;
+    }
+    
+    public String getSyncChannel() {
+        return syncChannel;
+    }
+    
+    /**
+     * @return Отправлять ли решения DDoS защиты, репутацию и изменения авторизации на backend серверы
+     */
+    public boolean isOutboundEnabled() {
+        return outboundEnabled;
+    }
+    
+    /**
+     * @return Максимум разных ключей в очереди одного сервера
+     */
+    public int getOutboundQueueCapacity() {
+        return outboundQueueCapacity;
+    }
+    
+    /**
+     * @return Поведение переполненной очереди: drop-oldest или reject
+     */
+    public String getOutboundOverflow() {
+        return outboundOverflow;
+    }
+    
+    public long getOutboundFlushInterval() {
+        return outboundFlushInterval;
+    }
+    
+    public String getMessage(String key) {
+        String message = messages.get(key);
+        return message != null ? message : "§cMessage not found: " + key;
+    }
+    
+    /**
+     * Секции, отличающиеся от предыдущего снимка
+     *
+     * @return Имена секций в порядке объявления (пусто, если файл не изменился по существу)
+     */
+    public Set<String> changedSections(ConfigSnapshot previous) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (String section : SECTIONS) {
+            if (previous == null || !previous.isSameSection(section, sources)) {
+                changed.add(section);
+            }
+        }
+        return changed;
+    }
+    
+    private boolean isSameSection(String section, Map<String, Object> otherSources) {
+        return Objects.equals(sources.get(section), otherSources.get(section));
+    }
+    
+    public DDoSSettings getDDoS() {
+        return ddos;
+    }
+    
+    public boolean isAutoReload() {
+        return autoReload;
+    }
+    
+    public long getReloadDebounce() {
+        return reloadDebounce;
+    }
+    
+    public String getWhitelistFile() {
+        return whitelistFile;
+    }
+    
+    public String getBlacklistFile() {
+        return blacklistFile;
+    }
+    
+    public boolean isGeoIPEnabled() {
+        return geoIPEnabled;
+    }
+    
+    public String getGeoIPDatabase() {
+        return geoIPDatabase;
+    }
+    
+    /**
+     * @return Файл базы ASN или пустая строка, если ASN не определяется
+     */
+    public String getGeoIPAsnDatabase() {
+        return geoIPAsnDatabase;
+    }
+    
+    public int getGeoIPCacheSize() {
+        return geoIPCacheSize;
+    }
+    
+    public boolean isVPNDetectionEnabled() {
+        return vpnDetectionEnabled;
+    }
+    
+    public String getVPNRangesFile() {
+        return vpnRangesFile;
+    }
+    
+    public boolean isBlocklistsEnabled() {
+        return blocklistsEnabled;
+    }
+    
+    public List<String> getBlocklistFiles() {
+        return blocklistFiles;
+    }
+    
+    /**
+     * @return Тип хранилища репутации: memory, file или jdbc
+     */
+    public String getStorageType() {
+        return storageType;
+    }
+    
+    public String getStorageFile() {
+        return storageFile;
+    }
+    
+    public long getStorageFlushInterval() {
+        return storageFlushInterval;
+    }
+    
+    public int getStorageBatchSize() {
+        return storageBatchSize;
+    }
+    
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+    
+    public String getJdbcUsername() {
+        return jdbcUsername;
+    }
+    
+    public String getJdbcPassword() {
+        return jdbcPassword;
+    }
+    
+    public int getJdbcPoolSize() {
+        return jdbcPoolSize;
+    }
+    
+    public boolean isSessionResumeEnabled() {
+        return sessionResumeEnabled;
+    }
+    
+    /**
+     * @return Время после отключения, в течение которого вход восстанавливается (мс)
+     */
+    public long getSessionResumeTtl() {
+        return sessionResumeTtl;
+    }
+    
+    public String getSessionResumeSecret() {
+        return sessionResumeSecret;
+    }
+    
+    /**
+     * @return Сервер для игроков с восстановленным входом или пустая строка
+     */
+    public String getSessionResumeServer() {
+        return sessionResumeServer;
+    }
+    
+    public String getSessionResumeFile() {
+        return sessionResumeFile;
+    }
+}
@@ -0,0 +1,247 @@
+package com.s1steam.veloauth.api.config;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.security.ddos.DDoSProtection;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Отслеживает изменения config.yml и файлов whitelist/blacklist в папке плагина
+ * Серия записей в файл схлопывается (debounce) и применяется один раз.
+ * Разбор файлов выполняется в собственном потоке наблюдателя, конфигурация
+ * публикуется атомарно, а изменения списков передаются шардам пакетами,
+ * поэтому проверки подключений не ждут разбор больших списков
+ */
+public class ConfigWatcher implements AutoCloseable {
+    
+    private static final String CONFIG_FILE = "config.yml";
+    
+    private final VeloAuthAPI plugin;
+    private final Path directory;
+    private final WatchService watchService;
+    private final Thread thread;
+    
+    // Последнее примененное содержимое списков (только поток наблюдателя)
+    private final Map<String, Set<String>> appliedLists;
+    
+    // Записи, добавленные в списки из файлов, а не командами (только поток наблюдателя)
+    private final Map<String, Set<String>> ownedEntries;
+    
+    private volatile boolean running;
+    
+    public ConfigWatcher(VeloAuthAPI plugin) throws IOException {
+        this.plugin = plugin;
+        this.directory = plugin.getDataDirectory();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.appliedLists = new HashMap<>();
+        this.ownedEntries = new HashMap<>();
+        this.thread = new Thread(this::run, "VeloAuth-ConfigWatcher");
+        this.thread.setDaemon(true);
+        
+        directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+    }
+    
+    /**
+     * Применяет текущие файлы списков и запускает наблюдение
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+    
+    private void run() {
+        // Первичная загрузка списков выполняется в потоке наблюдателя
+        reloadLists();
+        
+        Set<String> pending = new HashSet<>();
+        long lastEventAt = 0;
+        
+        while (running) {
+            try {
+                long debounce = plugin.getConfigManager().getSnapshot().getReloadDebounce();
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long remaining = lastEventAt + debounce - System.currentTimeMillis();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                }
+                
+                if (key != null) {
+                    Set<String> tracked = trackedFiles();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // События потеряны - перечитываем все отслеживаемые файлы
+                            pending.addAll(tracked);
+                            lastEventAt = System.currentTimeMillis();
+                        } else if (tracked.contains(event.context().toString())) {
+                            pending.add(event.context().toString());
+                            lastEventAt = System.currentTimeMillis();
+                        }
+                    }
+                    key.reset();
+                    continue;
+                }
+                
+                if (!pending.isEmpty()) {
+                    Set<String> changed = new HashSet<>(pending);
+                    pending.clear();
+                    processChanges(changed);
+                }
+            
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (Exception e) {
+                plugin.getLogger().error("Error while applying file changes", e);
+            }
+        }
+    }
+    
+    /**
+     * Применяет изменения файлов после паузы в записи
+     *
+     * @param fileNames Имена измененных файлов в папке плагина
+     */
+    void processChanges(Set<String> fileNames) {
+        boolean listsChanged = false;
+        boolean rangesChanged = false;
+        boolean blocklistsChanged = false;
+        
+        // Пока файла нет (удален или редактор сохраняет через удаление и создание),
+        // loadConfig заменил бы настройки значениями по умолчанию
+        if (fileNames.contains(CONFIG_FILE) && !Files.exists(directory.resolve(CONFIG_FILE))) {
+            plugin.getLogger().warn(CONFIG_FILE + " is missing, keeping current settings");
+        } else if (fileNames.contains(CONFIG_FILE)) {
+            ConfigSnapshot before = plugin.getConfigManager().getSnapshot();
+            if (plugin.getConfigManager().loadConfig()) {
+                Set<String> sections = plugin.getConfigManager().getSnapshot().changedSections(before);
+                if (!sections.isEmpty()) {
+                    plugin.getLogger().info("Configuration reloaded from disk, changed sections: " + sections);
+                }
+                if (sections.contains(ConfigSnapshot.SYNC) &&
+                        !before.getSyncChannel().equals(plugin.getConfigManager().getSyncChannel())) {
+                    plugin.getLogger().warn("Sync channel change requires a proxy restart");
+                }
+                // Имена файлов списков могли измениться
+                listsChanged = sections.contains(ConfigSnapshot.AUTO_RELOAD);
+                rangesChanged = sections.contains(ConfigSnapshot.VPN_DETECTION);
+                blocklistsChanged = sections.contains(ConfigSnapshot.BLOCKLISTS);
+            }
+        }
+        
+        if (listsChanged || !Collections.disjoint(fileNames, listFiles())) {
+            reloadLists();
+        }
+        
+        String rangesFile = plugin.getConfigManager().getSnapshot().getVPNRangesFile();
+        if ((rangesChanged || fileNames.contains(rangesFile)) && plugin.getDDoSProtection() != null) {
+            // Диапазоны компилируются в фоне, старые используются до замены
+            plugin.getDDoSProtection().reloadHostingRanges();
+        }
+        
+        List<String> blocklistFiles = plugin.getConfigManager().getSnapshot().getBlocklistFiles();
+        if ((blocklistsChanged || !Collections.disjoint(fileNames, blocklistFiles)) && plugin.getDDoSProtection() != null) {
+            plugin.getDDoSProtection().reloadBlocklists();
+        }
+    }
+    
+    private Set<String> trackedFiles() {
+        Set<String> files = new HashSet<>(listFiles());
+        files.add(CONFIG_FILE);
+        files.add(plugin.getConfigManager().getSnapshot().getVPNRangesFile());
+        files.addAll(plugin.getConfigManager().getSnapshot().getBlocklistFiles());
+        return files;
+    }
+    
+    private Set<String> listFiles() {
+        ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        return Set.of(snapshot.getWhitelistFile(), snapshot.getBlacklistFile());
+    }
+    
+    /**
+     * Перечитывает файлы списков и применяет только разницу с предыдущим содержимым
+     */
+    private void reloadLists() {
+        DDoSProtection ddos = plugin.getDDoSProtection();
+        if (ddos == null) {
+            return;
+        }
+        ConfigSnapshot snapshot = plugin.getConfigManager().getSnapshot();
+        reloadList(snapshot.getWhitelistFile(), "whitelist", ddos::getWhitelistedIPs, ddos::updateWhitelist);
+        reloadList(snapshot.getBlacklistFile(), "blacklist", ddos::getBlacklistedIPs, ddos::updateBlacklist);
+    }
+    
+    /**
+     * Применяет разницу файла списка
+     * IP, уже добавленные в список командой, файлу не принадлежат и при удалении
+     * из файла остаются в списке
+     */
+    private void reloadList(String fileName, String listName, Supplier<CompletableFuture<List<String>>> listed,
+                            BiFunction<Set<String>, Set<String>, CompletableFuture<Void>> updater) {
+        IPListFile file;
+        try {
+            file = IPListFile.read(directory.resolve(fileName));
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to read " + listName + " file " + fileName, e);
+            return;
+        }
+        
+        Set<String> previous = appliedLists.getOrDefault(listName, Collections.emptySet());
+        Set<String> current = file.getAddresses();
+        
+        Set<String> added = new HashSet<>(current);
+        added.removeAll(previous);
+        Set<String> removed = new HashSet<>(previous);
+        removed.removeAll(current);
+        
+        if (file.getInvalidLines() > 0) {
+            plugin.getLogger().warn("Skipped " + file.getInvalidLines() + " invalid lines in " + fileName);
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        
+        appliedLists.put(listName, current);
+        Set<String> owned = ownedEntries.computeIfAbsent(listName, name -> new HashSet<>());
+        if (!added.isEmpty()) {
+            added.removeAll(listed.get().join());
+            owned.addAll(added);
+        }
+        removed.retainAll(owned);
+        owned.removeAll(removed);
+        updater.apply(added, removed).join();
+        plugin.getLogger().info("Applied " + listName + " from " + fileName + ": +" + added.size() + " -" + removed.size());
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            plugin.getLogger().warn("Failed to close config watcher", e);
+        }
+        thread.interrupt();
+    }
+}
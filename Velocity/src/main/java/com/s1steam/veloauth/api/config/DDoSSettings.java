@@ -0,0 +1,533 @@
+package com.s1steam.veloauth.api.config;
+
+import com.s1steam.veloauth.api.cluster.GossipNode;
+import com.s1steam.veloauth.api.models.CountryCode;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемые настройки DDoS защиты (секция ddos-protection)
+ * Компилируются один раз при загрузке конфигурации
+ */
+public final class DDoSSettings {
+    
+    // Максимальная ступень exponential backoff
+    private static final int MAX_BACKOFF_LEVEL = 10;
+    
+    private final boolean enabled;
+    private final int maxConnectionsPerSecond;
+    private final int maxConnectionsPerMinute;
+    private final int maxAuthAttemptsPerMinute;
+    private final int maxCommandsPerSecond;
+    private final int minReputationForConnection;
+    private final long baseBlockDuration;
+    private final double backoffMultiplier;
+    private final long reputationHalfLife;
+    private final long blockEscalationWindow;
+    private final long clockResolution;
+    private final long reputationPrefetchTimeout;
+    
+    // Предвычисленные длительности блокировки по ступеням эскалации
+    private final long[] backoffTable;
+    
+    // Режим атаки: общий поток подключений или число уникальных IP выше порога
+    // ужесточает групповые лимиты
+    private final int attackModeThreshold;
+    private final int attackModeUniqueIPs;
+    private final double attackModeFactor;
+    
+    // Групповые лимиты новых IP в секунду (0 - без ограничения)
+    // Лимиты стран индексируются кодом CountryCode, лимиты ASN - отсортированный массив номеров
+    private final int countryBudget;
+    private final int asnBudget;
+    private final int[] countryBudgets;
+    private final int[] asnBudgetKeys;
+    private final int[] asnBudgetValues;
+    private final boolean aggregateLimits;
+    
+    // Защита аккаунтов от подбора пароля с множества IP
+    private final boolean accountProtection;
+    private final int accountThrottleFailures;
+    private final long accountThrottleInterval;
+    private final int accountLockFailures;
+    private final long accountLockDuration;
+    private final long accountFailureHalfLife;
+    private final Set<String> loginCommands;
+    
+    // Обнаружение ботов по равномерности интервалов между подключениями
+    private final boolean botDetection;
+    private final int botMinSamples;
+    private final double botMaxVariation;
+    private final long botMaxInterval;
+    
+    // Групповой лимит подключений с одинаковым отпечатком клиента в минуту (0 - без ограничения)
+    private final boolean fingerprintLimits;
+    private final int maxConnectionsPerFingerprint;
+    
+    // Проверка переподключением для новых IP в режиме атаки
+    private final boolean reconnectChallenge;
+    private final long challengeTimeSlice;
+    private final String challengeSecret;
+    
+    // Лимиты запросов статуса сервера в секунду (0 - без ограничения)
+    private final boolean pingProtection;
+    private final int maxPingsPerIP;
+    private final int maxPingsPerPrefix;
+    
+    // Репликация блокировок и списков между прокси (применяется при запуске)
+    private final boolean cluster;
+    private final int clusterNodeId;
+    private final String clusterBind;
+    private final List<String> clusterPeers;
+    private final String clusterSecret;
+    private final long clusterInterval;
+    private final boolean clusterSharedLimits;
+    private final long clusterCounterSync;
+    
+    private DDoSSettings(ConfigSection section) {
+        this.enabled = section.getBoolean("enabled", true);
+        this.maxConnectionsPerSecond = section.getInt("max-connections-per-second", 5);
+        this.maxConnectionsPerMinute = section.getInt("max-connections-per-minute", 20);
+        this.maxAuthAttemptsPerMinute = section.getInt("max-auth-attempts-per-minute", 5);
+        this.maxCommandsPerSecond = section.getInt("max-commands-per-second", 10);
+        this.minReputationForConnection = section.getInt("min-reputation-for-connection", 20);
+        this.baseBlockDuration = section.getLong("base-block-duration", 60000);
+        this.backoffMultiplier = section.getDouble("backoff-multiplier", 2.0);
+        this.reputationHalfLife = section.getLong("reputation-half-life", 3600000);
+        this.blockEscalationWindow = section.getLong("block-escalation-window", 86400000);
+        this.clockResolution = section.getLong("clock-resolution", 10);
+        this.reputationPrefetchTimeout = section.getLong("reputation-prefetch-timeout", 50);
+        
+        section.require(maxConnectionsPerSecond > 0, "max-connections-per-second", "must be positive");
+        section.require(maxConnectionsPerMinute > 0, "max-connections-per-minute", "must be positive");
+        section.require(maxAuthAttemptsPerMinute > 0, "max-auth-attempts-per-minute", "must be positive");
+        section.require(maxCommandsPerSecond > 0, "max-commands-per-second", "must be positive");
+        section.require(minReputationForConnection >= 0 && minReputationForConnection <= 100,
+            "min-reputation-for-connection", "must be between 0 and 100");
+        section.require(baseBlockDuration > 0, "base-block-duration", "must be positive");
+        section.require(backoffMultiplier >= 1.0, "backoff-multiplier", "must be at least 1.0");
+        section.require(reputationHalfLife >= 0, "reputation-half-life", "must not be negative");
+        section.require(blockEscalationWindow >= 0, "block-escalation-window", "must not be negative");
+        section.require(clockResolution >= 0, "clock-resolution", "must not be negative");
+        section.require(reputationPrefetchTimeout >= 0, "reputation-prefetch-timeout", "must not be negative");
+        
+        this.backoffTable = buildBackoffTable(baseBlockDuration, backoffMultiplier);
+        
+        this.attackModeThreshold = section.getInt("attack-mode-threshold", 0);
+        this.attackModeUniqueIPs = section.getInt("attack-mode-unique-ips", 0);
+        this.attackModeFactor = section.getDouble("attack-mode-factor", 0.25);
+        section.require(attackModeThreshold >= 0, "attack-mode-threshold", "must not be negative");
+        section.require(attackModeUniqueIPs >= 0, "attack-mode-unique-ips", "must not be negative");
+        section.require(attackModeFactor > 0 && attackModeFactor <= 1.0, "attack-mode-factor", "must be in (0, 1]");
+        
+        ConfigSection aggregate = section.getSection("aggregate-limits");
+        this.countryBudget = aggregate.getInt("max-new-ips-per-country-per-second", 0);
+        this.asnBudget = aggregate.getInt("max-new-ips-per-asn-per-second", 0);
+        aggregate.require(countryBudget >= 0, "max-new-ips-per-country-per-second", "must not be negative");
+        aggregate.require(asnBudget >= 0, "max-new-ips-per-asn-per-second", "must not be negative");
+        
+        this.countryBudgets = new int[CountryCode.COUNT + 1];
+        Arrays.fill(countryBudgets, countryBudget);
+        for (Map.Entry<String, Integer> entry : aggregate.getIntMap("countries").entrySet()) {
+            short code = CountryCode.encode(entry.getKey());
+            aggregate.require(code != CountryCode.UNKNOWN, "countries." + entry.getKey(), "must be a two-letter country code");
+            aggregate.require(entry.getValue() >= 0, "countries." + entry.getKey(), "must not be negative");
+            countryBudgets[code] = entry.getValue();
+        }
+        
+        Map<String, Integer> asns = aggregate.getIntMap("asns");
+        long[] sorted = new long[asns.size()];
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : asns.entrySet()) {
+            int asn;
+            try {
+                asn = Integer.parseInt(entry.getKey());
+            } catch (NumberFormatException e) {
+                asn = -1;
+            }
+            aggregate.require(asn > 0, "asns." + entry.getKey(), "key must be an AS number");
+            aggregate.require(entry.getValue() >= 0, "asns." + entry.getKey(), "must not be negative");
+            sorted[index++] = ((long) asn << 32) | entry.getValue();
+        }
+        Arrays.sort(sorted);
+        this.asnBudgetKeys = new int[sorted.length];
+        this.asnBudgetValues = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            asnBudgetKeys[i] = (int) (sorted[i] >>> 32);
+            asnBudgetValues[i] = (int) sorted[i];
+        }
+        this.aggregateLimits = asnBudget > 0 || asnBudgetKeys.length > 0 ||
+            Arrays.stream(countryBudgets).anyMatch(budget -> budget > 0);
+        
+        ConfigSection accounts = section.getSection("account-protection");
+        this.accountProtection = accounts.getBoolean("enabled", true);
+        this.accountThrottleFailures = accounts.getInt("throttle-failures", 10);
+        this.accountThrottleInterval = accounts.getLong("throttle-interval", 5000);
+        this.accountLockFailures = accounts.getInt("lock-failures", 30);
+        this.accountLockDuration = accounts.getLong("lock-duration", 900000);
+        this.accountFailureHalfLife = accounts.getLong("failure-half-life", 600000);
+        accounts.require(accountThrottleFailures > 0, "throttle-failures", "must be positive");
+        accounts.require(accountThrottleInterval >= 0, "throttle-interval", "must not be negative");
+        accounts.require(accountLockFailures >= accountThrottleFailures, "lock-failures", "must not be below throttle-failures");
+        accounts.require(accountLockDuration >= 0, "lock-duration", "must not be negative");
+        accounts.require(accountFailureHalfLife >= 0, "failure-half-life", "must not be negative");
+        
+        List<String> commandNames = accounts.contains("login-commands")
+            ? accounts.getStringList("login-commands")
+            : List.of("login", "l", "log");
+        Set<String> commands = new HashSet<>();
+        for (String command : commandNames) {
+            commands.add(command.toLowerCase(Locale.ROOT));
+        }
+        this.loginCommands = Set.copyOf(commands);
+        
+        ConfigSection bots = section.getSection("bot-detection");
+        this.botDetection = bots.getBoolean("enabled", true);
+        this.botMinSamples = bots.getInt("min-samples", 8);
+        this.botMaxVariation = bots.getDouble("max-variation", 0.1);
+        this.botMaxInterval = bots.getLong("max-interval", 30000);
+        bots.require(botMinSamples >= 2, "min-samples", "must be at least 2");
+        bots.require(botMaxVariation >= 0 && botMaxVariation < 1, "max-variation", "must be between 0 and 1");
+        bots.require(botMaxInterval > 0, "max-interval", "must be positive");
+        
+        ConfigSection fingerprints = section.getSection("fingerprint-limits");
+        this.fingerprintLimits = fingerprints.getBoolean("enabled", true);
+        this.maxConnectionsPerFingerprint = fingerprints.getInt("max-per-minute", 120);
+        fingerprints.require(maxConnectionsPerFingerprint >= 0, "max-per-minute", "must not be negative");
+        
+        ConfigSection challenge = section.getSection("reconnect-challenge");
+        this.reconnectChallenge = challenge.getBoolean("enabled", true);
+        this.challengeTimeSlice = challenge.getLong("time-slice", 30000);
+        this.challengeSecret = challenge.getString("secret", "");
+        challenge.require(challengeTimeSlice >= 1000, "time-slice", "must be at least 1000");
+        
+        ConfigSection pings = section.getSection("ping-protection");
+        this.pingProtection = pings.getBoolean("enabled", true);
+        this.maxPingsPerIP = pings.getInt("max-per-ip-per-second", 5);
+        this.maxPingsPerPrefix = pings.getInt("max-per-subnet-per-second", 30);
+        pings.require(maxPingsPerIP >= 0, "max-per-ip-per-second", "must not be negative");
+        pings.require(maxPingsPerPrefix >= 0, "max-per-subnet-per-second", "must not be negative");
+        
+        ConfigSection replication = section.getSection("cluster");
+        this.cluster = replication.getBoolean("enabled", false);
+        this.clusterNodeId = replication.getInt("node-id", 1);
+        this.clusterBind = replication.getString("bind", "0.0.0.0:25590");
+        this.clusterPeers = replication.getStringList("peers");
+        this.clusterSecret = replication.getString("secret", "");
+        this.clusterInterval = replication.getLong("gossip-interval", 100);
+        this.clusterSharedLimits = replication.getBoolean("shared-limits", true);
+        this.clusterCounterSync = replication.getLong("counter-sync-interval", 200);
+        replication.require(clusterNodeId >= 1 && clusterNodeId <= GossipNode.MAX_NODE_ID, "node-id",
+            "must be between 1 and " + GossipNode.MAX_NODE_ID);
+        replication.require(isAddress(clusterBind), "bind", "must be host:port");
+        replication.require(clusterPeers.stream().allMatch(DDoSSettings::isAddress), "peers", "must be host:port");
+        replication.require(!cluster || !clusterSecret.isEmpty(), "secret", "must be set when the cluster is enabled");
+        replication.require(clusterInterval >= 10, "gossip-interval", "must be at least 10");
+        replication.require(clusterCounterSync >= 10, "counter-sync-interval", "must be at least 10");
+    }
+    
+    /**
+     * Компилирует секцию ddos-protection
+     *
+     * @throws IllegalArgumentException если значение имеет неверный тип или вне диапазона
+     */
+    public static DDoSSettings compile(ConfigSection section) {
+        return new DDoSSettings(section);
+    }
+    
+    private static boolean isAddress(String address) {
+        try {
+            GossipNode.parseAddress(address);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Строит таблицу длительностей блокировки
+     * Exponential backoff: baseBlockDuration * (backoffMultiplier ^ level), максимум 24 часа
+     */
+    private static long[] buildBackoffTable(long baseBlockDuration, double backoffMultiplier) {
+        long maxDuration = Duration.ofHours(24).toMillis();
+        long[] table = new long[MAX_BACKOFF_LEVEL + 1];
+        for (int level = 0; level < table.length; level++) {
+            long duration = (long) (baseBlockDuration * Math.pow(backoffMultiplier, level));
+            table[level] = Math.min(duration, maxDuration);
+        }
+        return table;
+    }
+    
+    /**
+     * Длительность блокировки для ступени эскалации
+     *
+     * @param level Количество недавних блокировок IP
+     */
+    public long getBlockDuration(int level) {
+        return backoffTable[Math.min(level, backoffTable.length - 1)];
+    }
+    
+    /**
+     * Лимит новых IP в секунду для страны
+     *
+     * @param countryCode Код CountryCode
+     * @return Лимит или 0, если страна не ограничена
+     */
+    public int getCountryBudget(short countryCode) {
+        return countryCode > 0 && countryCode < countryBudgets.length ? countryBudgets[countryCode] : 0;
+    }
+    
+    /**
+     * Лимит новых IP в секунду для автономной системы
+     *
+     * @return Лимит или 0, если ASN не ограничен
+     */
+    public int getASNBudget(int asn) {
+        if (asn <= 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(asnBudgetKeys, asn);
+        return index >= 0 ? asnBudgetValues[index] : asnBudget;
+    }
+    
+    /**
+     * @return true если хотя бы один групповой лимит настроен
+     */
+    public boolean hasAggregateLimits() {
+        return aggregateLimits;
+    }
+    
+    public int getAttackModeThreshold() {
+        return attackModeThreshold;
+    }
+    
+    /**
+     * Порог уникальных IP за минуту для режима атаки (0 - не учитывать)
+     */
+    public int getAttackModeUniqueIPs() {
+        return attackModeUniqueIPs;
+    }
+    
+    public double getAttackModeFactor() {
+        return attackModeFactor;
+    }
+    
+    public boolean isAccountProtectionEnabled() {
+        return accountProtection;
+    }
+    
+    /**
+     * Неудачные входы в аккаунт, после которых попытки пропускаются не чаще раза в интервал
+     */
+    public int getAccountThrottleFailures() {
+        return accountThrottleFailures;
+    }
+    
+    public long getAccountThrottleInterval() {
+        return accountThrottleInterval;
+    }
+    
+    /**
+     * Неудачные входы в аккаунт, после которых вход блокируется на lock-duration
+     */
+    public int getAccountLockFailures() {
+        return accountLockFailures;
+    }
+    
+    public long getAccountLockDuration() {
+        return accountLockDuration;
+    }
+    
+    public long getAccountFailureHalfLife() {
+        return accountFailureHalfLife;
+    }
+    
+    /**
+     * Команды входа backend плагина в нижнем регистре, без слэша
+     */
+    public Set<String> getLoginCommands() {
+        return loginCommands;
+    }
+    
+    public boolean isBotDetectionEnabled() {
+        return botDetection;
+    }
+    
+    /**
+     * Интервалов между подключениями, после которых оценивается их равномерность
+     */
+    public int getBotMinSamples() {
+        return botMinSamples;
+    }
+    
+    /**
+     * Порог отношения стандартного отклонения интервалов к среднему
+     */
+    public double getBotMaxVariation() {
+        return botMaxVariation;
+    }
+    
+    /**
+     * Интервал, после которого серия подключений начинается заново
+     */
+    public long getBotMaxInterval() {
+        return botMaxInterval;
+    }
+    
+    public boolean isFingerprintLimitsEnabled() {
+        return fingerprintLimits;
+    }
+    
+    /**
+     * Подключений с одним отпечатком клиента за минуту (0 - без ограничения)
+     */
+    public int getMaxConnectionsPerFingerprint() {
+        return maxConnectionsPerFingerprint;
+    }
+    
+    public boolean isReconnectChallengeEnabled() {
+        return reconnectChallenge;
+    }
+    
+    /**
+     * Интервал токена проверки: токен действует в своем и следующем интервале
+     */
+    public long getChallengeTimeSlice() {
+        return challengeTimeSlice;
+    }
+    
+    /**
+     * Общий секрет токенов для нескольких прокси (пусто - случайный при запуске)
+     */
+    public String getChallengeSecret() {
+        return challengeSecret;
+    }
+    
+    public boolean isPingProtectionEnabled() {
+        return pingProtection;
+    }
+    
+    /**
+     * Запросов статуса сервера с одного IP в секунду (0 - без ограничения)
+     */
+    public int getMaxPingsPerIP() {
+        return maxPingsPerIP;
+    }
+    
+    /**
+     * Запросов статуса сервера с одной подсети в секунду (0 - без ограничения)
+     */
+    public int getMaxPingsPerPrefix() {
+        return maxPingsPerPrefix;
+    }
+    
+    public boolean isClusterEnabled() {
+        return cluster;
+    }
+    
+    /**
+     * Номер прокси в кластере, уникальный для каждого узла
+     */
+    public int getClusterNodeId() {
+        return clusterNodeId;
+    }
+    
+    /**
+     * Адрес приема пакетов репликации (host:port)
+     */
+    public String getClusterBind() {
+        return clusterBind;
+    }
+    
+    /**
+     * Адреса остальных прокси (host:port)
+     */
+    public List<String> getClusterPeers() {
+        return clusterPeers;
+    }
+    
+    /**
+     * Общий секрет подписи пакетов репликации
+     */
+    public String getClusterSecret() {
+        return clusterSecret;
+    }
+    
+    /**
+     * Интервал отправки накопленных изменений в миллисекундах
+     */
+    public long getClusterInterval() {
+        return clusterInterval;
+    }
+    
+    /**
+     * Считать лимит подключений в минуту по всему кластеру
+     */
+    public boolean isClusterSharedLimits() {
+        return clusterSharedLimits;
+    }
+    
+    /**
+     * Интервал рассылки счетчиков - на сколько могут устареть счетчики соседей
+     */
+    public long getClusterCounterSync() {
+        return clusterCounterSync;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public int getMaxConnectionsPerSecond() {
+        return maxConnectionsPerSecond;
+    }
+    
+    public int getMaxConnectionsPerMinute() {
+        return maxConnectionsPerMinute;
+    }
+    
+    public int getMaxAuthAttemptsPerMinute() {
+        return maxAuthAttemptsPerMinute;
+    }
+    
+    public int getMaxCommandsPerSecond() {
+        return maxCommandsPerSecond;
+    }
+    
+    public int getMinReputationForConnection() {
+        return minReputationForConnection;
+    }
+    
+    public long getBaseBlockDuration() {
+        return baseBlockDuration;
+    }
+    
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+    
+    public long getReputationHalfLife() {
+        return reputationHalfLife;
+    }
+    
+    public long getBlockEscalationWindow() {
+        return blockEscalationWindow;
+    }
+    
+    public long getClockResolution() {
+        return clockResolution;
+    }
+    
+    /**
+     * Максимальное ожидание загрузки репутации из общего хранилища при проверке подключения
+     */
+    public long getReputationPrefetchTimeout() {
+        return reputationPrefetchTimeout;
+    }
+}
@@ -0,0 +1,67 @@
+package com.s1steam.veloauth.api.config;
+
+import com.google.common.net.InetAddresses;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Внешний файл списка IP адресов (whitelist/blacklist)
+ * Формат: один IP на строку, пустые строки и строки с # игнорируются
+ */
+public final class IPListFile {
+    
+    private final Set<String> addresses;
+    private final int invalidLines;
+    
+    private IPListFile(Set<String> addresses, int invalidLines) {
+        this.addresses = addresses;
+        this.invalidLines = invalidLines;
+    }
+    
+    /**
+     * Читает файл потоково
+     * Отсутствующий файл считается пустым списком
+     */
+    public static IPListFile read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new IPListFile(Collections.emptySet(), 0);
+        }
+        
+        Set<String> addresses = new HashSet<>();
+        int invalid = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String ip = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (ip.isEmpty()) {
+                    continue;
+                }
+                if (InetAddresses.isInetAddress(ip)) {
+                    addresses.add(ip);
+                } else {
+                    invalid++;
+                }
+            }
+        }
+        return new IPListFile(Collections.unmodifiableSet(addresses), invalid);
+    }
+    
+    public Set<String> getAddresses() {
+        return addresses;
+    }
+    
+    /**
+     * Количество строк, не являющихся IP адресом
+     */
+    public int getInvalidLines() {
+        return invalidLines;
+    }
+}
@@ -0,0 +1,350 @@
+package com.s1steam.veloauth.api.geoip;
+
+import com.maxmind.db.NoCache;
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.models.CountryCode;
+import com.s1steam.veloauth.api.net.IPAddresses;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Определение страны и ASN по IP из локальных баз MaxMind
+ * Базы открываются в режиме memory-mapped, поиск выполняется в отдельном потоке.
+ * Результаты хранятся в ограниченных кэшах без блокировок: массивы ячеек
+ * с прямым отображением, каждая ячейка - один long с ключом и значением
+ */
+public class GeoIPResolver implements AutoCloseable {
+    
+    /**
+     * ASN не определен (адрес не найден в базе или база ASN отключена)
+     */
+    public static final int ASN_UNKNOWN = 0;
+    
+    /**
+     * ASN еще не определялся
+     */
+    public static final int ASN_UNRESOLVED = -1;
+    
+    private static final long VALID = 1L << 63;
+    private static final long IPV6 = 1L << 62;
+    
+    // Ячейка страны: [63] занята | [62] IPv6 | [61..14] ключ (IPv4 или /48 IPv6) | [13..0] код страны
+    private static final int COUNTRY_SHIFT = 14;
+    private static final long COUNTRY_MASK = (1L << COUNTRY_SHIFT) - 1;
+    
+    // Ячейка ASN: [63] занята | [62] IPv6 | [61..30] ключ (IPv4 или /32 IPv6) | [29..0] номер ASN
+    private static final int ASN_SHIFT = 30;
+    private static final long ASN_MASK = (1L << ASN_SHIFT) - 1;
+    
+    // Очередь запросов ограничена, при переполнении адрес определяется позже
+    private static final int QUEUE_CAPACITY = 4096;
+    
+    private final CountryLookup countryLookup;
+    private final AsnLookup asnLookup;
+    private final AtomicLongArray countryCache;
+    private final AtomicLongArray asnCache;
+    private final int cacheMask;
+    private final ExecutorService executor;
+    private final AutoCloseable database;
+    
+    /**
+     * @param countryLookup Поиск ISO кода страны по адресу
+     * @param cacheSize Желаемый размер кэша, округляется вверх до степени двойки
+     * @param database Ресурс базы, закрываемый вместе с резолвером (может быть null)
+     */
+    public GeoIPResolver(CountryLookup countryLookup, int cacheSize, AutoCloseable database) {
+        this(countryLookup, null, cacheSize, database);
+    }
+    
+    /**
+     * @param countryLookup Поиск ISO кода страны (null - страна не определяется)
+     * @param asnLookup Поиск номера ASN (null - ASN не определяется)
+     * @param cacheSize Желаемый размер кэшей, округляется вверх до степени двойки
+     * @param database Ресурс баз, закрываемый вместе с резолвером (может быть null)
+     */
+    public GeoIPResolver(CountryLookup countryLookup, AsnLookup asnLookup, int cacheSize, AutoCloseable database) {
+        this.countryLookup = countryLookup;
+        this.asnLookup = asnLookup;
+        int slots = Integer.highestOneBit(Math.max(1, cacheSize));
+        if (slots < cacheSize) {
+            slots <<= 1;
+        }
+        this.countryCache = new AtomicLongArray(countryLookup != null ? slots : 1);
+        this.asnCache = new AtomicLongArray(asnLookup != null ? slots : 1);
+        this.cacheMask = slots - 1;
+        this.database = database;
+        this.executor = !isEnabled() ? null : new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "VeloAuth-GeoIP");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+    
+    /**
+     * Резолвер без баз: страна и ASN всегда неизвестны
+     */
+    public static GeoIPResolver disabled() {
+        return new GeoIPResolver(null, null, 1, null);
+    }
+    
+    /**
+     * Открывает базы по настройкам секции geoip
+     * Отсутствующая или поврежденная база отключает только свой вид поиска
+     */
+    public static GeoIPResolver open(VeloAuthAPI plugin) {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (!config.isGeoIPEnabled()) {
+            return disabled();
+        }
+        
+        DatabaseReader countryReader = openDatabase(plugin, config.getGeoIPDatabase());
+        DatabaseReader asnReader = config.getGeoIPAsnDatabase().isEmpty()
+            ? null
+            : openDatabase(plugin, config.getGeoIPAsnDatabase());
+        if (countryReader == null && asnReader == null) {
+            return disabled();
+        }
+        
+        CountryLookup countryLookup = countryReader == null ? null : address -> countryReader.tryCountry(address)
+                .map(response -> response.getCountry().getIsoCode())
+                .orElse(null);
+        AsnLookup asnLookup = asnReader == null ? null : address -> asnReader.tryAsn(address)
+                .map(response -> response.getAutonomousSystemNumber())
+                .orElse(null);
+        
+        return new GeoIPResolver(countryLookup, asnLookup, config.getGeoIPCacheSize(), () -> {
+            if (countryReader != null) {
+                countryReader.close();
+            }
+            if (asnReader != null) {
+                asnReader.close();
+            }
+        });
+    }
+    
+    private static DatabaseReader openDatabase(VeloAuthAPI plugin, String fileName) {
+        Path path = plugin.getDataDirectory().resolve(fileName);
+        if (!Files.exists(path)) {
+            plugin.getLogger().warn("GeoIP database not found at " + path + ", lookup disabled");
+            return null;
+        }
+        
+        try {
+            DatabaseReader reader = new DatabaseReader.Builder(path.toFile())
+                    .fileMode(Reader.FileMode.MEMORY_MAPPED)
+                    .withCache(NoCache.getInstance())
+                    .build();
+            plugin.getLogger().info("GeoIP database loaded: " + reader.getMetadata().getDatabaseType());
+            return reader;
+        } catch (IOException e) {
+            plugin.getLogger().error("Failed to open GeoIP database " + path, e);
+            return null;
+        }
+    }
+    
+    public boolean isEnabled() {
+        return countryLookup != null || asnLookup != null;
+    }
+    
+    /**
+     * Код страны из кэша без ожидания (любой поток)
+     *
+     * @return Код страны, UNKNOWN если поиск отключен или UNRESOLVED если адреса нет в кэше
+     */
+    public short getCachedCountry(String ip) {
+        if (countryLookup == null) {
+            return CountryCode.UNKNOWN;
+        }
+        long key = countryKeyOf(ip);
+        if (key < 0) {
+            return CountryCode.UNKNOWN;
+        }
+        long entry = countryCache.get(slotOf(key));
+        if ((entry & ~COUNTRY_MASK) == (VALID | key)) {
+            return (short) (entry & COUNTRY_MASK);
+        }
+        return CountryCode.UNRESOLVED;
+    }
+    
+    /**
+     * Номер ASN из кэша без ожидания (любой поток)
+     *
+     * @return Номер ASN, ASN_UNKNOWN если поиск отключен или ASN_UNRESOLVED если адреса нет в кэше
+     */
+    public int getCachedASN(String ip) {
+        if (asnLookup == null) {
+            return ASN_UNKNOWN;
+        }
+        long key = asnKeyOf(ip);
+        if (key < 0) {
+            return ASN_UNKNOWN;
+        }
+        long entry = asnCache.get(slotOf(key));
+        if ((entry & ~ASN_MASK) == (VALID | key)) {
+            return (int) (entry & ASN_MASK);
+        }
+        return ASN_UNRESOLVED;
+    }
+    
+    /**
+     * Определяет страну и ASN в потоке GeoIP и сохраняет результат в кэш
+     *
+     * @return Результат; при переполнении очереди запросов страна и ASN не определены
+     */
+    public CompletableFuture<Location> resolve(String ip) {
+        short country = getCachedCountry(ip);
+        int asn = getCachedASN(ip);
+        if (country != CountryCode.UNRESOLVED && asn != ASN_UNRESOLVED) {
+            return CompletableFuture.completedFuture(new Location(country, asn));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> new Location(
+                country != CountryCode.UNRESOLVED ? country : lookupCountry(ip),
+                asn != ASN_UNRESOLVED ? asn : lookupASN(ip)), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(new Location(CountryCode.UNRESOLVED, ASN_UNRESOLVED));
+        }
+    }
+    
+    private short lookupCountry(String ip) {
+        short code;
+        try {
+            code = CountryCode.encode(countryLookup.lookup(IPAddresses.parse(ip)));
+        } catch (Exception e) {
+            // Ошибка чтения базы не кэшируется
+            return CountryCode.UNKNOWN;
+        }
+        long key = countryKeyOf(ip);
+        countryCache.set(slotOf(key), VALID | key | code);
+        return code;
+    }
+    
+    private int lookupASN(String ip) {
+        int asn;
+        try {
+            Long number = asnLookup.lookup(IPAddresses.parse(ip));
+            asn = number != null && number > 0 && number <= ASN_MASK ? number.intValue() : ASN_UNKNOWN;
+        } catch (Exception e) {
+            return ASN_UNKNOWN;
+        }
+        long key = asnKeyOf(ip);
+        asnCache.set(slotOf(key), VALID | key | asn);
+        return asn;
+    }
+    
+    /**
+     * Ключ кэша стран: IPv4 целиком или первые 48 бит IPv6 (одна сеть /48 - одна страна)
+     *
+     * @return Ключ, сдвинутый на место в ячейке, или -1 для некорректного адреса
+     */
+    private static long countryKeyOf(String ip) {
+        return keyOf(ip, 6, COUNTRY_SHIFT);
+    }
+    
+    /**
+     * Ключ кэша ASN: IPv4 целиком или первые 32 бита IPv6
+     */
+    private static long asnKeyOf(String ip) {
+        return keyOf(ip, 4, ASN_SHIFT);
+    }
+    
+    private static long keyOf(String ip, int ipv6PrefixBytes, int shift) {
+        long ipv4 = IPAddresses.packIPv4(ip);
+        if (ipv4 != IPAddresses.INVALID) {
+            return ipv4 << shift;
+        }
+        InetAddress address = ip.indexOf(':') >= 0 ? IPAddresses.parse(ip) : null;
+        if (address == null) {
+            return -1;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return (((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) |
+                ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL)) << shift;
+        }
+        long prefix = 0;
+        for (int i = 0; i < ipv6PrefixBytes; i++) {
+            prefix = (prefix << 8) | (bytes[i] & 0xFFL);
+        }
+        return IPV6 | (prefix << shift);
+    }
+    
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & cacheMask;
+    }
+    
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (database != null) {
+            try {
+                database.close();
+            } catch (Exception e) {
+                // Базы только для чтения, ошибка закрытия не влияет на данные
+            }
+        }
+    }
+    
+    /**
+     * Результат определения адреса
+     */
+    public static final class Location {
+        
+        private final short countryCode;
+        private final int asn;
+        
+        public Location(short countryCode, int asn) {
+            this.countryCode = countryCode;
+            this.asn = asn;
+        }
+        
+        public short getCountryCode() {
+            return countryCode;
+        }
+        
+        public int getASN() {
+            return asn;
+        }
+    }
+    
+    /**
+     * Поиск страны по адресу
+     */
+    @FunctionalInterface
+    public interface CountryLookup {
+        
+        /**
+         * @return ISO код страны или null, если адрес не найден
+         */
+        String lookup(InetAddress address) throws Exception;
+    }
+    
+    /**
+     * Поиск автономной системы по адресу
+     */
+    @FunctionalInterface
+    public interface AsnLookup {
+        
+        /**
+         * @return Номер ASN или null, если адрес не найден
+         */
+        Long lookup(InetAddress address) throws Exception;
+    }
+}
@@ -0,0 +1,71 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.models.ConnectionCheckResult;
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Runs the DDoS connection check for every login before the proxy authenticates it
+ * <p>
+ * Blacklisted, blocked and rate limited IPs are denied at pre-login. Under attack,
+ * new IPs are denied with the reconnect challenge message and pass when they come back
+ * in time or join through the token subdomain.
+ */
+public class ConnectionListener {
+    
+    private final VeloAuthAPI plugin;
+    
+    public ConnectionListener(VeloAuthAPI plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Check the connecting IP and deny the login when the check fails
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public EventTask onPreLogin(PreLoginEvent event) {
+        if (!event.getResult().isAllowed() || !plugin.getConfigManager().isDDoSProtectionEnabled()) {
+            return null;
+        }
+        InboundConnection connection = event.getConnection();
+        String ip = connection.getRemoteAddress().getAddress().getHostAddress();
+        String virtualHost = connection.getVirtualHost().map(InetSocketAddress::getHostString).orElse(null);
+        
+        return EventTask.resumeWhenComplete(plugin.getDDoSProtection().checkConnection(ip, virtualHost)
+                .thenAccept(result -> {
+                    if (result.isAllowed()) {
+                        return;
+                    }
+                    event.setResult(PreLoginEvent.PreLoginComponentResult.denied(message(result, virtualHost)));
+                    if (plugin.getConfigManager().isDebugMode()) {
+                        plugin.getLogger().info("Denied login of " + event.getUsername() + " from " + ip + ": "
+                            + (result.isChallenge() ? "reconnect challenge" : result.getReason()));
+                    }
+                }));
+    }
+    
+    private Component message(ConnectionCheckResult result, String virtualHost) {
+        String message;
+        if (result.isChallenge()) {
+            message = plugin.getConfigManager().getMessage("reconnect-challenge", Map.of(
+                "token", result.getChallengeToken(),
+                "host", virtualHost != null ? virtualHost : ""));
+        } else if (result.getBlockUntil() == Long.MAX_VALUE) {
+            message = plugin.getConfigManager().getMessage("ip-blacklisted");
+        } else {
+            String seconds = String.valueOf(Math.max(1, (result.getBlockDuration() + 999) / 1000));
+            String key = result.isRateLimited() ? "connection-throttled" : "connection-blocked";
+            message = plugin.getConfigManager().getMessage(key, Map.of("seconds", seconds));
+        }
+        return LegacyComponentSerializer.legacySection().deserialize(message);
+    }
+}
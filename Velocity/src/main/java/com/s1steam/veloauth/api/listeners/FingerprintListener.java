@@ -0,0 +1,78 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.models.ClientFingerprint;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.event.player.PlayerClientBrandEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Throttles bot waves by their shared client fingerprint
+ * <p>
+ * The handshake data (protocol version, virtual host) and the username shape are
+ * checked at pre-login. The client brand is only known after login, so unauthenticated
+ * players whose brand fingerprint is over the limit are disconnected when it arrives.
+ * Common brands (vanilla and the major mod loaders) are not counted. Fingerprints are
+ * only throttled in attack mode.
+ */
+public class FingerprintListener {
+    
+    private final VeloAuthAPI plugin;
+    private final AuthRegistry authRegistry;
+    
+    public FingerprintListener(VeloAuthAPI plugin, AuthRegistry authRegistry) {
+        this.plugin = plugin;
+        this.authRegistry = authRegistry;
+    }
+    
+    /**
+     * Count the handshake fingerprint and deny logins of throttled fingerprints
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public void onPreLogin(PreLoginEvent event) {
+        if (!event.getResult().isAllowed() || !plugin.getConfigManager().isDDoSProtectionEnabled()) {
+            return;
+        }
+        InboundConnection connection = event.getConnection();
+        String virtualHost = connection.getVirtualHost().map(InetSocketAddress::getHostString).orElse(null);
+        String fingerprint = ClientFingerprint.of(connection.getProtocolVersion().getProtocol(), virtualHost,
+            event.getUsername());
+        
+        if (!plugin.getDDoSProtection().checkFingerprint(fingerprint)) {
+            event.setResult(PreLoginEvent.PreLoginComponentResult.denied(message()));
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("Denied login of " + event.getUsername() + " with throttled fingerprint " + fingerprint);
+            }
+        }
+    }
+    
+    /**
+     * Count the client brand and disconnect unauthenticated players of throttled brands
+     */
+    @Subscribe
+    public void onClientBrand(PlayerClientBrandEvent event) {
+        if (!plugin.getConfigManager().isDDoSProtectionEnabled()) {
+            return;
+        }
+        Player player = event.getPlayer();
+        String fingerprint = ClientFingerprint.ofBrand(player.getProtocolVersion().getProtocol(), event.getBrand());
+        if (fingerprint == null) {
+            return;
+        }
+        if (!plugin.getDDoSProtection().checkFingerprint(fingerprint) && !authRegistry.isAuthenticated(player.getUniqueId())) {
+            player.disconnect(message());
+        }
+    }
+    
+    private Component message() {
+        return LegacyComponentSerializer.legacySection().deserialize(plugin.getConfigManager().getMessage("fingerprint-limited"));
+    }
+}
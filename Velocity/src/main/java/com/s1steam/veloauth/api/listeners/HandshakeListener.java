@@ -0,0 +1,32 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.ConnectionHandshakeEvent;
+
+/**
+ * Starts loading the reputation of a connecting IP from shared storage at the handshake,
+ * so the record is usually cached by the time {@link ConnectionListener} checks the
+ * connection at pre-login
+ */
+public class HandshakeListener {
+    
+    private final VeloAuthAPI plugin;
+    
+    public HandshakeListener(VeloAuthAPI plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Prefetch the reputation without holding up the handshake
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public void onHandshake(ConnectionHandshakeEvent event) {
+        if (!plugin.getConfigManager().isDDoSProtectionEnabled()) {
+            return;
+        }
+        String ip = event.getConnection().getRemoteAddress().getAddress().getHostAddress();
+        plugin.getDDoSProtection().prefetchReputation(ip);
+    }
+}
@@ -0,0 +1,129 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.routing.LobbyBalancer;
+import com.s1steam.veloauth.api.time.TimeSource;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads unauthenticated players across the pool of auth lobby servers
+ * <p>
+ * Lobby health comes from pings run in the background, so choosing a server never waits
+ * on the network. A lobby that keeps failing is left out until its breaker lets a probe
+ * through. Players are only disconnected with the backend-unavailable message when every
+ * lobby in the pool is down.
+ */
+public class LobbyListener {
+    
+    private final VeloAuthAPI plugin;
+    private final AuthRegistry authRegistry;
+    private final TimeSource timeSource;
+    
+    // Rebuilt when the pool settings change
+    private volatile BalancerHolder holder;
+    private volatile long lastCheck;
+    
+    public LobbyListener(VeloAuthAPI plugin, AuthRegistry authRegistry) {
+        this(plugin, authRegistry, TimeSource.system());
+    }
+    
+    public LobbyListener(VeloAuthAPI plugin, AuthRegistry authRegistry, TimeSource timeSource) {
+        this.plugin = plugin;
+        this.authRegistry = authRegistry;
+        this.timeSource = timeSource;
+    }
+    
+    /**
+     * Send an unauthenticated player to the least loaded available lobby
+     */
+    @Subscribe
+    public void onChooseInitialServer(PlayerChooseInitialServerEvent event) {
+        if (authRegistry.isAuthenticated(event.getPlayer().getUniqueId())) {
+            return;
+        }
+        String name = balancer().choose();
+        Optional<RegisteredServer> lobby = name == null ? Optional.empty() : plugin.getServer().getServer(name);
+        if (lobby.isPresent()) {
+            event.setInitialServer(lobby.get());
+            return;
+        }
+        event.setInitialServer(null);
+        event.getPlayer().disconnect(LegacyComponentSerializer.legacySection()
+            .deserialize(plugin.getConfigManager().getMessage("backend-unavailable")));
+    }
+    
+    /**
+     * Ping the lobbies once the configured health check interval has passed
+     * Called by a repeating scheduler task
+     */
+    public void checkHealth() {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        long now = timeSource.currentTimeMillis();
+        if (now - lastCheck < config.getLobbyCheckInterval()) {
+            return;
+        }
+        lastCheck = now;
+        long timeout = config.getLobbyCheckTimeout();
+        balancer().checkHealth(name -> ping(name, timeout));
+    }
+    
+    /**
+     * Current balancer, rebuilt when the pool settings change
+     */
+    public LobbyBalancer balancer() {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        BalancerHolder current = holder;
+        if (current == null || !current.matches(config)) {
+            current = new BalancerHolder(config, timeSource);
+            holder = current;
+        }
+        return current.balancer;
+    }
+    
+    private CompletableFuture<Integer> ping(String name, long timeout) {
+        Optional<RegisteredServer> server = plugin.getServer().getServer(name);
+        if (server.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Unknown lobby server: " + name));
+        }
+        RegisteredServer lobby = server.get();
+        return lobby.ping()
+            .orTimeout(timeout, TimeUnit.MILLISECONDS)
+            .thenApply(ping -> ping.getPlayers()
+                .map(ServerPing.Players::getOnline)
+                .orElseGet(() -> lobby.getPlayersConnected().size()));
+    }
+    
+    private static final class BalancerHolder {
+        
+        private final Map<String, Integer> lobbies;
+        private final String strategy;
+        private final int failureThreshold;
+        private final long openDuration;
+        private final LobbyBalancer balancer;
+        
+        private BalancerHolder(ConfigSnapshot config, TimeSource timeSource) {
+            this.lobbies = config.getLobbies();
+            this.strategy = config.getLobbyBalancing();
+            this.failureThreshold = config.getLobbyFailureThreshold();
+            this.openDuration = config.getLobbyOpenDuration();
+            this.balancer = new LobbyBalancer(lobbies, LobbyBalancer.Strategy.fromName(strategy),
+                failureThreshold, openDuration, timeSource);
+        }
+        
+        private boolean matches(ConfigSnapshot config) {
+            return lobbies.equals(config.getLobbies()) && strategy.equals(config.getLobbyBalancing())
+                && failureThreshold == config.getLobbyFailureThreshold() && openDuration == config.getLobbyOpenDuration();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.models.ConnectionCheckResult;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.command.CommandExecuteEvent;
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Stops login commands of locked or throttled accounts at the proxy,
+ * before the backend server spends time hashing the password
+ */
+public class LoginAttemptListener {
+    
+    private final VeloAuthAPI plugin;
+    private final AuthRegistry authRegistry;
+    
+    public LoginAttemptListener(VeloAuthAPI plugin, AuthRegistry authRegistry) {
+        this.plugin = plugin;
+        this.authRegistry = authRegistry;
+    }
+    
+    /**
+     * Check login commands of unauthenticated players against account protection
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public EventTask onCommandExecute(CommandExecuteEvent event) {
+        if (!(event.getCommandSource() instanceof Player) || !plugin.getConfigManager().isDDoSProtectionEnabled()) {
+            return null;
+        }
+        Player player = (Player) event.getCommandSource();
+        if (authRegistry.isAuthenticated(player.getUniqueId()) || !isLoginCommand(event.getCommand())) {
+            return null;
+        }
+        
+        return EventTask.resumeWhenComplete(plugin.getDDoSProtection().checkLoginAttempt(player.getUsername())
+                .thenAccept(result -> {
+                    if (result.isAllowed()) {
+                        return;
+                    }
+                    event.setResult(CommandExecuteEvent.CommandResult.denied());
+                    sendDenied(player, result);
+                }));
+    }
+    
+    private boolean isLoginCommand(String command) {
+        int end = command.indexOf(' ');
+        String name = (end < 0 ? command : command.substring(0, end)).toLowerCase(Locale.ROOT);
+        return plugin.getConfigManager().getDDoSSettings().getLoginCommands().contains(name);
+    }
+    
+    private void sendDenied(Player player, ConnectionCheckResult result) {
+        String seconds = String.valueOf(Math.max(1, (result.getBlockDuration() + 999) / 1000));
+        String key = result.isRateLimited() ? "account-throttled" : "account-locked";
+        String message = plugin.getConfigManager().getMessage(key, Map.of("seconds", seconds));
+        player.sendMessage(LegacyComponentSerializer.legacySection().deserialize(message));
+    }
+}
@@ -0,0 +1,35 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.ResultedEvent;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.proxy.ProxyPingEvent;
+
+/**
+ * Rate limits server list pings per IP and per subnet
+ * <p>
+ * Pings over the limit are closed without a response, before other plugins spend time on them.
+ */
+public class PingListener {
+    
+    private final VeloAuthAPI plugin;
+    
+    public PingListener(VeloAuthAPI plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Drop pings over the limit
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public void onPing(ProxyPingEvent event) {
+        if (!plugin.getConfigManager().isDDoSProtectionEnabled()) {
+            return;
+        }
+        String ip = event.getConnection().getRemoteAddress().getAddress().getHostAddress();
+        if (!plugin.getDDoSProtection().checkPing(ip)) {
+            event.setResult(ResultedEvent.GenericResult.denied());
+        }
+    }
+}
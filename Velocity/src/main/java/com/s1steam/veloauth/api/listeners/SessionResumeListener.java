@@ -0,0 +1,81 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.registry.SessionResumeTokens;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.proxy.Player;
+
+/**
+ * Lets players who were authenticated when they disconnected resume their session
+ * <p>
+ * On disconnect an authenticated player is removed from the registry and gets a resume
+ * token. Reconnecting from the same IP within the window marks the player authenticated
+ * again before a server is chosen, so reconnect storms after a backend crash do not
+ * all go through the backend login.
+ */
+public class SessionResumeListener {
+    
+    private final VeloAuthAPI plugin;
+    private final AuthRegistry authRegistry;
+    private final SessionResumeTokens tokens;
+    
+    public SessionResumeListener(VeloAuthAPI plugin, AuthRegistry authRegistry, SessionResumeTokens tokens) {
+        this.plugin = plugin;
+        this.authRegistry = authRegistry;
+        this.tokens = tokens;
+    }
+    
+    /**
+     * Issue a resume token for an authenticated player leaving the proxy
+     */
+    @Subscribe(order = PostOrder.LAST)
+    public void onDisconnect(DisconnectEvent event) {
+        Player player = event.getPlayer();
+        if (!authRegistry.isAuthenticated(player.getUniqueId())) {
+            return;
+        }
+        authRegistry.removeAuthenticatedPlayer(player.getUniqueId());
+        if (plugin.getConfigManager().getSnapshot().isSessionResumeEnabled()) {
+            tokens.issue(player.getUniqueId(), ipOf(player));
+        }
+    }
+    
+    /**
+     * Restore the session of a player reconnecting with a valid token
+     */
+    @Subscribe(order = PostOrder.LAST)
+    public void onLogin(LoginEvent event) {
+        if (!event.getResult().isAllowed() || !plugin.getConfigManager().getSnapshot().isSessionResumeEnabled()) {
+            return;
+        }
+        Player player = event.getPlayer();
+        if (tokens.resume(player.getUniqueId(), ipOf(player))) {
+            authRegistry.addAuthenticatedPlayer(player.getUniqueId());
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().info("Resumed session of " + player.getUsername() + " from " + ipOf(player));
+            }
+        }
+    }
+    
+    /**
+     * Send players with a resumed session past the auth lobby when a server is configured
+     */
+    @Subscribe
+    public void onChooseInitialServer(PlayerChooseInitialServerEvent event) {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (config.getSessionResumeServer().isEmpty() || !authRegistry.isAuthenticated(event.getPlayer().getUniqueId())) {
+            return;
+        }
+        plugin.getServer().getServer(config.getSessionResumeServer()).ifPresent(event::setInitialServer);
+    }
+    
+    private static String ipOf(Player player) {
+        return player.getRemoteAddress().getAddress().getHostAddress();
+    }
+}
@@ -0,0 +1,192 @@
+package com.s1steam.veloauth.api.messaging;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.cluster.ReplicaDelta;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes DDoS verdicts, reputation and registry changes to backend servers
+ * <p>
+ * Plugin messages can only reach a backend through a player connected to it, so updates
+ * are queued per server in an {@link OutboundQueue} and flushed as {@code BATCH} frames
+ * once the server has a player to carry them. Messages start with a UTF type:
+ * <ul>
+ *   <li>{@code IP_VERDICT} - UTF IP, UTF type (BLOCK, WHITELIST, BLACKLIST), long value, UTF reason</li>
+ *   <li>{@code REPUTATION} - UTF IP, int reputation</li>
+ *   <li>{@code AUTH_STATUS} - UTF player UUID, boolean authenticated</li>
+ * </ul>
+ * For BLOCK the value is the block end time (0 - unblocked), for the lists 1 or 0.
+ */
+public class OutboundMessenger {
+    
+    // Frames past this size are not accepted by backends
+    public static final int MAX_FRAME_BYTES = 32000;
+    
+    // Frames sent to one server per flush, the rest waits for the next flush
+    private static final int MAX_FRAMES_PER_FLUSH = 16;
+    
+    private final VeloAuthAPI plugin;
+    private final ChannelIdentifier channel;
+    private final Map<String, OutboundQueue> queues = new ConcurrentHashMap<>();
+    private volatile long lastFlush;
+    
+    public OutboundMessenger(VeloAuthAPI plugin, ChannelIdentifier channel) {
+        this.plugin = plugin;
+        this.channel = channel;
+    }
+    
+    /**
+     * Queue a DDoS verdict for an IP for every backend
+     */
+    public void sendVerdict(ReplicaDelta verdict) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeUTF("IP_VERDICT");
+        out.writeUTF(verdict.getIp());
+        out.writeUTF(verdict.getType().name());
+        out.writeLong(verdict.getValue());
+        out.writeUTF(verdict.getReason().name());
+        broadcast(verdict.getType().name() + ":" + verdict.getIp(), out.toByteArray());
+    }
+    
+    /**
+     * Queue the current reputation of an IP for every backend
+     */
+    public void sendReputation(String ip, int reputation) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeUTF("REPUTATION");
+        out.writeUTF(ip);
+        out.writeInt(reputation);
+        broadcast("REPUTATION:" + ip, out.toByteArray());
+    }
+    
+    /**
+     * Queue an authentication registry change for every backend
+     */
+    public void sendAuthStatus(UUID playerId, boolean authenticated) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeUTF("AUTH_STATUS");
+        out.writeUTF(playerId.toString());
+        out.writeBoolean(authenticated);
+        broadcast("AUTH_STATUS:" + playerId, out.toByteArray());
+    }
+    
+    /**
+     * Queue a message for every registered backend server
+     * @return number of servers whose queue refused the message
+     */
+    public int broadcast(String key, byte[] message) {
+        if (!plugin.getConfigManager().getSnapshot().isOutboundEnabled()) {
+            return 0;
+        }
+        int refused = 0;
+        for (RegisteredServer server : plugin.getServer().getAllServers()) {
+            if (!send(server.getServerInfo().getName(), key, message)) {
+                refused++;
+            }
+        }
+        return refused;
+    }
+    
+    /**
+     * Queue a message for one backend server
+     * @return false if the queue is full and refuses new messages
+     */
+    public boolean send(String server, String key, byte[] message) {
+        return queue(server).offer(key, message);
+    }
+    
+    /**
+     * Flush every queue once the configured flush interval has passed
+     * Called by a repeating scheduler task
+     */
+    public void flush() {
+        long now = System.currentTimeMillis();
+        if (now - lastFlush < plugin.getConfigManager().getSnapshot().getOutboundFlushInterval()) {
+            return;
+        }
+        lastFlush = now;
+        for (String server : queues.keySet()) {
+            plugin.getServer().getServer(server).ifPresent(this::flush);
+        }
+    }
+    
+    /**
+     * Flush a server queue as soon as a player connects and can carry the messages
+     */
+    @Subscribe
+    public void onServerPostConnect(ServerPostConnectEvent event) {
+        event.getPlayer().getCurrentServer().ifPresent(connection -> flush(connection.getServer()));
+    }
+    
+    /**
+     * Send queued frames to a server while it has a carrier connection
+     * Returns at once if another thread is already flushing the server
+     * @return number of frames sent
+     */
+    public int flush(RegisteredServer server) {
+        OutboundQueue queue = queues.get(server.getServerInfo().getName());
+        if (queue == null || server.getPlayersConnected().isEmpty()) {
+            return 0;
+        }
+        // The scheduled flush and a player connect may flush the same server, one of them is enough
+        if (!queue.getFlushLock().tryLock()) {
+            return 0;
+        }
+        try {
+            int sent = 0;
+            OutboundQueue.Frame frame;
+            while (sent < MAX_FRAMES_PER_FLUSH && (frame = queue.peek()) != null) {
+                if (!server.sendPluginMessage(channel, frame.getData())) {
+                    break;
+                }
+                queue.acknowledge(frame);
+                sent++;
+            }
+            return sent;
+        } finally {
+            queue.getFlushLock().unlock();
+        }
+    }
+    
+    /**
+     * Get the queue of a server, creating it with the current settings
+     */
+    public OutboundQueue queue(String server) {
+        return queues.computeIfAbsent(server, name -> {
+            ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+            return new OutboundQueue(config.getOutboundQueueCapacity(),
+                OutboundQueue.Overflow.fromName(config.getOutboundOverflow()), MAX_FRAME_BYTES);
+        });
+    }
+    
+    /**
+     * Queue metrics of every server
+     */
+    public String getStatistics() {
+        StringBuilder stats = new StringBuilder("§6=== Outbound Queues ===\n");
+        if (queues.isEmpty()) {
+            stats.append("§7Nothing queued yet\n");
+        }
+        for (Map.Entry<String, OutboundQueue> entry : queues.entrySet()) {
+            OutboundQueue queue = entry.getValue();
+            stats.append("§e").append(entry.getKey())
+                .append(" (queued/enqueued/coalesced/dropped/rejected): §f")
+                .append(queue.size()).append(" / ").append(queue.getEnqueued()).append(" / ")
+                .append(queue.getCoalesced()).append(" / ").append(queue.getDropped()).append(" / ")
+                .append(queue.getRejected()).append("\n")
+                .append("§e  Sent (frames/messages): §f")
+                .append(queue.getFramesSent()).append(" / ").append(queue.getMessagesSent()).append("\n");
+        }
+        return stats.toString();
+    }
+}
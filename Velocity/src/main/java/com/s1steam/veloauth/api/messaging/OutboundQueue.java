@@ -0,0 +1,218 @@
+package com.s1steam.veloauth.api.messaging;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of plugin messages waiting to be sent to one backend server
+ * <p>
+ * Messages are keyed by what they describe, so a newer update for the same key replaces
+ * the queued one in place instead of being sent after it. Queued messages are packed into
+ * {@code BATCH} frames; a frame is only removed once it was handed to a carrier connection,
+ * and messages replaced while the frame was in flight stay queued.
+ */
+public class OutboundQueue {
+    
+    /**
+     * What to do with a new key when the queue is full
+     */
+    public enum Overflow {
+        /** Drop the oldest queued message to make room */
+        DROP_OLDEST,
+        /** Refuse the new message and let the caller decide */
+        REJECT;
+        
+        /**
+         * @param name drop-oldest or reject
+         */
+        public static Overflow fromName(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+    
+    /**
+     * Frame type written before the batched messages
+     */
+    public static final String BATCH = "BATCH";
+    
+    // Frame header: UTF "BATCH" and the message count
+    private static final int HEADER_BYTES = 2 + BATCH.length() + 2;
+    
+    // Per message length prefix
+    private static final int LENGTH_BYTES = 2;
+    
+    private final int capacity;
+    private final Overflow overflow;
+    private final int maxFrameBytes;
+    private final LinkedHashMap<String, byte[]> pending = new LinkedHashMap<>();
+    
+    // Held while frames are sent, so two flushes never send the same frame
+    private final ReentrantLock flushLock = new ReentrantLock();
+    
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    
+    /**
+     * @param capacity Maximum number of distinct keys queued at once
+     * @param overflow Policy for new keys when the queue is full
+     * @param maxFrameBytes Maximum size of one frame, including the header
+     */
+    public OutboundQueue(int capacity, Overflow overflow, int maxFrameBytes) {
+        if (capacity <= 0 || maxFrameBytes <= HEADER_BYTES + LENGTH_BYTES) {
+            throw new IllegalArgumentException("Invalid outbound queue parameters");
+        }
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+    
+    /**
+     * Queue a message, replacing a queued message with the same key
+     * @param key what the message describes, e.g. the IP or player it is about
+     * @param message encoded message, starting with its UTF type
+     * @return false if the queue is full and the overflow policy is REJECT
+     */
+    public synchronized boolean offer(String key, byte[] message) {
+        if (HEADER_BYTES + LENGTH_BYTES + message.length > maxFrameBytes) {
+            throw new IllegalArgumentException("Message does not fit into a frame: " + message.length + " bytes");
+        }
+        if (pending.containsKey(key)) {
+            pending.put(key, message);
+            coalesced.increment();
+            return true;
+        }
+        if (pending.size() >= capacity) {
+            if (overflow == Overflow.REJECT) {
+                rejected.increment();
+                return false;
+            }
+            Iterator<byte[]> oldest = pending.values().iterator();
+            oldest.next();
+            oldest.remove();
+            dropped.increment();
+        }
+        pending.put(key, message);
+        enqueued.increment();
+        return true;
+    }
+    
+    /**
+     * Pack the oldest queued messages into one frame without removing them
+     * @return the frame, or null if nothing is queued
+     */
+    public synchronized Frame peek() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>();
+        List<byte[]> messages = new ArrayList<>();
+        int size = HEADER_BYTES;
+        for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+            int next = LENGTH_BYTES + entry.getValue().length;
+            if (size + next > maxFrameBytes || keys.size() == 0xFFFF) {
+                break;
+            }
+            keys.add(entry.getKey());
+            messages.add(entry.getValue());
+            size += next;
+        }
+        
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(size);
+        out.writeUTF(BATCH);
+        out.writeShort(messages.size());
+        for (byte[] message : messages) {
+            out.writeShort(message.length);
+            out.write(message);
+        }
+        return new Frame(out.toByteArray(), keys, messages);
+    }
+    
+    /**
+     * Remove the messages of a frame that was sent
+     * Messages replaced after the frame was built stay queued
+     */
+    public synchronized void acknowledge(Frame frame) {
+        for (int i = 0; i < frame.keys.size(); i++) {
+            pending.remove(frame.keys.get(i), frame.messages.get(i));
+        }
+        framesSent.increment();
+        messagesSent.add(frame.keys.size());
+    }
+    
+    /**
+     * Lock to hold from {@link #peek()} until the frame is acknowledged
+     * Offers do not take it, so updates keep being queued while frames are sent
+     */
+    public ReentrantLock getFlushLock() {
+        return flushLock;
+    }
+    
+    public synchronized int size() {
+        return pending.size();
+    }
+    
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+    
+    /**
+     * @return updates that replaced a queued message with the same key
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+    
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    public long getRejected() {
+        return rejected.sum();
+    }
+    
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+    
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+    
+    /**
+     * Encoded {@code BATCH} frame: UTF "BATCH", short count, then each message as
+     * short length and bytes
+     */
+    public static final class Frame {
+        
+        private final byte[] data;
+        private final List<String> keys;
+        private final List<byte[]> messages;
+        
+        private Frame(byte[] data, List<String> keys, List<byte[]> messages) {
+            this.data = data;
+            this.keys = keys;
+            this.messages = messages;
+        }
+        
+        public byte[] getData() {
+            return data;
+        }
+        
+        public int getMessageCount() {
+            return keys.size();
+        }
+    }
+}
@@ -14,12 +14,22 @@ import java.util.UUID;
 
 /**
  * Handles plugin messaging between Velocity and backend servers
+ * <p>
+ * Messages start with a UTF type:
+ * <ul>
+ *   <li>{@code AUTH_STATUS} - UTF player UUID, boolean authenticated</li>
+ *   <li>{@code AUTH_ATTEMPT} - UTF player UUID, UTF attempted username, boolean success</li>
+ * </ul>
+ * Once a backend sends {@code AUTH_ATTEMPT}, login results are taken from it and
+ * {@code AUTH_STATUS} only updates the registry, so logouts are not counted as failures.
  */
 public class PluginMessageHandler {
     
     private final VeloAuthAPI plugin;
     private final AuthRegistry authRegistry;
     private final MinecraftChannelIdentifier channel;
+    private final OutboundMessenger outbound;
+    private volatile boolean attemptsReported;
     
     public PluginMessageHandler(VeloAuthAPI plugin, AuthRegistry authRegistry) {
         this.plugin = plugin;
@@ -27,6 +37,7 @@ public class PluginMessageHandler {
         
         String channelName = plugin.getConfigManager().getSyncChannel();
         this.channel = MinecraftChannelIdentifier.from(channelName);
+        this.outbound = new OutboundMessenger(plugin, channel);
     }
     
     /**
@@ -35,6 +46,7 @@ public class PluginMessageHandler {
     public void registerChannel() {
         plugin.getServer().getChannelRegistrar().register(channel);
         plugin.getServer().getEventManager().register(plugin, this);
+        plugin.getServer().getEventManager().register(plugin, outbound);
         
         if (plugin.getConfigManager().isDebugMode()) {
             plugin.getLogger().info("Registered plugin messaging channel: " + channel.getId());
@@ -46,13 +58,19 @@ public class PluginMessageHandler {
      */
     @Subscribe
     public void onPluginMessage(PluginMessageEvent event) {
-        // Only handle messages from backend servers
-        if (!(event.getSource() instanceof ServerConnection)) {
+        // Check if it's our channel
+        if (!event.getIdentifier().equals(channel)) {
             return;
         }
         
-        // Check if it's our channel
-        if (!event.getIdentifier().equals(channel)) {
+        // Never forward our channel, so players cannot send frames to backends or to us
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+        
+        // Only handle messages from backend servers
+        if (!(event.getSource() instanceof ServerConnection)) {
+            if (plugin.getConfigManager().isDebugMode()) {
+                plugin.getLogger().warn("Dropped plugin message from a player on channel " + channel.getId());
+            }
             return;
         }
         
@@ -64,6 +82,8 @@ public class PluginMessageHandler {
             
             if ("AUTH_STATUS".equals(messageType)) {
                 handleAuthStatus(in);
+            } else if ("AUTH_ATTEMPT".equals(messageType)) {
+                handleAuthAttempt(in);
             } else if (plugin.getConfigManager().isDebugMode()) {
                 plugin.getLogger().warn("Unknown message type: " + messageType);
             }
@@ -85,12 +105,12 @@ public class PluginMessageHandler {
             // Read authentication status
             boolean authenticated = in.readBoolean();
             
-            // Get player IP for DDoS tracking
-            plugin.getServer().getPlayer(playerId).ifPresent(player -> {
+            // Get player IP for DDoS tracking (legacy backends without AUTH_ATTEMPT)
+            plugin.getServer().getPlayer(playerId).filter(player -> !attemptsReported).ifPresent(player -> {
                 String ip = player.getRemoteAddress().getAddress().getHostAddress();
                 
                 // Register auth attempt in DDoS protection
-                plugin.getDDoSProtection().registerAuthAttempt(ip, authenticated);
+                plugin.getDDoSProtection().registerAuthAttempt(ip, player.getUsername(), authenticated);
                 
                 if (plugin.getConfigManager().isDebugMode()) {
                     plugin.getLogger().info("Registered auth attempt for IP " + ip + ": " + 
@@ -118,6 +138,40 @@ public class PluginMessageHandler {
         }
     }
     
+    /**
+     * Handle a login attempt result reported by the backend server
+     */
+    private void handleAuthAttempt(ByteArrayDataInput in) {
+        try {
+            UUID playerId = UUID.fromString(in.readUTF());
+            String username = in.readUTF();
+            boolean success = in.readBoolean();
+            attemptsReported = true;
+            
+            plugin.getServer().getPlayer(playerId).ifPresent(player -> {
+                String ip = player.getRemoteAddress().getAddress().getHostAddress();
+                plugin.getDDoSProtection().registerAuthAttempt(ip, username, success)
+                    .thenCompose(ignored -> plugin.getDDoSProtection().getIPReputation(ip))
+                    .thenAccept(reputation -> outbound.sendReputation(ip, reputation.getReputation()));
+                
+                if (plugin.getConfigManager().isDebugMode()) {
+                    plugin.getLogger().info("Registered login attempt for " + username + " from IP " + ip + ": " +
+                        (success ? "success" : "failure"));
+                }
+            });
+        
+        } catch (Exception e) {
+            plugin.getLogger().error("Error handling auth attempt message", e);
+        }
+    }
+    
+    /**
+     * Get the queue of messages pushed to backend servers
+     */
+    public OutboundMessenger getOutbound() {
+        return outbound;
+    }
+    
     /**
      * Get the channel identifier
      */
@@ -0,0 +1,55 @@
+package com.s1steam.veloauth.api.models;
+
+/**
+ * Причина блокировки IP
+ * Код причины хранится в компактной истории блокировок и не должен меняться
+ */
+public enum BlockReason {
+    
+    OTHER(0, "Blocked"),
+    MANUAL(1, "Manual block by admin"),
+    LOW_REPUTATION(2, "Low reputation score"),
+    CONNECTIONS_PER_SECOND(3, "Too many connections per second"),
+    CONNECTIONS_PER_MINUTE(4, "Too many connections per minute"),
+    AUTH_FAILURES(5, "Too many failed auth attempts"),
+    BOT_PATTERN(6, "Machine-like reconnect pattern");
+    
+    private static final BlockReason[] BY_CODE;
+    
+    static {
+        int max = 0;
+        for (BlockReason reason : values()) {
+            max = Math.max(max, reason.code);
+        }
+        BY_CODE = new BlockReason[max + 1];
+        for (BlockReason reason : values()) {
+            BY_CODE[reason.code] = reason;
+        }
+    }
+    
+    private final int code;
+    private final String description;
+    
+    BlockReason(int code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+    
+    public int getCode() {
+        return code;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * Возвращает причину по коду (OTHER для неизвестных кодов)
+     */
+    public static BlockReason fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            return OTHER;
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,58 @@
+package com.s1steam.veloauth.api.models;
+
+/**
+ * Запись истории блокировок IP
+ * В IPReputationData хранится упакованной в один long:
+ * время в секундах (32 бита), код причины (8 бит), длительность в секундах (24 бита)
+ */
+public final class BlockRecord {
+    
+    // Максимальная длительность, которую можно сохранить (~194 дня)
+    private static final long MAX_DURATION_SECONDS = 0xFFFFFFL;
+    
+    private final long timestamp;
+    private final BlockReason reason;
+    private final long durationMs;
+    
+    public BlockRecord(long timestamp, BlockReason reason, long durationMs) {
+        this.timestamp = timestamp;
+        this.reason = reason;
+        this.durationMs = durationMs;
+    }
+    
+    /**
+     * Упаковывает запись в long
+     */
+    static long pack(long timestamp, BlockReason reason, long durationMs) {
+        long seconds = (timestamp / 1000) & 0xFFFFFFFFL;
+        long duration = Math.min(MAX_DURATION_SECONDS, Math.max(0, (durationMs + 999) / 1000));
+        return (seconds << 32) | ((long) (reason.getCode() & 0xFF) << 24) | duration;
+    }
+    
+    /**
+     * Распаковывает запись из long
+     */
+    static BlockRecord unpack(long packed) {
+        return new BlockRecord(timestampOf(packed), BlockReason.fromCode((int) ((packed >>> 24) & 0xFF)),
+            (packed & MAX_DURATION_SECONDS) * 1000);
+    }
+    
+    /**
+     * Время блокировки из упакованной записи без создания объекта
+     */
+    static long timestampOf(long packed) {
+        return (packed >>> 32) * 1000;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public BlockReason getReason() {
+        return reason;
+    }
+    
+    public long getDurationMs() {
+        return durationMs;
+    }
+}
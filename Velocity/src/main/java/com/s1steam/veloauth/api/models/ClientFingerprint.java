@@ -0,0 +1,102 @@
+package com.s1steam.veloauth.api.models;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Отпечаток клиента для группового учета волн ботов
+ * Боты одной волны подключаются с одинаковой версией протокола, одинаковым
+ * адресом в handshake и никами одного шаблона, поэтому отпечаток объединяет
+ * их независимо от IP. Бренд клиента приходит после входа и учитывается отдельно
+ */
+public final class ClientFingerprint {
+    
+    // Длина шаблона ника (ники Minecraft не длиннее 16 символов)
+    private static final int MAX_SHAPE_LENGTH = 16;
+    
+    // Длина адреса и бренда в отпечатке
+    private static final int MAX_VALUE_LENGTH = 64;
+    
+    // Бренды стандартного клиента и основных загрузчиков модов
+    private static final Set<String> COMMON_BRANDS = Set.of("vanilla", "forge", "fabric", "quilt", "neoforge");
+    
+    private ClientFingerprint() {
+    }
+    
+    /**
+     * Отпечаток подключения из данных handshake и ника
+     *
+     * @param protocol Номер версии протокола
+     * @param virtualHost Адрес сервера из handshake (null если неизвестен)
+     * @param username Ник игрока
+     * @return Отпечаток вида "протокол|домен|шаблон ника"
+     */
+    public static String of(int protocol, String virtualHost, String username) {
+        return protocol + "|" + hostKey(virtualHost) + "|" + usernameShape(username);
+    }
+    
+    /**
+     * Адрес из handshake без частей, которые клиент выбирает свободно:
+     * от имени остаются два последних уровня домена, IP-адрес заменяется на "ip"
+     * Например a1b2.play.example.com дает example.com
+     */
+    public static String hostKey(String virtualHost) {
+        String host = normalize(virtualHost);
+        if (host.indexOf(':') >= 0 || host.chars().allMatch(c -> c == '.' || (c >= '0' && c <= '9'))) {
+            return "ip";
+        }
+        int last = host.lastIndexOf('.');
+        int start = last <= 0 ? -1 : host.lastIndexOf('.', last - 1);
+        return host.substring(start + 1);
+    }
+    
+    /**
+     * Отпечаток бренда клиента
+     * Распространенные бренды есть у большинства обычных игроков и волну ботов не отличают
+     *
+     * @return Отпечаток вида "протокол|brand:бренд" или null для распространенного бренда
+     */
+    public static String ofBrand(int protocol, String brand) {
+        String normalized = normalize(brand);
+        if (COMMON_BRANDS.contains(normalized)) {
+            return null;
+        }
+        return protocol + "|brand:" + normalized;
+    }
+    
+    /**
+     * Шаблон ника: заглавные буквы - A, строчные - a, цифры - 0, остальные символы как есть
+     * Например Steve_1234 и Alice_9876 дают Aaaaa_0000
+     */
+    public static String usernameShape(String username) {
+        int length = Math.min(username.length(), MAX_SHAPE_LENGTH);
+        char[] shape = new char[length];
+        for (int i = 0; i < length; i++) {
+            char c = username.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                shape[i] = 'A';
+            } else if (c >= 'a' && c <= 'z') {
+                shape[i] = 'a';
+            } else if (c >= '0' && c <= '9') {
+                shape[i] = '0';
+            } else {
+                shape[i] = c;
+            }
+        }
+        return new String(shape);
+    }
+    
+    private static String normalize(String value) {
+        if (value == null || value.isEmpty()) {
+            return "-";
+        }
+        String normalized = value.toLowerCase(Locale.ROOT);
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.length() > MAX_VALUE_LENGTH) {
+            normalized = normalized.substring(0, MAX_VALUE_LENGTH);
+        }
+        return normalized.replace('|', '_');
+    }
+}
@@ -1,20 +1,31 @@
 package com.s1steam.veloauth.api.models;
 
+import com.s1steam.veloauth.api.time.TimeSource;
+
 /**
  * Результат проверки подключения через DDoS Protection
  */
 public class ConnectionCheckResult {
     
+    private static final String RATE_LIMIT_REASON = "Rate limit exceeded";
+    private static final String CHALLENGE_REASON = "Reconnect required";
+    
     private final boolean allowed;
     private final String reason;
     private final int reputation;
     private final long blockUntil;
+    private final String challengeToken;
     
     public ConnectionCheckResult(boolean allowed, String reason, int reputation, long blockUntil) {
+        this(allowed, reason, reputation, blockUntil, null);
+    }
+    
+    private ConnectionCheckResult(boolean allowed, String reason, int reputation, long blockUntil, String challengeToken) {
         this.allowed = allowed;
         this.reason = reason;
         this.reputation = reputation;
         this.blockUntil = blockUntil;
+        this.challengeToken = challengeToken;
     }
     
     /**
@@ -35,7 +46,36 @@ public class ConnectionCheckResult {
      * Создает результат для rate limit превышения
      */
     public static ConnectionCheckResult rateLimited(long blockUntil) {
-        return new ConnectionCheckResult(false, "Rate limit exceeded", 0, blockUntil);
+        return new ConnectionCheckResult(false, RATE_LIMIT_REASON, 0, blockUntil);
+    }
+    
+    /**
+     * Создает результат проверки переподключением: игрок должен переподключиться
+     * (или подключиться по адресу токен.адрес_сервера) до expiresAt
+     */
+    public static ConnectionCheckResult challenge(String token, long expiresAt) {
+        return new ConnectionCheckResult(false, CHALLENGE_REASON, 0, expiresAt, token);
+    }
+    
+    /**
+     * Отклонено ли подключение до прохождения проверки переподключением
+     */
+    public boolean isChallenge() {
+        return challengeToken != null;
+    }
+    
+    /**
+     * Токен проверки переподключением (null для других результатов)
+     */
+    public String getChallengeToken() {
+        return challengeToken;
+    }
+    
+    /**
+     * Отклонено ли подключение из-за превышения rate limit (а не блокировки)
+     */
+    public boolean isRateLimited() {
+        return !allowed && RATE_LIMIT_REASON.equals(reason);
     }
     
     public boolean isAllowed() {
@@ -59,7 +99,14 @@ public class ConnectionCheckResult {
     }
     
     public long getBlockDuration() {
+        return getBlockDuration(TimeSource.system().currentTimeMillis());
+    }
+    
+    /**
+     * Оставшееся время блокировки на момент now
+     */
+    public long getBlockDuration(long now) {
         if (blockUntil == 0) return 0;
-        return Math.max(0, blockUntil - System.currentTimeMillis());
+        return Math.max(0, blockUntil - now);
     }
 }
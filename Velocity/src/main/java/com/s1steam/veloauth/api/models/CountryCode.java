@@ -0,0 +1,56 @@
+package com.s1steam.veloauth.api.models;
+
+/**
+ * Компактное представление ISO 3166-1 alpha-2 кода страны
+ * Код хранится как short: (первая буква * 26 + вторая буква) + 1
+ */
+public final class CountryCode {
+    
+    /**
+     * Страна не определена (адрес не найден в базе или GeoIP отключен)
+     */
+    public static final short UNKNOWN = 0;
+    
+    /**
+     * Определение страны еще не выполнялось
+     */
+    public static final short UNRESOLVED = -1;
+    
+    /**
+     * Количество возможных кодов (максимальное значение кода)
+     */
+    public static final int COUNT = 26 * 26;
+    
+    private CountryCode() {
+    }
+    
+    /**
+     * Кодирует двухбуквенный код страны
+     *
+     * @return Код страны или UNKNOWN для некорректной строки
+     */
+    public static short encode(String iso) {
+        if (iso == null || iso.length() != 2) {
+            return UNKNOWN;
+        }
+        int first = Character.toUpperCase(iso.charAt(0)) - 'A';
+        int second = Character.toUpperCase(iso.charAt(1)) - 'A';
+        if (first < 0 || first >= 26 || second < 0 || second >= 26) {
+            return UNKNOWN;
+        }
+        return (short) (first * 26 + second + 1);
+    }
+    
+    /**
+     * Декодирует код страны
+     *
+     * @return Двухбуквенный код или null, если страна не определена
+     */
+    public static String decode(short code) {
+        if (code <= 0) {
+            return null;
+        }
+        int value = code - 1;
+        return new String(new char[] {(char) ('A' + value / 26), (char) ('A' + value % 26)});
+    }
+}
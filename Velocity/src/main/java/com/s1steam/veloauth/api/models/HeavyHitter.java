@@ -0,0 +1,24 @@
+package com.s1steam.veloauth.api.models;
+
+/**
+ * Один из самых активных источников трафика (IP, подсеть или ник)
+ * Количество - оценка скетча сверху с затуханием, а не точный счетчик
+ */
+public final class HeavyHitter {
+    
+    private final String key;
+    private final long count;
+    
+    public HeavyHitter(String key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+}
@@ -1,44 +1,90 @@
 package com.s1steam.veloauth.api.models;
 
+import com.s1steam.veloauth.api.time.TimeSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Данные репутации IP адреса для DDoS защиты
  * Reputation score: 0-100 (0 = плохой, 100 = отличный)
+ * Счетчик неудач и штраф за блокировки затухают экспоненциально,
+ * затухание применяется лениво при чтении записи через {@link #decay(long, long)}
+ * Методы с параметром now принимают время от {@link TimeSource} вызывающего,
+ * методы без него используют системные часы
  */
 public class IPReputationData {
     
+    private static final double LN2 = Math.log(2);
+    
+    // Затухшие значения ниже этого порога считаются нулем
+    private static final double DECAY_EPSILON = 0.01;
+    
+    // Размер кольца истории блокировок (степень двойки)
+    public static final int BLOCK_HISTORY_SIZE = 8;
+    
+    // Репутация IP без истории
+    public static final int NEUTRAL_REPUTATION = 50;
+    
+    // Вес обнаруженного ритма бота в счетчике неудач
+    private static final double BOT_PATTERN_WEIGHT = 3;
+    
     private final String ip;
     private int reputation;
     private int successfulLogins;
-    private int failedAttempts;
+    private double failureScore;
+    private double blockPenalty;
+    private long decayedAt;
     private long lastAttempt;
     private boolean whitelisted;
     private boolean blacklisted;
     private boolean isVPN;
     private long blockUntil;
     private String blockReason;
-    private String country;
+    private short countryCode;
+    private int asn;
+    
+    // Кольцо упакованных BlockRecord, создается при первой блокировке
+    private long[] blockHistory;
+    private int blockCount;
+    
+    // Версии реплицированных полей по номеру поля (null до первого изменения)
+    private long[] replicaVersions;
     
     public IPReputationData(String ip) {
         this.ip = ip;
-        this.reputation = 50; // Нейтральная репутация по умолчанию
+        this.reputation = NEUTRAL_REPUTATION;
         this.successfulLogins = 0;
-        this.failedAttempts = 0;
+        this.failureScore = 0;
+        this.blockPenalty = 0;
+        this.decayedAt = 0;
         this.lastAttempt = 0;
         this.whitelisted = false;
         this.blacklisted = false;
         this.isVPN = false;
         this.blockUntil = 0;
         this.blockReason = null;
-        this.country = null;
+        this.countryCode = CountryCode.UNRESOLVED;
     }
     
     /**
      * Обновляет репутацию после успешного входа
      */
     public void recordSuccessfulLogin() {
+        recordSuccessfulLogin(TimeSource.system().currentTimeMillis());
+    }
+    
+    /**
+     * Обновляет репутацию после успешного входа
+     *
+     * @param now Текущее время
+     */
+    public void recordSuccessfulLogin(long now) {
         successfulLogins++;
-        failedAttempts = Math.max(0, failedAttempts - 1); // Уменьшаем счетчик неудач
-        lastAttempt = System.currentTimeMillis();
+        failureScore = Math.max(0, failureScore - 1); // Уменьшаем счетчик неудач
+        blockPenalty = 0; // Успешный вход снимает штраф за блокировки
+        touch(now);
         recalculateReputation();
     }
     
@@ -46,11 +92,71 @@ public class IPReputationData {
      * Обновляет репутацию после неудачной попытки
      */
     public void recordFailedAttempt() {
-        failedAttempts++;
-        lastAttempt = System.currentTimeMillis();
+        recordFailedAttempt(TimeSource.system().currentTimeMillis());
+    }
+    
+    /**
+     * Обновляет репутацию после неудачной попытки
+     *
+     * @param now Текущее время
+     */
+    public void recordFailedAttempt(long now) {
+        failureScore++;
+        touch(now);
         recalculateReputation();
     }
     
+    /**
+     * Понижает репутацию после подключения с равномерным ритмом бота
+     * Учитывается как несколько неудачных попыток и затухает так же
+     *
+     * @param now Текущее время
+     */
+    public void recordBotPattern(long now) {
+        failureScore += BOT_PATTERN_WEIGHT;
+        touch(now);
+        recalculateReputation();
+    }
+    
+    /**
+     * Применяет экспоненциальное затухание неудач и штрафа за блокировки
+     * Стоимость O(1): множитель вычисляется по времени с последнего затухания,
+     * поэтому фоновый проход по всем записям не нужен
+     *
+     * @param now Текущее время в миллисекундах
+     * @param halfLifeMs Период полураспада (0 - затухание отключено)
+     */
+    public void decay(long now, long halfLifeMs) {
+        if (decayedAt == 0) {
+            decayedAt = lastAttempt != 0 ? lastAttempt : now;
+        }
+        
+        long elapsed = now - decayedAt;
+        if (halfLifeMs <= 0 || elapsed <= 0) {
+            return;
+        }
+        decayedAt = now;
+        
+        if (failureScore == 0 && blockPenalty == 0) {
+            return;
+        }
+        
+        double factor = Math.exp(-LN2 * elapsed / halfLifeMs);
+        failureScore = failureScore * factor < DECAY_EPSILON ? 0 : failureScore * factor;
+        blockPenalty = blockPenalty * factor < DECAY_EPSILON ? 0 : blockPenalty * factor;
+        recalculateReputation();
+    }
+    
+    /**
+     * Фиксирует активность и точку отсчета затухания
+     */
+    private void touch(long now) {
+        if (decayedAt == 0) {
+            decayedAt = now;
+        }
+        lastAttempt = now;
+    }
+    
     /**
      * Пересчитывает reputation score на основе истории
      */
@@ -65,14 +171,21 @@ public class IPReputationData {
             return;
         }
         
+        reputation = (int) Math.round(Math.max(0, baseScore() - blockPenalty));
+    }
+    
+    /**
+     * Reputation score без учета штрафа за блокировки
+     */
+    private double baseScore() {
         // Базовая репутация 50
-        int score = 50;
+        double score = NEUTRAL_REPUTATION;
         
         // Успешные входы повышают репутацию (+2 за каждый, макс +30)
         score += Math.min(30, successfulLogins * 2);
         
         // Неудачные попытки понижают репутацию (-5 за каждую, макс -40)
-        score -= Math.min(40, failedAttempts * 5);
+        score -= Math.min(40, failureScore * 5);
         
         // VPN понижает репутацию на 20
         if (isVPN) {
@@ -80,15 +193,22 @@ public class IPReputationData {
         }
         
         // Ограничиваем диапазон 0-100
-        reputation = Math.max(0, Math.min(100, score));
+        return Math.max(0, Math.min(100, score));
     }
     
     /**
      * Проверяет заблокирован ли IP
      */
     public boolean isBlocked() {
+        return isBlocked(TimeSource.system().currentTimeMillis());
+    }
+    
+    /**
+     * Проверяет заблокирован ли IP на момент now
+     */
+    public boolean isBlocked(long now) {
         if (blockUntil == 0) return false;
-        if (System.currentTimeMillis() >= blockUntil) {
+        if (now >= blockUntil) {
             // Блокировка истекла
             blockUntil = 0;
             blockReason = null;
@@ -101,9 +221,112 @@ public class IPReputationData {
      * Блокирует IP на указанное время
      */
     public void block(long durationMs, String reason) {
-        this.blockUntil = System.currentTimeMillis() + durationMs;
-        this.blockReason = reason;
-        this.reputation = Math.min(reputation, 20); // Понижаем репутацию при блокировке
+        block(durationMs, BlockReason.OTHER, reason);
+    }
+    
+    /**
+     * Блокирует IP на указанное время
+     */
+    public void block(long durationMs, BlockReason reason) {
+        block(durationMs, reason, reason.getDescription());
+    }
+    
+    /**
+     * Блокирует IP на указанное время и записывает блокировку в историю
+     *
+     * @param durationMs Длительность блокировки
+     * @param reason Причина блокировки для истории
+     * @param description Текст причины для игрока и администратора
+     */
+    public void block(long durationMs, BlockReason reason, String description) {
+        block(durationMs, reason, description, TimeSource.system().currentTimeMillis());
+    }
+    
+    /**
+     * Блокирует IP на указанное время и записывает блокировку в историю
+     *
+     * @param durationMs Длительность блокировки
+     * @param reason Причина блокировки для истории
+     * @param description Текст причины для игрока и администратора
+     * @param now Текущее время
+     */
+    public void block(long durationMs, BlockReason reason, String description, long now) {
+        this.blockUntil = now + durationMs;
+        this.blockReason = description;
+        if (decayedAt == 0) {
+            decayedAt = now;
+        }
+        recordBlock(now, reason, durationMs);
+        
+        // Понижаем репутацию при блокировке до 20, штраф затухает со временем
+        if (!whitelisted && !blacklisted) {
+            blockPenalty = Math.max(blockPenalty, baseScore() - 20);
+            recalculateReputation();
+        }
+    }
+    
+    /**
+     * Добавляет блокировку в кольцо истории, вытесняя самую старую запись
+     */
+    private void recordBlock(long now, BlockReason reason, long durationMs) {
+        if (blockHistory == null) {
+            blockHistory = new long[BLOCK_HISTORY_SIZE];
+        }
+        blockHistory[blockCount & (BLOCK_HISTORY_SIZE - 1)] = BlockRecord.pack(now, reason, durationMs);
+        blockCount++;
+    }
+    
+    /**
+     * Считает блокировки из истории, начавшиеся не раньше указанного времени
+     * Учитываются только последние записи кольца
+     */
+    public int countBlocksSince(long since) {
+        int count = 0;
+        int stored = Math.min(blockCount, BLOCK_HISTORY_SIZE);
+        for (int i = 0; i < stored; i++) {
+            if (BlockRecord.timestampOf(blockHistory[i]) >= since) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Возвращает последние блокировки, начиная с самой новой
+     */
+    public List<BlockRecord> getBlockHistory() {
+        int stored = Math.min(blockCount, BLOCK_HISTORY_SIZE);
+        List<BlockRecord> history = new ArrayList<>(stored);
+        for (int i = 1; i <= stored; i++) {
+            history.add(BlockRecord.unpack(blockHistory[(blockCount - i) & (BLOCK_HISTORY_SIZE - 1)]));
+        }
+        return history;
+    }
+    
+    /**
+     * Упакованные записи истории блокировок от самой старой к самой новой (для хранилища)
+     */
+    public long[] getPackedBlockHistory() {
+        int stored = Math.min(blockCount, BLOCK_HISTORY_SIZE);
+        long[] packed = new long[stored];
+        for (int i = 0; i < stored; i++) {
+            packed[i] = blockHistory[(blockCount - stored + i) & (BLOCK_HISTORY_SIZE - 1)];
+        }
+        return packed;
+    }
+    
+    /**
+     * Заменяет историю блокировок сохраненной, из длинной истории остаются последние записи
+     *
+     * @param packed Упакованные записи от самой старой к самой новой
+     */
+    public void restoreBlockHistory(long[] packed) {
+        blockHistory = packed.length == 0 ? null : new long[BLOCK_HISTORY_SIZE];
+        blockCount = 0;
+        for (int i = Math.max(0, packed.length - BLOCK_HISTORY_SIZE); i < packed.length; i++) {
+            blockHistory[blockCount & (BLOCK_HISTORY_SIZE - 1)] = packed[i];
+            blockCount++;
+        }
     }
     
     /**
@@ -136,12 +359,43 @@ public class IPReputationData {
         this.successfulLogins = successfulLogins;
     }
     
+    /**
+     * Возвращает счетчик неудач с учетом затухания на момент последнего чтения
+     */
     public int getFailedAttempts() {
-        return failedAttempts;
+        return (int) Math.round(failureScore);
     }
     
     public void setFailedAttempts(int failedAttempts) {
-        this.failedAttempts = failedAttempts;
+        this.failureScore = Math.max(0, failedAttempts);
+        recalculateReputation();
+    }
+    
+    /**
+     * Счетчик неудач без округления
+     */
+    public double getFailureScore() {
+        return failureScore;
+    }
+    
+    public double getBlockPenalty() {
+        return blockPenalty;
+    }
+    
+    /**
+     * Восстанавливает счетчики, сохраненные в хранилище, и пересчитывает репутацию
+     */
+    public void restore(int successfulLogins, double failureScore, double blockPenalty, long decayedAt, long lastAttempt) {
+        this.successfulLogins = successfulLogins;
+        this.failureScore = Math.max(0, failureScore);
+        this.blockPenalty = Math.max(0, blockPenalty);
+        this.decayedAt = decayedAt;
+        this.lastAttempt = lastAttempt;
+        recalculateReputation();
+    }
+    
+    public long getDecayedAt() {
+        return decayedAt;
     }
     
     public long getLastAttempt() {
@@ -159,9 +413,9 @@ public class IPReputationData {
     public void setWhitelisted(boolean whitelisted) {
         this.whitelisted = whitelisted;
         if (whitelisted) {
-            reputation = 100;
             blacklisted = false;
         }
+        recalculateReputation();
     }
     
     public boolean isBlacklisted() {
@@ -171,9 +425,9 @@ public class IPReputationData {
     public void setBlacklisted(boolean blacklisted) {
         this.blacklisted = blacklisted;
         if (blacklisted) {
-            reputation = 0;
             whitelisted = false;
         }
+        recalculateReputation();
     }
     
     public boolean isVPN() {
@@ -201,12 +455,54 @@ public class IPReputationData {
         this.blockReason = blockReason;
     }
     
+    /**
+     * Версия последнего примененного изменения поля при репликации между прокси
+     *
+     * @param field Номер реплицируемого поля
+     * @return Версия или 0, если поле не изменялось
+     */
+    public long getReplicaVersion(int field) {
+        return replicaVersions == null || field >= replicaVersions.length ? 0 : replicaVersions[field];
+    }
+    
+    public void setReplicaVersion(int field, long version) {
+        if (replicaVersions == null || field >= replicaVersions.length) {
+            replicaVersions = Arrays.copyOf(replicaVersions == null ? new long[0] : replicaVersions, field + 1);
+        }
+        replicaVersions[field] = version;
+    }
+    
+    /**
+     * @return Двухбуквенный код страны или null, если страна не определена
+     */
     public String getCountry() {
-        return country;
+        return CountryCode.decode(countryCode);
     }
     
     public void setCountry(String country) {
-        this.country = country;
+        this.countryCode = CountryCode.encode(country);
+    }
+    
+    /**
+     * @return Компактный код страны (см. CountryCode)
+     */
+    public short getCountryCode() {
+        return countryCode;
+    }
+    
+    public void setCountryCode(short countryCode) {
+        this.countryCode = countryCode;
+    }
+    
+    /**
+     * @return Номер автономной системы или 0, если не определен
+     */
+    public int getASN() {
+        return asn;
+    }
+    
+    public void setASN(int asn) {
+        this.asn = asn;
     }
     
     /**
@@ -217,11 +513,10 @@ public class IPReputationData {
     }
     
     /**
-     * Возвращает количество блокировок (для статистики)
+     * Возвращает количество блокировок за все время (для статистики)
      */
     public int getBlockCount() {
-        // Простая реализация - можно расширить для хранения истории
-        return blockUntil > 0 ? 1 : 0;
+        return blockCount;
     }
     
     /**
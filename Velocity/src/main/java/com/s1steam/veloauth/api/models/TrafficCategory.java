@@ -0,0 +1,45 @@
+package com.s1steam.veloauth.api.models;
+
+/**
+ * Категория учета самых активных источников трафика
+ */
+public enum TrafficCategory {
+    
+    CONNECTIONS_BY_IP("ips", "Подключения по IP"),
+    CONNECTIONS_BY_PREFIX("prefixes", "Подключения по подсетям"),
+    FAILURES_BY_IP("failures", "Ошибки входа по IP"),
+    FAILURES_BY_USERNAME("usernames", "Ошибки входа по никам");
+    
+    private final String name;
+    private final String description;
+    
+    TrafficCategory(String name, String description) {
+        this.name = name;
+        this.description = description;
+    }
+    
+    /**
+     * Имя категории в командах
+     */
+    public String getName() {
+        return name;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * Возвращает категорию по имени из команды
+     *
+     * @return Категория или null если имя неизвестно
+     */
+    public static TrafficCategory fromName(String name) {
+        for (TrafficCategory category : values()) {
+            if (category.name.equalsIgnoreCase(name)) {
+                return category;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.s1steam.veloauth.api.net;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Разбор и упаковка IP адресов без обращения к DNS
+ * Упакованный IPv4 - беззнаковое 32-битное число в long
+ */
+public final class IPAddresses {
+    
+    /**
+     * Значение для строки, не являющейся IPv4 адресом
+     */
+    public static final long INVALID = -1L;
+    
+    private IPAddresses() {
+    }
+    
+    /**
+     * Упаковывает IPv4 адрес вида a.b.c.d
+     * Работает без аллокаций, подходит для горячего пути
+     *
+     * @return Адрес в младших 32 битах или INVALID
+     */
+    public static long packIPv4(String ip) {
+        int length = ip.length();
+        if (length < 7 || length > 15) {
+            return INVALID;
+        }
+        
+        long packed = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < length; i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return INVALID;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                packed = (packed << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return INVALID;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return INVALID;
+        }
+        return (packed << 8) | octet;
+    }
+    
+    /**
+     * Преобразует упакованный IPv4 обратно в строку
+     */
+    public static String formatIPv4(long packed) {
+        return ((packed >>> 24) & 0xFF) + "." + ((packed >>> 16) & 0xFF) + "." +
+            ((packed >>> 8) & 0xFF) + "." + (packed & 0xFF);
+    }
+    
+    /**
+     * Подсеть адреса для группировки: /24 для IPv4, /48 для IPv6
+     *
+     * @return Подсеть в нотации CIDR или null, если строка не является IP адресом
+     */
+    public static String prefixOf(String ip) {
+        long ipv4 = packIPv4(ip);
+        if (ipv4 != INVALID) {
+            return formatIPv4(ipv4 & 0xFFFFFF00L) + "/24";
+        }
+        InetAddress address = ip.indexOf(':') >= 0 ? parse(ip) : null;
+        if (address == null) {
+            return null;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return formatIPv4(((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8)) + "/24";
+        }
+        for (int i = 6; i < bytes.length; i++) {
+            bytes[i] = 0;
+        }
+        try {
+            return InetAddresses.toAddrString(InetAddress.getByAddress(bytes)) + "/48";
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Разбирает IPv4 или IPv6 адрес
+     *
+     * @return Адрес или null, если строка не является IP адресом
+     */
+    public static InetAddress parse(String ip) {
+        try {
+            return InetAddresses.forString(ip);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.s1steam.veloauth.api.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Неизменяемое множество диапазонов IP адресов (CIDR)
+ * Диапазоны объединяются и хранятся в отсортированных массивах начал и концов,
+ * поиск - двоичный, без аллокаций для IPv4.
+ * IPv6 хранится с точностью до /64: более узкие префиксы расширяются до своей сети /64
+ */
+public final class IPRangeSet {
+    
+    private static final IPRangeSet EMPTY = new IPRangeSet(new long[0], new long[0], new long[0], new long[0]);
+    
+    // IPv4: беззнаковые 32-битные адреса
+    private final long[] starts4;
+    private final long[] ends4;
+    
+    // IPv6: старшие 64 бита адреса, сдвинутые на Long.MIN_VALUE для знакового сравнения
+    private final long[] starts6;
+    private final long[] ends6;
+    
+    private IPRangeSet(long[] starts4, long[] ends4, long[] starts6, long[] ends6) {
+        this.starts4 = starts4;
+        this.ends4 = ends4;
+        this.starts6 = starts6;
+        this.ends6 = ends6;
+    }
+    
+    public static IPRangeSet empty() {
+        return EMPTY;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Читает файл построчно: IP или CIDR на строку, комментарии после # или ;
+     * Некорректные строки пропускаются и учитываются в Builder.getInvalidLines()
+     *
+     * @return Заполненный построитель (отсутствующий файл - пустой)
+     */
+    public static Builder read(Path path) throws IOException {
+        return new Builder().read(path);
+    }
+    
+    /**
+     * Проверяет, входит ли адрес в один из диапазонов
+     */
+    public boolean contains(String ip) {
+        long ipv4 = IPAddresses.packIPv4(ip);
+        if (ipv4 != IPAddresses.INVALID) {
+            return containsIPv4(ipv4);
+        }
+        if (starts6.length == 0 || ip.indexOf(':') < 0) {
+            return false;
+        }
+        InetAddress address = IPAddresses.parse(ip);
+        if (address == null) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return containsIPv4(toLong(bytes, 4));
+        }
+        return find(starts6, ends6, toLong(bytes, 8) ^ Long.MIN_VALUE);
+    }
+    
+    /**
+     * Проверяет упакованный IPv4 адрес
+     */
+    public boolean containsIPv4(long ip) {
+        return find(starts4, ends4, ip);
+    }
+    
+    private static boolean find(long[] starts, long[] ends, long value) {
+        int index = Arrays.binarySearch(starts, value);
+        if (index >= 0) {
+            return true;
+        }
+        // Ближайший диапазон, начинающийся до значения
+        int previous = -index - 2;
+        return previous >= 0 && ends[previous] >= value;
+    }
+    
+    /**
+     * Количество непересекающихся диапазонов после объединения
+     */
+    public int size() {
+        return starts4.length + starts6.length;
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    private static long toLong(byte[] bytes, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (bytes[i] & 0xFFL);
+        }
+        return value;
+    }
+    
+    /**
+     * Потоковый построитель: диапазоны копятся в примитивных массивах,
+     * при build() сортируются и объединяются
+     */
+    public static final class Builder {
+        
+        private long[] starts4 = new long[64];
+        private long[] ends4 = new long[64];
+        private int size4;
+        
+        private long[] starts6 = new long[16];
+        private long[] ends6 = new long[16];
+        private int size6;
+        
+        private int invalidLines;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Добавляет строку файла списка (IP, CIDR, пустая строка или комментарий)
+         *
+         * @return false если строка содержит некорректный адрес
+         */
+        public boolean addLine(String line) {
+            int end = line.length();
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '#' || c == ';') {
+                    end = i;
+                    break;
+                }
+            }
+            String entry = line.substring(0, end).trim();
+            if (entry.isEmpty()) {
+                return true;
+            }
+            if (!add(entry)) {
+                invalidLines++;
+                return false;
+            }
+            return true;
+        }
+        
+        /**
+         * Дописывает записи файла построчно, не загружая его целиком
+         * Несколько файлов можно прочитать в один построитель
+         *
+         * @return Этот построитель (отсутствующий файл пропускается)
+         */
+        public Builder read(Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return this;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    addLine(line);
+                }
+            }
+            return this;
+        }
+        
+        /**
+         * Добавляет IP адрес или CIDR диапазон
+         *
+         * @return false если запись некорректна
+         */
+        public boolean add(String entry) {
+            int slash = entry.indexOf('/');
+            String address = slash >= 0 ? entry.substring(0, slash) : entry;
+            int prefix = -1;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(entry.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            
+            long ipv4 = IPAddresses.packIPv4(address);
+            if (ipv4 != IPAddresses.INVALID) {
+                return addIPv4(ipv4, prefix < 0 ? 32 : prefix);
+            }
+            
+            InetAddress parsed = address.indexOf(':') >= 0 ? IPAddresses.parse(address) : null;
+            if (parsed == null) {
+                return false;
+            }
+            byte[] bytes = parsed.getAddress();
+            if (bytes.length == 4) {
+                return addIPv4(toLong(bytes, 4), prefix < 0 ? 32 : prefix);
+            }
+            return addIPv6(toLong(bytes, 8), prefix < 0 ? 128 : prefix);
+        }
+        
+        /**
+         * Добавляет IPv4 сеть
+         *
+         * @param ip Упакованный адрес
+         * @param prefix Длина префикса 0-32
+         */
+        public boolean addIPv4(long ip, int prefix) {
+            if (prefix < 0 || prefix > 32) {
+                return false;
+            }
+            long hostMask = prefix == 0 ? 0xFFFFFFFFL : (1L << (32 - prefix)) - 1;
+            if (size4 == starts4.length) {
+                starts4 = Arrays.copyOf(starts4, size4 * 2);
+                ends4 = Arrays.copyOf(ends4, size4 * 2);
+            }
+            starts4[size4] = ip & ~hostMask & 0xFFFFFFFFL;
+            ends4[size4] = ip | hostMask;
+            size4++;
+            return true;
+        }
+        
+        private boolean addIPv6(long high, int prefix) {
+            if (prefix < 0 || prefix > 128) {
+                return false;
+            }
+            int bits = Math.min(prefix, 64);
+            long hostMask = bits == 0 ? -1L : bits == 64 ? 0 : (1L << (64 - bits)) - 1;
+            if (size6 == starts6.length) {
+                starts6 = Arrays.copyOf(starts6, size6 * 2);
+                ends6 = Arrays.copyOf(ends6, size6 * 2);
+            }
+            starts6[size6] = (high & ~hostMask) ^ Long.MIN_VALUE;
+            ends6[size6] = (high | hostMask) ^ Long.MIN_VALUE;
+            size6++;
+            return true;
+        }
+        
+        public int getInvalidLines() {
+            return invalidLines;
+        }
+        
+        /**
+         * Количество добавленных записей до объединения
+         */
+        public int getEntries() {
+            return size4 + size6;
+        }
+        
+        /**
+         * Сортирует и объединяет пересекающиеся и смежные диапазоны
+         */
+        public IPRangeSet build() {
+            if (size4 == 0 && size6 == 0) {
+                return EMPTY;
+            }
+            long[][] ipv4 = merge(starts4, ends4, size4);
+            long[][] ipv6 = merge(starts6, ends6, size6);
+            return new IPRangeSet(ipv4[0], ipv4[1], ipv6[0], ipv6[1]);
+        }
+        
+        /**
+         * Объединение через независимую сортировку начал и концов:
+         * покрытие точки зависит только от количества начал и концов до нее
+         */
+        private static long[][] merge(long[] starts, long[] ends, int size) {
+            long[] sortedStarts = Arrays.copyOf(starts, size);
+            long[] sortedEnds = Arrays.copyOf(ends, size);
+            Arrays.sort(sortedStarts);
+            Arrays.sort(sortedEnds);
+            
+            int count = 0;
+            int i = 0;
+            while (i < size) {
+                long start = sortedStarts[i];
+                while (i + 1 < size && (sortedEnds[i] == Long.MAX_VALUE || sortedStarts[i + 1] <= sortedEnds[i] + 1)) {
+                    i++;
+                }
+                // Результат пишется поверх уже прочитанных элементов
+                sortedStarts[count] = start;
+                sortedEnds[count] = sortedEnds[i];
+                count++;
+                i++;
+            }
+            return new long[][] {Arrays.copyOf(sortedStarts, count), Arrays.copyOf(sortedEnds, count)};
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.s1steam.veloauth.api.registry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 /**
  * Thread-safe registry for tracking authenticated players
@@ -10,6 +11,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class AuthRegistry {
     
     private final Set<UUID> authenticatedPlayers;
+    private volatile BiConsumer<UUID, Boolean> changeListener = (playerId, authenticated) -> { };
     
     public AuthRegistry() {
         this.authenticatedPlayers = ConcurrentHashMap.newKeySet();
@@ -20,7 +22,9 @@ public class AuthRegistry {
      * @param playerId UUID of the player
      */
     public void addAuthenticatedPlayer(UUID playerId) {
-        authenticatedPlayers.add(playerId);
+        if (authenticatedPlayers.add(playerId)) {
+            changeListener.accept(playerId, true);
+        }
     }
     
     /**
@@ -28,7 +32,18 @@ public class AuthRegistry {
      * @param playerId UUID of the player
      */
     public void removeAuthenticatedPlayer(UUID playerId) {
-        authenticatedPlayers.remove(playerId);
+        if (authenticatedPlayers.remove(playerId)) {
+            changeListener.accept(playerId, false);
+        }
+    }
+    
+    /**
+     * Set the listener notified when a player is added to or removed from the registry
+     * Not called by {@link #clear()}
+     * @param listener receives the player UUID and whether the player is now authenticated
+     */
+    public void setChangeListener(BiConsumer<UUID, Boolean> listener) {
+        this.changeListener = listener;
     }
     
     /**
@@ -0,0 +1,211 @@
+package com.s1steam.veloauth.api.registry;
+
+import com.s1steam.veloauth.api.time.TimeSource;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived session resume tokens held at the proxy
+ * <p>
+ * A token is issued when an authenticated player disconnects and lets the same player
+ * reconnecting from the same IP within the window be marked authenticated without going
+ * through the backend login again. Tokens are bound to the UUID and IP, signed with
+ * HMAC-SHA256 and single-use. The signature lets tokens be saved to disk across a proxy
+ * restart without the file becoming a way to forge or extend sessions.
+ */
+public class SessionResumeTokens {
+    
+    private static final String ALGORITHM = "HmacSHA256";
+    
+    // Truncated HMAC bytes kept per token
+    private static final int SIGNATURE_BYTES = 16;
+    
+    private static final HexFormat HEX = HexFormat.of();
+    
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+    private final long ttlMs;
+    private final int capacity;
+    private final TimeSource timeSource;
+    private final Map<UUID, Token> tokens = new ConcurrentHashMap<>();
+    
+    /**
+     * @param secret Signing key (empty - random key, tokens do not survive a restart)
+     * @param ttlMs How long a token stays valid after the disconnect
+     * @param capacity Maximum number of tokens held at once
+     * @param timeSource Clock for issuing and checking expiry
+     */
+    public SessionResumeTokens(byte[] secret, long ttlMs, int capacity, TimeSource timeSource) {
+        if (ttlMs <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid session resume parameters");
+        }
+        byte[] keyBytes = secret;
+        if (keyBytes == null || keyBytes.length == 0) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+        this.ttlMs = ttlMs;
+        this.capacity = capacity;
+        this.timeSource = timeSource;
+    }
+    
+    /**
+     * Create tokens signed with a key from the configuration
+     */
+    public static SessionResumeTokens fromSecret(String secret, long ttlMs, int capacity, TimeSource timeSource) {
+        return new SessionResumeTokens(secret.getBytes(StandardCharsets.UTF_8), ttlMs, capacity, timeSource);
+    }
+    
+    /**
+     * Issue a token for a player who disconnected while authenticated
+     * A newer token replaces the previous one of the same player
+     *
+     * @return false if the token table is full of unexpired tokens
+     */
+    public boolean issue(UUID playerId, String ip) {
+        long now = timeSource.currentTimeMillis();
+        if (tokens.size() >= capacity && !tokens.containsKey(playerId) && purgeExpired() == 0) {
+            return false;
+        }
+        long expiresAt = now + ttlMs;
+        tokens.put(playerId, new Token(ip, expiresAt, sign(playerId, ip, expiresAt)));
+        return true;
+    }
+    
+    /**
+     * Consume the token of a reconnecting player
+     *
+     * @return true if the player had an unexpired token issued for this IP
+     */
+    public boolean resume(UUID playerId, String ip) {
+        Token token = tokens.remove(playerId);
+        return token != null && token.isValidFor(ip, timeSource.currentTimeMillis()) && verify(playerId, token);
+    }
+    
+    /**
+     * Drop expired tokens
+     *
+     * @return number of tokens removed
+     */
+    public int purgeExpired() {
+        long now = timeSource.currentTimeMillis();
+        int before = tokens.size();
+        tokens.values().removeIf(token -> token.expiresAt <= now);
+        return Math.max(0, before - tokens.size());
+    }
+    
+    /**
+     * Number of tokens currently held
+     */
+    public int size() {
+        return tokens.size();
+    }
+    
+    /**
+     * Write unexpired tokens to a file, one token per line
+     */
+    public void save(Path path) throws IOException {
+        long now = timeSource.currentTimeMillis();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<UUID, Token> entry : tokens.entrySet()) {
+                Token token = entry.getValue();
+                if (token.expiresAt > now) {
+                    writer.write(entry.getKey() + " " + token.ip + " " + token.expiresAt + " " +
+                        HEX.formatHex(token.signature));
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Read tokens saved by {@link #save(Path)}
+     * Expired, malformed and wrongly signed lines are skipped
+     *
+     * @return number of tokens loaded
+     */
+    public int load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long now = timeSource.currentTimeMillis();
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null && tokens.size() < capacity) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 4) {
+                    continue;
+                }
+                try {
+                    UUID playerId = UUID.fromString(parts[0]);
+                    Token token = new Token(parts[1], Long.parseLong(parts[2]), HEX.parseHex(parts[3]));
+                    if (token.expiresAt > now && token.expiresAt <= now + ttlMs && verify(playerId, token)) {
+                        tokens.put(playerId, token);
+                        loaded++;
+                    }
+                } catch (IllegalArgumentException ignored) {
+                    // Malformed line
+                }
+            }
+        }
+        return loaded;
+    }
+    
+    private boolean verify(UUID playerId, Token token) {
+        return MessageDigest.isEqual(token.signature, sign(playerId, token.ip, token.expiresAt));
+    }
+    
+    private byte[] sign(UUID playerId, String ip, long expiresAt) {
+        Mac hmac = mac.get();
+        hmac.update((playerId + "|" + ip + "|" + expiresAt).getBytes(StandardCharsets.UTF_8));
+        return Arrays.copyOf(hmac.doFinal(), SIGNATURE_BYTES);
+    }
+    
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+    
+    private static final class Token {
+        
+        private final String ip;
+        private final long expiresAt;
+        private final byte[] signature;
+        
+        private Token(String ip, long expiresAt, byte[] signature) {
+            this.ip = ip;
+            this.expiresAt = expiresAt;
+            this.signature = signature;
+        }
+        
+        private boolean isValidFor(String ip, long now) {
+            return expiresAt > now && this.ip.equals(ip);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.s1steam.veloauth.api.routing;
+
+/**
+ * Автомат доступности сервера по результатам проверок
+ * CLOSED - сервер доступен; после failureThreshold неудач подряд - OPEN,
+ * сервер исключается из выбора на openDuration. Затем одна пробная проверка
+ * (HALF_OPEN): успех возвращает CLOSED, неудача - снова OPEN
+ */
+public final class CircuitBreaker {
+    
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+    
+    private final int failureThreshold;
+    private final long openDurationMs;
+    
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    
+    /**
+     * @param failureThreshold Количество неудач подряд до исключения сервера
+     * @param openDurationMs Время исключения до пробной проверки
+     */
+    public CircuitBreaker(int failureThreshold, long openDurationMs) {
+        if (failureThreshold <= 0 || openDurationMs < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker parameters");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+    }
+    
+    /**
+     * Можно ли направлять игроков на сервер
+     */
+    public synchronized boolean isAvailable() {
+        return state == State.CLOSED;
+    }
+    
+    /**
+     * Можно ли сейчас проверить сервер
+     * Для исключенного сервера по истечении openDuration разрешает одну пробную проверку
+     */
+    public synchronized boolean tryProbe(long now) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt >= openDurationMs) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // Пробная проверка уже идет
+                return false;
+        }
+    }
+    
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+    }
+    
+    public synchronized void recordFailure(long now) {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = now;
+        }
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+}
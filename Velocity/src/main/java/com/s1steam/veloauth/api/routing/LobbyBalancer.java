@@ -0,0 +1,215 @@
+package com.s1steam.veloauth.api.routing;
+
+import com.s1steam.veloauth.api.time.TimeSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Выбор сервера авторизации из пула для неавторизованных игроков
+ * Доступность каждого сервера ведет {@link CircuitBreaker} по фоновым проверкам,
+ * число игроков берется из последней проверки, поэтому выбор не ждет сети.
+ * Игроки, направленные на сервер после проверки, учитываются до следующей проверки,
+ * чтобы волна входов не ушла на один сервер между замерами
+ */
+public final class LobbyBalancer {
+    
+    public enum Strategy {
+        /**
+         * Сервер с наименьшим числом игроков на единицу веса
+         */
+        LEAST_CONNECTIONS,
+        /**
+         * По очереди пропорционально весам (smooth weighted round-robin)
+         */
+        WEIGHTED;
+        
+        /**
+         * @param name least-connections или weighted
+         */
+        public static Strategy fromName(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+    
+    private final List<Lobby> lobbies;
+    private final Strategy strategy;
+    private final TimeSource timeSource;
+    
+    /**
+     * @param lobbies Серверы и их веса (положительные)
+     * @param failureThreshold Неудачных проверок подряд до исключения сервера
+     * @param openDurationMs Время исключения сервера до повторной проверки
+     */
+    public LobbyBalancer(Map<String, Integer> lobbies, Strategy strategy,
+                         int failureThreshold, long openDurationMs, TimeSource timeSource) {
+        if (lobbies.isEmpty()) {
+            throw new IllegalArgumentException("Lobby pool must not be empty");
+        }
+        List<Lobby> compiled = new ArrayList<>(lobbies.size());
+        for (Map.Entry<String, Integer> entry : lobbies.entrySet()) {
+            if (entry.getValue() <= 0) {
+                throw new IllegalArgumentException("Lobby weight must be positive: " + entry.getKey());
+            }
+            compiled.add(new Lobby(entry.getKey(), entry.getValue(), new CircuitBreaker(failureThreshold, openDurationMs)));
+        }
+        this.lobbies = Collections.unmodifiableList(compiled);
+        this.strategy = strategy;
+        this.timeSource = timeSource;
+    }
+    
+    /**
+     * Выбирает сервер для очередного игрока
+     *
+     * @return Имя сервера или null, если недоступны все серверы пула
+     */
+    public String choose() {
+        Lobby chosen = strategy == Strategy.WEIGHTED ? nextWeighted() : leastLoaded();
+        if (chosen == null) {
+            return null;
+        }
+        chosen.assigned.incrementAndGet();
+        return chosen.name;
+    }
+    
+    /**
+     * Запускает проверку серверов, которые сейчас можно проверять
+     * Исключенные серверы проверяются только по истечении времени исключения
+     *
+     * @param pinger Асинхронная проверка сервера по имени, возвращает число игроков
+     */
+    public void checkHealth(Function<String, CompletableFuture<Integer>> pinger) {
+        for (Lobby lobby : lobbies) {
+            if (!lobby.breaker.tryProbe(timeSource.currentTimeMillis())) {
+                continue;
+            }
+            CompletableFuture<Integer> ping;
+            try {
+                ping = pinger.apply(lobby.name);
+            } catch (RuntimeException e) {
+                ping = CompletableFuture.failedFuture(e);
+            }
+            ping.whenComplete((players, error) -> {
+                if (error == null && players != null) {
+                    lobby.players = players;
+                    lobby.assigned.set(0);
+                    lobby.breaker.recordSuccess();
+                } else {
+                    lobby.breaker.recordFailure(timeSource.currentTimeMillis());
+                }
+            });
+        }
+    }
+    
+    /**
+     * Доступен ли хотя бы один сервер пула
+     */
+    public boolean isAnyAvailable() {
+        for (Lobby lobby : lobbies) {
+            if (lobby.breaker.isAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public CircuitBreaker.State getState(String name) {
+        for (Lobby lobby : lobbies) {
+            if (lobby.name.equals(name)) {
+                return lobby.breaker.getState();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Оценка числа игроков сервера: последний замер плюс направленные после него
+     */
+    public int getLoad(String name) {
+        for (Lobby lobby : lobbies) {
+            if (lobby.name.equals(name)) {
+                return lobby.load();
+            }
+        }
+        return 0;
+    }
+    
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(lobbies.size());
+        for (Lobby lobby : lobbies) {
+            names.add(lobby.name);
+        }
+        return names;
+    }
+    
+    public Strategy getStrategy() {
+        return strategy;
+    }
+    
+    private Lobby leastLoaded() {
+        Lobby best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Lobby lobby : lobbies) {
+            if (!lobby.breaker.isAvailable()) {
+                continue;
+            }
+            double score = (double) lobby.load() / lobby.weight;
+            if (score < bestScore) {
+                best = lobby;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+    
+    private synchronized Lobby nextWeighted() {
+        Lobby best = null;
+        int total = 0;
+        for (Lobby lobby : lobbies) {
+            if (!lobby.breaker.isAvailable()) {
+                continue;
+            }
+            lobby.current += lobby.weight;
+            total += lobby.weight;
+            if (best == null || lobby.current > best.current) {
+                best = lobby;
+            }
+        }
+        if (best != null) {
+            best.current -= total;
+        }
+        return best;
+    }
+    
+    private static final class Lobby {
+        
+        private final String name;
+        private final int weight;
+        private final CircuitBreaker breaker;
+        
+        // Игроков по последней успешной проверке
+        private volatile int players;
+        
+        // Направлено после последней проверки
+        private final AtomicInteger assigned = new AtomicInteger();
+        
+        // Текущий вес очереди (только под блокировкой балансировщика)
+        private int current;
+        
+        private Lobby(String name, int weight, CircuitBreaker breaker) {
+            this.name = name;
+            this.weight = weight;
+            this.breaker = breaker;
+        }
+        
+        private int load() {
+            return players + assigned.get();
+        }
+    }
+}
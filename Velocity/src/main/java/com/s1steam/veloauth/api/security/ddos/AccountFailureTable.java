@@ -0,0 +1,208 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+/**
+ * Счетчики неудачных входов по аккаунтам в таблице фиксированного размера
+ * Ключ - 64-битный хэш ника в нижнем регистре, счетчик затухает экспоненциально
+ * лениво при обращении. При заполнении вытесняется запись с наименьшим счетчиком
+ * среди проб, поэтому память не зависит от количества перебираемых ников.
+ * Не потокобезопасна - экземпляр принадлежит одному шарду
+ */
+public final class AccountFailureTable {
+    
+    private static final double LN2 = Math.log(2);
+    
+    // Максимальная длина цепочки проб при поиске ячейки
+    private static final int MAX_PROBES = 8;
+    
+    // Пустая ячейка (хэш 0 заменяется на 1)
+    private static final long EMPTY = 0;
+    
+    private final long[] keys;
+    private final double[] failures;
+    private final long[] decayedAt;
+    private final long[] lockedUntil;
+    private final long[] lastAttempt;
+    private final int mask;
+    
+    /**
+     * @param capacity Количество ячеек, округляется вверх до степени двойки
+     */
+    public AccountFailureTable(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(MAX_PROBES, capacity));
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.keys = new long[slots];
+        this.failures = new double[slots];
+        this.decayedAt = new long[slots];
+        this.lockedUntil = new long[slots];
+        this.lastAttempt = new long[slots];
+        this.mask = slots - 1;
+    }
+    
+    /**
+     * Регистрирует неудачную попытку входа в аккаунт
+     *
+     * @param username Ник в нижнем регистре
+     * @param now Текущее время
+     * @param halfLifeMs Период полураспада счетчика (0 - без затухания)
+     * @return Счетчик неудач после затухания, включая эту попытку
+     */
+    public double recordFailure(String username, long now, long halfLifeMs) {
+        int slot = findOrCreate(key(username), now, halfLifeMs);
+        decay(slot, now, halfLifeMs);
+        failures[slot] += 1;
+        return failures[slot];
+    }
+    
+    /**
+     * Текущий счетчик неудач аккаунта с учетом затухания
+     */
+    public double getFailures(String username, long now, long halfLifeMs) {
+        int slot = find(key(username));
+        if (slot < 0) {
+            return 0;
+        }
+        decay(slot, now, halfLifeMs);
+        return failures[slot];
+    }
+    
+    /**
+     * Блокирует вход в аккаунт до указанного времени
+     * Аккаунт без записи не блокируется - блокировка следует за неудачами
+     */
+    public void lock(String username, long until) {
+        int slot = find(key(username));
+        if (slot >= 0) {
+            lockedUntil[slot] = until;
+        }
+    }
+    
+    /**
+     * @return Время окончания блокировки аккаунта (0 если аккаунт не блокировался)
+     */
+    public long getLockedUntil(String username) {
+        int slot = find(key(username));
+        return slot < 0 ? 0 : lockedUntil[slot];
+    }
+    
+    /**
+     * Пропускает попытку входа не чаще раза в интервал
+     *
+     * @return true если попытка разрешена (время попытки запоминается)
+     */
+    public boolean tryAttempt(String username, long now, long intervalMs) {
+        int slot = find(key(username));
+        if (slot < 0) {
+            return true;
+        }
+        if (now - lastAttempt[slot] < intervalMs) {
+            return false;
+        }
+        lastAttempt[slot] = now;
+        return true;
+    }
+    
+    /**
+     * @return Время последней пропущенной попытки (0 если попыток не было)
+     */
+    public long getLastAttempt(String username) {
+        int slot = find(key(username));
+        return slot < 0 ? 0 : lastAttempt[slot];
+    }
+    
+    /**
+     * Сбрасывает счетчик и блокировку аккаунта
+     *
+     * @return true если запись существовала
+     */
+    public boolean reset(String username) {
+        int slot = find(key(username));
+        if (slot < 0) {
+            return false;
+        }
+        clear(slot);
+        return true;
+    }
+    
+    /**
+     * Количество аккаунтов с активной блокировкой
+     */
+    public int countLocked(long now) {
+        int locked = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] != EMPTY && lockedUntil[slot] > now) {
+                locked++;
+            }
+        }
+        return locked;
+    }
+    
+    private int find(long key) {
+        int start = (int) (key ^ (key >>> 32));
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Находит ячейку ключа или занимает пустую либо наименее важную среди проб
+     */
+    private int findOrCreate(long key, long now, long halfLifeMs) {
+        int start = (int) (key ^ (key >>> 32));
+        int victim = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                if (victim < 0 || keys[victim] != EMPTY) {
+                    victim = slot;
+                }
+                continue;
+            }
+            if (victim >= 0 && keys[victim] == EMPTY) {
+                continue;
+            }
+            // Заблокированные аккаунты вытесняются последними
+            decay(slot, now, halfLifeMs);
+            if (victim < 0 || weight(slot, now) < weight(victim, now)) {
+                victim = slot;
+            }
+        }
+        clear(victim);
+        keys[victim] = key;
+        decayedAt[victim] = now;
+        return victim;
+    }
+    
+    private double weight(int slot, long now) {
+        return lockedUntil[slot] > now ? Double.MAX_VALUE : failures[slot];
+    }
+    
+    private void decay(int slot, long now, long halfLifeMs) {
+        long elapsed = now - decayedAt[slot];
+        if (halfLifeMs > 0 && elapsed > 0) {
+            failures[slot] *= Math.exp(-LN2 * elapsed / halfLifeMs);
+        }
+        decayedAt[slot] = Math.max(decayedAt[slot], now);
+    }
+    
+    private void clear(int slot) {
+        keys[slot] = EMPTY;
+        failures[slot] = 0;
+        decayedAt[slot] = 0;
+        lockedUntil[slot] = 0;
+        lastAttempt[slot] = 0;
+    }
+    
+    private static long key(String username) {
+        long hash = Hashing.hash64(username);
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -0,0 +1,121 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Групповой счетчик событий с фиксированным окном (по стране, ASN)
+ * Ключи - положительные целые числа, хранятся в открытой адресации в примитивных
+ * массивах. Ячейка счетчика - один long (номер окна << 32 | количество),
+ * обновляется через CAS, поэтому счетчик разделяется всеми шардами без блокировок
+ */
+public final class AggregateLimiter {
+    
+    // Максимальная длина цепочки проб при поиске ячейки
+    private static final int MAX_PROBES = 8;
+    
+    private final long windowMs;
+    private final AtomicIntegerArray keys;
+    private final AtomicLongArray counters;
+    private final int mask;
+    
+    /**
+     * @param capacity Количество ячеек, округляется вверх до степени двойки
+     * @param windowMs Размер окна в миллисекундах
+     */
+    public AggregateLimiter(int capacity, long windowMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + windowMs);
+        }
+        int slots = Integer.highestOneBit(Math.max(1, capacity));
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.windowMs = windowMs;
+        this.keys = new AtomicIntegerArray(slots);
+        this.counters = new AtomicLongArray(slots);
+        this.mask = slots - 1;
+    }
+    
+    /**
+     * Регистрирует событие для ключа (любой поток)
+     *
+     * @param key Положительный ключ (код страны, номер ASN)
+     * @param now Текущее время в миллисекундах
+     * @return Количество событий ключа в текущем окне или 0, если для ключа нет свободной ячейки
+     */
+    public int increment(int key, long now) {
+        long window = (now / windowMs) & 0xFFFFFFFFL;
+        int slot = slotFor(key, window);
+        if (slot < 0) {
+            return 0;
+        }
+        
+        while (true) {
+            long current = counters.get(slot);
+            long next = (current >>> 32) == window ? current + 1 : (window << 32) | 1;
+            if (counters.compareAndSet(slot, current, next)) {
+                return (int) next;
+            }
+        }
+    }
+    
+    /**
+     * Количество событий ключа в текущем окне
+     */
+    public int count(int key, long now) {
+        long window = (now / windowMs) & 0xFFFFFFFFL;
+        int slot = mix(key) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            if (keys.get(slot) == key) {
+                long current = counters.get(slot);
+                return (current >>> 32) == window ? (int) current : 0;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+    
+    /**
+     * Находит или занимает ячейку ключа
+     * Ячейка ключа без событий в текущем окне может быть передана другому ключу
+     */
+    private int slotFor(int key, long window) {
+        int slot = mix(key) & mask;
+        int reusable = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int existing = keys.get(slot);
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == 0) {
+                if (keys.compareAndSet(slot, 0, key)) {
+                    return slot;
+                }
+                if (keys.get(slot) == key) {
+                    return slot;
+                }
+            } else if (reusable < 0 && (counters.get(slot) >>> 32) != window) {
+                reusable = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        if (reusable >= 0) {
+            int existing = keys.get(reusable);
+            if ((counters.get(reusable) >>> 32) != window && keys.compareAndSet(reusable, existing, key)) {
+                return reusable;
+            }
+        }
+        return -1;
+    }
+    
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+    
+    public long getWindowMs() {
+        return windowMs;
+    }
+}
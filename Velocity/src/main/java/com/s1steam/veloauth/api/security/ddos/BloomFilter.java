@@ -0,0 +1,79 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для строковых ключей (IP адресов)
+ * Отрицательный ответ точен, положительный - с вероятностью ложного срабатывания ~1%
+ * при заполнении до расчетной емкости. Биты хранятся в AtomicLongArray и выставляются
+ * через CAS, поэтому проверка без блокировок и аллокаций возможна из любого потока.
+ * Удаление не поддерживается - фильтр перестраивается владельцем
+ */
+public final class BloomFilter {
+    
+    // 10 бит на ключ и 4 хэш-функции дают ~1.2% ложных срабатываний
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 4;
+    private static final int MIN_BITS = 1 << 12;
+    
+    private final AtomicLongArray words;
+    private final int mask;
+    private final int capacity;
+    
+    /**
+     * @param capacity Расчетное количество ключей
+     */
+    public BloomFilter(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        long wanted = Math.max(MIN_BITS, (long) capacity * BITS_PER_KEY);
+        int bits = (int) Math.min(1 << 30, Long.highestOneBit(wanted - 1) << 1);
+        this.words = new AtomicLongArray(bits >>> 6);
+        this.mask = bits - 1;
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Добавляет ключ
+     */
+    public void add(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            int index = bit >>> 6;
+            long flag = 1L << bit;
+            long word = words.get(index);
+            while ((word & flag) == 0 && !words.compareAndSet(index, word, word | flag)) {
+                word = words.get(index);
+            }
+        }
+    }
+    
+    /**
+     * Проверяет ключ
+     *
+     * @return false если ключ точно не добавлялся
+     */
+    public boolean mightContain(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Расчетное количество ключей, после которого фильтр стоит перестроить
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
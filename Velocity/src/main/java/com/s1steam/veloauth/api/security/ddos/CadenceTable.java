@@ -0,0 +1,141 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+/**
+ * Потоковая модель интервалов между подключениями по ключу (IP, подсеть)
+ * На ключ хранится время последнего подключения, количество интервалов,
+ * их среднее и дисперсия. Первые 8 интервалов усредняются точно,
+ * дальше - с экспоненциальным весом, поэтому история событий не хранится.
+ * Боты переподключаются с почти постоянным интервалом - отношение
+ * стандартного отклонения к среднему у них намного меньше, чем у людей.
+ * Не потокобезопасна - экземпляр принадлежит одному шарду
+ */
+public final class CadenceTable {
+    
+    // Вес нового интервала после набора статистики (1/8)
+    private static final int EWMA_SAMPLES = 8;
+    
+    // Максимальная длина цепочки проб при поиске ячейки
+    private static final int MAX_PROBES = 8;
+    
+    // Пустая ячейка (хэш 0 заменяется на 1)
+    private static final long EMPTY = 0;
+    
+    private final long[] keys;
+    private final long[] lastArrival;
+    private final int[] samples;
+    private final double[] mean;
+    private final double[] variance;
+    private final int mask;
+    
+    /**
+     * @param capacity Количество ячеек, округляется вверх до степени двойки
+     */
+    public CadenceTable(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(MAX_PROBES, capacity));
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.keys = new long[slots];
+        this.lastArrival = new long[slots];
+        this.samples = new int[slots];
+        this.mean = new double[slots];
+        this.variance = new double[slots];
+        this.mask = slots - 1;
+    }
+    
+    /**
+     * Учитывает подключение ключа
+     * Интервал длиннее maxIntervalMs начинает новую серию
+     *
+     * @param key IP адрес или подсеть
+     * @param now Время подключения
+     * @param maxIntervalMs Максимальный интервал, учитываемый в статистике
+     * @param minSamples Минимум интервалов для вывода о ритме
+     * @param maxVariation Порог отношения стандартного отклонения к среднему
+     * @return true если интервалы ключа подозрительно равномерны
+     */
+    public boolean record(String key, long now, long maxIntervalMs, int minSamples, double maxVariation) {
+        int slot = findOrCreate(hash(key));
+        long gap = now - lastArrival[slot];
+        boolean first = lastArrival[slot] == 0;
+        lastArrival[slot] = now;
+        if (first || gap < 0) {
+            return false;
+        }
+        if (gap > maxIntervalMs) {
+            samples[slot] = 0;
+            mean[slot] = 0;
+            variance[slot] = 0;
+            return false;
+        }
+        
+        // Точное среднее и дисперсия для первых интервалов, затем экспоненциальное сглаживание
+        int count = samples[slot] < Integer.MAX_VALUE ? ++samples[slot] : samples[slot];
+        double weight = 1.0 / Math.min(count, EWMA_SAMPLES);
+        double diff = gap - mean[slot];
+        mean[slot] += weight * diff;
+        variance[slot] = (1 - weight) * (variance[slot] + weight * diff * diff);
+        
+        // Всплеск в пределах одного тика часов - забота лимитов частоты, а не модели ритма
+        return count >= minSamples && mean[slot] > 0 && Math.sqrt(variance[slot]) <= maxVariation * mean[slot];
+    }
+    
+    /**
+     * Средний интервал ключа (0 если интервалов нет)
+     */
+    public double getMeanInterval(String key) {
+        int slot = find(hash(key));
+        return slot < 0 ? 0 : mean[slot];
+    }
+    
+    /**
+     * Количество интервалов текущей серии ключа
+     */
+    public int getSamples(String key) {
+        int slot = find(hash(key));
+        return slot < 0 ? 0 : samples[slot];
+    }
+    
+    private int find(long key) {
+        int start = (int) (key ^ (key >>> 32));
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Находит ячейку ключа или занимает пустую либо самую давнюю среди проб
+     */
+    private int findOrCreate(long key) {
+        int start = (int) (key ^ (key >>> 32));
+        int victim = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (start + probe) & mask;
+            if (keys[slot] == key) {
+                return slot;
+            }
+            if (keys[slot] == EMPTY) {
+                if (victim < 0 || keys[victim] != EMPTY) {
+                    victim = slot;
+                }
+            } else if (victim < 0 || (keys[victim] != EMPTY && lastArrival[slot] < lastArrival[victim])) {
+                victim = slot;
+            }
+        }
+        keys[victim] = key;
+        lastArrival[victim] = 0;
+        samples[victim] = 0;
+        mean[victim] = 0;
+        variance[victim] = 0;
+        return victim;
+    }
+    
+    private static long hash(String key) {
+        long hash = Hashing.hash64(key);
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -1,9 +1,15 @@
 package com.s1steam.veloauth.api.security.ddos;
 
+import com.s1steam.veloauth.api.cluster.ReplicaDelta;
 import com.s1steam.veloauth.api.models.ConnectionCheckResult;
+import com.s1steam.veloauth.api.models.HeavyHitter;
 import com.s1steam.veloauth.api.models.IPReputationData;
+import com.s1steam.veloauth.api.models.TrafficCategory;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс для DDoS защиты
@@ -13,32 +19,97 @@ public interface DDoSProtection {
     
     /**
      * Проверяет можно ли разрешить подключение с данного IP
-     * 
+     *
      * @param ip IP адрес
      * @return Результат проверки подключения
      */
     CompletableFuture<ConnectionCheckResult> checkConnection(String ip);
     
+    /**
+     * Проверяет подключение с адресом сервера из handshake
+     * В режиме атаки новый IP получает результат {@link ConnectionCheckResult#challenge}:
+     * подключение нужно отклонить с просьбой переподключиться. Повторное подключение
+     * в течение двух интервалов или адрес вида токен.адрес_сервера проходит проверку
+     *
+     * @param ip IP адрес
+     * @param virtualHost Адрес сервера из handshake (null если неизвестен)
+     * @return Результат проверки подключения
+     */
+    CompletableFuture<ConnectionCheckResult> checkConnection(String ip, String virtualHost);
+    
     /**
      * Регистрирует попытку авторизации
-     * 
+     *
      * @param ip IP адрес
      * @param success Успешна ли попытка
      */
     CompletableFuture<Void> registerAuthAttempt(String ip, boolean success);
     
+    /**
+     * Регистрирует попытку авторизации игрока
+     *
+     * @param ip IP адрес
+     * @param username Ник игрока (null если неизвестен)
+     * @param success Успешна ли попытка
+     */
+    CompletableFuture<Void> registerAuthAttempt(String ip, String username, boolean success);
+    
+    /**
+     * Проверяет, можно ли пропустить попытку входа в аккаунт
+     * Учитывает неудачи по нику со всех IP: заблокированный аккаунт отклоняется,
+     * после порога неудач попытки пропускаются не чаще раза в интервал
+     *
+     * @param username Ник игрока
+     * @return Результат проверки (blocked - аккаунт заблокирован, rate limited - слишком часто)
+     */
+    CompletableFuture<ConnectionCheckResult> checkLoginAttempt(String username);
+    
+    /**
+     * Снимает блокировку и сбрасывает счетчик неудач аккаунта
+     *
+     * @param username Ник игрока
+     * @return true если по аккаунту были записи
+     */
+    CompletableFuture<Boolean> unlockAccount(String username);
+    
     /**
      * Проверяет лимит команд для игрока
-     * 
+     *
      * @param playerName Имя игрока
      * @param command Команда
      * @return true если команда разрешена
      */
     boolean checkCommandLimit(String playerName, String command);
     
+    /**
+     * Проверяет групповой лимит подключений с одинаковым отпечатком клиента
+     * Волна ботов с общим отпечатком ограничивается целиком, независимо от IP
+     * Вне режима атаки отпечаток только учитывается
+     *
+     * @param fingerprint Отпечаток из {@link com.s1steam.veloauth.api.models.ClientFingerprint}
+     * @return true если подключение укладывается в лимит
+     */
+    boolean checkFingerprint(String fingerprint);
+    
+    /**
+     * Проверяет лимит запросов статуса сервера (список серверов) для IP и его подсети
+     * Вызывается синхронно на каждый ping, поэтому стоит одного увеличения счетчика
+     *
+     * @param ip IP адрес
+     * @return true если запрос укладывается в лимит
+     */
+    boolean checkPing(String ip);
+    
+    /**
+     * Самые частые отпечатки клиентов за последнюю минуту
+     *
+     * @param limit Максимум записей
+     */
+    List<HeavyHitter> getTopFingerprints(int limit);
+    
     /**
      * Получает данные репутации IP
-     * 
+     *
      * @param ip IP адрес
      * @return Данные репутации или null
      */
@@ -46,7 +117,7 @@ public interface DDoSProtection {
     
     /**
      * Блокирует IP адрес
-     * 
+     *
      * @param ip IP адрес
      * @param durationMs Длительность блокировки в миллисекундах
      * @param reason Причина блокировки
@@ -55,42 +126,138 @@ public interface DDoSProtection {
     
     /**
      * Разблокирует IP адрес
-     * 
+     *
      * @param ip IP адрес
      */
     CompletableFuture<Void> unblockIP(String ip);
     
     /**
      * Добавляет IP в whitelist
-     * 
+     *
      * @param ip IP адрес
      */
     CompletableFuture<Void> whitelistIP(String ip);
     
     /**
      * Добавляет IP в blacklist
-     * 
+     *
      * @param ip IP адрес
      */
     CompletableFuture<Void> blacklistIP(String ip);
     
     /**
      * Удаляет IP из whitelist
-     * 
+     *
      * @param ip IP адрес
      */
     CompletableFuture<Void> removeFromWhitelist(String ip);
     
     /**
      * Удаляет IP из blacklist
-     * 
+     *
      * @param ip IP адрес
      */
     CompletableFuture<Void> removeFromBlacklist(String ip);
     
+    /**
+     * Применяет изменения whitelist пакетами, не задерживая проверки подключений
+     *
+     * @param added IP адреса для добавления
+     * @param removed IP адреса для удаления
+     */
+    CompletableFuture<Void> updateWhitelist(Collection<String> added, Collection<String> removed);
+    
+    /**
+     * Применяет изменения blacklist пакетами, не задерживая проверки подключений
+     *
+     * @param added IP адреса для добавления
+     * @param removed IP адреса для удаления
+     */
+    CompletableFuture<Void> updateBlacklist(Collection<String> added, Collection<String> removed);
+    
+    /**
+     * Перечитывает файл диапазонов хостингов/VPN в фоне и атомарно заменяет текущий набор
+     * Новые IP из этих диапазонов помечаются как VPN
+     *
+     * @return Количество диапазонов после объединения
+     */
+    CompletableFuture<Integer> reloadHostingRanges();
+    
+    /**
+     * Потоково перечитывает файлы внешних blocklist (IP или CIDR на строку) в фоне
+     * и атомарно заменяет текущий набор
+     * Подключения из этих диапазонов блокируются без создания записи репутации
+     *
+     * @return Количество диапазонов после объединения
+     */
+    CompletableFuture<Integer> reloadBlocklists();
+    
+    /**
+     * Начинает фоновую загрузку репутации IP из общего хранилища (storage.type: jdbc)
+     * Вызывается при рукопожатии, чтобы запись была в кэше к проверке подключения.
+     * Одновременные вызовы для одного IP ждут одну загрузку, checkConnection
+     * ждет незавершенную загрузку не дольше reputation-prefetch-timeout
+     *
+     * @return Завершается после загрузки (ошибка загрузки не передается)
+     */
+    CompletableFuture<Void> prefetchReputation(String ip);
+    
+    /**
+     * Загружает в кэш репутацию, сохраненную в хранилище (секция storage), в фоне
+     * Записи IP, уже появившихся в кэше после запуска, не перезаписываются
+     *
+     * @return Количество загруженных записей
+     */
+    CompletableFuture<Integer> loadReputations();
+    
+    /**
+     * Запускает репликацию блокировок и списков между прокси (секция cluster)
+     * Ничего не делает, если кластер отключен или репликация уже запущена
+     */
+    void startReplication();
+    
+    /**
+     * Задает получателя решений по IP: блокировок, разблокировок и изменений списков,
+     * локальных и полученных от других прокси. Вызывается в потоке шарда IP
+     *
+     * @param listener Получатель (версия изменения не используется)
+     */
+    void setVerdictListener(Consumer<ReplicaDelta> listener);
+    
+    /**
+     * Самые активные источники подключений или ошибок входа за последние минуты
+     * Счетчики приблизительные (оценка сверху), память не зависит от числа источников
+     *
+     * @param category Категория источников
+     * @param limit Максимальное количество записей
+     * @return Источники по убыванию активности
+     */
+    CompletableFuture<List<HeavyHitter>> getTopOffenders(TrafficCategory category, int limit);
+    
+    /**
+     * Получает список IP в whitelist
+     *
+     * @return Отсортированный список IP адресов
+     */
+    CompletableFuture<List<String>> getWhitelistedIPs();
+    
+    /**
+     * Получает список IP в blacklist
+     *
+     * @return Отсортированный список IP адресов
+     */
+    CompletableFuture<List<String>> getBlacklistedIPs();
+    
+    /**
+     * Получает список IP с активной блокировкой
+     *
+     * @return Отсортированный список IP адресов
+     */
+    CompletableFuture<List<String>> getBlockedIPs();
+    
     /**
      * Получает статистику DDoS защиты
-     * 
+     *
      * @return Строка со статистикой
      */
     String getStatistics();
@@ -99,4 +266,10 @@ public interface DDoSProtection {
      * Очищает устаревшие данные из кэша
      */
     void cleanup();
+    
+    /**
+     * Останавливает потоки защиты
+     * Используется при выключении плагина
+     */
+    void shutdown();
 }
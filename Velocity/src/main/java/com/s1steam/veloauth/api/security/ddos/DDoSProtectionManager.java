@@ -1,213 +1,631 @@
 package com.s1steam.veloauth.api.security.ddos;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.cluster.DistributedCounter;
+import com.s1steam.veloauth.api.cluster.GossipNode;
+import com.s1steam.veloauth.api.cluster.ReplicaDelta;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.config.DDoSSettings;
+import com.s1steam.veloauth.api.geoip.GeoIPResolver;
+import com.s1steam.veloauth.api.models.CountryCode;
+import com.s1steam.veloauth.api.models.BlockReason;
 import com.s1steam.veloauth.api.models.ConnectionCheckResult;
+import com.s1steam.veloauth.api.models.HeavyHitter;
 import com.s1steam.veloauth.api.models.IPReputationData;
+import com.s1steam.veloauth.api.models.TrafficCategory;
+import com.s1steam.veloauth.api.net.IPAddresses;
+import com.s1steam.veloauth.api.net.IPRangeSet;
 import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.storage.ReputationRecord;
+import com.s1steam.veloauth.api.storage.ReputationStore;
+import com.s1steam.veloauth.api.storage.WriteBehindStore;
+import com.s1steam.veloauth.api.time.CoarseTimeSource;
+import com.s1steam.veloauth.api.time.TimeSource;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Менеджер DDoS защиты
  * Реализует rate limiting, IP reputation tracking и блокировки
+ * Состояние IP разбито по хэшу на шарды по числу ядер, у каждого шарда
+ * свой поток-писатель, поэтому проверки разных IP не конкурируют
  */
 public class DDoSProtectionManager implements DDoSProtection {
     
+    // Размер пакета изменений списков - между пакетами шард обрабатывает проверки подключений
+    private static final int LIST_BATCH_SIZE = 512;
+    
+    // Счетчики уникальных источников: 256 регистров (~6.5% ошибки), 15 корзин по минуте
+    private static final int UNIQUE_PRECISION = 8;
+    private static final int UNIQUE_BUCKETS = 15;
+    private static final long UNIQUE_BUCKET_MS = 60_000L;
+    
+    // Отпечатки клиентов: максимум различных отпечатков и окно частоты
+    private static final int FINGERPRINT_CAPACITY = 4096;
+    private static final long FINGERPRINT_WINDOW_MS = 60_000L;
+    
+    // Ожидаемое количество проверок переподключением за интервал (фильтр ~80 КБ)
+    private static final int CHALLENGE_CAPACITY = 65536;
+    
+    // IP за минуту в общем счетчике подключений кластера (~2 МБ на окно)
+    private static final int CLUSTER_COUNTER_CAPACITY = 65536;
+    
+    // Одновременных загрузок репутации из общего хранилища, сверх них IP проверяется без загрузки
+    private static final int MAX_PREFETCHES = 1024;
+    
     private final VeloAuthAPI plugin;
     private final AuthRegistry authRegistry;
+    private final TimeSource timeSource;
+    private final GeoIPResolver geoIP;
+    private final ReputationStore store;
+    
+    // Групповые счетчики новых IP по стране и ASN (общие для всех шардов)
+    private final AggregateLimiter countryConnections;
+    private final AggregateLimiter asnConnections;
+    
+    // Уникальные источники за последние 1/5/15 минут (общие для всех шардов)
+    private final RollingHyperLogLog uniqueIPs;
+    private final RollingHyperLogLog uniquePrefixes;
+    private final RollingHyperLogLog uniqueUsernames;
+    
+    // Оценка уникальных IP за минуту для режима атаки (секунда << 32 | оценка),
+    // пересчитывается не чаще раза в секунду
+    private volatile long uniqueIPsPerMinute = -1;
+    
+    // Частота подключений по отпечаткам клиентов (общая для всех потоков),
+    // переполненная таблица заменяется новой на границе окна
+    private volatile FingerprintTracker fingerprints = new FingerprintTracker(FINGERPRINT_CAPACITY, FINGERPRINT_WINDOW_MS);
+    private final LongAdder fingerprintsLimited = new LongAdder();
+    
+    // Отклоненные запросы статуса сервера
+    private final LongAdder pingsLimited = new LongAdder();
+    
+    // Незавершенные загрузки репутации по IP: повторные запросы IP ждут одну загрузку
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> prefetches = new ConcurrentHashMap<>();
+    private final LongAdder prefetchesLoaded = new LongAdder();
+    private final LongAdder prefetchesSkipped = new LongAdder();
     
-    // Rate Limiting Caches
-    private final Cache<String, AtomicInteger> connectionsPerSecond;
-    private final Cache<String, AtomicInteger> connectionsPerMinute;
-    private final Cache<String, AtomicInteger> authAttemptsPerMinute;
-    private final Cache<String, AtomicInteger> commandsPerSecond;
+    // Проверка переподключением, пересоздается при смене секрета или интервала в конфигурации
+    private volatile ChallengeHolder challengeHolder;
+    private final LongAdder challengesIssued = new LongAdder();
+    private final LongAdder challengesPassed = new LongAdder();
     
-    // IP Reputation Cache (in-memory, синхронизируется с БД)
-    private final ConcurrentHashMap<String, IPReputationData> reputationCache;
+    // Диапазоны хостингов/VPN, заменяются целиком при перезагрузке файла
+    private volatile IPRangeSet hostingRanges = IPRangeSet.empty();
     
-    // Blocked IPs Cache
-    private final Cache<String, Long> blockedIPs;
+    // Импортированные внешние blocklist, заменяются целиком при перезагрузке файлов
+    private volatile IPRangeSet blocklist = IPRangeSet.empty();
     
-    // Configuration
-    private int maxConnectionsPerSecond;
-    private int maxConnectionsPerMinute;
-    private int maxAuthAttemptsPerMinute;
-    private int maxCommandsPerSecond;
-    private int minReputationForConnection;
-    private long baseBlockDuration;
-    private double backoffMultiplier;
+    // Узел репликации между прокси (null - кластер отключен)
+    private volatile GossipNode gossip;
     
-    // Statistics
-    private final AtomicInteger totalConnectionsBlocked;
-    private final AtomicInteger totalAuthAttemptsBlocked;
-    private final AtomicInteger totalCommandsBlocked;
+    // Получатель решений по IP (отправка на backend серверы)
+    private volatile Consumer<ReplicaDelta> verdictListener = delta -> { };
+    
+    // Подключения IP за минуту по всем прокси (null - лимит считается только локально)
+    private volatile DistributedCounter clusterConnections;
+    
+    // Шарды состояния (количество - степень двойки)
+    private final DDoSShard[] shards;
+    private final int shardMask;
     
     public DDoSProtectionManager(VeloAuthAPI plugin, AuthRegistry authRegistry) {
+        this(plugin, authRegistry, createTimeSource(plugin), Runtime.getRuntime().availableProcessors(),
+            GeoIPResolver.open(plugin), ReputationStore.open(plugin));
+    }
+    
+    public DDoSProtectionManager(VeloAuthAPI plugin, AuthRegistry authRegistry, TimeSource timeSource, int parallelism) {
+        this(plugin, authRegistry, timeSource, parallelism, GeoIPResolver.disabled());
+    }
+    
+    public DDoSProtectionManager(VeloAuthAPI plugin, AuthRegistry authRegistry, TimeSource timeSource, int parallelism,
+                                 GeoIPResolver geoIP) {
+        this(plugin, authRegistry, timeSource, parallelism, geoIP, ReputationStore.memory());
+    }
+    
+    /**
+     * @param timeSource Источник времени для всех проверок (ManualTimeSource в тестах)
+     * @param parallelism Желаемое количество шардов, округляется вверх до степени двойки
+     * @param geoIP Определение страны новых IP
+     * @param store Хранилище репутации между перезапусками
+     */
+    public DDoSProtectionManager(VeloAuthAPI plugin, AuthRegistry authRegistry, TimeSource timeSource, int parallelism,
+                                 GeoIPResolver geoIP, ReputationStore store) {
         this.plugin = plugin;
         this.authRegistry = authRegistry;
+        this.timeSource = timeSource;
+        this.geoIP = geoIP;
+        this.store = store;
+        this.countryConnections = new AggregateLimiter(CountryCode.COUNT * 2, 1000L);
+        this.asnConnections = new AggregateLimiter(8192, 1000L);
+        this.uniqueIPs = new RollingHyperLogLog(UNIQUE_PRECISION, UNIQUE_BUCKETS, UNIQUE_BUCKET_MS);
+        this.uniquePrefixes = new RollingHyperLogLog(UNIQUE_PRECISION, UNIQUE_BUCKETS, UNIQUE_BUCKET_MS);
+        this.uniqueUsernames = new RollingHyperLogLog(UNIQUE_PRECISION, UNIQUE_BUCKETS, UNIQUE_BUCKET_MS);
+        
+        int shardCount = Integer.highestOneBit(Math.max(1, parallelism));
+        if (shardCount < parallelism) {
+            shardCount <<= 1;
+        }
+        this.shards = new DDoSShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new DDoSShard(i);
+        }
+        this.shardMask = shardCount - 1;
+        
+        logConfiguration();
+        
+        plugin.getLogger().info("DDoS Protection Manager initialized (" + shardCount + " shards)");
+    }
+    
+    /**
+     * Текущие настройки из неизменяемого снимка конфигурации
+     * Каждая операция читает снимок один раз, поэтому перезагрузка
+     * конфигурации не может подменить лимиты посреди проверки
+     */
+    private DDoSSettings settings() {
+        return plugin.getConfigManager().getDDoSSettings();
+    }
+    
+    /**
+     * Выводит текущую конфигурацию в debug режиме
+     */
+    private void logConfiguration() {
+        if (plugin.getConfigManager().isDebugMode()) {
+            DDoSSettings settings = settings();
+            plugin.getLogger().info("DDoS Protection configuration loaded:");
+            plugin.getLogger().info("  Max connections/sec: " + settings.getMaxConnectionsPerSecond());
+            plugin.getLogger().info("  Max connections/min: " + settings.getMaxConnectionsPerMinute());
+            plugin.getLogger().info("  Max auth attempts/min: " + settings.getMaxAuthAttemptsPerMinute());
+            plugin.getLogger().info("  Min reputation: " + settings.getMinReputationForConnection());
+            plugin.getLogger().info("  Reputation half-life: " + settings.getReputationHalfLife() + "ms");
+        }
+    }
+    
+    @Override
+    public CompletableFuture<ConnectionCheckResult> checkConnection(String ip) {
+        return checkConnection(ip, null);
+    }
+    
+    @Override
+    public CompletableFuture<ConnectionCheckResult> checkConnection(String ip, String virtualHost) {
+        DDoSShard shard = shardFor(ip);
+        CompletableFuture<Void> prefetch = prefetches.get(ip);
+        if (prefetch == null || prefetch.isDone()) {
+            return shard.supply(() -> checkConnection(shard, ip, virtualHost));
+        }
+        // Загрузка не успела к проверке: ждем ограниченное время, затем проверяем с нейтральной репутацией
+        return prefetch.copy()
+                .completeOnTimeout(null, settings().getReputationPrefetchTimeout(), TimeUnit.MILLISECONDS)
+                .thenCompose(ignored -> shard.supply(() -> checkConnection(shard, ip, virtualHost)));
+    }
+    
+    @Override
+    public CompletableFuture<Void> prefetchReputation(String ip) {
+        if (!store.isShared()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> existing = prefetches.get(ip);
+        if (existing != null) {
+            return existing;
+        }
+        if (prefetches.size() >= MAX_PREFETCHES) {
+            prefetchesSkipped.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> loading = new CompletableFuture<>();
+        existing = prefetches.putIfAbsent(ip, loading);
+        if (existing != null) {
+            return existing;
+        }
+        
+        // IP уже в кэше - хранилище не читается
+        DDoSShard shard = shardFor(ip);
+        shard.supply(() -> shard.getReputation(ip) != null)
+                .thenCompose(cached -> cached ? CompletableFuture.<ReputationRecord>completedFuture(null) : store.load(ip))
+                .thenCompose(record -> record == null ? CompletableFuture.completedFuture(null) : shard.run(() -> {
+                    // Запись, созданная проверкой до окончания загрузки, новее сохраненной
+                    if (shard.getReputation(ip) == null) {
+                        record.applyTo(shard.getOrCreateReputation(ip));
+                        prefetchesLoaded.increment();
+                    }
+                }))
+                .whenComplete((ignored, ex) -> {
+                    prefetches.remove(ip, loading);
+                    if (ex != null && plugin.getConfigManager().isDebugMode()) {
+                        plugin.getLogger().warn("Failed to prefetch reputation of " + ip + ": " + ex.getMessage());
+                    }
+                    loading.complete(null);
+                });
+        return loading;
+    }
+    
+    /**
+     * Проверка подключения в потоке шарда
+     */
+    private ConnectionCheckResult checkConnection(DDoSShard shard, String ip, String virtualHost) {
+        DDoSSettings settings = settings();
+        long now = timeSource.currentTimeMillis();
+        shard.recordConnectionChecked(now);
+        shard.recordTraffic(TrafficCategory.CONNECTIONS_BY_IP, ip, now);
+        uniqueIPs.add(ip, now);
+        String prefix = IPAddresses.prefixOf(ip);
+        if (prefix != null) {
+            shard.recordTraffic(TrafficCategory.CONNECTIONS_BY_PREFIX, prefix, now);
+            uniquePrefixes.add(prefix, now);
+        }
+        boolean botPattern = settings.isBotDetectionEnabled() && detectBotPattern(shard, ip, prefix, settings, now);
         
-        // Initialize caches with Caffeine
-        this.connectionsPerSecond = Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofSeconds(1))
-                .build();
+        // Записи репутации есть только у IP с историей (входы, ошибки, списки, блокировки)
+        // Для нового IP запись не создается
+        IPReputationData reputation = shard.getReputation(ip);
         
-        this.connectionsPerMinute = Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofMinutes(1))
-                .build();
+        // 1. Проверка blacklist
+        // Внешние blocklist проверяются без создания записи репутации,
+        // ручной whitelist имеет приоритет над импортированными списками
+        if (blocklist.contains(ip) && (reputation == null || !reputation.isWhitelisted())) {
+            shard.recordConnectionBlocked();
+            return ConnectionCheckResult.blocked("IP is blacklisted", Long.MAX_VALUE);
+        }
         
-        this.authAttemptsPerMinute = Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofMinutes(1))
-                .build();
+        // Новый IP в режиме атаки сначала проходит проверку переподключением,
+        // до ее прохождения состояние IP не создается
+        if (reputation == null && settings.isReconnectChallengeEnabled() && isUnderAttack(settings, now)) {
+            ReconnectChallenge challenge = challenge(settings);
+            if (!challenge.verify(ip, virtualHost, now)) {
+                challengesIssued.increment();
+                return ConnectionCheckResult.challenge(challenge.issue(ip, now), challenge.expiresAt(now));
+            }
+            challengesPassed.increment();
+            reputation = shard.getOrCreateReputation(ip);
+        }
         
-        this.commandsPerSecond = Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofSeconds(1))
-                .build();
+        if (reputation == null) {
+            // Отметка VPN влияет на репутацию, поэтому IP из диапазонов хостингов получает запись
+            if (!botPattern && !hostingRanges.contains(ip)) {
+                return checkLimits(shard, ip, null, settings, now);
+            }
+            reputation = shard.getOrCreateReputation(ip);
+        }
+        prepareReputation(shard, reputation, now, settings);
         
-        this.blockedIPs = Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofHours(24))
-                .build();
+        if (reputation.isBlacklisted()) {
+            shard.recordConnectionBlocked();
+            return ConnectionCheckResult.blocked("IP is blacklisted", Long.MAX_VALUE);
+        }
         
-        this.reputationCache = new ConcurrentHashMap<>();
+        // 2. Проверка whitelist (пропускаем все проверки)
+        if (reputation.isWhitelisted()) {
+            return ConnectionCheckResult.allowed(100);
+        }
         
-        // Initialize statistics
-        this.totalConnectionsBlocked = new AtomicInteger(0);
-        this.totalAuthAttemptsBlocked = new AtomicInteger(0);
-        this.totalCommandsBlocked = new AtomicInteger(0);
+        // 3. Проверка активной блокировки
+        if (reputation.isBlocked(now)) {
+            shard.recordConnectionBlocked();
+            return ConnectionCheckResult.blocked(
+                reputation.getBlockReason(),
+                reputation.getBlockUntil()
+            );
+        }
         
-        // Load configuration
-        loadConfiguration();
+        // 3a. Равномерный ритм переподключений понижает репутацию
+        if (botPattern) {
+            shard.recordBotPattern();
+            reputation.recordBotPattern(now);
+            if (reputation.getReputation() < settings.getMinReputationForConnection()) {
+                reputation = blockConnection(shard, ip, reputation, settings, now, BlockReason.BOT_PATTERN);
+                return ConnectionCheckResult.blocked(BlockReason.BOT_PATTERN.getDescription(), reputation.getBlockUntil());
+            }
+            saveReputation(reputation);
+        }
         
-        plugin.getLogger().info("DDoS Protection Manager initialized");
+        return checkLimits(shard, ip, reputation, settings, now);
     }
     
     /**
-     * Загружает конфигурацию из config.yml
+     * Обновляет модели интервалов IP и его подсети
+     * Подсеть обновляется в таблице шарда по хэшу подсети - ритм виден и при ротации IP
+     *
+     * @return true если IP или подсеть переподключаются с равномерным ритмом
      */
-    private void loadConfiguration() {
-        this.maxConnectionsPerSecond = plugin.getConfigManager().getMaxConnectionsPerSecond();
-        this.maxConnectionsPerMinute = plugin.getConfigManager().getMaxConnectionsPerMinute();
-        this.maxAuthAttemptsPerMinute = plugin.getConfigManager().getMaxAuthAttemptsPerMinute();
-        this.maxCommandsPerSecond = plugin.getConfigManager().getMaxCommandsPerSecond();
-        this.minReputationForConnection = plugin.getConfigManager().getMinReputationForConnection();
-        this.baseBlockDuration = plugin.getConfigManager().getBaseBlockDuration();
-        this.backoffMultiplier = plugin.getConfigManager().getBackoffMultiplier();
+    private boolean detectBotPattern(DDoSShard shard, String ip, String prefix, DDoSSettings settings, long now) {
+        boolean regular = shard.recordIPArrival(ip, now, settings);
+        if (prefix != null && shardFor(prefix).recordPrefixArrival(prefix, now, settings)) {
+            regular = true;
+        }
+        return regular;
+    }
+    
+    /**
+     * Проверки репутации и лимитов (шаги 4-7)
+     *
+     * @param reputation Запись IP или null для IP без истории (нейтральная репутация)
+     */
+    private ConnectionCheckResult checkLimits(DDoSShard shard, String ip, IPReputationData reputation,
+                                              DDoSSettings settings, long now) {
+        int score = reputation != null ? reputation.getReputation() : IPReputationData.NEUTRAL_REPUTATION;
         
-        if (plugin.getConfigManager().isDebugMode()) {
-            plugin.getLogger().info("DDoS Protection configuration loaded:");
-            plugin.getLogger().info("  Max connections/sec: " + maxConnectionsPerSecond);
-            plugin.getLogger().info("  Max connections/min: " + maxConnectionsPerMinute);
-            plugin.getLogger().info("  Max auth attempts/min: " + maxAuthAttemptsPerMinute);
-            plugin.getLogger().info("  Min reputation: " + minReputationForConnection);
+        // 4. Проверка минимальной репутации
+        if (score < settings.getMinReputationForConnection()) {
+            reputation = blockConnection(shard, ip, reputation, settings, now, BlockReason.LOW_REPUTATION);
+            return ConnectionCheckResult.blocked("Low reputation score", reputation.getBlockUntil());
+        }
+        
+        // 5. Rate limiting - connections per second
+        if (shard.incrementConnectionsPerSecond(ip, now) > settings.getMaxConnectionsPerSecond()) {
+            reputation = blockConnection(shard, ip, reputation, settings, now, BlockReason.CONNECTIONS_PER_SECOND);
+            return ConnectionCheckResult.rateLimited(reputation.getBlockUntil());
+        }
+        
+        // 6. Rate limiting - connections per minute (по всему кластеру при общих лимитах)
+        int perMinute = shard.incrementConnectionsPerMinute(ip, now);
+        if (Math.max(perMinute, countClusterConnection(ip, now)) > settings.getMaxConnectionsPerMinute()) {
+            reputation = blockConnection(shard, ip, reputation, settings, now, BlockReason.CONNECTIONS_PER_MINUTE);
+            return ConnectionCheckResult.rateLimited(reputation.getBlockUntil());
+        }
+        
+        // 7. Групповые лимиты страны и ASN (без блокировки самого IP)
+        if (exceedsAggregateBudget(settings, ip, reputation, now)) {
+            shard.recordAggregateLimited();
+            return ConnectionCheckResult.rateLimited(now + 1000);
+        }
+        
+        // Подключение разрешено
+        return ConnectionCheckResult.allowed(score);
+    }
+    
+    /**
+     * Учитывает подключение в общем счетчике кластера
+     *
+     * @return Подключения IP за текущую минуту на всех прокси (0 без общих лимитов)
+     */
+    private long countClusterConnection(String ip, long now) {
+        DistributedCounter counter = clusterConnections;
+        return counter == null ? 0 : counter.increment(Hashing.hash64(ip), now);
+    }
+    
+    /**
+     * Подключения IP за текущую минуту на всех прокси, известные этому прокси (0 без общих лимитов)
+     */
+    long estimateClusterConnections(String ip) {
+        DistributedCounter counter = clusterConnections;
+        return counter == null ? 0 : counter.estimate(Hashing.hash64(ip), timeSource.currentTimeMillis());
+    }
+    
+    /**
+     * Блокирует IP с exponential backoff, создавая запись при первой блокировке
+     *
+     * @return Запись репутации с установленной блокировкой
+     */
+    private IPReputationData blockConnection(DDoSShard shard, String ip, IPReputationData reputation,
+                                             DDoSSettings settings, long now, BlockReason reason) {
+        if (reputation == null) {
+            reputation = readReputation(shard, ip, now, settings);
         }
+        shard.recordConnectionBlocked();
+        long blockDuration = calculateBlockDuration(settings, reputation, now);
+        block(reputation, blockDuration, reason, now);
+        saveReputation(reputation);
+        return reputation;
     }
     
     @Override
-    public CompletableFuture<ConnectionCheckResult> checkConnection(String ip) {
-        return CompletableFuture.supplyAsync(() -> {
-            // 1. Проверка blacklist
-            IPReputationData reputation = getOrCreateReputation(ip);
-            if (reputation.isBlacklisted()) {
-                totalConnectionsBlocked.incrementAndGet();
-                return ConnectionCheckResult.blocked("IP is blacklisted", Long.MAX_VALUE);
-            }
-            
-            // 2. Проверка whitelist (пропускаем все проверки)
-            if (reputation.isWhitelisted()) {
-                return ConnectionCheckResult.allowed(100);
+    public CompletableFuture<Void> registerAuthAttempt(String ip, boolean success) {
+        return registerAuthAttempt(ip, null, success);
+    }
+    
+    @Override
+    public CompletableFuture<Void> registerAuthAttempt(String ip, String username, boolean success) {
+        CompletableFuture<Void> byIP = registerIPAttempt(ip, username, success);
+        DDoSSettings settings = settings();
+        if (username == null || success || !settings.isAccountProtectionEnabled()) {
+            return byIP;
+        }
+        // Счетчик аккаунта живет в шарде ника - перебор одного ника с разных IP складывается
+        return CompletableFuture.allOf(byIP, registerAccountFailure(username.toLowerCase(Locale.ROOT), settings));
+    }
+    
+    private CompletableFuture<Void> registerIPAttempt(String ip, String username, boolean success) {
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            DDoSSettings settings = settings();
+            long now = timeSource.currentTimeMillis();
+            IPReputationData reputation = readReputation(shard, ip, now, settings);
+            uniqueIPs.add(ip, now);
+            if (username != null) {
+                uniqueUsernames.add(username.toLowerCase(Locale.ROOT), now);
             }
             
-            // 3. Проверка активной блокировки
-            if (reputation.isBlocked()) {
-                totalConnectionsBlocked.incrementAndGet();
-                return ConnectionCheckResult.blocked(
-                    reputation.getBlockReason(),
-                    reputation.getBlockUntil()
-                );
+            if (success) {
+                reputation.recordSuccessfulLogin(now);
+            } else {
+                reputation.recordFailedAttempt(now);
+                shard.recordTraffic(TrafficCategory.FAILURES_BY_IP, ip, now);
+                if (username != null) {
+                    shard.recordTraffic(TrafficCategory.FAILURES_BY_USERNAME, username.toLowerCase(Locale.ROOT), now);
+                }
+                
+                // Проверка rate limit на попытки авторизации
+                if (shard.incrementAuthAttempts(ip, now) > settings.getMaxAuthAttemptsPerMinute()) {
+                    shard.recordAuthAttemptBlocked();
+                    long blockDuration = calculateBlockDuration(settings, reputation, now);
+                    block(reputation, blockDuration, BlockReason.AUTH_FAILURES, now);
+                }
             }
             
-            // 4. Проверка минимальной репутации
-            if (reputation.getReputation() < minReputationForConnection) {
-                totalConnectionsBlocked.incrementAndGet();
-                long blockDuration = calculateBlockDuration(reputation.getFailedAttempts());
-                reputation.block(blockDuration, "Low reputation score");
-                saveReputation(reputation);
-                return ConnectionCheckResult.blocked("Low reputation score", reputation.getBlockUntil());
+            saveReputation(reputation);
+        });
+    }
+    
+    private CompletableFuture<Void> registerAccountFailure(String account, DDoSSettings settings) {
+        DDoSShard shard = shardFor(account);
+        return shard.run(() -> {
+            long now = timeSource.currentTimeMillis();
+            AccountFailureTable accounts = shard.getAccounts();
+            double failures = accounts.recordFailure(account, now, settings.getAccountFailureHalfLife());
+            if (failures >= settings.getAccountLockFailures() && accounts.getLockedUntil(account) <= now) {
+                accounts.lock(account, now + settings.getAccountLockDuration());
+                plugin.getLogger().warn("Locked account " + account + " for " +
+                    (settings.getAccountLockDuration() / 1000) + "s after " + Math.round(failures) + " failed logins");
             }
-            
-            // 5. Rate limiting - connections per second
-            AtomicInteger perSecond = connectionsPerSecond.get(ip, k -> new AtomicInteger(0));
-            if (perSecond.incrementAndGet() > maxConnectionsPerSecond) {
-                totalConnectionsBlocked.incrementAndGet();
-                long blockDuration = calculateBlockDuration(reputation.getFailedAttempts());
-                reputation.block(blockDuration, "Too many connections per second");
-                saveReputation(reputation);
-                return ConnectionCheckResult.rateLimited(reputation.getBlockUntil());
+        });
+    }
+    
+    @Override
+    public CompletableFuture<ConnectionCheckResult> checkLoginAttempt(String username) {
+        DDoSSettings settings = settings();
+        if (!settings.isAccountProtectionEnabled()) {
+            return CompletableFuture.completedFuture(ConnectionCheckResult.allowed(IPReputationData.NEUTRAL_REPUTATION));
+        }
+        String account = username.toLowerCase(Locale.ROOT);
+        DDoSShard shard = shardFor(account);
+        return shard.supply(() -> {
+            long now = timeSource.currentTimeMillis();
+            AccountFailureTable accounts = shard.getAccounts();
+            long lockedUntil = accounts.getLockedUntil(account);
+            if (lockedUntil > now) {
+                shard.recordLoginAttemptBlocked();
+                return ConnectionCheckResult.blocked("Account is locked", lockedUntil);
             }
             
-            // 6. Rate limiting - connections per minute
-            AtomicInteger perMinute = connectionsPerMinute.get(ip, k -> new AtomicInteger(0));
-            if (perMinute.incrementAndGet() > maxConnectionsPerMinute) {
-                totalConnectionsBlocked.incrementAndGet();
-                long blockDuration = calculateBlockDuration(reputation.getFailedAttempts());
-                reputation.block(blockDuration, "Too many connections per minute");
-                saveReputation(reputation);
-                return ConnectionCheckResult.rateLimited(reputation.getBlockUntil());
+            // После порога неудач - не больше одной попытки за интервал
+            long interval = settings.getAccountThrottleInterval();
+            if (accounts.getFailures(account, now, settings.getAccountFailureHalfLife()) >= settings.getAccountThrottleFailures()
+                    && !accounts.tryAttempt(account, now, interval)) {
+                shard.recordLoginAttemptBlocked();
+                return ConnectionCheckResult.rateLimited(accounts.getLastAttempt(account) + interval);
             }
-            
-            // Подключение разрешено
-            return ConnectionCheckResult.allowed(reputation.getReputation());
+            return ConnectionCheckResult.allowed(IPReputationData.NEUTRAL_REPUTATION);
         });
     }
     
     @Override
-    public CompletableFuture<Void> registerAuthAttempt(String ip, boolean success) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = getOrCreateReputation(ip);
-            
-            if (success) {
-                reputation.recordSuccessfulLogin();
-            } else {
-                reputation.recordFailedAttempt();
-                
-                // Проверка rate limit на попытки авторизации
-                AtomicInteger attempts = authAttemptsPerMinute.get(ip, k -> new AtomicInteger(0));
-                if (attempts.incrementAndGet() > maxAuthAttemptsPerMinute) {
-                    totalAuthAttemptsBlocked.incrementAndGet();
-                    long blockDuration = calculateBlockDuration(reputation.getFailedAttempts());
-                    reputation.block(blockDuration, "Too many failed auth attempts");
-                }
+    public CompletableFuture<Boolean> unlockAccount(String username) {
+        String account = username.toLowerCase(Locale.ROOT);
+        DDoSShard shard = shardFor(account);
+        return shard.supply(() -> {
+            boolean existed = shard.getAccounts().reset(account);
+            if (existed) {
+                plugin.getLogger().info("Unlocked account " + account);
             }
-            
-            saveReputation(reputation);
+            return existed;
         });
     }
     
     @Override
     public boolean checkCommandLimit(String playerName, String command) {
-        AtomicInteger commands = commandsPerSecond.get(playerName, k -> new AtomicInteger(0));
-        if (commands.incrementAndGet() > maxCommandsPerSecond) {
-            totalCommandsBlocked.incrementAndGet();
+        return shardFor(playerName).tryCommand(playerName, settings().getMaxCommandsPerSecond(), timeSource.currentTimeMillis());
+    }
+    
+    @Override
+    public boolean checkFingerprint(String fingerprint) {
+        DDoSSettings settings = settings();
+        if (!settings.isFingerprintLimitsEnabled() || settings.getMaxConnectionsPerFingerprint() <= 0) {
+            return true;
+        }
+        
+        long now = timeSource.currentTimeMillis();
+        FingerprintTracker tracker = fingerprints;
+        if (tracker.isExpired(now)) {
+            tracker = resetFingerprints(tracker);
+        }
+        // Отпечатки сверх таблицы учитываются и ограничиваются вместе под номером OVERFLOW
+        int id = tracker.intern(fingerprint);
+        double rate = tracker.record(id, now);
+        
+        // Обычная волна входов (например после рестарта) делит те же отпечатки,
+        // поэтому вне режима атаки отпечатки только учитываются
+        if (!isUnderAttack(settings, now)) {
+            return true;
+        }
+        if (rate > settings.getMaxConnectionsPerFingerprint() * settings.getAttackModeFactor()) {
+            fingerprintsLimited.increment();
             return false;
         }
         return true;
     }
     
+    /**
+     * Заменяет переполненную таблицу отпечатков, если ее еще не заменил другой поток
+     */
+    private synchronized FingerprintTracker resetFingerprints(FingerprintTracker expired) {
+        if (fingerprints == expired) {
+            fingerprints = new FingerprintTracker(FINGERPRINT_CAPACITY, FINGERPRINT_WINDOW_MS);
+        }
+        return fingerprints;
+    }
+    
+    @Override
+    public boolean checkPing(String ip) {
+        DDoSSettings settings = settings();
+        if (!settings.isPingProtectionEnabled()) {
+            return true;
+        }
+        
+        long now = timeSource.currentTimeMillis();
+        boolean allowed = settings.getMaxPingsPerIP() <= 0
+            || shardFor(ip).tryPing(ip, settings.getMaxPingsPerIP(), now);
+        String prefix = IPAddresses.prefixOf(ip);
+        if (allowed && prefix != null && settings.getMaxPingsPerPrefix() > 0) {
+            allowed = shardFor(prefix).tryPing(prefix, settings.getMaxPingsPerPrefix(), now);
+        }
+        if (!allowed) {
+            pingsLimited.increment();
+        }
+        return allowed;
+    }
+    
+    /**
+     * Проверка переподключением для текущих настроек
+     */
+    private ReconnectChallenge challenge(DDoSSettings settings) {
+        ChallengeHolder holder = challengeHolder;
+        if (holder == null || holder.timeSlice != settings.getChallengeTimeSlice()
+                || !holder.secret.equals(settings.getChallengeSecret())) {
+            holder = new ChallengeHolder(settings.getChallengeSecret(), settings.getChallengeTimeSlice());
+            challengeHolder = holder;
+        }
+        return holder.challenge;
+    }
+    
+    @Override
+    public List<HeavyHitter> getTopFingerprints(int limit) {
+        return fingerprints.top(limit, timeSource.currentTimeMillis());
+    }
+    
     @Override
     public CompletableFuture<IPReputationData> getIPReputation(String ip) {
-        return CompletableFuture.supplyAsync(() -> getOrCreateReputation(ip));
+        DDoSShard shard = shardFor(ip);
+        return shard.supply(() -> readReputation(shard, ip, timeSource.currentTimeMillis(), settings()));
     }
     
     @Override
     public CompletableFuture<Void> blockIP(String ip, long durationMs, String reason) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = getOrCreateReputation(ip);
-            reputation.block(durationMs, reason);
-            blockedIPs.put(ip, System.currentTimeMillis() + durationMs);
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            long now = timeSource.currentTimeMillis();
+            IPReputationData reputation = readReputation(shard, ip, now, settings());
+            reputation.block(durationMs, BlockReason.MANUAL, reason, now);
+            replicate(reputation, ReplicaDelta.Type.BLOCK, reputation.getBlockUntil(), BlockReason.MANUAL);
             saveReputation(reputation);
             plugin.getLogger().info("Blocked IP " + ip + " for " + (durationMs / 1000) + "s: " + reason);
         });
@@ -215,11 +633,12 @@ public class DDoSProtectionManager implements DDoSProtection {
     
     @Override
     public CompletableFuture<Void> unblockIP(String ip) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = reputationCache.get(ip);
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            IPReputationData reputation = shard.getReputation(ip);
             if (reputation != null) {
                 reputation.unblock();
-                blockedIPs.invalidate(ip);
+                replicate(reputation, ReplicaDelta.Type.BLOCK, 0, BlockReason.OTHER);
                 saveReputation(reputation);
                 plugin.getLogger().info("Unblocked IP " + ip);
             }
@@ -228,10 +647,12 @@ public class DDoSProtectionManager implements DDoSProtection {
     
     @Override
     public CompletableFuture<Void> whitelistIP(String ip) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = getOrCreateReputation(ip);
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            IPReputationData reputation = shard.getOrCreateReputation(ip);
             reputation.setWhitelisted(true);
             reputation.unblock();
+            replicate(reputation, ReplicaDelta.Type.WHITELIST, 1, BlockReason.OTHER);
             saveReputation(reputation);
             plugin.getLogger().info("Added IP " + ip + " to whitelist");
         });
@@ -239,9 +660,11 @@ public class DDoSProtectionManager implements DDoSProtection {
     
     @Override
     public CompletableFuture<Void> blacklistIP(String ip) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = getOrCreateReputation(ip);
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            IPReputationData reputation = shard.getOrCreateReputation(ip);
             reputation.setBlacklisted(true);
+            replicate(reputation, ReplicaDelta.Type.BLACKLIST, 1, BlockReason.OTHER);
             saveReputation(reputation);
             plugin.getLogger().info("Added IP " + ip + " to blacklist");
         });
@@ -249,10 +672,12 @@ public class DDoSProtectionManager implements DDoSProtection {
     
     @Override
     public CompletableFuture<Void> removeFromWhitelist(String ip) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = reputationCache.get(ip);
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            IPReputationData reputation = shard.getReputation(ip);
             if (reputation != null) {
                 reputation.setWhitelisted(false);
+                replicate(reputation, ReplicaDelta.Type.WHITELIST, 0, BlockReason.OTHER);
                 saveReputation(reputation);
                 plugin.getLogger().info("Removed IP " + ip + " from whitelist");
             }
@@ -261,115 +686,731 @@ public class DDoSProtectionManager implements DDoSProtection {
     
     @Override
     public CompletableFuture<Void> removeFromBlacklist(String ip) {
-        return CompletableFuture.runAsync(() -> {
-            IPReputationData reputation = reputationCache.get(ip);
+        DDoSShard shard = shardFor(ip);
+        return shard.run(() -> {
+            IPReputationData reputation = shard.getReputation(ip);
             if (reputation != null) {
                 reputation.setBlacklisted(false);
+                replicate(reputation, ReplicaDelta.Type.BLACKLIST, 0, BlockReason.OTHER);
                 saveReputation(reputation);
                 plugin.getLogger().info("Removed IP " + ip + " from blacklist");
             }
         });
     }
 
+    @Override
+    public CompletableFuture<Void> updateWhitelist(Collection<String> added, Collection<String> removed) {
+        return updateList(added, removed,
+            reputation -> {
+                reputation.setWhitelisted(true);
+                reputation.unblock();
+            },
+            reputation -> reputation.setWhitelisted(false));
+    }
+    
+    @Override
+    public CompletableFuture<Void> updateBlacklist(Collection<String> added, Collection<String> removed) {
+        return updateList(added, removed,
+            reputation -> reputation.setBlacklisted(true),
+            reputation -> reputation.setBlacklisted(false));
+    }
+    
+    /**
+     * Распределяет изменения списка по шардам
+     * Шарды обрабатывают свои IP параллельно, каждый - последовательными пакетами
+     */
+    private CompletableFuture<Void> updateList(Collection<String> added, Collection<String> removed,
+                                               Consumer<IPReputationData> addAction,
+                                               Consumer<IPReputationData> removeAction) {
+        List<List<String>> addedByShard = partition(added);
+        List<List<String>> removedByShard = partition(removed);
+        
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            DDoSShard shard = shards[i];
+            List<String> shardAdded = addedByShard.get(i);
+            futures[i] = runInBatches(shard, removedByShard.get(i), 0, removeAction, false)
+                    .thenCompose(ignored -> runInBatches(shard, shardAdded, 0, addAction, true));
+        }
+        return CompletableFuture.allOf(futures);
+    }
+    
+    private List<List<String>> partition(Collection<String> ips) {
+        List<List<String>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (String ip : ips) {
+            parts.get(shardFor(ip).getIndex()).add(ip);
+        }
+        return parts;
+    }
+    
+    /**
+     * Применяет действие к IP пакетами по LIST_BATCH_SIZE
+     * Следующий пакет ставится в очередь шарда только после завершения предыдущего,
+     * поэтому проверки подключений, пришедшие в это время, не ждут весь список
+     */
+    private CompletableFuture<Void> runInBatches(DDoSShard shard, List<String> ips, int from,
+                                                 Consumer<IPReputationData> action, boolean create) {
+        if (from >= ips.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int to = Math.min(ips.size(), from + LIST_BATCH_SIZE);
+        return shard.run(() -> {
+            for (String ip : ips.subList(from, to)) {
+                IPReputationData reputation = create ? shard.getOrCreateReputation(ip) : shard.getReputation(ip);
+                if (reputation != null) {
+                    action.accept(reputation);
+                    saveReputation(reputation);
+                }
+            }
+        }).thenCompose(ignored -> runInBatches(shard, ips, to, action, create));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> reloadHostingRanges() {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (!config.isVPNDetectionEnabled()) {
+            hostingRanges = IPRangeSet.empty();
+            return CompletableFuture.completedFuture(0);
+        }
+        
+        Path path = plugin.getDataDirectory().resolve(config.getVPNRangesFile());
+        return compileRanges(List.of(path), "Hosting/VPN ranges").thenApply(ranges -> {
+            hostingRanges = ranges;
+            return ranges.size();
+        }).exceptionally(ex -> {
+            plugin.getLogger().error("Failed to load hosting/VPN ranges from " + path + ", keeping previous ranges", ex);
+            return hostingRanges.size();
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Integer> loadReputations() {
+        return store.loadAll().thenCompose(records -> {
+            List<List<ReputationRecord>> parts = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                parts.add(new ArrayList<>());
+            }
+            for (ReputationRecord record : records) {
+                parts.get(shardFor(record.getIp()).getIndex()).add(record);
+            }
+            
+            List<CompletableFuture<Integer>> futures = new ArrayList<>(shards.length);
+            for (DDoSShard shard : shards) {
+                futures.add(loadInBatches(shard, parts.get(shard.getIndex()), 0, 0));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignored -> futures.stream().mapToInt(CompletableFuture::join).sum());
+        }).whenComplete((loaded, ex) -> {
+            if (ex != null) {
+                plugin.getLogger().error("Failed to load reputation from " + store.getName() + " storage", ex);
+            } else if (loaded > 0) {
+                plugin.getLogger().info("Loaded " + loaded + " IP reputation records from " + store.getName() + " storage");
+            }
+        });
+    }
+    
+    /**
+     * Загружает записи пакетами по LIST_BATCH_SIZE, как runInBatches
+     * Запись, созданная после запуска, новее сохраненной и не перезаписывается
+     */
+    private CompletableFuture<Integer> loadInBatches(DDoSShard shard, List<ReputationRecord> records, int from,
+                                                     int loaded) {
+        if (from >= records.size()) {
+            return CompletableFuture.completedFuture(loaded);
+        }
+        int to = Math.min(records.size(), from + LIST_BATCH_SIZE);
+        return shard.supply(() -> {
+            int applied = 0;
+            for (ReputationRecord record : records.subList(from, to)) {
+                if (shard.getReputation(record.getIp()) == null) {
+                    record.applyTo(shard.getOrCreateReputation(record.getIp()));
+                    applied++;
+                }
+            }
+            return applied;
+        }).thenCompose(applied -> loadInBatches(shard, records, to, loaded + applied));
+    }
+    
+    @Override
+    public void setVerdictListener(Consumer<ReplicaDelta> listener) {
+        this.verdictListener = listener;
+    }
+    
+    @Override
+    public void startReplication() {
+        DDoSSettings settings = settings();
+        if (!settings.isClusterEnabled() || gossip != null) {
+            return;
+        }
+        
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : settings.getClusterPeers()) {
+            peers.add(GossipNode.parseAddress(peer));
+        }
+        try {
+            gossip = new GossipNode(settings.getClusterNodeId(), GossipNode.parseAddress(settings.getClusterBind()),
+                peers, settings.getClusterSecret().getBytes(StandardCharsets.UTF_8), settings.getClusterInterval(),
+                timeSource, this::applyReplica, plugin.getLogger());
+            if (settings.isClusterSharedLimits()) {
+                DistributedCounter counter = new DistributedCounter(CLUSTER_COUNTER_CAPACITY, 60_000L);
+                gossip.attachCounter(counter, settings.getClusterCounterSync());
+                clusterConnections = counter;
+            }
+            plugin.getLogger().info("Cluster replication started on " + settings.getClusterBind() +
+                " (node " + settings.getClusterNodeId() + ", " + peers.size() + " peers)");
+        } catch (SocketException e) {
+            plugin.getLogger().error("Failed to start cluster replication on " + settings.getClusterBind(), e);
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Integer> reloadBlocklists() {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (!config.isBlocklistsEnabled()) {
+            blocklist = IPRangeSet.empty();
+            return CompletableFuture.completedFuture(0);
+        }
+        
+        List<Path> paths = new ArrayList<>();
+        for (String file : config.getBlocklistFiles()) {
+            paths.add(plugin.getDataDirectory().resolve(file));
+        }
+        return compileRanges(paths, "Blocklists").thenApply(ranges -> {
+            blocklist = ranges;
+            return ranges.size();
+        }).exceptionally(ex -> {
+            plugin.getLogger().error("Failed to load blocklists " + paths + ", keeping previous blocklist", ex);
+            return blocklist.size();
+        });
+    }
+    
+    /**
+     * Читает файлы диапазонов построчно в фоновом потоке и объединяет их в один набор
+     * Текущий набор продолжает использоваться до завершения компиляции
+     */
+    private CompletableFuture<IPRangeSet> compileRanges(List<Path> paths, String name) {
+        return CompletableFuture.supplyAsync(() -> {
+            IPRangeSet.Builder builder = IPRangeSet.builder();
+            for (Path path : paths) {
+                int invalidBefore = builder.getInvalidLines();
+                try {
+                    builder.read(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (builder.getInvalidLines() > invalidBefore) {
+                    plugin.getLogger().warn("Skipped " + (builder.getInvalidLines() - invalidBefore) +
+                        " invalid lines in " + path.getFileName());
+                }
+            }
+            IPRangeSet ranges = builder.build();
+            plugin.getLogger().info(name + " loaded: " + ranges.size() + " ranges from " +
+                builder.getEntries() + " entries");
+            return ranges;
+        });
+    }
+    
+    /**
+     * Заменяет набор диапазонов хостингов/VPN
+     */
+    public void setHostingRanges(IPRangeSet ranges) {
+        this.hostingRanges = ranges;
+    }
+    
+    /**
+     * Заменяет набор импортированных blocklist
+     */
+    public void setBlocklist(IPRangeSet ranges) {
+        this.blocklist = ranges;
+    }
+    
+    @Override
+    public CompletableFuture<List<HeavyHitter>> getTopOffenders(TrafficCategory category, int limit) {
+        long now = timeSource.currentTimeMillis();
+        return aggregate(shard -> shard.getHeavyHitters(category, now)).thenApply(parts -> {
+            // IP принадлежит одному шарду, подсети и ники складываются из оценок шардов
+            Map<String, Long> merged = new HashMap<>();
+            for (List<HeavyHitter> part : parts) {
+                for (HeavyHitter hitter : part) {
+                    merged.merge(hitter.getKey(), hitter.getCount(), Long::sum);
+                }
+            }
+            List<HeavyHitter> top = new ArrayList<>(merged.size());
+            merged.forEach((key, count) -> top.add(new HeavyHitter(key, count)));
+            top.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed());
+            return top.subList(0, Math.min(Math.max(0, limit), top.size()));
+        });
+    }
+    
+    @Override
+    public CompletableFuture<List<String>> getWhitelistedIPs() {
+        return collectIPs(IPReputationData::isWhitelisted);
+    }
+    
+    @Override
+    public CompletableFuture<List<String>> getBlacklistedIPs() {
+        return collectIPs(IPReputationData::isBlacklisted);
+    }
+    
+    @Override
+    public CompletableFuture<List<String>> getBlockedIPs() {
+        return collectIPs(data -> data.isBlocked(timeSource.currentTimeMillis()));
+    }
     
     @Override
     public String getStatistics() {
+        long now = timeSource.currentTimeMillis();
+        DDoSShard.Snapshot total = aggregate(shard -> shard.snapshot(now)).join().stream()
+                .reduce(DDoSShard.Snapshot::plus)
+                .orElseThrow();
+        
         StringBuilder stats = new StringBuilder();
         stats.append("§6=== DDoS Protection Statistics ===\n");
-        stats.append("§eTotal Connections Blocked: §f").append(totalConnectionsBlocked.get()).append("\n");
-        stats.append("§eTotal Auth Attempts Blocked: §f").append(totalAuthAttemptsBlocked.get()).append("\n");
-        stats.append("§eTotal Commands Blocked: §f").append(totalCommandsBlocked.get()).append("\n");
-        stats.append("§eIPs in Cache: §f").append(reputationCache.size()).append("\n");
-        stats.append("§eCurrently Blocked IPs: §f").append(blockedIPs.estimatedSize()).append("\n");
+        stats.append("§eConnections Checked: §f").append(total.connectionsChecked).append("\n");
+        stats.append("§eTotal Connections Blocked: §f").append(total.connectionsBlocked).append("\n");
+        stats.append("§eTotal Auth Attempts Blocked: §f").append(total.authAttemptsBlocked).append("\n");
+        stats.append("§eTotal Commands Blocked: §f").append(total.commandsBlocked).append("\n");
+        stats.append("§eIPs in Cache: §f").append(total.cachedIPs).append("\n");
+        stats.append("§eCurrently Blocked IPs: §f").append(total.blockedIPs).append("\n");
+        stats.append("§eLocked Accounts: §f").append(total.lockedAccounts).append("\n");
+        stats.append("§eLogin Attempts Blocked: §f").append(total.loginAttemptsBlocked).append("\n");
+        stats.append("§eBot Patterns Detected: §f").append(total.botPatternsDetected).append("\n");
+        stats.append("§eKnown Fingerprints: §f").append(fingerprints.size()).append("\n");
+        stats.append("§eFingerprints Limited: §f").append(fingerprintsLimited.sum()).append("\n");
+        stats.append("§eReconnect Challenges (issued/passed): §f").append(challengesIssued.sum())
+            .append(" / ").append(challengesPassed.sum()).append("\n");
+        stats.append("§ePings Limited: §f").append(pingsLimited.sum()).append("\n");
+        stats.append("§eCountry/ASN Limited: §f").append(total.aggregateLimited).append("\n");
+        stats.append("§eBlocklist Ranges: §f").append(blocklist.size()).append("\n");
+        if (store.isShared()) {
+            stats.append("§eReputation Prefetch (loaded/skipped): §f").append(prefetchesLoaded.sum())
+                .append(" / ").append(prefetchesSkipped.sum()).append("\n");
+        }
+        if (store instanceof WriteBehindStore) {
+            WriteBehindStore writeBehind = (WriteBehindStore) store;
+            stats.append("§eStorage ").append(store.getName()).append(" (pending/written/dropped): §f")
+                .append(writeBehind.getPending()).append(" / ").append(writeBehind.getWritten()).append(" / ")
+                .append(writeBehind.getDropped()).append("\n");
+        }
+        GossipNode node = gossip;
+        if (node != null) {
+            stats.append("§eCluster Node ").append(node.getNodeId()).append(" (sent/received/rejected/dropped): §f")
+                .append(node.getPacketsSent()).append(" / ").append(node.getDeltasReceived()).append(" / ")
+                .append(node.getPacketsRejected()).append(" / ").append(node.getDeltasDropped()).append("\n");
+        }
+        stats.append("§eUnique IPs (1/5/15m): §f").append(formatUnique(uniqueIPs, now)).append("\n");
+        stats.append("§eUnique Subnets (1/5/15m): §f").append(formatUnique(uniquePrefixes, now)).append("\n");
+        stats.append("§eUnique Usernames (1/5/15m): §f").append(formatUnique(uniqueUsernames, now)).append("\n");
+        stats.append("§eAttack Mode: §f").append(isUnderAttack() ? "§cON" : "§aOFF").append("\n");
+        stats.append("§eShards: §f").append(shards.length).append("\n");
         return stats.toString();
     }
     
+    private static String formatUnique(RollingHyperLogLog counter, long now) {
+        return "~" + counter.estimate(60_000L, now) + " / ~" + counter.estimate(300_000L, now) +
+            " / ~" + counter.estimate(900_000L, now);
+    }
+    
     @Override
     public void cleanup() {
-        // Caffeine автоматически очищает устаревшие записи
-        // Дополнительно очищаем reputation cache от старых записей
-        long now = System.currentTimeMillis();
+        // Каждый шард очищает свои записи в своем потоке, шарды работают параллельно
+        long now = timeSource.currentTimeMillis();
         long maxAge = Duration.ofDays(7).toMillis();
         
-        reputationCache.entrySet().removeIf(entry -> {
-            IPReputationData data = entry.getValue();
-            return (now - data.getLastAttempt()) > maxAge && 
-                   !data.isWhitelisted() && 
-                   !data.isBlacklisted();
+        int removed = aggregate(shard -> shard.cleanup(now, maxAge)).join().stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        int remaining = aggregate(shard -> shard.getReputations().size()).join().stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        
+        store.purge(now - maxAge, now).exceptionally(ex -> {
+            plugin.getLogger().warn("Failed to purge " + store.getName() + " storage: " + ex.getMessage());
+            return 0;
+        });
+        
+        plugin.getLogger().info("DDoS Protection cleanup completed. Removed: " + removed +
+            ", IPs in cache: " + remaining);
+    }
+    
+    @Override
+    public void shutdown() {
+        GossipNode node = gossip;
+        if (node != null) {
+            node.close();
+        }
+        for (DDoSShard shard : shards) {
+            shard.shutdown();
+        }
+        // Снимки из задач, оставшихся в очередях шардов, попадают в последнюю запись хранилища
+        for (DDoSShard shard : shards) {
+            shard.awaitTermination(1000);
+        }
+        store.close();
+        geoIP.close();
+        if (timeSource instanceof CoarseTimeSource) {
+            ((CoarseTimeSource) timeSource).close();
+        }
+    }
+    
+    /**
+     * Создает источник времени по настройке clock-resolution
+     * Грубые часы убирают системный вызов из горячего пути проверок
+     */
+    private static TimeSource createTimeSource(VeloAuthAPI plugin) {
+        long resolution = plugin.getConfigManager().getClockResolution();
+        return resolution > 0 ? new CoarseTimeSource(resolution) : TimeSource.system();
+    }
+    
+    /**
+     * Блокирует IP с записью причины в историю
+     */
+    private void block(IPReputationData reputation, long durationMs, BlockReason reason, long now) {
+        reputation.block(durationMs, reason, reason.getDescription(), now);
+        replicate(reputation, ReplicaDelta.Type.BLOCK, reputation.getBlockUntil(), reason);
+    }
+    
+    /**
+     * Сообщает о локальном изменении получателю решений и остальным прокси (только поток шарда)
+     * Версия изменения сохраняется в записи, чтобы более старые изменения соседей не перезаписали его
+     */
+    private void replicate(IPReputationData reputation, ReplicaDelta.Type type, long value, BlockReason reason) {
+        GossipNode node = gossip;
+        long version = 0;
+        if (node != null) {
+            version = node.nextVersion();
+            reputation.setReplicaVersion(type.ordinal(), version);
+        }
+        ReplicaDelta delta = new ReplicaDelta(type, reputation.getIp(), value, reason, version);
+        verdictListener.accept(delta);
+        if (node != null) {
+            node.publish(delta);
+        }
+    }
+    
+    /**
+     * Применяет изменение другого прокси в потоке шарда IP (last-writer-wins)
+     * Изменение, обновившее запись, пересылается дальше соседям
+     */
+    private void applyReplica(ReplicaDelta delta) {
+        String ip = delta.getIp();
+        DDoSShard shard = shardFor(ip);
+        shard.run(() -> {
+            long now = timeSource.currentTimeMillis();
+            IPReputationData reputation = delta.isSet()
+                ? readReputation(shard, ip, now, settings())
+                : shard.getReputation(ip);
+            int field = delta.getType().ordinal();
+            if (reputation == null || delta.getVersion() <= reputation.getReplicaVersion(field)) {
+                return;
+            }
+            reputation.setReplicaVersion(field, delta.getVersion());
+            
+            switch (delta.getType()) {
+                case BLOCK:
+                    if (delta.getValue() > now) {
+                        BlockReason reason = delta.getReason();
+                        reputation.block(delta.getValue() - now, reason, reason.getDescription(), now);
+                    } else {
+                        reputation.unblock();
+                    }
+                    break;
+                case WHITELIST:
+                    reputation.setWhitelisted(delta.isSet());
+                    if (delta.isSet()) {
+                        reputation.unblock();
+                    }
+                    break;
+                case BLACKLIST:
+                    reputation.setBlacklisted(delta.isSet());
+                    break;
+            }
+            saveReputation(reputation);
+            verdictListener.accept(delta);
+            
+            GossipNode node = gossip;
+            if (node != null) {
+                node.publish(delta);
+            }
         });
+    }
+    
+    /**
+     * Выбирает шард для ключа
+     */
+    private DDoSShard shardFor(String key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & shardMask];
+    }
+    
+    /**
+     * Выполняет функцию на всех шардах параллельно, каждый в своем потоке
+     *
+     * @return Результаты в порядке шардов
+     */
+    private <T> CompletableFuture<List<T>> aggregate(Function<DDoSShard, T> function) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.length);
+        for (DDoSShard shard : shards) {
+            futures.add(shard.supply(() -> function.apply(shard)));
+        }
         
-        plugin.getLogger().info("DDoS Protection cleanup completed. IPs in cache: " + reputationCache.size());
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        results.add(future.join());
+                    }
+                    return results;
+                });
     }
     
     /**
-     * Получает или создает данные репутации для IP
+     * Собирает отсортированный список IP, удовлетворяющих условию, со всех шардов
      */
-    private IPReputationData getOrCreateReputation(String ip) {
-        return reputationCache.computeIfAbsent(ip, k -> {
-            // TODO: Загрузка из БД через Plugin Messaging
-            // На уровне Velocity нет прямого доступа к StorageManager
-            // Данные репутации хранятся только в кэше
-            return new IPReputationData(ip);
+    private CompletableFuture<List<String>> collectIPs(Predicate<IPReputationData> filter) {
+        return aggregate(shard -> {
+            List<String> ips = new ArrayList<>();
+            for (IPReputationData data : shard.getReputations().values()) {
+                if (filter.test(data)) {
+                    ips.add(data.getIp());
+                }
+            }
+            return ips;
+        }).thenApply(parts -> {
+            List<String> ips = new ArrayList<>();
+            parts.forEach(ips::addAll);
+            ips.sort(null);
+            return ips;
         });
     }
     
     /**
-     * Сохраняет данные репутации в БД
+     * Получает или создает данные репутации и применяет накопленное затухание
+     */
+    private IPReputationData readReputation(DDoSShard shard, String ip, long now, DDoSSettings settings) {
+        return prepareReputation(shard, shard.getOrCreateReputation(ip), now, settings);
+    }
+    
+    /**
+     * Применяет затухание, при первом обращении к записи проверяет диапазоны хостингов
+     * и запускает определение страны
+     */
+    private IPReputationData prepareReputation(DDoSShard shard, IPReputationData reputation, long now,
+                                               DDoSSettings settings) {
+        reputation.decay(now, settings.getReputationHalfLife());
+        if (reputation.getCountryCode() == CountryCode.UNRESOLVED) {
+            // Диапазоны хостингов проверяются один раз и сохраняются в записи
+            if (hostingRanges.contains(reputation.getIp())) {
+                reputation.setVPN(true);
+            }
+            resolveLocation(shard, reputation);
+        }
+        return reputation;
+    }
+    
+    /**
+     * Определяет страну и ASN IP при первом появлении
+     * Попадание в кэш применяется сразу, иначе поиск выполняется в потоке GeoIP
+     * и результат возвращается в поток шарда - проверка подключения не ждет базу
+     */
+    private void resolveLocation(DDoSShard shard, IPReputationData reputation) {
+        String ip = reputation.getIp();
+        short country = geoIP.getCachedCountry(ip);
+        int asn = geoIP.getCachedASN(ip);
+        if (country != CountryCode.UNRESOLVED && asn != GeoIPResolver.ASN_UNRESOLVED) {
+            reputation.setCountryCode(country);
+            reputation.setASN(asn);
+            return;
+        }
+        
+        // Помечаем запись, чтобы повторные подключения не ставили новый запрос
+        reputation.setCountryCode(CountryCode.UNKNOWN);
+        geoIP.resolve(ip).thenAccept(location -> shard.run(() -> {
+            reputation.setCountryCode(location.getCountryCode());
+            reputation.setASN(Math.max(GeoIPResolver.ASN_UNKNOWN, location.getASN()));
+        }));
+    }
+    
+    /**
+     * Проверяет групповые лимиты страны и ASN
+     * Учитываются только IP без успешных входов, в режиме атаки лимиты ужесточаются
+     *
+     * @return true если подключение превышает лимит группы
+     */
+    private boolean exceedsAggregateBudget(DDoSSettings settings, String ip, IPReputationData reputation, long now) {
+        if (!settings.hasAggregateLimits() || (reputation != null && reputation.getSuccessfulLogins() > 0)) {
+            return false;
+        }
+        
+        double factor = isUnderAttack(settings, now) ? settings.getAttackModeFactor() : 1.0;
+        
+        short country;
+        int asn;
+        if (reputation != null) {
+            country = reputation.getCountryCode();
+            asn = reputation.getASN();
+        } else {
+            // IP без записи: страна из кэша GeoIP, промах разрешается в фоне
+            country = geoIP.getCachedCountry(ip);
+            asn = geoIP.getCachedASN(ip);
+            if (country == CountryCode.UNRESOLVED || asn == GeoIPResolver.ASN_UNRESOLVED) {
+                geoIP.resolve(ip);
+                country = country == CountryCode.UNRESOLVED ? CountryCode.UNKNOWN : country;
+                asn = Math.max(GeoIPResolver.ASN_UNKNOWN, asn);
+            }
+        }
+        
+        int countryBudget = settings.getCountryBudget(country);
+        if (countryBudget > 0 && countryConnections.increment(country, now) > scale(countryBudget, factor)) {
+            return true;
+        }
+        
+        int asnBudget = settings.getASNBudget(asn);
+        return asnBudget > 0 && asnConnections.increment(asn, now) > scale(asnBudget, factor);
+    }
+    
+    private static int scale(int budget, double factor) {
+        return Math.max(1, (int) (budget * factor));
+    }
+    
+    /**
+     * Режим атаки: суммарный поток подключений всех шардов за текущую секунду выше порога
+     */
+    private boolean isUnderAttack(DDoSSettings settings, long now) {
+        int uniqueThreshold = settings.getAttackModeUniqueIPs();
+        if (uniqueThreshold > 0 && getUniqueIPsPerMinute(now) > uniqueThreshold) {
+            return true;
+        }
+        
+        int threshold = settings.getAttackModeThreshold();
+        if (threshold <= 0) {
+            return false;
+        }
+        int total = 0;
+        for (DDoSShard shard : shards) {
+            total += shard.getConnectionRate(now);
+        }
+        return total > threshold;
+    }
+    
+    /**
+     * Оценка уникальных IP за последнюю минуту, кэшируется на секунду
+     */
+    private long getUniqueIPsPerMinute(long now) {
+        long second = now / 1000;
+        long cached = uniqueIPsPerMinute;
+        if (cached >= 0 && (cached >>> 32) == second) {
+            return cached & 0xFFFFFFFFL;
+        }
+        long estimate = Math.min(0xFFFFFFFFL, uniqueIPs.estimate(60_000L, now));
+        uniqueIPsPerMinute = (second << 32) | estimate;
+        return estimate;
+    }
+    
+    /**
+     * @return true если общий поток подключений превышает attack-mode-threshold
+     * или уникальных IP за минуту больше attack-mode-unique-ips
+     */
+    public boolean isUnderAttack() {
+        return isUnderAttack(settings(), timeSource.currentTimeMillis());
+    }
+    
+    /**
+     * Ставит снимок репутации в очередь записи хранилища (поток шарда записи)
+     * Запись идет в фоне, проверка не ждет хранилище
      */
     private void saveReputation(IPReputationData reputation) {
-        // TODO: Сохранение через Plugin Messaging
-        // На уровне Velocity нет прямого доступа к StorageManager
-        // Данные репутации хранятся только в кэше
+        store.save(ReputationRecord.of(reputation, timeSource.currentTimeMillis()));
     }
     
     /**
      * Вычисляет длительность блокировки с exponential backoff
-     * 
-     * @param failedAttempts Количество неудачных попыток
+     * Ступень эскалации - количество блокировок IP за окно эскалации
+     *
+     * @param settings Снимок настроек текущей операции
+     * @param reputation Данные репутации с историей блокировок
+     * @param now Текущее время
      * @return Длительность блокировки в миллисекундах
      */
-    private long calculateBlockDuration(int failedAttempts) {
-        // Exponential backoff: baseBlockDuration * (backoffMultiplier ^ failedAttempts)
-        // Ограничиваем максимум 24 часами
-        long duration = (long) (baseBlockDuration * Math.pow(backoffMultiplier, Math.min(failedAttempts, 10)));
-        return Math.min(duration, Duration.ofHours(24).toMillis());
+    private long calculateBlockDuration(DDoSSettings settings, IPReputationData reputation, long now) {
+        int level = reputation.countBlocksSince(now - settings.getBlockEscalationWindow());
+        return settings.getBlockDuration(level);
     }
     
     /**
      * Перезагружает конфигурацию
+     * Настройки читаются из снимка ConfigManager при каждой операции,
+     * поэтому достаточно перезагрузить config.yml
      */
     public void reloadConfiguration() {
-        loadConfiguration();
-        plugin.getLogger().info("DDoS Protection configuration reloaded");
+        if (plugin.getConfigManager().loadConfig()) {
+            logConfiguration();
+            plugin.getLogger().info("DDoS Protection configuration reloaded");
+        }
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    public TimeSource getTimeSource() {
+        return timeSource;
     }
     
     // Getters for configuration (for testing and admin commands)
     
     public int getMaxConnectionsPerSecond() {
-        return maxConnectionsPerSecond;
+        return settings().getMaxConnectionsPerSecond();
     }
     
     public int getMaxConnectionsPerMinute() {
-        return maxConnectionsPerMinute;
+        return settings().getMaxConnectionsPerMinute();
     }
     
     public int getMaxAuthAttemptsPerMinute() {
-        return maxAuthAttemptsPerMinute;
+        return settings().getMaxAuthAttemptsPerMinute();
     }
     
     public int getMaxCommandsPerSecond() {
-        return maxCommandsPerSecond;
+        return settings().getMaxCommandsPerSecond();
     }
     
     public int getMinReputationForConnection() {
-        return minReputationForConnection;
+        return settings().getMinReputationForConnection();
     }
     
     public long getBaseBlockDuration() {
-        return baseBlockDuration;
+        return settings().getBaseBlockDuration();
     }
     
     public double getBackoffMultiplier() {
-        return backoffMultiplier;
+        return settings().getBackoffMultiplier();
+    }
+    
+    public long getReputationHalfLife() {
+        return settings().getReputationHalfLife();
+    }
+    
+    public long getBlockEscalationWindow() {
+        return settings().getBlockEscalationWindow();
+    }
+    
+    /**
+     * Проверка переподключением вместе с параметрами, из которых она создана
+     */
+    private static final class ChallengeHolder {
+        
+        private final String secret;
+        private final long timeSlice;
+        private final ReconnectChallenge challenge;
+        
+        private ChallengeHolder(String secret, long timeSlice) {
+            this.secret = secret;
+            this.timeSlice = timeSlice;
+            this.challenge = ReconnectChallenge.fromSecret(secret, timeSlice, CHALLENGE_CAPACITY);
+        }
     }
 }
@@ -0,0 +1,360 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.config.DDoSSettings;
+import com.s1steam.veloauth.api.models.HeavyHitter;
+import com.s1steam.veloauth.api.models.IPReputationData;
+import com.s1steam.veloauth.api.models.TrafficCategory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Шард состояния DDoS защиты
+ * Владеет частью IP адресов (по хэшу) и единственным потоком-писателем:
+ * все изменения репутации, лимитов и счетчиков шарда выполняются в этом потоке,
+ * поэтому внутренние структуры не требуют синхронизации
+ */
+final class DDoSShard {
+    
+    // Скетчи активных источников: ширина строки, размер top-K и период затухания
+    private static final int SKETCH_WIDTH = 1024;
+    private static final int SKETCH_TOP_SIZE = 32;
+    private static final long SKETCH_WINDOW = 60_000L;
+    
+    // Ячеек таблицы неудачных входов по аккаунтам
+    private static final int ACCOUNT_TABLE_CAPACITY = 2048;
+    
+    // Ячеек моделей интервалов подключений для IP и подсетей
+    private static final int CADENCE_TABLE_CAPACITY = 4096;
+    
+    private final int index;
+    private final ExecutorService executor;
+    
+    // Состояние IP адресов шарда (только поток шарда)
+    private final Map<String, IPReputationData> reputations;
+    private final RateLimiter connectionsPerSecond;
+    private final RateLimiter connectionsPerMinute;
+    private final RateLimiter authAttemptsPerMinute;
+    
+    // Лимит команд проверяется синхронно из любого потока, защищен монитором лимитера
+    private final RateLimiter commandsPerSecond;
+    private long commandsBlocked;
+    
+    // Запросы статуса сервера по IP и подсетям этого шарда (любой поток, монитор лимитера)
+    private final RateLimiter pingsPerSecond;
+    
+    // Счетчики шарда (только поток шарда)
+    private long connectionsChecked;
+    private long connectionsBlocked;
+    private long authAttemptsBlocked;
+    private long aggregateLimited;
+    private long loginAttemptsBlocked;
+    private long botPatternsDetected;
+    
+    // Неудачные входы по аккаунтам, ключ шарда - ник (только поток шарда)
+    private final AccountFailureTable accounts;
+    
+    // Интервалы подключений IP шарда (только поток шарда)
+    private final CadenceTable ipCadence;
+    
+    // Интервалы подключений подсетей по хэшу подсети - IP одной подсети попадают
+    // в разные шарды, поэтому таблица обновляется из любого потока под своим монитором
+    private final CadenceTable prefixCadence;
+    
+    // Самые активные источники по категориям (только поток шарда)
+    private final HeavyHitterSketch[] heavyHitters;
+    
+    // Подключения текущей секунды (секунда << 32 | количество)
+    // Пишет только поток шарда, читают все шарды для определения режима атаки
+    private volatile long connectionRate;
+    
+    DDoSShard(int index) {
+        this.index = index;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VeloAuth-DDoS-Shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reputations = new HashMap<>();
+        this.connectionsPerSecond = new RateLimiter(1000L);
+        this.connectionsPerMinute = new RateLimiter(60_000L);
+        this.authAttemptsPerMinute = new RateLimiter(60_000L);
+        this.commandsPerSecond = new RateLimiter(1000L);
+        this.pingsPerSecond = new RateLimiter(1000L);
+        this.accounts = new AccountFailureTable(ACCOUNT_TABLE_CAPACITY);
+        this.ipCadence = new CadenceTable(CADENCE_TABLE_CAPACITY);
+        this.prefixCadence = new CadenceTable(CADENCE_TABLE_CAPACITY);
+        this.heavyHitters = new HeavyHitterSketch[TrafficCategory.values().length];
+        for (int i = 0; i < heavyHitters.length; i++) {
+            heavyHitters[i] = new HeavyHitterSketch(SKETCH_WIDTH, SKETCH_TOP_SIZE, SKETCH_WINDOW);
+        }
+    }
+    
+    /**
+     * Выполняет задачу в потоке шарда
+     */
+    <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+    
+    /**
+     * Выполняет действие в потоке шарда
+     */
+    CompletableFuture<Void> run(Runnable task) {
+        return CompletableFuture.runAsync(task, executor);
+    }
+    
+    /**
+     * Получает или создает данные репутации (только поток шарда)
+     */
+    IPReputationData getOrCreateReputation(String ip) {
+        return reputations.computeIfAbsent(ip, IPReputationData::new);
+    }
+    
+    /**
+     * Получает данные репутации без создания (только поток шарда)
+     *
+     * @return Данные или null если записи нет
+     */
+    IPReputationData getReputation(String ip) {
+        return reputations.get(ip);
+    }
+    
+    Map<String, IPReputationData> getReputations() {
+        return reputations;
+    }
+    
+    int incrementConnectionsPerSecond(String ip, long now) {
+        return connectionsPerSecond.increment(ip, now);
+    }
+    
+    int incrementConnectionsPerMinute(String ip, long now) {
+        return connectionsPerMinute.increment(ip, now);
+    }
+    
+    int incrementAuthAttempts(String ip, long now) {
+        return authAttemptsPerMinute.increment(ip, now);
+    }
+    
+    /**
+     * Проверяет лимит команд игрока (любой поток)
+     *
+     * @return true если команда укладывается в лимит
+     */
+    boolean tryCommand(String playerName, int maxPerSecond, long now) {
+        synchronized (commandsPerSecond) {
+            if (commandsPerSecond.increment(playerName, now) > maxPerSecond) {
+                commandsBlocked++;
+                return false;
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Проверяет лимит запросов статуса сервера для IP или подсети (любой поток)
+     *
+     * @return true если запрос укладывается в лимит
+     */
+    boolean tryPing(String key, int maxPerSecond, long now) {
+        synchronized (pingsPerSecond) {
+            return pingsPerSecond.increment(key, now) <= maxPerSecond;
+        }
+    }
+    
+    /**
+     * Учитывает подключение IP в модели интервалов (только поток шарда)
+     *
+     * @return true если IP переподключается с равномерным ритмом
+     */
+    boolean recordIPArrival(String ip, long now, DDoSSettings settings) {
+        return ipCadence.record(ip, now, settings.getBotMaxInterval(), settings.getBotMinSamples(),
+            settings.getBotMaxVariation());
+    }
+    
+    /**
+     * Учитывает подключение из подсети, принадлежащей этому шарду (любой поток)
+     *
+     * @return true если подсеть подключается с равномерным ритмом
+     */
+    boolean recordPrefixArrival(String prefix, long now, DDoSSettings settings) {
+        synchronized (prefixCadence) {
+            return prefixCadence.record(prefix, now, settings.getBotMaxInterval(), settings.getBotMinSamples(),
+                settings.getBotMaxVariation());
+        }
+    }
+    
+    void recordBotPattern() {
+        botPatternsDetected++;
+    }
+    
+    void recordConnectionChecked(long now) {
+        connectionsChecked++;
+        long second = now / 1000;
+        long current = connectionRate;
+        connectionRate = (current >>> 32) == second ? current + 1 : (second << 32) | 1;
+    }
+    
+    /**
+     * Количество подключений шарда в текущей секунде (любой поток)
+     */
+    int getConnectionRate(long now) {
+        long current = connectionRate;
+        return (current >>> 32) == now / 1000 ? (int) current : 0;
+    }
+    
+    /**
+     * Учитывает событие источника в скетче категории (только поток шарда)
+     */
+    void recordTraffic(TrafficCategory category, String key, long now) {
+        heavyHitters[category.ordinal()].add(key, now);
+    }
+    
+    /**
+     * Самые активные источники категории в этом шарде (только поток шарда)
+     */
+    List<HeavyHitter> getHeavyHitters(TrafficCategory category, long now) {
+        return heavyHitters[category.ordinal()].top(now);
+    }
+    
+    void recordConnectionBlocked() {
+        connectionsBlocked++;
+    }
+    
+    void recordAuthAttemptBlocked() {
+        authAttemptsBlocked++;
+    }
+    
+    void recordAggregateLimited() {
+        aggregateLimited++;
+    }
+    
+    void recordLoginAttemptBlocked() {
+        loginAttemptsBlocked++;
+    }
+    
+    AccountFailureTable getAccounts() {
+        return accounts;
+    }
+    
+    /**
+     * Удаляет устаревшие записи шарда (только поток шарда)
+     *
+     * @param now Текущее время
+     * @param maxAgeMs Максимальный возраст записи без активности
+     * @return Количество удаленных записей репутации
+     */
+    int cleanup(long now, long maxAgeMs) {
+        int before = reputations.size();
+        reputations.values().removeIf(data ->
+            (now - data.getLastAttempt()) > maxAgeMs &&
+            !data.isWhitelisted() &&
+            !data.isBlacklisted() &&
+            !data.isBlocked(now));
+        
+        connectionsPerSecond.evictExpired(now);
+        connectionsPerMinute.evictExpired(now);
+        authAttemptsPerMinute.evictExpired(now);
+        synchronized (commandsPerSecond) {
+            commandsPerSecond.evictExpired(now);
+        }
+        synchronized (pingsPerSecond) {
+            pingsPerSecond.evictExpired(now);
+        }
+        
+        return before - reputations.size();
+    }
+    
+    /**
+     * Снимок счетчиков шарда (только поток шарда)
+     */
+    Snapshot snapshot(long now) {
+        int blocked = 0;
+        for (IPReputationData data : reputations.values()) {
+            if (data.isBlocked(now)) {
+                blocked++;
+            }
+        }
+        
+        long commands;
+        synchronized (commandsPerSecond) {
+            commands = commandsBlocked;
+        }
+        
+        return new Snapshot(connectionsChecked, connectionsBlocked, authAttemptsBlocked, commands,
+            aggregateLimited, loginAttemptsBlocked, botPatternsDetected, reputations.size(), blocked,
+            accounts.countLocked(now));
+    }
+    
+    void shutdown() {
+        executor.shutdown();
+    }
+    
+    /**
+     * Ждет завершения задач, поставленных до shutdown()
+     */
+    void awaitTermination(long timeoutMs) {
+        try {
+            executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    int getIndex() {
+        return index;
+    }
+    
+    /**
+     * Неизменяемый снимок счетчиков шарда для агрегации статистики
+     */
+    static final class Snapshot {
+        
+        final long connectionsChecked;
+        final long connectionsBlocked;
+        final long authAttemptsBlocked;
+        final long commandsBlocked;
+        final long aggregateLimited;
+        final long loginAttemptsBlocked;
+        final long botPatternsDetected;
+        final int cachedIPs;
+        final int blockedIPs;
+        final int lockedAccounts;
+        
+        Snapshot(long connectionsChecked, long connectionsBlocked, long authAttemptsBlocked,
+                 long commandsBlocked, long aggregateLimited, long loginAttemptsBlocked,
+                 long botPatternsDetected, int cachedIPs, int blockedIPs, int lockedAccounts) {
+            this.connectionsChecked = connectionsChecked;
+            this.connectionsBlocked = connectionsBlocked;
+            this.authAttemptsBlocked = authAttemptsBlocked;
+            this.commandsBlocked = commandsBlocked;
+            this.aggregateLimited = aggregateLimited;
+            this.loginAttemptsBlocked = loginAttemptsBlocked;
+            this.botPatternsDetected = botPatternsDetected;
+            this.cachedIPs = cachedIPs;
+            this.blockedIPs = blockedIPs;
+            this.lockedAccounts = lockedAccounts;
+        }
+        
+        Snapshot plus(Snapshot other) {
+            return new Snapshot(
+                connectionsChecked + other.connectionsChecked,
+                connectionsBlocked + other.connectionsBlocked,
+                authAttemptsBlocked + other.authAttemptsBlocked,
+                commandsBlocked + other.commandsBlocked,
+                aggregateLimited + other.aggregateLimited,
+                loginAttemptsBlocked + other.loginAttemptsBlocked,
+                botPatternsDetected + other.botPatternsDetected,
+                cachedIPs + other.cachedIPs,
+                blockedIPs + other.blockedIPs,
+                lockedAccounts + other.lockedAccounts
+            );
+        }
+    }
+}
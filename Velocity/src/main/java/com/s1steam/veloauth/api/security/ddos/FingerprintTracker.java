@@ -0,0 +1,164 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.models.HeavyHitter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Частота подключений по отпечаткам клиентов в скользящем окне
+ * Отпечатки интернируются в небольшие целые номера, счетчики - массивы,
+ * индексированные номером: текущее и предыдущее окно (номер окна << 32 | количество),
+ * обновляются через CAS, поэтому трекер разделяется всеми потоками.
+ * Оценка скользящего окна - текущее окно плюс доля предыдущего.
+ * При заполнении таблицы новые отпечатки получают общий номер OVERFLOW, который
+ * ограничивается как один отпечаток; со следующего окна таблицу можно заменить новой
+ */
+public final class FingerprintTracker {
+    
+    /**
+     * Общий номер отпечатков, не поместившихся в таблицу
+     */
+    public static final int OVERFLOW = 0;
+    
+    private final long windowMs;
+    private final int capacity;
+    private final ConcurrentHashMap<String, Integer> ids;
+    private final AtomicReferenceArray<String> names;
+    private final AtomicInteger nextId;
+    private final AtomicLongArray current;
+    private final AtomicLongArray previous;
+    
+    // Окно первого переполнения таблицы (-1 - не переполнялась)
+    private volatile long overflowWindow = -1;
+    
+    /**
+     * @param capacity Максимум различных отпечатков
+     * @param windowMs Размер окна в миллисекундах
+     */
+    public FingerprintTracker(int capacity, long windowMs) {
+        if (capacity <= 1 || windowMs <= 0) {
+            throw new IllegalArgumentException("Invalid fingerprint tracker parameters");
+        }
+        this.windowMs = windowMs;
+        this.capacity = capacity;
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new AtomicReferenceArray<>(capacity);
+        this.nextId = new AtomicInteger(OVERFLOW + 1);
+        this.current = new AtomicLongArray(capacity);
+        this.previous = new AtomicLongArray(capacity);
+    }
+    
+    /**
+     * Номер отпечатка, новый отпечаток получает следующий свободный номер
+     *
+     * @return Номер или OVERFLOW, если таблица заполнена
+     */
+    public int intern(String fingerprint) {
+        Integer id = ids.get(fingerprint);
+        if (id != null) {
+            return id;
+        }
+        if (nextId.get() >= capacity) {
+            return OVERFLOW;
+        }
+        return ids.computeIfAbsent(fingerprint, key -> {
+            int next = nextId.getAndIncrement();
+            if (next >= capacity) {
+                return OVERFLOW;
+            }
+            names.set(next, key);
+            return next;
+        });
+    }
+    
+    /**
+     * Регистрирует подключение с отпечатком (любой поток)
+     *
+     * @return Оценка количества подключений отпечатка за последнее окно, включая это
+     */
+    public double record(int id, long now) {
+        long window = now / windowMs;
+        if (id == OVERFLOW && overflowWindow < 0) {
+            overflowWindow = window;
+        }
+        while (true) {
+            long packed = current.get(id);
+            long packedWindow = packed >>> 32;
+            if (packedWindow == window) {
+                if (current.compareAndSet(id, packed, packed + 1)) {
+                    break;
+                }
+            } else if (current.compareAndSet(id, packed, (window << 32) | 1)) {
+                // Закрытое окно становится предыдущим только если оно соседнее
+                previous.set(id, packedWindow == window - 1 ? packed : 0);
+                break;
+            }
+        }
+        return estimate(id, now);
+    }
+    
+    /**
+     * Оценка количества подключений отпечатка за последнее окно
+     */
+    public double estimate(int id, long now) {
+        long window = now / windowMs;
+        long packed = current.get(id);
+        long last = previous.get(id);
+        
+        long currentCount = 0;
+        long previousCount = 0;
+        if ((packed >>> 32) == window) {
+            currentCount = packed & 0xFFFFFFFFL;
+            previousCount = (last >>> 32) == window - 1 ? last & 0xFFFFFFFFL : 0;
+        } else if ((packed >>> 32) == window - 1) {
+            previousCount = packed & 0xFFFFFFFFL;
+        }
+        double elapsed = (double) (now % windowMs) / windowMs;
+        return currentCount + previousCount * (1 - elapsed);
+    }
+    
+    /**
+     * Самые частые отпечатки за последнее окно
+     */
+    public List<HeavyHitter> top(int limit, long now) {
+        List<HeavyHitter> result = new ArrayList<>();
+        int known = Math.min(nextId.get(), capacity);
+        for (int id = OVERFLOW + 1; id < known; id++) {
+            String name = names.get(id);
+            long count = Math.round(estimate(id, now));
+            if (name != null && count > 0) {
+                result.add(new HeavyHitter(name, count));
+            }
+        }
+        result.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed());
+        return result.subList(0, Math.min(Math.max(0, limit), result.size()));
+    }
+    
+    /**
+     * Количество интернированных отпечатков
+     */
+    public int size() {
+        return Math.min(nextId.get(), capacity) - 1;
+    }
+    
+    /**
+     * Таблица переполнилась в одном из прошлых окон и должна быть заменена новой
+     */
+    public boolean isExpired(long now) {
+        long window = overflowWindow;
+        return window >= 0 && now / windowMs > window;
+    }
+    
+    /**
+     * Полна ли таблица отпечатков
+     */
+    public boolean isFull() {
+        return nextId.get() >= capacity;
+    }
+}
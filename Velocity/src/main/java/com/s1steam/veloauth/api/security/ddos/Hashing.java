@@ -0,0 +1,27 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+/**
+ * Хэширование строковых ключей для вероятностных структур
+ */
+final class Hashing {
+    
+    private Hashing() {
+    }
+    
+    /**
+     * 64-битный хэш символов строки (FNV-1a с финальным перемешиванием murmur3)
+     * Младшая и старшая половины используются как две независимые хэш-функции
+     */
+    static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,190 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.models.HeavyHitter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Поиск самых частых ключей в потоке событий за фиксированную память
+ * Count-Min скетч оценивает частоту любого ключа сверху (консервативное обновление),
+ * таблица space-saving хранит только topSize ключей с наибольшими оценками.
+ * Раз в окно все счетчики делятся пополам, поэтому оценки отражают недавний трафик.
+ * Не потокобезопасен - экземпляр принадлежит одному шарду
+ */
+public final class HeavyHitterSketch {
+    
+    private static final int DEPTH = 4;
+    
+    private final int[] counters;
+    private final int mask;
+    private final long windowMs;
+    private long decayedAt;
+    
+    // Таблица space-saving: ключи, их оценки и индекс ключа в таблице
+    private final String[] keys;
+    private final int[] counts;
+    private final Map<String, Integer> slots;
+    private int size;
+    
+    /**
+     * @param width Ширина строки скетча, округляется вверх до степени двойки
+     * @param topSize Количество отслеживаемых ключей
+     * @param windowMs Период уменьшения счетчиков вдвое
+     */
+    public HeavyHitterSketch(int width, int topSize, long windowMs) {
+        if (width <= 0 || topSize <= 0 || windowMs <= 0) {
+            throw new IllegalArgumentException("Width, top size and window must be positive");
+        }
+        int columns = Integer.highestOneBit(width);
+        if (columns < width) {
+            columns <<= 1;
+        }
+        this.counters = new int[DEPTH * columns];
+        this.mask = columns - 1;
+        this.windowMs = windowMs;
+        this.keys = new String[topSize];
+        this.counts = new int[topSize];
+        this.slots = new HashMap<>(topSize * 2);
+    }
+    
+    /**
+     * Регистрирует событие ключа
+     *
+     * @param key Ключ (IP адрес, подсеть, ник)
+     * @param now Текущее время в миллисекундах
+     * @return Оценка частоты ключа, включая это событие
+     */
+    public int add(String key, long now) {
+        decay(now);
+        
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[index(row, h1, h2)]);
+        }
+        if (estimate < Integer.MAX_VALUE) {
+            estimate++;
+        }
+        
+        // Консервативное обновление: увеличиваются только счетчики ниже новой оценки
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(row, h1, h2);
+            if (counters[index] < estimate) {
+                counters[index] = estimate;
+            }
+        }
+        
+        offer(key, estimate);
+        return estimate;
+    }
+    
+    /**
+     * Оценка частоты ключа сверху
+     */
+    public int estimate(String key, long now) {
+        decay(now);
+        
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[index(row, h1, h2)]);
+        }
+        return estimate;
+    }
+    
+    /**
+     * Отслеживаемые ключи по убыванию оценки
+     */
+    public List<HeavyHitter> top(long now) {
+        decay(now);
+        
+        List<HeavyHitter> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new HeavyHitter(keys[i], counts[i]));
+        }
+        result.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed());
+        return result;
+    }
+    
+    private int index(int row, int h1, int h2) {
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+    
+    /**
+     * Обновляет таблицу space-saving: новый ключ вытесняет ключ с наименьшей оценкой,
+     * если его оценка выше
+     */
+    private void offer(String key, int estimate) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            counts[slot] = estimate;
+            return;
+        }
+        
+        if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = estimate;
+            slots.put(key, size);
+            size++;
+            return;
+        }
+        
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        if (estimate > counts[min]) {
+            slots.remove(keys[min]);
+            keys[min] = key;
+            counts[min] = estimate;
+            slots.put(key, min);
+        }
+    }
+    
+    /**
+     * Делит счетчики пополам за каждое прошедшее окно
+     * Ключи, оценка которых стала нулевой, удаляются из таблицы
+     */
+    private void decay(long now) {
+        if (decayedAt == 0) {
+            decayedAt = now;
+            return;
+        }
+        long periods = (now - decayedAt) / windowMs;
+        if (periods <= 0) {
+            return;
+        }
+        decayedAt += periods * windowMs;
+        int shift = (int) Math.min(31, periods);
+        
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= shift;
+        }
+        
+        int kept = 0;
+        slots.clear();
+        for (int i = 0; i < size; i++) {
+            int count = counts[i] >>> shift;
+            if (count > 0) {
+                keys[kept] = keys[i];
+                counts[kept] = count;
+                slots.put(keys[kept], kept);
+                kept++;
+            }
+        }
+        for (int i = kept; i < size; i++) {
+            keys[i] = null;
+        }
+        size = kept;
+    }
+}
@@ -0,0 +1,94 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Счетчик событий с фиксированным окном для набора ключей
+ * Окна хранятся в порядке открытия, поэтому истекшие записи всегда
+ * находятся в начале и удаляются за амортизированное O(1)
+ * Не потокобезопасен - экземпляр принадлежит одному шарду
+ */
+public final class RateLimiter {
+    
+    private final long windowMs;
+    private final LinkedHashMap<String, Window> windows;
+    
+    public RateLimiter(long windowMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + windowMs);
+        }
+        this.windowMs = windowMs;
+        this.windows = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Регистрирует событие для ключа
+     *
+     * @param key Ключ (IP адрес, имя игрока)
+     * @param now Текущее время в миллисекундах
+     * @return Количество событий в текущем окне, включая это
+     */
+    public int increment(String key, long now) {
+        Window window = windows.get(key);
+        if (window == null) {
+            window = new Window(now);
+            windows.put(key, window);
+        } else if (now - window.start >= windowMs) {
+            // Переоткрываем окно и переносим ключ в конец очереди
+            windows.remove(key);
+            window.start = now;
+            window.count = 0;
+            windows.put(key, window);
+        }
+        
+        evictExpired(now);
+        return ++window.count;
+    }
+    
+    /**
+     * Возвращает количество событий ключа в текущем окне
+     */
+    public int count(String key, long now) {
+        Window window = windows.get(key);
+        if (window == null || now - window.start >= windowMs) {
+            return 0;
+        }
+        return window.count;
+    }
+    
+    /**
+     * Удаляет все истекшие окна
+     *
+     * @return Количество удаленных записей
+     */
+    public int evictExpired(long now) {
+        int removed = 0;
+        Iterator<Window> iterator = windows.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().start < windowMs) {
+                break;
+            }
+            iterator.remove();
+            removed++;
+        }
+        return removed;
+    }
+    
+    public int size() {
+        return windows.size();
+    }
+    
+    public long getWindowMs() {
+        return windowMs;
+    }
+    
+    private static final class Window {
+        private long start;
+        private int count;
+        
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Проверка переподключением для новых IP во время атаки (по принципу SYN cookie)
+ * Токен - HMAC-SHA256 от IP и номера временного интервала на секретном ключе,
+ * поэтому проверка предъявленного токена не требует состояния. Токен принимается
+ * первой меткой адреса сервера в handshake (токен.play.example.com при wildcard DNS).
+ * Обычный клиент переподключается к тому же адресу - такие IP отмечаются
+ * в двух поколениях фильтра Блума фиксированного размера (текущий и предыдущий
+ * интервал), поэтому память не растет от количества поддельных источников
+ */
+public final class ReconnectChallenge {
+    
+    private static final String ALGORITHM = "HmacSHA256";
+    
+    // Байт HMAC в токене (16 hex символов)
+    private static final int TOKEN_BYTES = 8;
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private final SecretKeySpec key;
+    private final long sliceMs;
+    private final int filterCapacity;
+    private final ThreadLocal<Mac> mac;
+    
+    // Отметки выданных проверок текущего и предыдущего интервала
+    private final AtomicReference<Generation> current;
+    private volatile Generation previous;
+    
+    /**
+     * @param secret Секретный ключ (пустой - случайный ключ на время работы прокси)
+     * @param sliceMs Длительность интервала, токен действует в своем и следующем интервале
+     * @param filterCapacity Ожидаемое количество проверок за интервал
+     */
+    public ReconnectChallenge(byte[] secret, long sliceMs, int filterCapacity) {
+        if (sliceMs <= 0 || filterCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid challenge parameters");
+        }
+        byte[] keyBytes = secret;
+        if (keyBytes == null || keyBytes.length == 0) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.sliceMs = sliceMs;
+        this.filterCapacity = filterCapacity;
+        this.mac = ThreadLocal.withInitial(this::createMac);
+        this.current = new AtomicReference<>(new Generation(-1, filterCapacity));
+        this.previous = new Generation(-2, 1);
+    }
+    
+    /**
+     * Создает ключ из строки конфигурации
+     */
+    public static ReconnectChallenge fromSecret(String secret, long sliceMs, int filterCapacity) {
+        return new ReconnectChallenge(secret.getBytes(StandardCharsets.UTF_8), sliceMs, filterCapacity);
+    }
+    
+    /**
+     * Выдает проверку IP: запоминает его в фильтре текущего интервала
+     *
+     * @return Токен для предъявления в адресе сервера
+     */
+    public String issue(String ip, long now) {
+        long slice = now / sliceMs;
+        String token = token(ip, slice);
+        generation(slice).filter.add(token);
+        return token;
+    }
+    
+    /**
+     * Прошел ли IP проверку: предъявил токен в адресе сервера
+     * или переподключился после выданной проверки
+     *
+     * @param virtualHost Адрес сервера из handshake (null если неизвестен)
+     */
+    public boolean verify(String ip, String virtualHost, long now) {
+        long slice = now / sliceMs;
+        String presented = tokenLabel(virtualHost);
+        String currentToken = token(ip, slice);
+        String previousToken = token(ip, slice - 1);
+        if (presented != null && (matches(presented, currentToken) || matches(presented, previousToken))) {
+            return true;
+        }
+        
+        Generation latest = current.get();
+        Generation older = previous;
+        return (latest.slice == slice && latest.filter.mightContain(currentToken))
+            || (latest.slice == slice - 1 && latest.filter.mightContain(previousToken))
+            || (older.slice == slice - 1 && older.filter.mightContain(previousToken));
+    }
+    
+    /**
+     * Время окончания действия токена, выданного в момент now
+     */
+    public long expiresAt(long now) {
+        return (now / sliceMs + 2) * sliceMs;
+    }
+    
+    /**
+     * Токен IP для интервала: первые байты HMAC в hex
+     */
+    String token(String ip, long slice) {
+        Mac hmac = mac.get();
+        hmac.update(ip.getBytes(StandardCharsets.UTF_8));
+        hmac.update((byte) '|');
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            hmac.update((byte) (slice >>> shift));
+        }
+        byte[] digest = hmac.doFinal();
+        
+        char[] token = new char[TOKEN_BYTES * 2];
+        for (int i = 0; i < TOKEN_BYTES; i++) {
+            token[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            token[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(token);
+    }
+    
+    /**
+     * Фильтр интервала; при смене интервала текущее поколение становится предыдущим
+     */
+    private Generation generation(long slice) {
+        while (true) {
+            Generation latest = current.get();
+            if (latest.slice >= slice) {
+                return latest;
+            }
+            Generation fresh = new Generation(slice, filterCapacity);
+            if (current.compareAndSet(latest, fresh)) {
+                previous = latest;
+                return fresh;
+            }
+        }
+    }
+    
+    private static String tokenLabel(String virtualHost) {
+        if (virtualHost == null) {
+            return null;
+        }
+        int dot = virtualHost.indexOf('.');
+        return dot == TOKEN_BYTES * 2 ? virtualHost.substring(0, dot).toLowerCase(Locale.ROOT) : null;
+    }
+    
+    private static boolean matches(String presented, String expected) {
+        return MessageDigest.isEqual(presented.getBytes(StandardCharsets.US_ASCII),
+            expected.getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+    
+    private static final class Generation {
+        
+        private final long slice;
+        private final BloomFilter filter;
+        
+        private Generation(long slice, int capacity) {
+            this.slice = slice;
+            this.filter = new BloomFilter(capacity);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Оценка количества уникальных ключей за скользящее окно (HyperLogLog)
+ * Время делится на корзины, у каждой корзины свои регистры; оценка за окно -
+ * объединение (максимум регистров) последних корзин. Регистры по 8 бит упакованы
+ * в AtomicLongArray и обновляются через CAS, поэтому счетчик разделяется всеми шардами.
+ * Корзина нового периода заменяется целиком - события, записанные в старую корзину
+ * в момент замены, теряются, что допустимо для оценки
+ */
+public final class RollingHyperLogLog {
+    
+    private final int precision;
+    private final int registers;
+    private final long bucketMs;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final double alpha;
+    
+    /**
+     * @param precision Бит индекса регистра (4-16): 2^precision регистров на корзину
+     * @param bucketCount Количество корзин - максимальная длина окна в корзинах
+     * @param bucketMs Длительность корзины в миллисекундах
+     */
+    public RollingHyperLogLog(int precision, int bucketCount, long bucketMs) {
+        if (precision < 4 || precision > 16 || bucketCount <= 0 || bucketMs <= 0) {
+            throw new IllegalArgumentException("Invalid HyperLogLog parameters");
+        }
+        this.precision = precision;
+        this.registers = 1 << precision;
+        this.bucketMs = bucketMs;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        this.alpha = 0.7213 / (1 + 1.079 / registers);
+    }
+    
+    /**
+     * Учитывает ключ в корзине текущего периода
+     */
+    public void add(String key, long now) {
+        long period = now / bucketMs;
+        int slot = (int) (period % buckets.length());
+        Bucket bucket = buckets.get(slot);
+        if (bucket == null || bucket.period != period) {
+            if (bucket != null && bucket.period > period) {
+                return;
+            }
+            Bucket fresh = new Bucket(period, registers);
+            bucket = buckets.compareAndSet(slot, bucket, fresh) ? fresh : buckets.get(slot);
+            if (bucket.period != period) {
+                return;
+            }
+        }
+        
+        long hash = Hashing.hash64(key);
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Math.min(64 - precision, Long.numberOfLeadingZeros(hash << precision)) + 1;
+        bucket.update(index, rank);
+    }
+    
+    /**
+     * Оценка количества уникальных ключей за последние windowMs
+     * Окно округляется вверх до целого числа корзин, включая текущую
+     */
+    public long estimate(long windowMs, long now) {
+        long current = now / bucketMs;
+        long count = Math.min(buckets.length(), Math.max(1, (windowMs + bucketMs - 1) / bucketMs));
+        
+        int[] merged = new int[registers];
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.period <= current && current - bucket.period < count) {
+                bucket.mergeInto(merged);
+            }
+        }
+        
+        double sum = 0;
+        int zeros = 0;
+        for (int rank : merged) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha * registers * registers / sum;
+        
+        // Поправка для малых значений - линейный подсчет по пустым регистрам
+        if (estimate <= 2.5 * registers && zeros > 0) {
+            estimate = registers * Math.log((double) registers / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    /**
+     * Регистры одного периода
+     */
+    private static final class Bucket {
+        
+        private final long period;
+        private final AtomicLongArray words;
+        
+        private Bucket(long period, int registers) {
+            this.period = period;
+            this.words = new AtomicLongArray(registers >>> 3);
+        }
+        
+        private void update(int index, int rank) {
+            int word = index >>> 3;
+            int shift = (index & 7) << 3;
+            long current = words.get(word);
+            while (((current >>> shift) & 0xFF) < rank) {
+                long updated = (current & ~(0xFFL << shift)) | ((long) rank << shift);
+                if (words.compareAndSet(word, current, updated)) {
+                    return;
+                }
+                current = words.get(word);
+            }
+        }
+        
+        private void mergeInto(int[] merged) {
+            for (int i = 0; i < merged.length; i++) {
+                int rank = (int) ((words.get(i >>> 3) >>> ((i & 7) << 3)) & 0xFF);
+                if (rank > merged[i]) {
+                    merged[i] = rank;
+                }
+            }
+        }
+    }
+}
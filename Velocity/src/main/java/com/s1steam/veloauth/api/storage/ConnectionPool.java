@@ -0,0 +1,144 @@
+package com.s1steam.veloauth.api.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный пул JDBC соединений
+ * Не больше maxSize соединений одновременно, соединения создаются по требованию
+ * и проверяются перед повторной выдачей. Если все соединения заняты дольше
+ * таймаута, выдача завершается ошибкой вместо бесконечного ожидания
+ */
+public final class ConnectionPool implements AutoCloseable {
+    
+    // Таймаут проверки соединения перед выдачей (секунды)
+    private static final int VALIDATION_TIMEOUT = 2;
+    
+    private final String url;
+    private final String username;
+    private final String password;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+    private final BlockingQueue<Connection> idle;
+    private volatile boolean closed;
+    
+    public ConnectionPool(String url, String username, String password, int maxSize, long acquireTimeoutMs) {
+        if (maxSize <= 0 || acquireTimeoutMs < 0) {
+            throw new IllegalArgumentException("Invalid connection pool parameters");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+    
+    /**
+     * Выдает соединение, закрытие Lease возвращает его в пул
+     *
+     * @throws SQLTimeoutException если свободного соединения нет дольше таймаута
+     * @throws SQLException если пул закрыт или соединение не открывается
+     */
+    public Lease acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No free connection in pool after " + acquireTimeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        }
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                if (connection.isValid(VALIDATION_TIMEOUT)) {
+                    return new Lease(connection);
+                }
+                closeQuietly(connection);
+            }
+            return new Lease(DriverManager.getConnection(url, username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (broken || closed || connection.isClosed() || !idle.offer(connection)) {
+                closeQuietly(connection);
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+    
+    /**
+     * Свободных соединений в пуле
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+    
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Соединение уже недоступно
+        }
+    }
+    
+    /**
+     * Выданное соединение
+     */
+    public final class Lease implements AutoCloseable {
+        
+        private final Connection connection;
+        private boolean broken;
+        private boolean released;
+        
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+        
+        public Connection getConnection() {
+            return connection;
+        }
+        
+        /**
+         * Соединение закроется вместо возврата в пул (после ошибки посреди транзакции)
+         */
+        public void markBroken() {
+            broken = true;
+        }
+        
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(connection, broken);
+            }
+        }
+    }
+}
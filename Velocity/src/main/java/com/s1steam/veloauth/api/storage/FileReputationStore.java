@@ -0,0 +1,273 @@
+package com.s1steam.veloauth.api.storage;
+
+import com.s1steam.veloauth.api.models.IPReputationData;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Файловое хранилище репутации (type: file)
+ * Файл отображен в память и разбит на слоты фиксированного размера по IP:
+ * изменение записи - запись в свой слот без перезаписи файла, удаленный слот
+ * переиспользуется. Индекс IP -> слот строится при открытии сканированием слотов.
+ * Признак занятости слота пишется последним, поэтому слот, запись которого
+ * прервалась, при открытии считается свободным.
+ * При нехватке слотов файл удваивается и отображается заново
+ */
+public final class FileReputationStore extends WriteBehindStore {
+    
+    // "VAR2": слот с историей блокировок
+    private static final int MAGIC = 0x56415232;
+    
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 256;
+    private static final int INITIAL_SLOTS = 1024;
+    
+    // Смещения полей в слоте
+    private static final int USED = 0;
+    private static final int IP_LENGTH = 1;
+    private static final int IP = 2;
+    private static final int SUCCESSFUL_LOGINS = 48;
+    private static final int FAILURE_SCORE = 52;
+    private static final int BLOCK_PENALTY = 60;
+    private static final int DECAYED_AT = 68;
+    private static final int LAST_ATTEMPT = 76;
+    private static final int BLOCK_UNTIL = 84;
+    private static final int FLAGS = 92;
+    private static final int UPDATED_AT = 93;
+    private static final int HISTORY_LENGTH = 101;
+    private static final int HISTORY = 102;
+    private static final int REASON_LENGTH = HISTORY + IPReputationData.BLOCK_HISTORY_SIZE * Long.BYTES;
+    private static final int REASON = REASON_LENGTH + 1;
+    
+    private static final int MAX_IP_BYTES = SUCCESSFUL_LOGINS - IP;
+    private static final int MAX_REASON_BYTES = RECORD_BYTES - REASON;
+    
+    private static final int FLAG_WHITELISTED = 1;
+    private static final int FLAG_BLACKLISTED = 2;
+    private static final int FLAG_VPN = 4;
+    
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Integer> index;
+    private final ArrayDeque<Integer> free;
+    private MappedByteBuffer buffer;
+    private int slots;
+    
+    private FileReputationStore(Path path, FileChannel channel, MappedByteBuffer buffer, int slots,
+                                long flushIntervalMs, int batchSize, Logger logger) {
+        super("VeloAuth-Storage", flushIntervalMs, batchSize, logger);
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slots = slots;
+        this.index = new HashMap<>();
+        this.free = new ArrayDeque<>();
+        for (int slot = 0; slot < slots; slot++) {
+            int base = offset(slot);
+            if (buffer.get(base + USED) == 1) {
+                index.put(readString(base + IP_LENGTH, base + IP, MAX_IP_BYTES), slot);
+            } else {
+                free.add(slot);
+            }
+        }
+    }
+    
+    /**
+     * Открывает или создает файл хранилища
+     *
+     * @throws IOException если файл недоступен или имеет чужой формат
+     */
+    public static FileReputationStore open(Path path, long flushIntervalMs, int batchSize, Logger logger)
+            throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            int slots = size < HEADER_BYTES ? INITIAL_SLOTS : (int) ((size - HEADER_BYTES) / RECORD_BYTES);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length(slots));
+            if (size < HEADER_BYTES) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, RECORD_BYTES);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_BYTES) {
+                throw new IOException("Unknown reputation storage format in " + path);
+            }
+            return new FileReputationStore(path, channel, buffer, slots, flushIntervalMs, batchSize, logger);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    @Override
+    protected synchronized void writeBatch(List<ReputationRecord> batch) throws IOException {
+        for (ReputationRecord record : batch) {
+            Integer slot = index.get(record.getIp());
+            if (slot == null) {
+                if (free.isEmpty()) {
+                    grow();
+                }
+                slot = free.poll();
+                index.put(record.getIp(), slot);
+            }
+            write(offset(slot), record);
+        }
+        buffer.force();
+    }
+    
+    @Override
+    protected synchronized ReputationRecord read(String ip) {
+        Integer slot = index.get(ip);
+        return slot == null ? null : read(offset(slot));
+    }
+    
+    @Override
+    protected synchronized List<ReputationRecord> readAll() {
+        List<ReputationRecord> records = new ArrayList<>(index.size());
+        for (int slot : index.values()) {
+            records.add(read(offset(slot)));
+        }
+        return records;
+    }
+    
+    @Override
+    protected synchronized int deleteExpired(long lastAttemptBefore, long now) {
+        int removed = 0;
+        Iterator<Map.Entry<String, Integer>> iterator = index.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> entry = iterator.next();
+            int slot = entry.getValue();
+            if (read(offset(slot)).isExpired(lastAttemptBefore, now)) {
+                buffer.put(offset(slot) + USED, (byte) 0);
+                free.add(slot);
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            buffer.force();
+        }
+        return removed;
+    }
+    
+    @Override
+    protected synchronized void closeStorage() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+    
+    @Override
+    public String getName() {
+        return "file";
+    }
+    
+    /**
+     * Записей в файле
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+    
+    /**
+     * Удваивает количество слотов
+     */
+    private void grow() throws IOException {
+        int grown = slots * 2;
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length(grown));
+        for (int slot = slots; slot < grown; slot++) {
+            free.add(slot);
+        }
+        slots = grown;
+        logger.info("Reputation storage " + path.getFileName() + " grown to " + grown + " records");
+    }
+    
+    private void write(int base, ReputationRecord record) {
+        buffer.put(base + USED, (byte) 0);
+        writeString(base + IP_LENGTH, base + IP, record.getIp(), MAX_IP_BYTES);
+        buffer.putInt(base + SUCCESSFUL_LOGINS, record.getSuccessfulLogins());
+        buffer.putDouble(base + FAILURE_SCORE, record.getFailureScore());
+        buffer.putDouble(base + BLOCK_PENALTY, record.getBlockPenalty());
+        buffer.putLong(base + DECAYED_AT, record.getDecayedAt());
+        buffer.putLong(base + LAST_ATTEMPT, record.getLastAttempt());
+        buffer.putLong(base + BLOCK_UNTIL, record.getBlockUntil());
+        int flags = (record.isWhitelisted() ? FLAG_WHITELISTED : 0)
+            | (record.isBlacklisted() ? FLAG_BLACKLISTED : 0)
+            | (record.isVPN() ? FLAG_VPN : 0);
+        buffer.put(base + FLAGS, (byte) flags);
+        buffer.putLong(base + UPDATED_AT, record.getUpdatedAt());
+        long[] history = record.getBlockHistory();
+        int length = Math.min(history.length, IPReputationData.BLOCK_HISTORY_SIZE);
+        buffer.put(base + HISTORY_LENGTH, (byte) length);
+        for (int i = 0; i < length; i++) {
+            buffer.putLong(base + HISTORY + i * Long.BYTES, history[history.length - length + i]);
+        }
+        if (record.getBlockReason() == null) {
+            buffer.put(base + REASON_LENGTH, (byte) -1);
+        } else {
+            writeString(base + REASON_LENGTH, base + REASON, record.getBlockReason(), MAX_REASON_BYTES);
+        }
+        buffer.put(base + USED, (byte) 1);
+    }
+    
+    private ReputationRecord read(int base) {
+        int flags = buffer.get(base + FLAGS);
+        String reason = buffer.get(base + REASON_LENGTH) == -1
+            ? null
+            : readString(base + REASON_LENGTH, base + REASON, MAX_REASON_BYTES);
+        long[] history = new long[Math.min(buffer.get(base + HISTORY_LENGTH), IPReputationData.BLOCK_HISTORY_SIZE)];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = buffer.getLong(base + HISTORY + i * Long.BYTES);
+        }
+        return new ReputationRecord(readString(base + IP_LENGTH, base + IP, MAX_IP_BYTES),
+            buffer.getInt(base + SUCCESSFUL_LOGINS),
+            buffer.getDouble(base + FAILURE_SCORE), buffer.getDouble(base + BLOCK_PENALTY),
+            buffer.getLong(base + DECAYED_AT), buffer.getLong(base + LAST_ATTEMPT), buffer.getLong(base + BLOCK_UNTIL),
+            reason, (flags & FLAG_WHITELISTED) != 0, (flags & FLAG_BLACKLISTED) != 0, (flags & FLAG_VPN) != 0,
+            buffer.getLong(base + UPDATED_AT), history);
+    }
+    
+    /**
+     * Пишет строку UTF-8, усеченную по границе символа до max байт
+     */
+    private void writeString(int lengthOffset, int offset, String value, int max) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, max);
+        // Не разрывать многобайтовый символ: байты продолжения имеют вид 10xxxxxx
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        buffer.put(lengthOffset, (byte) length);
+        buffer.put(offset, bytes, 0, length);
+    }
+    
+    private String readString(int lengthOffset, int offset, int max) {
+        byte[] bytes = new byte[Math.min(buffer.get(lengthOffset) & 0xFF, max)];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+    
+    private static long length(int slots) {
+        return HEADER_BYTES + (long) slots * RECORD_BYTES;
+    }
+}
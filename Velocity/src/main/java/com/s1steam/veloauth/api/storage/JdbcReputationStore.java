@@ -0,0 +1,272 @@
+package com.s1steam.veloauth.api.storage;
+
+import org.slf4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хранилище репутации в SQL базе (type: jdbc): MySQL/MariaDB, PostgreSQL или H2
+ * Очередь записывается пакетными upsert в одной транзакции через ограниченный пул
+ * соединений. Драйвер базы должен быть доступен прокси (плагин его не содержит).
+ * Одну базу могут использовать несколько прокси
+ */
+public final class JdbcReputationStore extends WriteBehindStore {
+    
+    private static final String TABLE = "veloauth_ip_reputation";
+    
+    private static final String COLUMNS = "ip, successful_logins, failure_score, block_penalty, decayed_at, " +
+        "last_attempt, block_until, block_reason, whitelisted, blacklisted, vpn, block_history, updated_at";
+    private static final String PLACEHOLDERS = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+    // updated_at последним: MySQL присваивает колонки по порядку, условия выше видят старое значение
+    private static final String[] UPDATED_COLUMNS = {"successful_logins", "failure_score", "block_penalty",
+        "decayed_at", "last_attempt", "block_until", "block_reason", "whitelisted", "blacklisted", "vpn",
+        "block_history", "updated_at"};
+    
+    // Запись истории блокировок: 16 шестнадцатеричных цифр
+    private static final int HISTORY_ENTRY_CHARS = 16;
+    
+    // Ожидание свободного соединения пула
+    private static final long ACQUIRE_TIMEOUT_MS = 5000;
+    
+    private final ConnectionPool pool;
+    private final String upsertSql;
+    
+    private JdbcReputationStore(ConnectionPool pool, String upsertSql, long flushIntervalMs, int batchSize,
+                                Logger logger) {
+        super("VeloAuth-Storage", flushIntervalMs, batchSize, logger);
+        this.pool = pool;
+        this.upsertSql = upsertSql;
+    }
+    
+    /**
+     * Открывает пул и создает таблицу, если ее нет
+     *
+     * @param poolSize Максимум одновременных соединений
+     * @throws IllegalArgumentException если база по URL не поддерживается
+     * @throws SQLException если база недоступна
+     */
+    public static JdbcReputationStore open(String url, String username, String password, int poolSize,
+                                           long flushIntervalMs, int batchSize, Logger logger) throws SQLException {
+        String upsertSql = upsertSql(url);
+        ConnectionPool pool = new ConnectionPool(url, username, password, poolSize, ACQUIRE_TIMEOUT_MS);
+        try (ConnectionPool.Lease lease = pool.acquire();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                "ip VARCHAR(45) NOT NULL PRIMARY KEY, " +
+                "successful_logins INT NOT NULL, " +
+                "failure_score DOUBLE PRECISION NOT NULL, " +
+                "block_penalty DOUBLE PRECISION NOT NULL, " +
+                "decayed_at BIGINT NOT NULL, " +
+                "last_attempt BIGINT NOT NULL, " +
+                "block_until BIGINT NOT NULL, " +
+                "block_reason VARCHAR(255), " +
+                "whitelisted BOOLEAN NOT NULL, " +
+                "blacklisted BOOLEAN NOT NULL, " +
+                "vpn BOOLEAN NOT NULL, " +
+                "block_history VARCHAR(128), " +
+                "updated_at BIGINT DEFAULT 0 NOT NULL)");
+            addColumn(statement, "block_history", "VARCHAR(128)");
+            addColumn(statement, "updated_at", "BIGINT DEFAULT 0 NOT NULL");
+        } catch (SQLException | RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+        return new JdbcReputationStore(pool, upsertSql, flushIntervalMs, batchSize, logger);
+    }
+    
+    /**
+     * Добавляет колонку в таблицу, созданную без нее
+     */
+    private static void addColumn(Statement statement, String column, String definition) throws SQLException {
+        try {
+            statement.executeQuery("SELECT " + column + " FROM " + TABLE + " WHERE 1 = 0").close();
+        } catch (SQLException missing) {
+            statement.executeUpdate("ALTER TABLE " + TABLE + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+    
+    /**
+     * Вставка или замена записи по IP на диалекте базы
+     * Запись заменяется, только если она не новее сохраняемой: другой прокси мог
+     * записать более свежий снимок раньше. Снимки одного времени заменяются,
+     * потому что прокси пишет их по порядку
+     */
+    private static String upsertSql(String url) {
+        StringBuilder sql = new StringBuilder();
+        if (url.startsWith("jdbc:h2:")) {
+            sql.append("MERGE INTO ").append(TABLE).append(" t USING (VALUES (").append(PLACEHOLDERS)
+                .append(")) s (").append(COLUMNS).append(") ON t.ip = s.ip")
+                .append(" WHEN MATCHED AND t.updated_at <= s.updated_at THEN UPDATE SET ");
+            for (int i = 0; i < UPDATED_COLUMNS.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(UPDATED_COLUMNS[i]).append(" = s.").append(UPDATED_COLUMNS[i]);
+            }
+            return sql.append(" WHEN NOT MATCHED THEN INSERT (").append(COLUMNS).append(") VALUES (s.")
+                .append(COLUMNS.replace(", ", ", s.")).append(")").toString();
+        }
+        sql.append("INSERT INTO ").append(TABLE).append(" (").append(COLUMNS).append(") VALUES (")
+            .append(PLACEHOLDERS).append(")");
+        if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) {
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            for (int i = 0; i < UPDATED_COLUMNS.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(UPDATED_COLUMNS[i])
+                    .append(" = IF(updated_at <= VALUES(updated_at), VALUES(").append(UPDATED_COLUMNS[i])
+                    .append("), ").append(UPDATED_COLUMNS[i]).append(")");
+            }
+        } else if (url.startsWith("jdbc:postgresql:")) {
+            sql.append(" ON CONFLICT (ip) DO UPDATE SET ");
+            for (int i = 0; i < UPDATED_COLUMNS.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(UPDATED_COLUMNS[i]).append(" = EXCLUDED.")
+                    .append(UPDATED_COLUMNS[i]);
+            }
+            sql.append(" WHERE ").append(TABLE).append(".updated_at <= EXCLUDED.updated_at");
+        } else {
+            throw new IllegalArgumentException("Unsupported database URL (expected mysql, mariadb, postgresql or h2): " +
+                url);
+        }
+        return sql.toString();
+    }
+    
+    @Override
+    protected void writeBatch(List<ReputationRecord> batch) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.acquire()) {
+            Connection connection = lease.getConnection();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(upsertSql)) {
+                for (ReputationRecord record : batch) {
+                    statement.setString(1, record.getIp());
+                    statement.setInt(2, record.getSuccessfulLogins());
+                    statement.setDouble(3, record.getFailureScore());
+                    statement.setDouble(4, record.getBlockPenalty());
+                    statement.setLong(5, record.getDecayedAt());
+                    statement.setLong(6, record.getLastAttempt());
+                    statement.setLong(7, record.getBlockUntil());
+                    if (record.getBlockReason() == null) {
+                        statement.setNull(8, Types.VARCHAR);
+                    } else {
+                        statement.setString(8, truncate(record.getBlockReason(), 255));
+                    }
+                    statement.setBoolean(9, record.isWhitelisted());
+                    statement.setBoolean(10, record.isBlacklisted());
+                    statement.setBoolean(11, record.isVPN());
+                    statement.setString(12, encodeHistory(record.getBlockHistory()));
+                    statement.setLong(13, record.getUpdatedAt());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                rollback(lease);
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+    
+    @Override
+    protected ReputationRecord read(String ip) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.acquire();
+             PreparedStatement statement = lease.getConnection().prepareStatement(
+                 "SELECT " + COLUMNS + " FROM " + TABLE + " WHERE ip = ?")) {
+            statement.setString(1, ip);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? record(result) : null;
+            }
+        }
+    }
+    
+    @Override
+    protected List<ReputationRecord> readAll() throws SQLException {
+        List<ReputationRecord> records = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.acquire();
+             Statement statement = lease.getConnection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT " + COLUMNS + " FROM " + TABLE)) {
+            while (result.next()) {
+                records.add(record(result));
+            }
+        }
+        return records;
+    }
+    
+    private static ReputationRecord record(ResultSet result) throws SQLException {
+        return new ReputationRecord(result.getString(1), result.getInt(2), result.getDouble(3),
+            result.getDouble(4), result.getLong(5), result.getLong(6), result.getLong(7),
+            result.getString(8), result.getBoolean(9), result.getBoolean(10), result.getBoolean(11),
+            result.getLong(13), decodeHistory(result.getString(12)));
+    }
+    
+    /**
+     * История блокировок строкой фиксированной ширины, null - истории нет
+     */
+    private static String encodeHistory(long[] history) {
+        if (history.length == 0) {
+            return null;
+        }
+        StringBuilder encoded = new StringBuilder(history.length * HISTORY_ENTRY_CHARS);
+        for (long entry : history) {
+            String hex = Long.toHexString(entry);
+            encoded.append("0".repeat(HISTORY_ENTRY_CHARS - hex.length())).append(hex);
+        }
+        return encoded.toString();
+    }
+    
+    private static long[] decodeHistory(String encoded) {
+        if (encoded == null) {
+            return new long[0];
+        }
+        long[] history = new long[encoded.length() / HISTORY_ENTRY_CHARS];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = Long.parseUnsignedLong(
+                encoded.substring(i * HISTORY_ENTRY_CHARS, (i + 1) * HISTORY_ENTRY_CHARS), 16);
+        }
+        return history;
+    }
+    
+    @Override
+    protected int deleteExpired(long lastAttemptBefore, long now) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.acquire()) {
+            try (PreparedStatement statement = lease.getConnection().prepareStatement("DELETE FROM " + TABLE +
+                    " WHERE last_attempt < ? AND whitelisted = ? AND blacklisted = ? AND block_until <= ?")) {
+                statement.setLong(1, lastAttemptBefore);
+                statement.setBoolean(2, false);
+                statement.setBoolean(3, false);
+                statement.setLong(4, now);
+                return statement.executeUpdate();
+            }
+        }
+    }
+    
+    @Override
+    protected void closeStorage() {
+        pool.close();
+    }
+    
+    @Override
+    public String getName() {
+        return "jdbc";
+    }
+    
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+    
+    private static void rollback(ConnectionPool.Lease lease) {
+        try {
+            lease.getConnection().rollback();
+        } catch (SQLException e) {
+            lease.markBroken();
+        }
+    }
+    
+    private static String truncate(String value, int max) {
+        return value.length() <= max ? value : value.substring(0, max);
+    }
+}
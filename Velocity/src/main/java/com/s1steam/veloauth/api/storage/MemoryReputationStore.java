@@ -0,0 +1,43 @@
+package com.s1steam.veloauth.api.storage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Хранилище без сохранения (type: memory)
+ */
+final class MemoryReputationStore implements ReputationStore {
+    
+    static final MemoryReputationStore INSTANCE = new MemoryReputationStore();
+    
+    private MemoryReputationStore() {
+    }
+    
+    @Override
+    public void save(ReputationRecord record) {
+    }
+    
+    @Override
+    public CompletableFuture<ReputationRecord> load(String ip) {
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    @Override
+    public CompletableFuture<List<ReputationRecord>> loadAll() {
+        return CompletableFuture.completedFuture(List.of());
+    }
+    
+    @Override
+    public CompletableFuture<Integer> purge(long lastAttemptBefore, long now) {
+        return CompletableFuture.completedFuture(0);
+    }
+    
+    @Override
+    public String getName() {
+        return "memory";
+    }
+    
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,148 @@
+package com.s1steam.veloauth.api.storage;
+
+import com.s1steam.veloauth.api.models.IPReputationData;
+
+/**
+ * Неизменяемый снимок репутации IP для хранилища
+ * Снимается в потоке шарда, поэтому запись в хранилище не читает
+ * изменяемую запись репутации из другого потока
+ */
+public final class ReputationRecord {
+    
+    private final String ip;
+    private final int successfulLogins;
+    private final double failureScore;
+    private final double blockPenalty;
+    private final long decayedAt;
+    private final long lastAttempt;
+    private final long blockUntil;
+    private final String blockReason;
+    private final boolean whitelisted;
+    private final boolean blacklisted;
+    private final boolean vpn;
+    private final long updatedAt;
+    private final long[] blockHistory;
+    
+    /**
+     * Запись без истории блокировок, временем изменения считается последняя попытка
+     */
+    public ReputationRecord(String ip, int successfulLogins, double failureScore, double blockPenalty,
+                            long decayedAt, long lastAttempt, long blockUntil, String blockReason,
+                            boolean whitelisted, boolean blacklisted, boolean vpn) {
+        this(ip, successfulLogins, failureScore, blockPenalty, decayedAt, lastAttempt, blockUntil, blockReason,
+            whitelisted, blacklisted, vpn, lastAttempt, new long[0]);
+    }
+    
+    /**
+     * @param updatedAt Время снимка, более старый снимок не перезаписывает более новый в общей базе
+     * @param blockHistory Упакованная история блокировок от самой старой к самой новой
+     */
+    public ReputationRecord(String ip, int successfulLogins, double failureScore, double blockPenalty,
+                            long decayedAt, long lastAttempt, long blockUntil, String blockReason,
+                            boolean whitelisted, boolean blacklisted, boolean vpn, long updatedAt,
+                            long[] blockHistory) {
+        this.ip = ip;
+        this.successfulLogins = successfulLogins;
+        this.failureScore = failureScore;
+        this.blockPenalty = blockPenalty;
+        this.decayedAt = decayedAt;
+        this.lastAttempt = lastAttempt;
+        this.blockUntil = blockUntil;
+        this.blockReason = blockReason;
+        this.whitelisted = whitelisted;
+        this.blacklisted = blacklisted;
+        this.vpn = vpn;
+        this.updatedAt = updatedAt;
+        this.blockHistory = blockHistory.clone();
+    }
+    
+    /**
+     * Снимок записи репутации (только поток шарда записи)
+     *
+     * @param now Время снимка
+     */
+    public static ReputationRecord of(IPReputationData data, long now) {
+        return new ReputationRecord(data.getIp(), data.getSuccessfulLogins(), data.getFailureScore(),
+            data.getBlockPenalty(), data.getDecayedAt(), data.getLastAttempt(), data.getBlockUntil(),
+            data.getBlockReason(), data.isWhitelisted(), data.isBlacklisted(), data.isVPN(), now,
+            data.getPackedBlockHistory());
+    }
+    
+    /**
+     * Переносит сохраненное состояние в запись репутации (только поток шарда записи)
+     */
+    public void applyTo(IPReputationData data) {
+        data.setVPN(vpn);
+        data.setWhitelisted(whitelisted);
+        data.setBlacklisted(blacklisted);
+        data.setBlockUntil(blockUntil);
+        data.setBlockReason(blockReason);
+        data.restoreBlockHistory(blockHistory);
+        data.restore(successfulLogins, failureScore, blockPenalty, decayedAt, lastAttempt);
+    }
+    
+    /**
+     * Запись может быть удалена очисткой: давно неактивна, не в списках и не заблокирована
+     */
+    public boolean isExpired(long lastAttemptBefore, long now) {
+        return lastAttempt < lastAttemptBefore && !whitelisted && !blacklisted && blockUntil <= now;
+    }
+    
+    public String getIp() {
+        return ip;
+    }
+    
+    public int getSuccessfulLogins() {
+        return successfulLogins;
+    }
+    
+    public double getFailureScore() {
+        return failureScore;
+    }
+    
+    public double getBlockPenalty() {
+        return blockPenalty;
+    }
+    
+    public long getDecayedAt() {
+        return decayedAt;
+    }
+    
+    public long getLastAttempt() {
+        return lastAttempt;
+    }
+    
+    public long getBlockUntil() {
+        return blockUntil;
+    }
+    
+    /**
+     * @return Причина последней блокировки или null
+     */
+    public String getBlockReason() {
+        return blockReason;
+    }
+    
+    public boolean isWhitelisted() {
+        return whitelisted;
+    }
+    
+    public boolean isBlacklisted() {
+        return blacklisted;
+    }
+    
+    public boolean isVPN() {
+        return vpn;
+    }
+    
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    /**
+     * @return Упакованная история блокировок от самой старой к самой новой
+     */
+    public long[] getBlockHistory() {
+        return blockHistory.clone();
+    }
+}
@@ -0,0 +1,91 @@
+package com.s1steam.veloauth.api.storage;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Хранилище репутации IP между перезапусками прокси
+ * Запись не блокирует вызывающего: снимок ставится в очередь и пишется в фоне,
+ * поэтому проверки подключений никогда не ждут диск или БД
+ */
+public interface ReputationStore extends AutoCloseable {
+    
+    /**
+     * Ставит снимок в очередь записи
+     * Несколько снимков одного IP до записи объединяются в последний
+     */
+    void save(ReputationRecord record);
+    
+    /**
+     * Читает запись одного IP в фоне
+     *
+     * @return Запись или null, если IP нет в хранилище
+     */
+    CompletableFuture<ReputationRecord> load(String ip);
+    
+    /**
+     * Хранилище общее для нескольких прокси: записи других прокси появляются после
+     * загрузки при запуске, поэтому их стоит дочитывать по IP
+     */
+    default boolean isShared() {
+        return false;
+    }
+    
+    /**
+     * Читает все сохраненные записи в фоне
+     */
+    CompletableFuture<List<ReputationRecord>> loadAll();
+    
+    /**
+     * Удаляет в фоне записи, неактивные с lastAttemptBefore, кроме списков и действующих блокировок
+     *
+     * @return Количество удаленных записей
+     */
+    CompletableFuture<Integer> purge(long lastAttemptBefore, long now);
+    
+    /**
+     * Название хранилища для логов и статистики
+     */
+    String getName();
+    
+    /**
+     * Записывает очередь и освобождает ресурсы
+     */
+    @Override
+    void close();
+    
+    /**
+     * Хранилище без сохранения: репутация живет только в кэше
+     */
+    static ReputationStore memory() {
+        return MemoryReputationStore.INSTANCE;
+    }
+    
+    /**
+     * Открывает хранилище по секции storage
+     * При ошибке открытия репутация хранится только в памяти
+     */
+    static ReputationStore open(VeloAuthAPI plugin) {
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        try {
+            switch (config.getStorageType()) {
+                case ConfigSnapshot.STORAGE_FILE:
+                    return FileReputationStore.open(plugin.getDataDirectory().resolve(config.getStorageFile()),
+                        config.getStorageFlushInterval(), config.getStorageBatchSize(), plugin.getLogger());
+                case ConfigSnapshot.STORAGE_JDBC:
+                    return JdbcReputationStore.open(config.getJdbcUrl(), config.getJdbcUsername(),
+                        config.getJdbcPassword(), config.getJdbcPoolSize(), config.getStorageFlushInterval(),
+                        config.getStorageBatchSize(), plugin.getLogger());
+                default:
+                    return memory();
+            }
+        } catch (Exception e) {
+            plugin.getLogger().error("Failed to open " + config.getStorageType() +
+                " storage, reputation is kept in memory only", e);
+            return memory();
+        }
+    }
+}
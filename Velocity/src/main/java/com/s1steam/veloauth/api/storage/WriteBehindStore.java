@@ -0,0 +1,208 @@
+package com.s1steam.veloauth.api.storage;
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Основа хранилищ с отложенной записью
+ * Снимки копятся в карте по IP (последний снимок IP заменяет предыдущий)
+ * и раз в интервал записываются пакетами в фоновом потоке.
+ * Очередь ограничена: при переполнении снимки новых IP отбрасываются,
+ * IP попадет в хранилище при следующем изменении.
+ * Если запись пакета не удалась, снимки возвращаются в очередь, если за это
+ * время не появился более новый
+ */
+public abstract class WriteBehindStore implements ReputationStore {
+    
+    // IP в очереди записи
+    private static final int MAX_PENDING = 65536;
+    
+    private final ConcurrentHashMap<String, ReputationRecord> pending = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor executor;
+    private final int batchSize;
+    protected final Logger logger;
+    
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    
+    /**
+     * @param flushIntervalMs Интервал записи очереди
+     * @param batchSize Максимум записей в одном пакете
+     */
+    protected WriteBehindStore(String threadName, long flushIntervalMs, int batchSize, Logger logger) {
+        if (flushIntervalMs <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid write-behind parameters");
+        }
+        this.batchSize = batchSize;
+        this.logger = logger;
+        
+        // Поток записи очереди и поток загрузки/очистки
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public void save(ReputationRecord record) {
+        if (pending.size() >= MAX_PENDING && !pending.containsKey(record.getIp())) {
+            dropped.increment();
+            return;
+        }
+        pending.put(record.getIp(), record);
+    }
+    
+    /**
+     * Записывает очередь пакетами (поток записи)
+     */
+    void flush() {
+        List<ReputationRecord> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Map.Entry<String, ReputationRecord>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ReputationRecord> entry = iterator.next();
+            // Снимок, замененный после чтения итератором, остается в очереди до следующего прохода
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+            if (batch.size() == batchSize || !iterator.hasNext() && !batch.isEmpty()) {
+                if (!write(batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+    }
+    
+    private boolean write(List<ReputationRecord> batch) {
+        try {
+            writeBatch(batch);
+            written.add(batch.size());
+            return true;
+        } catch (Exception e) {
+            failures.increment();
+            for (ReputationRecord record : batch) {
+                pending.putIfAbsent(record.getIp(), record);
+            }
+            logger.warn("Failed to write " + batch.size() + " reputation records to " + getName() +
+                " storage, will retry: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Снимок из очереди записи новее хранилища и возвращается без чтения
+     */
+    @Override
+    public CompletableFuture<ReputationRecord> load(String ip) {
+        ReputationRecord queued = pending.get(ip);
+        if (queued != null) {
+            return CompletableFuture.completedFuture(queued);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return read(ip);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<List<ReputationRecord>> loadAll() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readAll();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<Integer> purge(long lastAttemptBefore, long now) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return deleteExpired(lastAttemptBefore, now);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+    
+    /**
+     * Снимков в очереди записи
+     */
+    public int getPending() {
+        return pending.size();
+    }
+    
+    public long getWritten() {
+        return written.sum();
+    }
+    
+    /**
+     * Снимков, отброшенных из-за переполнения очереди
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    /**
+     * Неудачных записей пакетов
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            closeStorage();
+        } catch (Exception e) {
+            logger.error("Failed to close " + getName() + " storage", e);
+        }
+    }
+    
+    /**
+     * Записывает пакет снимков (вставка или замена по IP)
+     */
+    protected abstract void writeBatch(List<ReputationRecord> batch) throws Exception;
+    
+    /**
+     * @return Запись IP или null
+     */
+    protected abstract ReputationRecord read(String ip) throws Exception;
+    
+    protected abstract List<ReputationRecord> readAll() throws Exception;
+    
+    /**
+     * @return Количество удаленных записей
+     * @see ReputationRecord#isExpired(long, long)
+     */
+    protected abstract int deleteExpired(long lastAttemptBefore, long now) throws Exception;
+    
+    protected abstract void closeStorage() throws Exception;
+}
@@ -0,0 +1,56 @@
+package com.s1steam.veloauth.api.time;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Грубые часы с кэшированным временем
+ * Один поток-тикер обновляет volatile значение с заданным шагом,
+ * поэтому чтение времени на горячем пути стоит одного volatile чтения
+ */
+public final class CoarseTimeSource implements TimeSource, AutoCloseable {
+    
+    private final long resolutionNanos;
+    private final Thread ticker;
+    private volatile long now;
+    private volatile boolean running;
+    
+    /**
+     * @param resolutionMs Шаг обновления времени в миллисекундах
+     */
+    public CoarseTimeSource(long resolutionMs) {
+        if (resolutionMs <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolutionMs);
+        }
+        this.resolutionNanos = resolutionMs * 1_000_000L;
+        this.now = System.currentTimeMillis();
+        this.running = true;
+        this.ticker = new Thread(this::tick, "VeloAuth-Clock");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+    
+    private void tick() {
+        while (running) {
+            now = System.currentTimeMillis();
+            LockSupport.parkNanos(resolutionNanos);
+        }
+    }
+    
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+    
+    public long getResolutionMs() {
+        return resolutionNanos / 1_000_000L;
+    }
+    
+    /**
+     * Останавливает поток-тикер
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+}
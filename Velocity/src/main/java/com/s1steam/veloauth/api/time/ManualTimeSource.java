@@ -0,0 +1,30 @@
+package com.s1steam.veloauth.api.time;
+
+/**
+ * Ручные часы для детерминированных тестов
+ * Время меняется только вызовами set() и advance()
+ */
+public final class ManualTimeSource implements TimeSource {
+    
+    private volatile long now;
+    
+    public ManualTimeSource(long startMillis) {
+        this.now = startMillis;
+    }
+    
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+    
+    public void set(long millis) {
+        this.now = millis;
+    }
+    
+    /**
+     * Сдвигает время вперед
+     */
+    public synchronized void advance(long millis) {
+        this.now += millis;
+    }
+}
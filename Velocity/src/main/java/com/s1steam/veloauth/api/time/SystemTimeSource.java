@@ -0,0 +1,17 @@
+package com.s1steam.veloauth.api.time;
+
+/**
+ * Источник времени на основе System.currentTimeMillis()
+ */
+final class SystemTimeSource implements TimeSource {
+    
+    static final SystemTimeSource INSTANCE = new SystemTimeSource();
+    
+    private SystemTimeSource() {
+    }
+    
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
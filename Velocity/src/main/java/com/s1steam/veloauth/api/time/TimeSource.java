@@ -0,0 +1,21 @@
+package com.s1steam.veloauth.api.time;
+
+/**
+ * Источник времени для проверок DDoS защиты
+ * Позволяет заменить системные часы дешевыми грубыми часами
+ * или ручными часами в тестах
+ */
+public interface TimeSource {
+    
+    /**
+     * Текущее время в миллисекундах (эпоха Unix)
+     */
+    long currentTimeMillis();
+    
+    /**
+     * Системные часы
+     */
+    static TimeSource system() {
+        return SystemTimeSource.INSTANCE;
+    }
+}
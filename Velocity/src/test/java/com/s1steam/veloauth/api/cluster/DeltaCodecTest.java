@@ -0,0 +1,70 @@
+package com.s1steam.veloauth.api.cluster;
+
+import com.s1steam.veloauth.api.models.BlockReason;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DeltaCodec
+ *
+ * Tests the round trip of a batch and rejection of forged or damaged packets
+ */
+@DisplayName("Delta Codec Tests")
+class DeltaCodecTest {
+    
+    private static final byte[] SECRET = "cluster-secret".getBytes(StandardCharsets.UTF_8);
+    
+    @Test
+    @DisplayName("Test round trip - a full batch decodes to the same deltas and compresses")
+    void testRoundTrip() throws IOException {
+        DeltaCodec codec = new DeltaCodec(SECRET);
+        List<ReplicaDelta> deltas = new ArrayList<>();
+        for (int i = 0; i < DeltaCodec.MAX_DELTAS - 1; i++) {
+            deltas.add(ReplicaDelta.block("10.0.0." + i, 1_700_000_000_000L + i, BlockReason.AUTH_FAILURES, (i + 1L) << 16 | 7));
+        }
+        deltas.add(ReplicaDelta.listed(ReplicaDelta.Type.BLACKLIST, "2001:db8::1", true, 99L << 16 | 7));
+        
+        byte[] packet = codec.encode(7, deltas);
+        DeltaCodec.Batch batch = codec.decode(packet, packet.length);
+        assertEquals(7, batch.getSender());
+        assertEquals(deltas.size(), batch.getDeltas().size());
+        
+        ReplicaDelta first = batch.getDeltas().get(0);
+        assertEquals(ReplicaDelta.Type.BLOCK, first.getType());
+        assertEquals("10.0.0.0", first.getIp());
+        assertEquals(1_700_000_000_000L, first.getValue());
+        assertEquals(BlockReason.AUTH_FAILURES, first.getReason());
+        assertEquals(7, first.getOrigin());
+        
+        ReplicaDelta last = batch.getDeltas().get(deltas.size() - 1);
+        assertEquals(ReplicaDelta.Type.BLACKLIST, last.getType());
+        assertTrue(last.isSet());
+        assertEquals(99L << 16 | 7, last.getVersion());
+        
+        int raw = deltas.size() * (1 + 2 + 8 + 8 + 1 + 8);
+        assertTrue(packet.length < raw, "Similar deltas should compress");
+    }
+    
+    @Test
+    @DisplayName("Test rejection - tampered packets and foreign secrets are rejected")
+    void testRejectsForgedPackets() {
+        DeltaCodec codec = new DeltaCodec(SECRET);
+        byte[] packet = codec.encode(1, List.of(ReplicaDelta.block("10.0.0.1", 1, BlockReason.MANUAL, 1L << 16 | 1)));
+        
+        byte[] tampered = packet.clone();
+        tampered[8] ^= 1;
+        assertThrows(IOException.class, () -> codec.decode(tampered, tampered.length));
+        assertThrows(IOException.class, () -> codec.decode(packet, packet.length - 1));
+        
+        DeltaCodec foreign = new DeltaCodec("other".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> foreign.decode(packet, packet.length));
+        assertThrows(IllegalArgumentException.class, () -> new DeltaCodec(new byte[0]));
+    }
+}
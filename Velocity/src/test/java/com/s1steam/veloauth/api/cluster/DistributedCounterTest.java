@@ -0,0 +1,67 @@
+package com.s1steam.veloauth.api.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DistributedCounter
+ *
+ * Tests G-counter merging of peer totals and window rotation
+ */
+@DisplayName("Distributed Counter Tests")
+class DistributedCounterTest {
+    
+    private static final long WINDOW = 60_000L;
+    private static final long START = 1_700_000_040_000L - 1_700_000_040_000L % WINDOW;
+    private static final long KEY = 0x1234_5678_9abc_def0L;
+    
+    @Test
+    @DisplayName("Test merge - peer totals add up once, repeats and older totals change nothing")
+    void testMerge() {
+        DistributedCounter counter = new DistributedCounter(1024, WINDOW);
+        long window = START / WINDOW;
+        assertEquals(1, counter.increment(KEY, START));
+        
+        counter.merge(2, new CounterDelta(KEY, window, 5), START);
+        counter.merge(2, new CounterDelta(KEY, window, 5), START);
+        counter.merge(2, new CounterDelta(KEY, window, 3), START);
+        assertEquals(6, counter.estimate(KEY, START));
+        
+        counter.merge(2, new CounterDelta(KEY, window, 7), START);
+        counter.merge(3, new CounterDelta(KEY, window, 4), START);
+        assertEquals(13, counter.increment(KEY, START + 1));
+        
+        counter.merge(3, new CounterDelta(KEY, window - 1, 100), START);
+        assertEquals(13, counter.estimate(KEY, START + 2), "Totals of another window are ignored");
+        assertEquals(0, counter.estimate(KEY + 1, START));
+    }
+    
+    @Test
+    @DisplayName("Test sync - only changed local totals are collected, a new window starts from zero")
+    void testCollectAndRotate() {
+        DistributedCounter counter = new DistributedCounter(1024, WINDOW);
+        for (int i = 0; i < 3; i++) {
+            counter.increment(KEY, START);
+        }
+        counter.increment(KEY + 1, START);
+        counter.merge(2, new CounterDelta(KEY + 2, START / WINDOW, 9), START);
+        
+        List<CounterDelta> out = new ArrayList<>();
+        assertEquals(2, counter.collect(out, 10, START), "Peer totals are not sent back");
+        assertEquals(3, out.stream().filter(delta -> delta.getKeyHash() == KEY).findFirst().orElseThrow().getTotal());
+        assertEquals(0, counter.collect(new ArrayList<>(), 10, START));
+        
+        counter.increment(KEY, START);
+        out.clear();
+        assertEquals(1, counter.collect(out, 10, START));
+        assertEquals(4, out.get(0).getTotal());
+        
+        assertEquals(1, counter.increment(KEY, START + WINDOW));
+        assertEquals(0, counter.estimate(KEY + 2, START + WINDOW));
+    }
+}
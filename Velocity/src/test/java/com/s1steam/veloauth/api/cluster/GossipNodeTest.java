@@ -0,0 +1,121 @@
+package com.s1steam.veloauth.api.cluster;
+
+import com.s1steam.veloauth.api.models.BlockReason;
+import com.s1steam.veloauth.api.time.ManualTimeSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GossipNode
+ *
+ * Runs several nodes on localhost and checks versions and relayed delivery
+ */
+@DisplayName("Gossip Node Tests")
+class GossipNodeTest {
+    
+    private static final byte[] SECRET = "cluster-secret".getBytes(StandardCharsets.UTF_8);
+    private static final long START = 1_700_000_000_000L;
+    
+    static InetSocketAddress freeAddress() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+    }
+    
+    private static GossipNode node(int id, InetSocketAddress bind, List<InetSocketAddress> peers, ManualTimeSource clock,
+                                   Consumer<ReplicaDelta> receiver) throws Exception {
+        return new GossipNode(id, bind, peers, SECRET, 20, clock, receiver, NOPLogger.NOP_LOGGER);
+    }
+    
+    @Test
+    @DisplayName("Test versions - local versions grow and win over observed remote versions")
+    void testVersions() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(START);
+        try (GossipNode node = node(3, freeAddress(), List.of(), clock, delta -> { })) {
+            long first = node.nextVersion();
+            long second = node.nextVersion();
+            assertEquals(3, first & GossipNode.MAX_NODE_ID);
+            assertTrue(second > first, "Versions within one millisecond should still grow");
+            
+            long remote = ((START + 60_000L) << 16) | 9;
+            node.observe(remote);
+            assertTrue(node.nextVersion() > remote, "A change after an observed one should win");
+            
+            clock.advance(120_000L);
+            assertEquals((START + 120_000L) << 16 | 3, node.nextVersion());
+        }
+    }
+    
+    @Test
+    @DisplayName("Test relay - a delta reaches the end of a chain of three nodes through the middle one")
+    void testRelayedDelivery() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(START);
+        InetSocketAddress a = freeAddress();
+        InetSocketAddress b = freeAddress();
+        InetSocketAddress c = freeAddress();
+        
+        CountDownLatch delivered = new CountDownLatch(1);
+        ConcurrentHashMap<String, ReplicaDelta> seenByB = new ConcurrentHashMap<>();
+        GossipNode[] middle = new GossipNode[1];
+        try (GossipNode nodeA = node(1, a, List.of(b), clock, delta -> { });
+             GossipNode nodeB = middle[0] = node(2, b, List.of(a, c), clock, delta -> {
+                 // Relay only deltas that changed local state, like the manager does
+                 if (seenByB.putIfAbsent(delta.getIp(), delta) == null) {
+                     middle[0].publish(delta);
+                 }
+             });
+             GossipNode nodeC = node(3, c, List.of(b), clock, delta -> {
+                 if (delta.getOrigin() == 1) {
+                     delivered.countDown();
+                 }
+             })) {
+            long sent = System.nanoTime();
+            nodeA.publish(ReplicaDelta.block("10.0.0.1", START + 60_000L, BlockReason.MANUAL, nodeA.nextVersion()));
+            assertTrue(delivered.await(1, TimeUnit.SECONDS), "Delta should converge within a second");
+            assertTrue(System.nanoTime() - sent < TimeUnit.SECONDS.toNanos(1));
+            assertEquals(1, nodeB.getDeltasReceived());
+            assertEquals(0, nodeB.getPacketsRejected());
+            assertEquals(1, nodeC.getDeltasReceived());
+        }
+    }
+    
+    @Test
+    @DisplayName("Test counters - totals of a stand-in peer arrive within the sync interval")
+    void testCounterSync() throws Exception {
+        ManualTimeSource clock = new ManualTimeSource(START);
+        InetSocketAddress a = freeAddress();
+        InetSocketAddress b = freeAddress();
+        DistributedCounter counterA = new DistributedCounter(1024, 60_000L);
+        DistributedCounter counterB = new DistributedCounter(1024, 60_000L);
+        try (GossipNode nodeA = node(1, a, List.of(b), clock, delta -> { });
+             GossipNode nodeB = node(2, b, List.of(a), clock, delta -> { })) {
+            nodeA.attachCounter(counterA, 20);
+            nodeB.attachCounter(counterB, 20);
+            for (int i = 0; i < 4; i++) {
+                counterA.increment(42L, START);
+            }
+            counterB.increment(42L, START);
+            
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (counterB.estimate(42L, START) < 5 || counterA.estimate(42L, START) < 5) {
+                assertTrue(System.nanoTime() < deadline, "Counters should converge within a second");
+                Thread.sleep(5);
+            }
+            assertEquals(5, counterA.estimate(42L, START));
+            assertEquals(5, counterB.estimate(42L, START));
+        }
+    }
+}
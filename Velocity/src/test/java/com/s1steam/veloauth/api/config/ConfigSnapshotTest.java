@@ -0,0 +1,98 @@
+package com.s1steam.veloauth.api.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConfigSnapshot
+ *
+ * Tests compilation of the YAML tree into typed settings and validation
+ */
+@DisplayName("Config Snapshot Unit Tests")
+class ConfigSnapshotTest {
+    
+    @Test
+    @DisplayName("Test compile - typed values and precomputed backoff table")
+    void testCompile() {
+        ConfigSnapshot snapshot = ConfigSnapshot.compile(Map.of(
+            "backend", Map.of("server-name", "auth", "lobbies", List.of("auth-1", "auth-2:3"), "balancing", "weighted"),
+            "sync", Map.of("debug", true, "channel", "test:sync"),
+            "messages", Map.of("reload", "ok"),
+            "ddos-protection", Map.of(
+                "max-connections-per-second", 7,
+                "base-block-duration", 1000,
+                "backoff-multiplier", 3
+            )
+        ), warning -> fail("Unexpected warning: " + warning));
+        
+        assertEquals("auth", snapshot.getBackendServer());
+        assertEquals(List.of("auth-1", "auth-2"), List.copyOf(snapshot.getLobbies().keySet()));
+        assertEquals(3, snapshot.getLobbies().get("auth-2"));
+        assertEquals(ConfigSnapshot.BALANCING_WEIGHTED, snapshot.getLobbyBalancing());
+        assertTrue(snapshot.isDebugMode());
+        assertEquals("test:sync", snapshot.getSyncChannel());
+        assertEquals("ok", snapshot.getMessage("reload"));
+        assertEquals("§cMessage not found: info", snapshot.getMessage("info"));
+        
+        DDoSSettings ddos = snapshot.getDDoS();
+        assertEquals(7, ddos.getMaxConnectionsPerSecond());
+        assertEquals(20, ddos.getMaxConnectionsPerMinute(), "Missing keys should use defaults");
+        assertEquals(1000, ddos.getBlockDuration(0));
+        assertEquals(9000, ddos.getBlockDuration(2));
+        assertEquals(ddos.getBlockDuration(10), ddos.getBlockDuration(100), "Level should be capped");
+    }
+    
+    @Test
+    @DisplayName("Test compile - empty document falls back to defaults with warnings")
+    void testDefaults() {
+        List<String> warnings = new ArrayList<>();
+        ConfigSnapshot snapshot = ConfigSnapshot.compile(null, warnings::add);
+        
+        assertEquals("lobby", snapshot.getBackendServer());
+        assertEquals(Map.of("lobby", 1), snapshot.getLobbies(), "Without a pool only server-name is used");
+        assertEquals("veloauth:sync", snapshot.getSyncChannel());
+        assertEquals(2, warnings.size());
+        assertTrue(snapshot.getDDoS().isEnabled());
+    }
+    
+    @Test
+    @DisplayName("Test compile - wrong type or out of range value is rejected")
+    void testInvalid() {
+        IllegalArgumentException wrongType = assertThrows(IllegalArgumentException.class, () ->
+            ConfigSnapshot.compile(Map.of("ddos-protection", Map.of("max-connections-per-second", "five")),
+                warning -> { }));
+        assertTrue(wrongType.getMessage().contains("ddos-protection.max-connections-per-second"));
+        
+        assertThrows(IllegalArgumentException.class, () ->
+            ConfigSnapshot.compile(Map.of("backend", Map.of("lobbies", List.of("auth-1:0"))), warning -> { }));
+        
+        assertThrows(IllegalArgumentException.class, () ->
+            ConfigSnapshot.compile(Map.of("ddos-protection", Map.of("min-reputation-for-connection", 150)),
+                warning -> { }));
+    }
+    
+    @Test
+    @DisplayName("Test changed sections - unchanged sections are reused")
+    void testChangedSections() {
+        Map<String, Object> ddos = Map.of("max-connections-per-second", 7);
+        ConfigSnapshot first = ConfigSnapshot.compile(Map.of(
+            "ddos-protection", ddos,
+            "messages", Map.of("reload", "ok")
+        ), warning -> { });
+        ConfigSnapshot second = ConfigSnapshot.compile(Map.of(
+            "ddos-protection", Map.of("max-connections-per-second", 7),
+            "messages", Map.of("reload", "done")
+        ), first, warning -> { });
+        
+        assertEquals(Set.of(ConfigSnapshot.MESSAGES), second.changedSections(first));
+        assertSame(first.getDDoS(), second.getDDoS(), "Unchanged DDoS section should not be recompiled");
+        assertEquals("done", second.getMessage("reload"));
+    }
+}
@@ -0,0 +1,149 @@
+package com.s1steam.veloauth.api.config;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.models.IPReputationData;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.security.ddos.DDoSProtectionManager;
+import com.s1steam.veloauth.api.time.ManualTimeSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for ConfigWatcher
+ *
+ * Tests incremental application of list files and config sections
+ */
+@DisplayName("Config Watcher Tests")
+class ConfigWatcherTest {
+    
+    @TempDir
+    Path directory;
+    
+    private ConfigManager configManager;
+    private DDoSProtectionManager ddos;
+    private ConfigWatcher watcher;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        VeloAuthAPI plugin = mock(VeloAuthAPI.class);
+        when(plugin.getDataDirectory()).thenReturn(directory);
+        when(plugin.getLogger()).thenReturn(NOPLogger.NOP_LOGGER);
+        
+        configManager = new ConfigManager(plugin);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        writeConfig(5);
+        assertTrue(configManager.loadConfig());
+        
+        ddos = new DDoSProtectionManager(plugin, new AuthRegistry(), new ManualTimeSource(0), 2);
+        when(plugin.getDDoSProtection()).thenReturn(ddos);
+        
+        watcher = new ConfigWatcher(plugin);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        watcher.close();
+        ddos.shutdown();
+    }
+    
+    private void writeConfig(int maxConnectionsPerSecond) throws IOException {
+        Files.writeString(directory.resolve("config.yml"),
+            "ddos-protection:\n" +
+            "  max-connections-per-second: " + maxConnectionsPerSecond + "\n" +
+            "auto-reload:\n" +
+            "  debounce: 50\n");
+    }
+    
+    @Test
+    @DisplayName("Test lists - only the difference with the previous file is applied")
+    void testIncrementalLists() throws IOException {
+        Files.writeString(directory.resolve("whitelist.txt"), "# admins\n10.0.0.1\n10.0.0.2 # office\nnot-an-ip\n");
+        watcher.processChanges(Set.of("whitelist.txt"));
+        assertEquals(List.of("10.0.0.1", "10.0.0.2"), ddos.getWhitelistedIPs().join());
+        
+        Files.writeString(directory.resolve("whitelist.txt"), "10.0.0.2\n10.0.0.3\n");
+        watcher.processChanges(Set.of("whitelist.txt"));
+        assertEquals(List.of("10.0.0.2", "10.0.0.3"), ddos.getWhitelistedIPs().join());
+        
+        Files.delete(directory.resolve("whitelist.txt"));
+        watcher.processChanges(Set.of("whitelist.txt"));
+        assertTrue(ddos.getWhitelistedIPs().join().isEmpty(), "Deleted file should clear its entries");
+    }
+    
+    @Test
+    @DisplayName("Test lists - manual entries are not touched by file changes")
+    void testManualEntriesKept() throws IOException {
+        ddos.blacklistIP("192.168.0.1").join();
+        Files.writeString(directory.resolve("blacklist.txt"), "192.168.0.1\n192.168.0.2\n");
+        watcher.processChanges(Set.of("blacklist.txt"));
+        
+        Files.writeString(directory.resolve("blacklist.txt"), "");
+        watcher.processChanges(Set.of("blacklist.txt"));
+        
+        assertEquals(List.of("192.168.0.1"), ddos.getBlacklistedIPs().join());
+    }
+    
+    @Test
+    @DisplayName("Test lists - an IP removed from blacklist.txt can connect again")
+    void testBlacklistRemoved() throws IOException {
+        Files.writeString(directory.resolve("blacklist.txt"), "192.168.0.5\n");
+        watcher.processChanges(Set.of("blacklist.txt"));
+        assertFalse(ddos.checkConnection("192.168.0.5").join().isAllowed());
+        
+        Files.writeString(directory.resolve("blacklist.txt"), "");
+        watcher.processChanges(Set.of("blacklist.txt"));
+        assertEquals(IPReputationData.NEUTRAL_REPUTATION, ddos.getIPReputation("192.168.0.5").join().getReputation());
+        assertTrue(ddos.checkConnection("192.168.0.5").join().isAllowed(), "Removed IP must not keep reputation 0");
+    }
+    
+    @Test
+    @DisplayName("Test config - changed limits apply without reload command")
+    void testConfigChange() throws IOException {
+        writeConfig(9);
+        watcher.processChanges(Set.of("config.yml"));
+        
+        assertEquals(9, ddos.getMaxConnectionsPerSecond());
+    }
+    
+    @Test
+    @DisplayName("Test config - deleted config.yml keeps the current settings")
+    void testConfigDeleted() throws IOException {
+        writeConfig(9);
+        watcher.processChanges(Set.of("config.yml"));
+        
+        Files.delete(directory.resolve("config.yml"));
+        watcher.processChanges(Set.of("config.yml"));
+        
+        assertEquals(9, ddos.getMaxConnectionsPerSecond());
+        assertFalse(Files.exists(directory.resolve("config.yml")), "Defaults must not be written over the deleted file");
+    }
+    
+    @Test
+    @DisplayName("Test watch - burst of writes is picked up from the file system")
+    void testWatchService() throws Exception {
+        watcher.start();
+        for (int i = 1; i <= 5; i++) {
+            Files.writeString(directory.resolve("blacklist.txt"), "172.16.0." + i + "\n");
+        }
+        
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!ddos.getBlacklistedIPs().join().equals(List.of("172.16.0.5"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "Watcher should apply the final file content");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.s1steam.veloauth.api.geoip;
+
+import com.s1steam.veloauth.api.models.CountryCode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GeoIPResolver
+ *
+ * Uses an in-memory lookup instead of a MaxMind database
+ */
+@DisplayName("GeoIP Resolver Tests")
+class GeoIPResolverTest {
+    
+    @Test
+    @DisplayName("Test country code - round trip and invalid input")
+    void testCountryCode() {
+        assertEquals("US", CountryCode.decode(CountryCode.encode("US")));
+        assertEquals("ZZ", CountryCode.decode(CountryCode.encode("zz")));
+        assertEquals(CountryCode.UNKNOWN, CountryCode.encode(null));
+        assertEquals(CountryCode.UNKNOWN, CountryCode.encode("USA"));
+        assertNull(CountryCode.decode(CountryCode.UNKNOWN));
+        assertNull(CountryCode.decode(CountryCode.UNRESOLVED));
+    }
+    
+    @Test
+    @DisplayName("Test cache - second lookup is served from the cache")
+    void testCache() {
+        AtomicInteger lookups = new AtomicInteger();
+        try (GeoIPResolver resolver = new GeoIPResolver(address -> {
+            lookups.incrementAndGet();
+            return "FR";
+        }, 64, null)) {
+            assertEquals(CountryCode.UNRESOLVED, resolver.getCachedCountry("1.2.3.4"));
+            assertEquals(CountryCode.encode("FR"), resolver.resolve("1.2.3.4").join().getCountryCode());
+            assertEquals(CountryCode.encode("FR"), resolver.getCachedCountry("1.2.3.4"));
+            resolver.resolve("1.2.3.4").join();
+            
+            assertEquals(1, lookups.get());
+        }
+    }
+    
+    @Test
+    @DisplayName("Test cache - IPv6 addresses in one /48 share an entry")
+    void testIPv6Prefix() {
+        try (GeoIPResolver resolver = new GeoIPResolver(address -> "JP", 64, null)) {
+            resolver.resolve("2001:db8:1::1").join();
+            
+            assertEquals(CountryCode.encode("JP"), resolver.getCachedCountry("2001:db8:1:ffff::2"));
+            assertEquals(CountryCode.UNRESOLVED, resolver.getCachedCountry("2001:db8:2::1"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Test cache - not found address is cached as unknown, lookup errors are not")
+    void testUnknown() {
+        AtomicInteger lookups = new AtomicInteger();
+        try (GeoIPResolver resolver = new GeoIPResolver(address -> {
+            if (lookups.incrementAndGet() == 1) {
+                throw new IOException("Broken database");
+            }
+            return null;
+        }, 64, null)) {
+            assertEquals(CountryCode.UNKNOWN, resolver.resolve("5.6.7.8").join().getCountryCode());
+            assertEquals(CountryCode.UNRESOLVED, resolver.getCachedCountry("5.6.7.8"));
+            
+            assertEquals(CountryCode.UNKNOWN, resolver.resolve("5.6.7.8").join().getCountryCode());
+            assertEquals(CountryCode.UNKNOWN, resolver.getCachedCountry("5.6.7.8"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Test disabled - every address is unknown")
+    void testDisabled() {
+        GeoIPResolver resolver = GeoIPResolver.disabled();
+        
+        assertFalse(resolver.isEnabled());
+        assertEquals(CountryCode.UNKNOWN, resolver.getCachedCountry("1.1.1.1"));
+        assertEquals(CountryCode.UNKNOWN, resolver.resolve("1.1.1.1").join().getCountryCode());
+    }
+    
+    @Test
+    @DisplayName("Test ASN - resolved together with country and cached")
+    void testASN() {
+        AtomicInteger lookups = new AtomicInteger();
+        try (GeoIPResolver resolver = new GeoIPResolver(address -> "NL", address -> {
+            lookups.incrementAndGet();
+            return 14061L;
+        }, 64, null)) {
+            assertEquals(GeoIPResolver.ASN_UNRESOLVED, resolver.getCachedASN("9.9.9.9"));
+            
+            GeoIPResolver.Location location = resolver.resolve("9.9.9.9").join();
+            
+            assertEquals(14061, location.getASN());
+            assertEquals(CountryCode.encode("NL"), location.getCountryCode());
+            assertEquals(14061, resolver.getCachedASN("9.9.9.9"));
+            resolver.resolve("9.9.9.9").join();
+            assertEquals(1, lookups.get());
+        }
+    }
+}
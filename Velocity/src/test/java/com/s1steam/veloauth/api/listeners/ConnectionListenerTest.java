@@ -0,0 +1,125 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigManager;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.security.ddos.DDoSProtectionManager;
+import com.s1steam.veloauth.api.time.ManualTimeSource;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for ConnectionListener
+ *
+ * Tests that logins go through the DDoS connection check and are denied with the right message
+ */
+@DisplayName("Connection Listener Tests")
+class ConnectionListenerTest {
+    
+    private static final long START = 1_700_000_000_000L;
+    
+    @TempDir
+    Path directory;
+    
+    private ManualTimeSource clock;
+    private ConfigManager configManager;
+    private DDoSProtectionManager ddos;
+    private ConnectionListener listener;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(directory.resolve("config.yml"),
+            "ddos-protection:\n" +
+            "  attack-mode-threshold: 1\n" +
+            "  reconnect-challenge:\n" +
+            "    secret: test\n" +
+            "messages:\n" +
+            "  ip-blacklisted: \"blacklisted\"\n" +
+            "  reconnect-challenge: \"reconnect {token}.{host}\"\n");
+        
+        VeloAuthAPI plugin = mock(VeloAuthAPI.class);
+        when(plugin.getDataDirectory()).thenReturn(directory);
+        when(plugin.getLogger()).thenReturn(NOPLogger.NOP_LOGGER);
+        configManager = new ConfigManager(plugin);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        assertTrue(configManager.loadConfig());
+        
+        clock = new ManualTimeSource(START);
+        ddos = new DDoSProtectionManager(plugin, new AuthRegistry(), clock, 2);
+        when(plugin.getDDoSProtection()).thenReturn(ddos);
+        listener = new ConnectionListener(plugin);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        ddos.shutdown();
+    }
+    
+    /**
+     * Fire pre-login for the IP and wait until the check has updated the event
+     */
+    private PreLoginEvent login(String ip) {
+        InboundConnection connection = mock(InboundConnection.class);
+        when(connection.getRemoteAddress()).thenReturn(new InetSocketAddress(ip, 50000));
+        when(connection.getVirtualHost())
+            .thenReturn(Optional.of(InetSocketAddress.createUnresolved("play.example.com", 25565)));
+        PreLoginEvent event = new PreLoginEvent(connection, "Steve");
+        listener.onPreLogin(event);
+        // The listener callback runs on the shard thread before the next task of every shard
+        ddos.getBlockedIPs().join();
+        return event;
+    }
+    
+    private static String reason(PreLoginEvent event) {
+        return LegacyComponentSerializer.legacySection().serialize(event.getResult().getReasonComponent().orElseThrow());
+    }
+    
+    @Test
+    @DisplayName("Test pre-login - blacklisted IP is denied")
+    void testBlacklisted() {
+        ddos.blacklistIP("10.0.0.9").join();
+        PreLoginEvent event = login("10.0.0.9");
+        assertFalse(event.getResult().isAllowed());
+        assertEquals("blacklisted", reason(event));
+    }
+    
+    @Test
+    @DisplayName("Test pre-login - nothing is checked while DDoS protection is disabled")
+    void testDisabled() throws IOException {
+        ddos.blacklistIP("10.0.0.9").join();
+        Files.writeString(directory.resolve("config.yml"), "ddos-protection:\n  enabled: false\n");
+        assertTrue(configManager.loadConfig());
+        
+        assertTrue(login("10.0.0.9").getResult().isAllowed());
+    }
+    
+    @Test
+    @DisplayName("Test pre-login - new IPs under attack get the challenge and pass on reconnect")
+    void testReconnectChallenge() {
+        assertTrue(login("10.0.0.1").getResult().isAllowed());
+        
+        PreLoginEvent challenged = login("10.0.0.2");
+        assertFalse(challenged.getResult().isAllowed(), "Second connection in the second turns attack mode on");
+        assertTrue(reason(challenged).matches("reconnect [0-9a-z]+\\.play\\.example\\.com"), reason(challenged));
+        
+        clock.advance(100);
+        assertTrue(login("10.0.0.2").getResult().isAllowed(), "Reconnect within the interval passes");
+    }
+}
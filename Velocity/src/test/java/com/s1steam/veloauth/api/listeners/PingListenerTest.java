@@ -0,0 +1,86 @@
+package com.s1steam.veloauth.api.listeners;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigManager;
+import com.s1steam.veloauth.api.security.ddos.DDoSProtection;
+import com.velocitypowered.api.event.proxy.ProxyPingEvent;
+import com.velocitypowered.api.proxy.InboundConnection;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.kyori.adventure.text.Component;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for PingListener
+ *
+ * Tests that pings over the limit are denied and the rest keep the proxy's response
+ */
+@DisplayName("Ping Listener Tests")
+class PingListenerTest {
+    
+    private ConfigManager configManager;
+    private DDoSProtection ddos;
+    private PingListener listener;
+    
+    @BeforeEach
+    void setUp() {
+        configManager = mock(ConfigManager.class);
+        when(configManager.isDDoSProtectionEnabled()).thenReturn(true);
+        ddos = mock(DDoSProtection.class);
+        
+        VeloAuthAPI plugin = mock(VeloAuthAPI.class);
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        when(plugin.getDDoSProtection()).thenReturn(ddos);
+        
+        listener = new PingListener(plugin);
+    }
+    
+    private ProxyPingEvent ping(String motd) {
+        InboundConnection connection = mock(InboundConnection.class);
+        when(connection.getRemoteAddress()).thenReturn(new InetSocketAddress("10.0.0.1", 50000));
+        ServerPing ping = ServerPing.builder()
+            .version(new ServerPing.Version(765, "1.20"))
+            .description(Component.text(motd))
+            .build();
+        ProxyPingEvent event = new ProxyPingEvent(connection, ping);
+        listener.onPing(event);
+        return event;
+    }
+    
+    @Test
+    @DisplayName("Test limit - allowed pings keep the proxy's own response")
+    void testAllowed() {
+        when(ddos.checkPing("10.0.0.1")).thenReturn(true);
+        
+        ProxyPingEvent event = ping("motd");
+        assertTrue(event.getResult().isAllowed());
+        assertEquals(Component.text("motd"), event.getPing().getDescriptionComponent());
+    }
+    
+    @Test
+    @DisplayName("Test limit - pings over the limit are denied")
+    void testDenied() {
+        when(ddos.checkPing("10.0.0.1")).thenReturn(false);
+        
+        assertFalse(ping("motd").getResult().isAllowed());
+    }
+    
+    @Test
+    @DisplayName("Test disabled - pings are not counted while protection is off")
+    void testDisabled() {
+        when(configManager.isDDoSProtectionEnabled()).thenReturn(false);
+        
+        assertTrue(ping("motd").getResult().isAllowed());
+        verify(ddos, never()).checkPing(anyString());
+    }
+}
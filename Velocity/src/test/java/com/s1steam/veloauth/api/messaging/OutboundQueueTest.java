@@ -0,0 +1,99 @@
+package com.s1steam.veloauth.api.messaging;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OutboundQueue
+ *
+ * Tests coalescing by key, overflow policies and BATCH frame packing
+ */
+@DisplayName("Outbound Queue Tests")
+class OutboundQueueTest {
+    
+    private static byte[] message(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static List<String> unpack(OutboundQueue.Frame frame) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(frame.getData());
+        assertEquals(OutboundQueue.BATCH, in.readUTF());
+        int count = in.readUnsignedShort();
+        List<String> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] message = new byte[in.readUnsignedShort()];
+            in.readFully(message);
+            messages.add(new String(message, StandardCharsets.UTF_8));
+        }
+        return messages;
+    }
+    
+    @Test
+    @DisplayName("Test coalescing - a newer update replaces the queued one in place")
+    void testCoalescing() {
+        OutboundQueue queue = new OutboundQueue(16, OutboundQueue.Overflow.DROP_OLDEST, 1024);
+        queue.offer("ip:1", message("block 1"));
+        queue.offer("ip:2", message("block 2"));
+        queue.offer("ip:1", message("unblock 1"));
+        
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getCoalesced());
+        
+        OutboundQueue.Frame frame = queue.peek();
+        assertEquals(List.of("unblock 1", "block 2"), unpack(frame));
+        
+        // An update queued while the frame is in flight must not be lost
+        queue.offer("ip:2", message("unblock 2"));
+        queue.acknowledge(frame);
+        assertEquals(List.of("unblock 2"), unpack(queue.peek()));
+        assertEquals(2, queue.getMessagesSent());
+    }
+    
+    @Test
+    @DisplayName("Test overflow - drop-oldest makes room, reject refuses new keys")
+    void testOverflow() {
+        OutboundQueue dropping = new OutboundQueue(2, OutboundQueue.Overflow.DROP_OLDEST, 1024);
+        dropping.offer("a", message("a"));
+        dropping.offer("b", message("b"));
+        assertTrue(dropping.offer("c", message("c")));
+        assertEquals(List.of("b", "c"), unpack(dropping.peek()));
+        assertEquals(1, dropping.getDropped());
+        
+        OutboundQueue rejecting = new OutboundQueue(2, OutboundQueue.Overflow.fromName("reject"), 1024);
+        rejecting.offer("a", message("a"));
+        rejecting.offer("b", message("b"));
+        assertFalse(rejecting.offer("c", message("c")));
+        assertTrue(rejecting.offer("a", message("a2")), "Updates of queued keys are still accepted");
+        assertEquals(List.of("a2", "b"), unpack(rejecting.peek()));
+        assertEquals(1, rejecting.getRejected());
+    }
+    
+    @Test
+    @DisplayName("Test frames - messages are split into frames under the size limit")
+    void testFrameSize() {
+        OutboundQueue queue = new OutboundQueue(64, OutboundQueue.Overflow.DROP_OLDEST, 64);
+        for (int i = 0; i < 10; i++) {
+            queue.offer("key" + i, message("message-" + i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> queue.offer("big", new byte[64]));
+        
+        List<String> sent = new ArrayList<>();
+        OutboundQueue.Frame frame;
+        while ((frame = queue.peek()) != null) {
+            assertTrue(frame.getData().length <= 64);
+            sent.addAll(unpack(frame));
+            queue.acknowledge(frame);
+        }
+        assertEquals(10, sent.size());
+        assertEquals("message-0", sent.get(0));
+        assertTrue(queue.getFramesSent() > 1);
+    }
+}
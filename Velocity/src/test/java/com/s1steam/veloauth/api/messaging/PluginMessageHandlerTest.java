@@ -0,0 +1,88 @@
+package com.s1steam.veloauth.api.messaging;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigManager;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelMessageSource;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for PluginMessageHandler
+ *
+ * Tests that messages on the sync channel are never forwarded and only backends are trusted
+ */
+@DisplayName("Plugin Message Handler Tests")
+class PluginMessageHandlerTest {
+    
+    private final UUID playerId = UUID.randomUUID();
+    private AuthRegistry registry;
+    private PluginMessageHandler handler;
+    
+    @BeforeEach
+    void setUp() {
+        VeloAuthAPI plugin = mock(VeloAuthAPI.class);
+        ConfigManager configManager = mock(ConfigManager.class);
+        when(configManager.getSyncChannel()).thenReturn("veloauth:sync");
+        when(plugin.getConfigManager()).thenReturn(configManager);
+        ProxyServer server = mock(ProxyServer.class);
+        when(server.getPlayer(any(UUID.class))).thenReturn(Optional.empty());
+        when(plugin.getServer()).thenReturn(server);
+        
+        registry = new AuthRegistry();
+        handler = new PluginMessageHandler(plugin, registry);
+    }
+    
+    private PluginMessageEvent authStatus(ChannelMessageSource source, MinecraftChannelIdentifier channel) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeUTF("AUTH_STATUS");
+        out.writeUTF(playerId.toString());
+        out.writeBoolean(true);
+        return new PluginMessageEvent(source, null, channel, out.toByteArray());
+    }
+    
+    @Test
+    @DisplayName("Test backend message - handled and applied to the registry")
+    void testBackendMessage() {
+        PluginMessageEvent event = authStatus(mock(ServerConnection.class), handler.getChannel());
+        handler.onPluginMessage(event);
+        
+        assertFalse(event.getResult().isAllowed(), "Message must not be forwarded");
+        assertTrue(registry.isAuthenticated(playerId));
+    }
+    
+    @Test
+    @DisplayName("Test player message - forged frame is handled and dropped")
+    void testPlayerMessage() {
+        PluginMessageEvent event = authStatus(mock(Player.class), handler.getChannel());
+        handler.onPluginMessage(event);
+        
+        assertFalse(event.getResult().isAllowed(), "Forged message must not reach the backend");
+        assertFalse(registry.isAuthenticated(playerId));
+    }
+    
+    @Test
+    @DisplayName("Test other channel - left to Velocity")
+    void testOtherChannel() {
+        PluginMessageEvent event = authStatus(mock(Player.class), MinecraftChannelIdentifier.from("other:channel"));
+        handler.onPluginMessage(event);
+        
+        assertTrue(event.getResult().isAllowed());
+    }
+}
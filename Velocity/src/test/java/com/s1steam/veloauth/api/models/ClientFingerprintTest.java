@@ -0,0 +1,39 @@
+package com.s1steam.veloauth.api.models;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ClientFingerprint
+ */
+@DisplayName("Client Fingerprint Tests")
+class ClientFingerprintTest {
+    
+    @Test
+    @DisplayName("Test fingerprint - same wave shares one fingerprint, other clients differ")
+    void testFingerprint() {
+        assertEquals("Aaaaa_0000", ClientFingerprint.usernameShape("Steve_1234"));
+        assertEquals(ClientFingerprint.of(765, "Play.Example.com.", "Steve_1234"),
+            ClientFingerprint.of(765, "play.example.com", "Alice_9876"));
+        assertNotEquals(ClientFingerprint.of(765, "play.example.com", "Steve_1234"),
+            ClientFingerprint.of(764, "play.example.com", "Steve_1234"));
+        assertEquals("765|-|aaaa", ClientFingerprint.of(765, null, "abcd"));
+        assertEquals("765|brand:lunarclient", ClientFingerprint.ofBrand(765, "LunarClient"));
+        assertNull(ClientFingerprint.ofBrand(765, "Vanilla"), "Common brands are not fingerprinted");
+        assertNull(ClientFingerprint.ofBrand(765, "fabric"));
+    }
+    
+    @Test
+    @DisplayName("Test host key - client-chosen subdomains and IP literals collapse")
+    void testHostKey() {
+        assertEquals(ClientFingerprint.of(765, "a1b2c3.play.example.com", "Steve_1234"),
+            ClientFingerprint.of(765, "zz9.Example.com", "Steve_1234"));
+        assertEquals("example.com", ClientFingerprint.hostKey("play.example.com"));
+        assertEquals("localhost", ClientFingerprint.hostKey("localhost"));
+        assertEquals("ip", ClientFingerprint.hostKey("203.0.113.7"));
+        assertEquals("ip", ClientFingerprint.hostKey("2001:db8::1"));
+        assertEquals("-", ClientFingerprint.hostKey(null));
+    }
+}
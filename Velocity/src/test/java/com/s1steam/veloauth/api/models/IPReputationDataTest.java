@@ -0,0 +1,136 @@
+package com.s1steam.veloauth.api.models;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IPReputationData
+ *
+ * Tests lazy time decay of failures and block penalties, and block history
+ */
+@DisplayName("IP Reputation Data Unit Tests")
+class IPReputationDataTest {
+    
+    private static final long HALF_LIFE = 60_000L;
+    
+    @Test
+    @DisplayName("Test decay - failures halve after one half-life")
+    void testDecay_FailuresHalve() {
+        IPReputationData data = new IPReputationData("10.0.0.1");
+        for (int i = 0; i < 8; i++) {
+            data.recordFailedAttempt();
+        }
+        long start = data.getLastAttempt();
+        assertEquals(10, data.getReputation(), "8 failures should cost 40 points");
+        
+        data.decay(start + HALF_LIFE, HALF_LIFE);
+        
+        assertEquals(4, data.getFailedAttempts(), "Failures should halve after one half-life");
+        assertEquals(30, data.getReputation(), "Reputation should recover by half of the penalty");
+    }
+    
+    @Test
+    @DisplayName("Test decay - reputation returns to neutral over time")
+    void testDecay_ReturnsToNeutral() {
+        IPReputationData data = new IPReputationData("10.0.0.2");
+        data.recordFailedAttempt();
+        data.recordFailedAttempt();
+        long start = data.getLastAttempt();
+        
+        data.decay(start + 20 * HALF_LIFE, HALF_LIFE);
+        
+        assertEquals(0, data.getFailedAttempts(), "Failures should fully decay");
+        assertEquals(50, data.getReputation(), "Reputation should return to neutral");
+    }
+    
+    @Test
+    @DisplayName("Test decay - block penalty decays")
+    void testDecay_BlockPenalty() {
+        IPReputationData data = new IPReputationData("10.0.0.3");
+        data.block(1000, "Test");
+        long start = data.getDecayedAt();
+        assertEquals(20, data.getReputation(), "Block should lower reputation to 20");
+        
+        data.decay(start + HALF_LIFE, HALF_LIFE);
+        
+        assertEquals(35, data.getReputation(), "Block penalty should halve after one half-life");
+    }
+    
+    @Test
+    @DisplayName("Test decay - disabled with zero half-life")
+    void testDecay_Disabled() {
+        IPReputationData data = new IPReputationData("10.0.0.4");
+        data.recordFailedAttempt();
+        long start = data.getLastAttempt();
+        
+        data.decay(start + 100 * HALF_LIFE, 0);
+        
+        assertEquals(1, data.getFailedAttempts(), "Zero half-life should disable decay");
+    }
+    
+    @Test
+    @DisplayName("Test decay - repeated reads are idempotent at the same instant")
+    void testDecay_Idempotent() {
+        IPReputationData data = new IPReputationData("10.0.0.5");
+        for (int i = 0; i < 4; i++) {
+            data.recordFailedAttempt();
+        }
+        long now = data.getLastAttempt() + HALF_LIFE;
+        
+        data.decay(now, HALF_LIFE);
+        int once = data.getReputation();
+        data.decay(now, HALF_LIFE);
+        
+        assertEquals(once, data.getReputation(), "Decay at the same instant should not compound");
+    }
+    
+    @Test
+    @DisplayName("Test block history - records reason and duration, newest first")
+    void testBlockHistory_Order() {
+        IPReputationData data = new IPReputationData("10.0.1.1");
+        data.block(60_000, BlockReason.CONNECTIONS_PER_SECOND);
+        data.block(120_000, BlockReason.AUTH_FAILURES);
+        
+        List<BlockRecord> history = data.getBlockHistory();
+        
+        assertEquals(2, data.getBlockCount());
+        assertEquals(2, history.size());
+        assertEquals(BlockReason.AUTH_FAILURES, history.get(0).getReason());
+        assertEquals(120_000, history.get(0).getDurationMs());
+        assertEquals(BlockReason.CONNECTIONS_PER_SECOND, history.get(1).getReason());
+        assertEquals("Too many failed auth attempts", data.getBlockReason());
+    }
+    
+    @Test
+    @DisplayName("Test block history - ring keeps only the latest records")
+    void testBlockHistory_Bounded() {
+        IPReputationData data = new IPReputationData("10.0.1.2");
+        for (int i = 0; i < 20; i++) {
+            data.block(1000L * (i + 1), BlockReason.MANUAL);
+        }
+        
+        List<BlockRecord> history = data.getBlockHistory();
+        
+        assertEquals(20, data.getBlockCount(), "Total block count should not be bounded");
+        assertEquals(8, history.size(), "History ring should be bounded");
+        assertEquals(20_000, history.get(0).getDurationMs(), "Newest record should come first");
+        assertEquals(13_000, history.get(7).getDurationMs(), "Oldest kept record should be the 13th block");
+    }
+    
+    @Test
+    @DisplayName("Test block history - counts only recent blocks")
+    void testBlockHistory_CountSince() {
+        IPReputationData data = new IPReputationData("10.0.1.3");
+        data.block(1000, BlockReason.LOW_REPUTATION);
+        data.block(1000, BlockReason.LOW_REPUTATION);
+        long now = System.currentTimeMillis();
+        
+        assertEquals(2, data.countBlocksSince(now - 60_000));
+        assertEquals(0, data.countBlocksSince(now + 60_000));
+        assertEquals(0, new IPReputationData("10.0.1.4").countBlocksSince(0));
+    }
+}
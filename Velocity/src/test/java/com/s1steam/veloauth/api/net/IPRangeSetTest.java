@@ -0,0 +1,103 @@
+package com.s1steam.veloauth.api.net;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for IPRangeSet
+ *
+ * Tests CIDR parsing, range merging and binary search lookups
+ */
+@DisplayName("IP Range Set Tests")
+class IPRangeSetTest {
+    
+    @Test
+    @DisplayName("Test IPv4 - CIDR boundaries")
+    void testIPv4Boundaries() {
+        IPRangeSet.Builder builder = IPRangeSet.builder();
+        assertTrue(builder.add("10.0.0.0/8"));
+        assertTrue(builder.add("192.168.1.77"));
+        IPRangeSet set = builder.build();
+        
+        assertTrue(set.contains("10.0.0.0"));
+        assertTrue(set.contains("10.255.255.255"));
+        assertFalse(set.contains("11.0.0.0"));
+        assertFalse(set.contains("9.255.255.255"));
+        assertTrue(set.contains("192.168.1.77"));
+        assertFalse(set.contains("192.168.1.78"));
+        assertFalse(set.contains("not an ip"));
+    }
+    
+    @Test
+    @DisplayName("Test merge - overlapping, nested and adjacent ranges collapse")
+    void testMerge() {
+        IPRangeSet.Builder builder = IPRangeSet.builder();
+        builder.add("1.0.0.0/24");
+        builder.add("1.0.0.128/25");
+        builder.add("1.0.1.0/24");
+        builder.add("1.0.3.0/24");
+        builder.add("0.0.0.0/32");
+        builder.add("255.255.255.255/32");
+        IPRangeSet set = builder.build();
+        
+        assertEquals(4, set.size());
+        assertTrue(set.contains("1.0.1.200"));
+        assertFalse(set.contains("1.0.2.1"));
+        assertTrue(set.contains("255.255.255.255"));
+        assertTrue(set.contains("0.0.0.0"));
+    }
+    
+    @Test
+    @DisplayName("Test IPv6 - prefixes are matched on the upper 64 bits")
+    void testIPv6() {
+        IPRangeSet.Builder builder = IPRangeSet.builder();
+        assertTrue(builder.add("2001:db8::/32"));
+        assertTrue(builder.add("2a03:2880:f00d:1::1"));
+        IPRangeSet set = builder.build();
+        
+        assertTrue(set.contains("2001:db8:ffff::1"));
+        assertFalse(set.contains("2001:db9::1"));
+        assertTrue(set.contains("2a03:2880:f00d:1::abcd"), "Single address should cover its /64");
+        assertFalse(set.contains("2a03:2880:f00d:2::1"));
+        assertFalse(set.contains("10.0.0.1"));
+    }
+    
+    @Test
+    @DisplayName("Test read - comments, blank and invalid lines")
+    void testRead(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("ranges.txt");
+        Files.writeString(file, "# FireHOL style\n\n5.5.5.0/24 ; hosting\n6.6.6.6 # single\n7.7.7.7/33\nbogus\n");
+        
+        IPRangeSet.Builder builder = IPRangeSet.read(file);
+        IPRangeSet set = builder.build();
+        
+        assertEquals(2, builder.getInvalidLines());
+        assertEquals(2, builder.getEntries());
+        assertTrue(set.contains("5.5.5.5"));
+        assertTrue(set.contains("6.6.6.6"));
+        assertTrue(IPRangeSet.read(directory.resolve("missing.txt")).build().isEmpty());
+    }
+    
+    @Test
+    @DisplayName("Test read - several files merge into one set")
+    void testReadMultipleFiles(@TempDir Path directory) throws IOException {
+        Path first = directory.resolve("level1.netset");
+        Path second = directory.resolve("level2.netset");
+        Files.writeString(first, "10.0.0.0/25\n");
+        Files.writeString(second, "10.0.0.128/25\n2001:db8::/32\n");
+        
+        IPRangeSet set = IPRangeSet.builder().read(first).read(second).build();
+        
+        assertEquals(2, set.size(), "Adjacent halves from different files should merge");
+        assertTrue(set.contains("10.0.0.200"));
+        assertTrue(set.contains("2001:db8:1::1"));
+        assertFalse(set.contains("10.0.1.1"));
+    }
+}
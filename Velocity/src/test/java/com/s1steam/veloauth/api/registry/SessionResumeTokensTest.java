@@ -0,0 +1,95 @@
+package com.s1steam.veloauth.api.registry;
+
+import com.s1steam.veloauth.api.time.ManualTimeSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SessionResumeTokens
+ *
+ * Tests binding to player and IP, expiry, single use and signed persistence
+ */
+@DisplayName("Session Resume Tokens Tests")
+class SessionResumeTokensTest {
+    
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long TTL = 120_000L;
+    private static final UUID PLAYER = UUID.fromString("11111111-2222-3333-4444-555555555555");
+    
+    @TempDir
+    Path dataDirectory;
+    
+    private final ManualTimeSource clock = new ManualTimeSource(NOW);
+    
+    /**
+     * Issue a token at NOW, leaving the clock at the given time
+     */
+    private void issueAt(SessionResumeTokens tokens, UUID player, String ip, long at) {
+        clock.set(NOW);
+        tokens.issue(player, ip);
+        clock.set(at);
+    }
+    
+    @Test
+    @DisplayName("Test resume - token is bound to the IP, expires and can be used once")
+    void testResume() {
+        SessionResumeTokens tokens = SessionResumeTokens.fromSecret("secret", TTL, 16, clock);
+        
+        issueAt(tokens, PLAYER, "192.168.1.1", NOW + 1000);
+        assertFalse(tokens.resume(PLAYER, "192.168.1.2"), "Other IP must not resume");
+        assertFalse(tokens.resume(PLAYER, "192.168.1.1"), "Failed attempt consumes the token");
+        
+        issueAt(tokens, PLAYER, "192.168.1.1", NOW + TTL - 1);
+        assertTrue(tokens.resume(PLAYER, "192.168.1.1"));
+        assertFalse(tokens.resume(PLAYER, "192.168.1.1"), "Token is single-use");
+        
+        issueAt(tokens, PLAYER, "192.168.1.1", NOW + TTL);
+        assertFalse(tokens.resume(PLAYER, "192.168.1.1"), "Expired token must not resume");
+    }
+    
+    @Test
+    @DisplayName("Test capacity - full table accepts new tokens only after expired ones are purged")
+    void testCapacity() {
+        SessionResumeTokens tokens = SessionResumeTokens.fromSecret("secret", TTL, 2, clock);
+        assertTrue(tokens.issue(UUID.randomUUID(), "10.0.0.1"));
+        assertTrue(tokens.issue(UUID.randomUUID(), "10.0.0.2"));
+        clock.set(NOW + 1000);
+        assertFalse(tokens.issue(UUID.randomUUID(), "10.0.0.3"));
+        clock.set(NOW + TTL);
+        assertTrue(tokens.issue(UUID.randomUUID(), "10.0.0.3"));
+        assertEquals(1, tokens.size());
+    }
+    
+    @Test
+    @DisplayName("Test persistence - saved tokens survive a restart only with the same key and intact lines")
+    void testSaveAndLoad() throws IOException {
+        Path file = dataDirectory.resolve("sessions.dat");
+        UUID other = UUID.randomUUID();
+        SessionResumeTokens tokens = SessionResumeTokens.fromSecret("secret", TTL, 16, clock);
+        tokens.issue(PLAYER, "192.168.1.1");
+        tokens.issue(other, "192.168.1.2");
+        clock.set(NOW + 1000);
+        tokens.save(file);
+        
+        clock.set(NOW + 2000);
+        SessionResumeTokens restarted = SessionResumeTokens.fromSecret("secret", TTL, 16, clock);
+        assertEquals(2, restarted.load(file));
+        assertTrue(restarted.resume(PLAYER, "192.168.1.1"));
+        
+        SessionResumeTokens otherKey = SessionResumeTokens.fromSecret("another", TTL, 16, clock);
+        assertEquals(0, otherKey.load(file), "Tokens signed with another key are rejected");
+        
+        // Extending the expiry breaks the signature
+        String saved = Files.readString(file);
+        Files.writeString(file, saved.replace(String.valueOf(NOW + TTL), String.valueOf(NOW + TTL + 1)));
+        assertEquals(0, SessionResumeTokens.fromSecret("secret", TTL, 16, clock).load(file));
+    }
+}
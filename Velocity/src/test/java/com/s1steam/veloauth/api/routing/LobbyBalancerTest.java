@@ -0,0 +1,116 @@
+package com.s1steam.veloauth.api.routing;
+
+import com.s1steam.veloauth.api.time.ManualTimeSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for LobbyBalancer
+ *
+ * Tests least-connections and weighted routing and lobby health with the circuit breaker
+ */
+@DisplayName("Lobby Balancer Tests")
+class LobbyBalancerTest {
+    
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long OPEN_DURATION = 30_000L;
+    
+    private static Map<String, Integer> lobbies(Object... nameAndWeight) {
+        Map<String, Integer> lobbies = new LinkedHashMap<>();
+        for (int i = 0; i < nameAndWeight.length; i += 2) {
+            lobbies.put((String) nameAndWeight[i], (Integer) nameAndWeight[i + 1]);
+        }
+        return lobbies;
+    }
+    
+    private static CompletableFuture<Integer> players(Map<String, Integer> online, String name) {
+        Integer count = online.get(name);
+        return count == null
+            ? CompletableFuture.failedFuture(new IllegalStateException("down"))
+            : CompletableFuture.completedFuture(count);
+    }
+    
+    @Test
+    @DisplayName("Test least connections - players go to the lobby with the lowest load per weight")
+    void testLeastConnections() {
+        ManualTimeSource time = new ManualTimeSource(NOW);
+        LobbyBalancer balancer = new LobbyBalancer(lobbies("auth-1", 1, "auth-2", 2),
+            LobbyBalancer.Strategy.LEAST_CONNECTIONS, 3, OPEN_DURATION, time);
+        balancer.checkHealth(name -> players(Map.of("auth-1", 10, "auth-2", 30), name));
+        
+        // auth-2 has twice the weight, so it is less loaded only below 20 players
+        assertEquals("auth-1", balancer.choose());
+        assertEquals(11, balancer.getLoad("auth-1"));
+        
+        // Players sent since the last ping count towards the load
+        Map<String, Integer> chosen = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            chosen.merge(balancer.choose(), 1, Integer::sum);
+        }
+        assertEquals(71, balancer.getLoad("auth-1") + balancer.getLoad("auth-2"));
+        assertTrue(chosen.get("auth-2") > chosen.get("auth-1"));
+        
+        // A fresh ping replaces the estimate
+        balancer.checkHealth(name -> players(Map.of("auth-1", 0, "auth-2", 0), name));
+        assertEquals(0, balancer.getLoad("auth-1"));
+    }
+    
+    @Test
+    @DisplayName("Test weighted - lobbies are chosen in proportion to their weights")
+    void testWeighted() {
+        LobbyBalancer balancer = new LobbyBalancer(lobbies("auth-1", 1, "auth-2", 3),
+            LobbyBalancer.Strategy.fromName("weighted"), 3, OPEN_DURATION, new ManualTimeSource(NOW));
+        
+        Map<String, Integer> chosen = new HashMap<>();
+        for (int i = 0; i < 400; i++) {
+            chosen.merge(balancer.choose(), 1, Integer::sum);
+        }
+        assertEquals(100, chosen.get("auth-1"));
+        assertEquals(300, chosen.get("auth-2"));
+    }
+    
+    @Test
+    @DisplayName("Test health - failing lobbies are skipped and probed again after the open duration")
+    void testCircuitBreaker() {
+        ManualTimeSource time = new ManualTimeSource(NOW);
+        LobbyBalancer balancer = new LobbyBalancer(lobbies("auth-1", 1, "auth-2", 1),
+            LobbyBalancer.Strategy.LEAST_CONNECTIONS, 2, OPEN_DURATION, time);
+        Map<String, Integer> online = new HashMap<>(Map.of("auth-2", 0));
+        
+        balancer.checkHealth(name -> players(online, name));
+        assertEquals(CircuitBreaker.State.CLOSED, balancer.getState("auth-1"), "One failure is tolerated");
+        balancer.checkHealth(name -> players(online, name));
+        assertEquals(CircuitBreaker.State.OPEN, balancer.getState("auth-1"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals("auth-2", balancer.choose());
+        }
+        
+        // Both down: nothing to route to
+        online.clear();
+        balancer.checkHealth(name -> players(online, name));
+        balancer.checkHealth(name -> players(online, name));
+        assertFalse(balancer.isAnyAvailable());
+        assertNull(balancer.choose());
+        
+        // Open lobbies are not pinged until the open duration passes
+        time.advance(OPEN_DURATION - 1);
+        balancer.checkHealth(name -> {
+            fail("Open lobby must not be pinged: " + name);
+            return null;
+        });
+        
+        time.advance(1);
+        online.put("auth-1", 0);
+        balancer.checkHealth(name -> players(online, name));
+        assertEquals(CircuitBreaker.State.CLOSED, balancer.getState("auth-1"));
+        assertEquals(CircuitBreaker.State.OPEN, balancer.getState("auth-2"), "A failed probe reopens the breaker");
+        assertEquals("auth-1", balancer.choose());
+    }
+}
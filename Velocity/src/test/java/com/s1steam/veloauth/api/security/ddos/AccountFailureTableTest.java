@@ -0,0 +1,68 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AccountFailureTable
+ *
+ * Tests failure decay, locking, throttling and eviction in a full table
+ */
+@DisplayName("Account Failure Table Tests")
+class AccountFailureTableTest {
+    
+    private static final long START = 1_700_000_000_000L;
+    private static final long HALF_LIFE = 60_000L;
+    
+    @Test
+    @DisplayName("Test decay - failures halve every half-life")
+    void testDecay() {
+        AccountFailureTable table = new AccountFailureTable(64);
+        for (int i = 0; i < 8; i++) {
+            table.recordFailure("steve", START, HALF_LIFE);
+        }
+        assertEquals(8.0, table.getFailures("steve", START, HALF_LIFE), 1e-9);
+        assertEquals(4.0, table.getFailures("steve", START + HALF_LIFE, HALF_LIFE), 1e-9);
+        assertEquals(3.0, table.recordFailure("steve", START + 2 * HALF_LIFE, HALF_LIFE), 1e-9);
+        assertEquals(0.0, table.getFailures("alex", START, HALF_LIFE));
+    }
+    
+    @Test
+    @DisplayName("Test throttling - one attempt per interval, reset clears everything")
+    void testThrottleAndReset() {
+        AccountFailureTable table = new AccountFailureTable(64);
+        assertTrue(table.tryAttempt("steve", START, 5000), "Unknown accounts are never throttled");
+        
+        table.recordFailure("steve", START, HALF_LIFE);
+        assertTrue(table.tryAttempt("steve", START, 5000));
+        assertFalse(table.tryAttempt("steve", START + 4999, 5000));
+        assertTrue(table.tryAttempt("steve", START + 5000, 5000));
+        assertEquals(START + 5000, table.getLastAttempt("steve"));
+        
+        table.lock("steve", START + 60_000);
+        assertEquals(1, table.countLocked(START));
+        assertTrue(table.reset("steve"));
+        assertEquals(0, table.getLockedUntil("steve"));
+        assertFalse(table.reset("steve"));
+    }
+    
+    @Test
+    @DisplayName("Test eviction - a full table keeps locked and most failed accounts")
+    void testEviction() {
+        AccountFailureTable table = new AccountFailureTable(8);
+        table.recordFailure("victim", START, HALF_LIFE);
+        table.lock("victim", START + 60_000);
+        for (int i = 0; i < 3; i++) {
+            table.recordFailure("target", START, HALF_LIFE);
+        }
+        
+        for (int i = 0; i < 1000; i++) {
+            table.recordFailure("spray" + i, START, HALF_LIFE);
+        }
+        assertEquals(START + 60_000, table.getLockedUntil("victim"));
+        assertEquals(3.0, table.getFailures("target", START, HALF_LIFE), 1e-9);
+        assertEquals(1, table.countLocked(START));
+    }
+}
@@ -0,0 +1,62 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AggregateLimiter
+ *
+ * Tests window counting, key reuse and concurrent increments
+ */
+@DisplayName("Aggregate Limiter Tests")
+class AggregateLimiterTest {
+    
+    @Test
+    @DisplayName("Test window - counts reset when the window changes")
+    void testWindow() {
+        AggregateLimiter limiter = new AggregateLimiter(16, 1000);
+        
+        assertEquals(1, limiter.increment(42, 10_000));
+        assertEquals(2, limiter.increment(42, 10_999));
+        assertEquals(1, limiter.increment(7, 10_500), "Keys should be counted separately");
+        assertEquals(1, limiter.increment(42, 11_000), "New window should start from one");
+        assertEquals(0, limiter.count(7, 11_000));
+    }
+    
+    @Test
+    @DisplayName("Test capacity - idle slots are reused by new keys")
+    void testSlotReuse() {
+        AggregateLimiter limiter = new AggregateLimiter(1, 1000);
+        
+        assertEquals(1, limiter.increment(1, 0));
+        assertEquals(0, limiter.increment(2, 0), "Full table should fail open");
+        assertEquals(1, limiter.increment(2, 1000), "Slot idle in this window should be reused");
+    }
+    
+    @Test
+    @DisplayName("Test concurrency - no increments are lost")
+    void testConcurrentIncrements() throws InterruptedException {
+        AggregateLimiter limiter = new AggregateLimiter(64, 60_000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    limiter.increment(99, 1_000);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        
+        assertEquals(40_000, limiter.count(99, 1_000));
+    }
+}
@@ -0,0 +1,46 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BloomFilter
+ *
+ * Tests that added keys are always found and the false positive rate stays low
+ */
+@DisplayName("Bloom Filter Tests")
+class BloomFilterTest {
+    
+    @Test
+    @DisplayName("Test membership - added keys are never reported missing")
+    void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("10." + (i >> 8) + "." + (i & 255) + ".1");
+        }
+        
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("10." + (i >> 8) + "." + (i & 255) + ".1"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Test false positives - about one percent at capacity")
+    void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("10." + (i >> 8) + "." + (i & 255) + ".1");
+        }
+        
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("172." + (i >> 16) + "." + ((i >> 8) & 255) + "." + (i & 255))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "False positive rate too high: " + falsePositives);
+        assertFalse(new BloomFilter(1).mightContain("10.0.0.1"), "Empty filter should reject everything");
+    }
+}
@@ -0,0 +1,64 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CadenceTable
+ *
+ * Tests that a fixed reconnect interval is flagged and irregular traffic is not
+ */
+@DisplayName("Cadence Table Tests")
+class CadenceTableTest {
+    
+    private static final long START = 1_700_000_000_000L;
+    private static final long MAX_INTERVAL = 30_000L;
+    private static final int MIN_SAMPLES = 8;
+    private static final double MAX_VARIATION = 0.1;
+    
+    @Test
+    @DisplayName("Test regular cadence - a fixed interval is flagged after min samples")
+    void testRegularCadence() {
+        CadenceTable table = new CadenceTable(64);
+        long now = START;
+        for (int i = 0; i < MIN_SAMPLES; i++) {
+            assertFalse(table.record("10.0.0.1", now, MAX_INTERVAL, MIN_SAMPLES, MAX_VARIATION));
+            now += 2000 + (i % 2) * 20;
+        }
+        assertTrue(table.record("10.0.0.1", now, MAX_INTERVAL, MIN_SAMPLES, MAX_VARIATION));
+        assertEquals(2010, table.getMeanInterval("10.0.0.1"), 10);
+    }
+    
+    @Test
+    @DisplayName("Test irregular cadence - randomly spaced connections are never flagged")
+    void testIrregularCadence() {
+        CadenceTable table = new CadenceTable(64);
+        Random random = new Random(42);
+        long now = START;
+        for (int i = 0; i < 500; i++) {
+            assertFalse(table.record("10.0.0.1", now, MAX_INTERVAL, MIN_SAMPLES, MAX_VARIATION));
+            now += 1 + (long) (-Math.log(1 - random.nextDouble()) * 5000);
+        }
+    }
+    
+    @Test
+    @DisplayName("Test long pause - a gap above max interval starts a new series")
+    void testSeriesReset() {
+        CadenceTable table = new CadenceTable(64);
+        long now = START;
+        for (int i = 0; i <= MIN_SAMPLES; i++) {
+            table.record("10.0.0.1", now, MAX_INTERVAL, MIN_SAMPLES, MAX_VARIATION);
+            now += 1000;
+        }
+        assertEquals(MIN_SAMPLES, table.getSamples("10.0.0.1"));
+        
+        now += MAX_INTERVAL;
+        assertFalse(table.record("10.0.0.1", now, MAX_INTERVAL, MIN_SAMPLES, MAX_VARIATION));
+        assertEquals(0, table.getSamples("10.0.0.1"));
+        assertFalse(table.record("10.0.0.1", now + 1000, MAX_INTERVAL, MIN_SAMPLES, MAX_VARIATION));
+    }
+}
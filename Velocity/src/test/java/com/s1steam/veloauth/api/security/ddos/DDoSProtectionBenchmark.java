@@ -0,0 +1,104 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.config.ConfigManager;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.geoip.GeoIPResolver;
+import com.s1steam.veloauth.api.models.ConnectionCheckResult;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.storage.ReputationStore;
+import com.s1steam.veloauth.api.time.TimeSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * JMH benchmark for sharded DDoS Protection
+ *
+ * Measures checkConnection throughput with distinct IPs per thread.
+ * Run main() to measure 1..32 threads; scaling is only visible with at least as many cores as threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class DDoSProtectionBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class ManagerState {
+        DDoSProtectionManager manager;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            ConfigSnapshot snapshot = ConfigSnapshot.compile(Map.of("ddos-protection", Map.of(
+                "max-connections-per-second", Integer.MAX_VALUE,
+                "max-connections-per-minute", Integer.MAX_VALUE,
+                "max-auth-attempts-per-minute", Integer.MAX_VALUE,
+                "max-commands-per-second", Integer.MAX_VALUE
+            )), warning -> { });
+            
+            ConfigManager config = mock(ConfigManager.class);
+            when(config.getSnapshot()).thenReturn(snapshot);
+            when(config.getDDoSSettings()).thenReturn(snapshot.getDDoS());
+            when(config.getClockResolution()).thenReturn(10L);
+            
+            VeloAuthAPI plugin = mock(VeloAuthAPI.class);
+            when(plugin.getConfigManager()).thenReturn(config);
+            when(plugin.getLogger()).thenReturn(NOPLogger.NOP_LOGGER);
+            
+            // No GeoIP database or storage file: only the shards are measured
+            manager = new DDoSProtectionManager(plugin, new AuthRegistry(), TimeSource.system(),
+                Runtime.getRuntime().availableProcessors(), GeoIPResolver.disabled(), ReputationStore.memory());
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            manager.shutdown();
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class AddressState {
+        final String[] ips = new String[4096];
+        int next;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < ips.length; i++) {
+                ips[i] = random.nextInt(1, 224) + "." + random.nextInt(256) + "."
+                    + random.nextInt(256) + "." + random.nextInt(256);
+            }
+        }
+        
+        String nextIp() {
+            return ips[next++ & (ips.length - 1)];
+        }
+    }
+    
+    @Benchmark
+    public ConnectionCheckResult checkConnection(ManagerState state, AddressState addresses) {
+        return state.manager.checkConnection(addresses.nextIp()).join();
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] {1, 2, 4, 8, 16, 32}) {
+            Options options = new OptionsBuilder()
+                    .include(DDoSProtectionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
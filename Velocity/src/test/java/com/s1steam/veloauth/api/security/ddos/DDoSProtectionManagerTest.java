@@ -0,0 +1,729 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.VeloAuthAPI;
+import com.s1steam.veloauth.api.cluster.ReplicaDelta;
+import com.s1steam.veloauth.api.config.ConfigManager;
+import com.s1steam.veloauth.api.config.ConfigSnapshot;
+import com.s1steam.veloauth.api.config.DDoSSettings;
+import com.s1steam.veloauth.api.geoip.GeoIPResolver;
+import com.s1steam.veloauth.api.models.ClientFingerprint;
+import com.s1steam.veloauth.api.models.ConnectionCheckResult;
+import com.s1steam.veloauth.api.models.HeavyHitter;
+import com.s1steam.veloauth.api.models.IPReputationData;
+import com.s1steam.veloauth.api.models.TrafficCategory;
+import com.s1steam.veloauth.api.net.IPRangeSet;
+import com.s1steam.veloauth.api.registry.AuthRegistry;
+import com.s1steam.veloauth.api.storage.FileReputationStore;
+import com.s1steam.veloauth.api.storage.ReputationRecord;
+import com.s1steam.veloauth.api.storage.ReputationStore;
+import com.s1steam.veloauth.api.time.ManualTimeSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the real DDoSProtectionManager
+ *
+ * Uses a manual clock so time-based behaviour is deterministic and instant
+ */
+@DisplayName("DDoS Protection Manager Tests")
+class DDoSProtectionManagerTest {
+    
+    private static final long START = 1_700_000_000_000L;
+    private static final long BASE_BLOCK = 5000L;
+    
+    private ManualTimeSource clock;
+    private DDoSProtectionManager ddos;
+    private volatile DDoSSettings settings;
+    
+    /**
+     * Compiles ddos-protection settings the same way ConfigManager does
+     */
+    static DDoSSettings settings(Map<String, Object> overrides) {
+        Map<String, Object> section = new HashMap<>();
+        section.put("max-connections-per-second", 5);
+        section.put("max-connections-per-minute", 20);
+        section.put("max-auth-attempts-per-minute", 3);
+        section.put("max-commands-per-second", 10);
+        section.put("min-reputation-for-connection", 20);
+        section.put("base-block-duration", BASE_BLOCK);
+        section.put("backoff-multiplier", 2.0);
+        section.put("reputation-half-life", 60_000L);
+        section.put("block-escalation-window", 3_600_000L);
+        section.putAll(overrides);
+        return ConfigSnapshot.compile(Map.of("ddos-protection", section), warning -> { }).getDDoS();
+    }
+    
+    @BeforeEach
+    void setUp() {
+        settings = settings(Map.of());
+        clock = new ManualTimeSource(START);
+        ddos = newManager(4, GeoIPResolver.disabled(), ReputationStore.memory());
+    }
+    
+    /**
+     * Plugin mock whose ConfigManager returns the current value of the supplier
+     */
+    private static VeloAuthAPI mockPlugin(Supplier<DDoSSettings> ddosSettings) {
+        ConfigManager config = mock(ConfigManager.class);
+        when(config.getDDoSSettings()).thenAnswer(invocation -> ddosSettings.get());
+        
+        VeloAuthAPI plugin = mock(VeloAuthAPI.class);
+        when(plugin.getConfigManager()).thenReturn(config);
+        when(plugin.getLogger()).thenReturn(NOPLogger.NOP_LOGGER);
+        return plugin;
+    }
+        
+    /**
+     * Manager on the test clock that follows the settings field
+     */
+    private DDoSProtectionManager newManager(int parallelism, GeoIPResolver geoIP, ReputationStore store) {
+        return new DDoSProtectionManager(mockPlugin(() -> settings), new AuthRegistry(), clock, parallelism, geoIP, store);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        ddos.shutdown();
+    }
+    
+    private ConnectionCheckResult connect(String ip) {
+        return ddos.checkConnection(ip).join();
+    }
+    
+    @Test
+    @DisplayName("Test rate limit - sixth connection in one second is blocked until block expires")
+    void testRateLimitAndExpiry() {
+        String ip = "192.168.1.1";
+        for (int i = 0; i < 5; i++) {
+            assertTrue(connect(ip).isAllowed(), "Connection " + (i + 1) + " should be allowed");
+        }
+        
+        ConnectionCheckResult limited = connect(ip);
+        assertTrue(limited.isBlocked(), "Sixth connection should be rate limited");
+        assertEquals(START + BASE_BLOCK, limited.getBlockUntil(), "First block should use base duration");
+        assertEquals(BASE_BLOCK, limited.getBlockDuration(clock.currentTimeMillis()));
+        
+        clock.advance(BASE_BLOCK - 1);
+        assertTrue(connect(ip).isBlocked(), "IP should stay blocked until block expires");
+        
+        clock.advance(1);
+        assertTrue(connect(ip).isAllowed(), "IP should be allowed once block expires");
+    }
+    
+    @Test
+    @DisplayName("Test escalation - repeated blocks double the duration")
+    void testBlockEscalation() {
+        String ip = "192.168.1.2";
+        long previous = 0;
+        for (int round = 0; round < 3; round++) {
+            ConnectionCheckResult result;
+            do {
+                result = connect(ip);
+            } while (result.isAllowed());
+            
+            long duration = result.getBlockUntil() - clock.currentTimeMillis();
+            assertEquals(BASE_BLOCK << round, duration, "Block " + (round + 1) + " should escalate");
+            assertTrue(duration > previous);
+            previous = duration;
+            clock.advance(duration);
+        }
+        
+        assertEquals(3, ddos.getIPReputation(ip).join().getBlockCount());
+    }
+    
+    @Test
+    @DisplayName("Test decay - failed logins stop blocking after penalties decay")
+    void testReputationRecovers() {
+        String ip = "10.0.0.1";
+        for (int i = 0; i < 8; i++) {
+            ddos.registerAuthAttempt(ip, false).join();
+            clock.advance(30_000);
+        }
+        clock.advance(BASE_BLOCK * 64);
+        
+        IPReputationData reputation = ddos.getIPReputation(ip).join();
+        assertTrue(reputation.getReputation() >= 20,
+            "Reputation should recover over time, got " + reputation.getReputation());
+        assertTrue(connect(ip).isAllowed(), "Recovered IP should be allowed");
+    }
+    
+    @Test
+    @DisplayName("Test auth limit - too many failures in a minute block the IP")
+    void testAuthAttemptLimit() {
+        String ip = "10.0.0.2";
+        for (int i = 0; i < 4; i++) {
+            ddos.registerAuthAttempt(ip, false).join();
+        }
+        
+        ConnectionCheckResult result = connect(ip);
+        assertTrue(result.isBlocked());
+        assertEquals("Too many failed auth attempts", result.getReason());
+    }
+    
+    @Test
+    @DisplayName("Test lists - aggregated across shards and sorted")
+    void testListsAcrossShards() {
+        for (int i = 10; i > 0; i--) {
+            ddos.blacklistIP("10.1.0." + i).join();
+        }
+        ddos.whitelistIP("10.2.0.1").join();
+        ddos.blockIP("10.3.0.1", 1000, "Test").join();
+        
+        List<String> blacklist = ddos.getBlacklistedIPs().join();
+        assertEquals(10, blacklist.size());
+        assertEquals("10.1.0.1", blacklist.get(0));
+        assertEquals(List.of("10.2.0.1"), ddos.getWhitelistedIPs().join());
+        assertEquals(List.of("10.3.0.1"), ddos.getBlockedIPs().join());
+        
+        clock.advance(1000);
+        assertTrue(ddos.getBlockedIPs().join().isEmpty(), "Expired block should not be listed");
+    }
+    
+    @Test
+    @DisplayName("Test verdict listener - blocks and list changes are reported for backends")
+    void testVerdictListener() {
+        List<ReplicaDelta> verdicts = new CopyOnWriteArrayList<>();
+        ddos.setVerdictListener(verdicts::add);
+        
+        ddos.blockIP("10.4.0.1", 1000, "Test").join();
+        ddos.unblockIP("10.4.0.1").join();
+        ddos.whitelistIP("10.4.0.2").join();
+        
+        assertEquals(3, verdicts.size());
+        assertEquals(ReplicaDelta.Type.BLOCK, verdicts.get(0).getType());
+        assertEquals(clock.currentTimeMillis() + 1000, verdicts.get(0).getValue());
+        assertEquals(0, verdicts.get(1).getValue(), "Unblock is reported as a block ending at 0");
+        assertEquals(ReplicaDelta.Type.WHITELIST, verdicts.get(2).getType());
+        assertEquals("10.4.0.2", verdicts.get(2).getIp());
+    }
+    
+    @Test
+    @DisplayName("Test command limit - per second window resets with the clock")
+    void testCommandLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ddos.checkCommandLimit("Steve", "/help"));
+        }
+        assertFalse(ddos.checkCommandLimit("Steve", "/help"));
+        
+        clock.advance(1000);
+        assertTrue(ddos.checkCommandLimit("Steve", "/help"));
+    }
+    
+    @Test
+    @DisplayName("Test hot reload - new limits apply to the next check without restart")
+    void testSettingsSwap() {
+        String ip = "10.4.0.1";
+        for (int i = 0; i < 5; i++) {
+            assertTrue(connect(ip).isAllowed());
+        }
+        
+        settings = settings(Map.of("max-connections-per-second", 10));
+        
+        assertTrue(connect(ip).isAllowed(), "Raised limit should apply immediately");
+        assertEquals(10, ddos.getMaxConnectionsPerSecond());
+    }
+    
+    @Test
+    @DisplayName("Test GeoIP - country is resolved off the check path on first sight")
+    void testCountryResolution() throws InterruptedException {
+        GeoIPResolver geoIP = new GeoIPResolver(address -> "DE", 16, null);
+        DDoSProtectionManager manager = newManager(2, geoIP, ReputationStore.memory());
+        try {
+            assertTrue(manager.checkConnection("10.5.0.1").join().isAllowed());
+            
+            long deadline = System.currentTimeMillis() + 5000;
+            while (manager.getIPReputation("10.5.0.1").join().getCountry() == null) {
+                assertTrue(System.currentTimeMillis() < deadline, "Country should be resolved asynchronously");
+                Thread.sleep(10);
+            }
+            assertEquals("DE", manager.getIPReputation("10.5.0.1").join().getCountry());
+        } finally {
+            manager.shutdown();
+        }
+    }
+    
+    @Test
+    @DisplayName("Test aggregate budget - new IPs from one country are throttled as a group")
+    void testCountryBudget() {
+        settings = settings(Map.of("aggregate-limits", Map.of("countries", Map.of("CN", 3))));
+        GeoIPResolver geoIP = new GeoIPResolver(address -> "CN", address -> 4134L, 1024, null);
+        DDoSProtectionManager manager = newManager(2, geoIP, ReputationStore.memory());
+        try {
+            for (int i = 1; i <= 5; i++) {
+                geoIP.resolve("10.6.0." + i).join();
+            }
+            for (int i = 1; i <= 3; i++) {
+                assertTrue(manager.checkConnection("10.6.0." + i).join().isAllowed());
+            }
+            assertTrue(manager.checkConnection("10.6.0.4").join().isBlocked(), "Country budget should be exhausted");
+            assertTrue(manager.getBlockedIPs().join().isEmpty(), "Group limit should not block the IP itself");
+            
+            clock.advance(1000);
+            assertTrue(manager.checkConnection("10.6.0.5").join().isAllowed(), "Budget should refill next second");
+        } finally {
+            manager.shutdown();
+        }
+    }
+    
+    @Test
+    @DisplayName("Test VPN ranges - new IP from a hosting range is flagged once")
+    void testHostingRanges() {
+        IPRangeSet.Builder builder = IPRangeSet.builder();
+        builder.add("203.0.113.0/24");
+        ddos.setHostingRanges(builder.build());
+        
+        connect("203.0.113.7");
+        connect("198.51.100.7");
+        
+        IPReputationData hosted = ddos.getIPReputation("203.0.113.7").join();
+        assertTrue(hosted.isVPN());
+        assertEquals(30, hosted.getReputation(), "VPN penalty should apply");
+        assertFalse(ddos.getIPReputation("198.51.100.7").join().isVPN());
+    }
+    
+    @Test
+    @DisplayName("Test blocklist - listed IPs are blocked without a reputation record, whitelist wins")
+    void testBlocklist() {
+        IPRangeSet.Builder builder = IPRangeSet.builder();
+        builder.add("192.0.2.0/24");
+        ddos.setBlocklist(builder.build());
+        
+        ConnectionCheckResult result = connect("192.0.2.5");
+        assertFalse(result.isAllowed());
+        assertEquals(Long.MAX_VALUE, result.getBlockUntil());
+        assertTrue(ddos.getStatistics().contains("IPs in Cache: §f0"), "Blocklisted IP should not create a record");
+        
+        ddos.whitelistIP("192.0.2.9").join();
+        assertTrue(connect("192.0.2.9").isAllowed(), "Manual whitelist should override the blocklist");
+        assertTrue(connect("198.51.100.5").isAllowed());
+    }
+    
+    @Test
+    @DisplayName("Test fast path - clean IPs get no reputation record until they are blocked")
+    void testNoRecordForCleanIPs() {
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(connect("10.9.0." + i).isAllowed());
+        }
+        assertTrue(ddos.getStatistics().contains("IPs in Cache: §f0"), "Clean IPs should not create records");
+        
+        String ip = "10.9.1.1";
+        for (int i = 0; i < 5; i++) {
+            assertTrue(connect(ip).isAllowed());
+        }
+        assertTrue(connect(ip).isBlocked(), "Rate limit should still apply without a record");
+        assertTrue(connect(ip).isBlocked(), "Block should be stored in the new record");
+        assertEquals(List.of(ip), ddos.getBlockedIPs().join());
+    }
+    
+    @Test
+    @DisplayName("Test top offenders - busiest IPs, prefixes and usernames are reported")
+    void testTopOffenders() {
+        for (int i = 0; i < 4; i++) {
+            connect("10.10.0.1");
+        }
+        connect("10.10.0.2");
+        connect("10.20.0.1");
+        ddos.registerAuthAttempt("10.10.0.1", "Steve", false).join();
+        ddos.registerAuthAttempt("10.20.0.1", "steve", false).join();
+        ddos.registerAuthAttempt("10.20.0.1", "Alex", true).join();
+        
+        List<HeavyHitter> ips = ddos.getTopOffenders(TrafficCategory.CONNECTIONS_BY_IP, 2).join();
+        assertEquals(2, ips.size());
+        assertEquals("10.10.0.1", ips.get(0).getKey());
+        assertEquals(4, ips.get(0).getCount());
+        
+        List<HeavyHitter> prefixes = ddos.getTopOffenders(TrafficCategory.CONNECTIONS_BY_PREFIX, 10).join();
+        assertEquals("10.10.0.0/24", prefixes.get(0).getKey());
+        assertEquals(5, prefixes.get(0).getCount(), "Prefix counts should merge across shards");
+        
+        List<HeavyHitter> usernames = ddos.getTopOffenders(TrafficCategory.FAILURES_BY_USERNAME, 10).join();
+        assertEquals(1, usernames.size(), "Successful logins should not count as failures");
+        assertEquals("steve", usernames.get(0).getKey());
+        assertEquals(2, usernames.get(0).getCount());
+    }
+    
+    @Test
+    @DisplayName("Test unique sources - distinct IPs are estimated and can trigger attack mode")
+    void testUniqueIPsAttackMode() {
+        settings = settings(Map.of("attack-mode-unique-ips", 200, "reconnect-challenge", Map.of("enabled", false)));
+        for (int i = 0; i < 150; i++) {
+            connect("10.30." + (i >> 8) + "." + (i & 255));
+        }
+        assertFalse(ddos.isUnderAttack());
+        
+        clock.advance(1000);
+        for (int i = 150; i < 400; i++) {
+            connect("10.30." + (i >> 8) + "." + (i & 255));
+        }
+        assertTrue(ddos.isUnderAttack(), "Many distinct IPs within a minute should enable attack mode");
+        assertTrue(ddos.getStatistics().contains("Unique Subnets (1/5/15m): §f~2 / ~2 / ~2"));
+    }
+    
+    @Test
+    @DisplayName("Test account protection - failures from many IPs throttle and then lock one account")
+    void testDistributedAccountLock() {
+        settings = settings(Map.of("account-protection", Map.of(
+            "throttle-failures", 5, "throttle-interval", 1000L, "lock-failures", 10, "lock-duration", 60_000L)));
+        
+        for (int i = 0; i < 5; i++) {
+            ddos.registerAuthAttempt("10.40.0." + i, "Steve", false).join();
+        }
+        assertTrue(ddos.checkLoginAttempt("steve").join().isAllowed());
+        ConnectionCheckResult throttled = ddos.checkLoginAttempt("STEVE").join();
+        assertTrue(throttled.isRateLimited(), "Second attempt within the interval should be throttled");
+        assertEquals(START + 1000, throttled.getBlockUntil());
+        
+        for (int i = 5; i < 10; i++) {
+            ddos.registerAuthAttempt("10.40.0." + i, "steve", false).join();
+        }
+        ConnectionCheckResult locked = ddos.checkLoginAttempt("Steve").join();
+        assertFalse(locked.isAllowed());
+        assertFalse(locked.isRateLimited());
+        assertEquals(START + 60_000, locked.getBlockUntil());
+        assertTrue(ddos.checkLoginAttempt("alex").join().isAllowed(), "Other accounts are not affected");
+        assertTrue(ddos.getStatistics().contains("Locked Accounts: §f1"));
+        
+        assertTrue(ddos.unlockAccount("steve").join());
+        assertTrue(ddos.checkLoginAttempt("steve").join().isAllowed());
+    }
+    
+    @Test
+    @DisplayName("Test bot detection - a fixed reconnect cadence lowers reputation until blocked")
+    void testBotCadence() {
+        String bot = "10.50.0.1";
+        ConnectionCheckResult result = null;
+        for (int i = 0; i < 12 && (result == null || result.isAllowed()); i++) {
+            result = ddos.checkConnection(bot).join();
+            clock.advance(4000);
+        }
+        assertTrue(result.isBlocked(), "Machine-like cadence should end in a block");
+        assertEquals("Machine-like reconnect pattern", result.getReason());
+        assertTrue(ddos.getStatistics().contains("Bot Patterns Detected: §f"));
+        
+        // Irregular human reconnects from another subnet are not affected
+        long[] gaps = {3000, 9000, 1500, 14000, 5000, 2500, 11000, 7000, 4000, 16000, 2000, 8000};
+        for (long gap : gaps) {
+            assertTrue(ddos.checkConnection("10.60.0.1").join().isAllowed());
+            clock.advance(gap);
+        }
+    }
+    
+    @Test
+    @DisplayName("Test fingerprint limits - a wave sharing one fingerprint is throttled across IPs in attack mode")
+    void testFingerprintLimit() {
+        settings = settings(Map.of("fingerprint-limits", Map.of("max-per-minute", 5)));
+        String login = ClientFingerprint.of(765, "play.example.com", "Steve_1234");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ddos.checkFingerprint(login), "Outside attack mode fingerprints are only counted");
+        }
+        
+        connect("10.71.0.1");
+        settings = settings(Map.of("attack-mode-threshold", 1, "attack-mode-factor", 1.0,
+            "fingerprint-limits", Map.of("max-per-minute", 5)));
+        connect("10.71.0.2");
+        assertTrue(ddos.isUnderAttack());
+        
+        String wave = ClientFingerprint.of(765, "play.example.com", "Bot_1234");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ddos.checkFingerprint(wave));
+        }
+        assertFalse(ddos.checkFingerprint(wave), "Sixth connection with the same fingerprint should be throttled");
+        assertTrue(ddos.checkFingerprint(ClientFingerprint.of(765, "play.example.com", "Alexander")));
+        
+        assertEquals(login, ddos.getTopFingerprints(1).get(0).getKey());
+        assertTrue(ddos.getStatistics().contains("Fingerprints Limited: §f1"));
+    }
+    
+    @Test
+    @DisplayName("Test fingerprint limits - a full table keeps throttling and starts over in the next window")
+    void testFingerprintTableFull() {
+        connect("10.72.0.1");
+        settings = settings(Map.of("attack-mode-threshold", 1, "attack-mode-factor", 1.0,
+            "fingerprint-limits", Map.of("max-per-minute", 5)));
+        connect("10.72.0.2");
+        assertTrue(ddos.isUnderAttack());
+        
+        // Unique fingerprints fill the table and then share the overflow count
+        int throttled = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (!ddos.checkFingerprint("765|example.com|unique" + i)) {
+                throttled++;
+            }
+        }
+        assertTrue(throttled > 800, "Overflowed fingerprints must still be throttled, got " + throttled);
+        
+        // The next window starts a new table with room for the normal fingerprints
+        clock.advance(60_000);
+        connect("10.72.0.3");
+        connect("10.72.0.4");
+        assertTrue(ddos.isUnderAttack());
+        String wave = ClientFingerprint.of(765, "play.example.com", "Bot_1234");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ddos.checkFingerprint(wave));
+        }
+        assertFalse(ddos.checkFingerprint(wave));
+    }
+    
+    @Test
+    @DisplayName("Test reconnect challenge - new IPs must reconnect under attack, known IPs pass")
+    void testReconnectChallenge() {
+        connect("10.70.0.1");
+        settings = settings(Map.of("attack-mode-threshold", 1, "reconnect-challenge", Map.of("secret", "test")));
+        connect("10.70.0.2");
+        assertTrue(ddos.isUnderAttack());
+        
+        ConnectionCheckResult first = ddos.checkConnection("10.80.0.1", "play.example.com").join();
+        assertTrue(first.isChallenge(), "Unknown IP should be challenged under attack");
+        assertTrue(ddos.getStatistics().contains("IPs in Cache: §f0"), "No state before the challenge passes");
+        
+        clock.advance(100);
+        assertTrue(ddos.checkConnection("10.80.0.1", "play.example.com").join().isAllowed());
+        
+        ConnectionCheckResult other = ddos.checkConnection("10.80.0.2").join();
+        String host = other.getChallengeToken() + ".play.example.com";
+        assertTrue(ddos.checkConnection("10.80.0.3", host).join().isChallenge(), "Token is bound to its IP");
+        assertTrue(ddos.checkConnection("10.80.0.2", host).join().isAllowed());
+        assertTrue(ddos.getStatistics().contains("Reconnect Challenges (issued/passed): §f4 / 2"));
+    }
+    
+    @Test
+    @DisplayName("Test ping limits - per IP and per subnet, windows reset each second")
+    void testPingLimit() {
+        settings = settings(Map.of("ping-protection", Map.of("max-per-ip-per-second", 3, "max-per-subnet-per-second", 5)));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ddos.checkPing("10.90.0.1"));
+        }
+        assertFalse(ddos.checkPing("10.90.0.1"), "Fourth ping from one IP should be dropped");
+        
+        assertTrue(ddos.checkPing("10.90.0.2"));
+        assertTrue(ddos.checkPing("10.90.0.3"));
+        assertFalse(ddos.checkPing("10.90.0.4"), "Subnet limit covers pings from other IPs of the subnet");
+        assertTrue(ddos.checkPing("10.91.0.1"));
+        
+        clock.advance(1000);
+        assertTrue(ddos.checkPing("10.90.0.1"));
+        assertTrue(ddos.getStatistics().contains("Pings Limited: §f2"));
+    }
+    
+    private DDoSProtectionManager clusterNode(int id, InetSocketAddress bind, InetSocketAddress peer) {
+        DDoSSettings nodeSettings = settings(Map.of("bot-detection", Map.of("enabled", false), "cluster", Map.of(
+            "enabled", true,
+            "node-id", id,
+            "bind", "127.0.0.1:" + bind.getPort(),
+            "peers", List.of("127.0.0.1:" + peer.getPort()),
+            "secret", "cluster-secret",
+            "gossip-interval", 20,
+            "counter-sync-interval", 20)));
+        DDoSProtectionManager node = new DDoSProtectionManager(mockPlugin(() -> nodeSettings), new AuthRegistry(), clock, 2);
+        node.startReplication();
+        return node;
+    }
+    
+    private static InetSocketAddress freeAddress() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+    }
+    
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Cluster state should converge within a second");
+            Thread.sleep(10);
+        }
+    }
+    
+    @Test
+    @DisplayName("Test cluster - blocks and blacklist changes replicate between two proxies")
+    void testClusterReplication() throws Exception {
+        InetSocketAddress a = freeAddress();
+        InetSocketAddress b = freeAddress();
+        DDoSProtectionManager proxyA = clusterNode(1, a, b);
+        DDoSProtectionManager proxyB = clusterNode(2, b, a);
+        try {
+            for (int i = 0; i < 6; i++) {
+                proxyA.checkConnection("10.95.0.1").join();
+            }
+            awaitTrue(() -> proxyB.getIPReputation("10.95.0.1").join().isBlocked(clock.currentTimeMillis()));
+            assertEquals(START + BASE_BLOCK, proxyB.getIPReputation("10.95.0.1").join().getBlockUntil());
+            
+            proxyB.unblockIP("10.95.0.1").join();
+            awaitTrue(() -> !proxyA.getIPReputation("10.95.0.1").join().isBlocked(clock.currentTimeMillis()));
+            
+            proxyA.blacklistIP("10.95.0.2").join();
+            awaitTrue(() -> proxyB.getBlacklistedIPs().join().contains("10.95.0.2"));
+            assertTrue(proxyB.checkConnection("10.95.0.2").join().isBlocked());
+            
+            proxyB.removeFromBlacklist("10.95.0.2").join();
+            awaitTrue(() -> proxyA.getBlacklistedIPs().join().isEmpty());
+            assertTrue(proxyA.getStatistics().contains("Cluster Node 1"));
+        } finally {
+            proxyA.shutdown();
+            proxyB.shutdown();
+        }
+    }
+    
+    @Test
+    @DisplayName("Test shared limits - the per-minute limit holds across two proxies")
+    void testClusterSharedLimit() throws Exception {
+        InetSocketAddress a = freeAddress();
+        InetSocketAddress b = freeAddress();
+        DDoSProtectionManager proxyA = clusterNode(1, a, b);
+        DDoSProtectionManager proxyB = clusterNode(2, b, a);
+        try {
+            for (int i = 0; i < 12; i++) {
+                assertTrue(proxyA.checkConnection("10.96.0.1").join().isAllowed());
+                clock.advance(250);
+            }
+            // Proxy B must have seen proxy A's total before it checks
+            awaitTrue(() -> proxyB.estimateClusterConnections("10.96.0.1") == 12);
+            for (int i = 0; i < 8; i++) {
+                assertTrue(proxyB.checkConnection("10.96.0.1").join().isAllowed(), "Connection " + (13 + i));
+                clock.advance(250);
+            }
+            assertTrue(proxyB.checkConnection("10.96.0.1").join().isRateLimited(),
+                "21st connection in the cluster should exceed the per-minute limit");
+        } finally {
+            proxyA.shutdown();
+            proxyB.shutdown();
+        }
+    }
+    
+    @Test
+    @DisplayName("Test storage - blocks and lists survive a restart through the file store")
+    void testReputationStorage(@TempDir Path dataDirectory) throws Exception {
+        Path file = dataDirectory.resolve("reputation.dat");
+        
+        DDoSProtectionManager first = newManager(2, GeoIPResolver.disabled(),
+            FileReputationStore.open(file, 60_000L, 100, NOPLogger.NOP_LOGGER));
+        first.blockIP("10.96.0.1", 60_000L, "Test").join();
+        first.blacklistIP("10.96.0.2").join();
+        assertTrue(first.checkConnection("10.96.0.3").join().isAllowed());
+        // Shutdown writes the queued snapshots
+        first.shutdown();
+        
+        DDoSProtectionManager second = newManager(4, GeoIPResolver.disabled(),
+            FileReputationStore.open(file, 60_000L, 100, NOPLogger.NOP_LOGGER));
+        try {
+            assertEquals(2, second.loadReputations().join(), "IPs without history are not stored");
+            assertTrue(second.checkConnection("10.96.0.1").join().isBlocked(), "Block survives restart");
+            assertTrue(second.checkConnection("10.96.0.2").join().isBlocked(), "Blacklist survives restart");
+            assertEquals(List.of("10.96.0.2"), second.getBlacklistedIPs().join());
+        } finally {
+            second.shutdown();
+        }
+    }
+    
+    /**
+     * Shared store whose single-IP loads are completed by the test
+     */
+    private static final class SlowSharedStore implements ReputationStore {
+        
+        private final Map<String, CompletableFuture<ReputationRecord>> loads = new ConcurrentHashMap<>();
+        private final AtomicInteger loadCount = new AtomicInteger();
+        
+        @Override
+        public void save(ReputationRecord record) {
+        }
+        
+        @Override
+        public CompletableFuture<ReputationRecord> load(String ip) {
+            loadCount.incrementAndGet();
+            return loads.computeIfAbsent(ip, key -> new CompletableFuture<>());
+        }
+        
+        @Override
+        public boolean isShared() {
+            return true;
+        }
+        
+        @Override
+        public CompletableFuture<List<ReputationRecord>> loadAll() {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        
+        @Override
+        public CompletableFuture<Integer> purge(long lastAttemptBefore, long now) {
+            return CompletableFuture.completedFuture(0);
+        }
+        
+        @Override
+        public String getName() {
+            return "slow";
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    @Test
+    @DisplayName("Test prefetch - concurrent loads coalesce and the check waits for the in-flight load")
+    void testReputationPrefetch() throws Exception {
+        // Long enough that the check never gives up on the load before the test completes it
+        settings = settings(Map.of("reputation-prefetch-timeout", 60_000));
+        SlowSharedStore store = new SlowSharedStore();
+        DDoSProtectionManager manager = newManager(2, GeoIPResolver.disabled(), store);
+        try {
+            String blocked = "10.97.0.1";
+            CompletableFuture<Void> first = manager.prefetchReputation(blocked);
+            CompletableFuture<Void> second = manager.prefetchReputation(blocked);
+            awaitTrue(() -> store.loadCount.get() == 1);
+            assertFalse(first.isDone());
+            
+            // The check waits for the in-flight load that blocks the IP
+            CompletableFuture<ConnectionCheckResult> check = manager.checkConnection(blocked);
+            store.loads.get(blocked).complete(new ReputationRecord(blocked, 0, 0, 0, 0, START, START + 60_000L,
+                "Blocked by another proxy", false, false, false));
+            assertTrue(check.get(5, TimeUnit.SECONDS).isBlocked(), "Prefetched block applies to the check");
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            assertEquals(1, store.loadCount.get(), "Concurrent prefetches share one load");
+            
+            // Cached IP is not loaded again
+            manager.prefetchReputation(blocked).get(5, TimeUnit.SECONDS);
+            assertEquals(1, store.loadCount.get());
+        } finally {
+            manager.shutdown();
+        }
+    }
+            
+    @Test
+    @DisplayName("Test prefetch - a load that never completes falls back to neutral reputation")
+    void testReputationPrefetchTimeout() throws Exception {
+        settings = settings(Map.of("reputation-prefetch-timeout", 50));
+        SlowSharedStore store = new SlowSharedStore();
+        DDoSProtectionManager manager = newManager(2, GeoIPResolver.disabled(), store);
+        try {
+            String late = "10.97.0.2";
+            manager.prefetchReputation(late);
+            awaitTrue(() -> store.loadCount.get() == 1);
+            assertTrue(manager.checkConnection(late).get(5, TimeUnit.SECONDS).isAllowed(),
+                "Neutral reputation applies after the prefetch timeout");
+        } finally {
+            manager.shutdown();
+        }
+    }
+}
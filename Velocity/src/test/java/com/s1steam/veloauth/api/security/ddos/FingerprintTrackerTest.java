@@ -0,0 +1,69 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.models.HeavyHitter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FingerprintTracker
+ *
+ * Tests fingerprint interning and the sliding window estimate
+ */
+@DisplayName("Fingerprint Tracker Tests")
+class FingerprintTrackerTest {
+    
+    private static final long WINDOW = 60_000L;
+    private static final long START = 1_700_000_040_000L - 1_700_000_040_000L % WINDOW;
+    
+    @Test
+    @DisplayName("Test interning - stable small ids, overflow once the table is full")
+    void testInterning() {
+        FingerprintTracker tracker = new FingerprintTracker(4, WINDOW);
+        int first = tracker.intern("765|play.example.com|Aaaaa_0000");
+        assertEquals(1, first);
+        assertEquals(first, tracker.intern("765|play.example.com|Aaaaa_0000"));
+        assertEquals(2, tracker.intern("765|play.example.com|aaaaaaaa"));
+        assertEquals(3, tracker.intern("764|-|aaaa"));
+        assertTrue(tracker.isFull());
+        assertEquals(FingerprintTracker.OVERFLOW, tracker.intern("763|-|aaaa"));
+        assertEquals(3, tracker.size());
+    }
+    
+    @Test
+    @DisplayName("Test overflow - the shared overflow id is counted and the table expires in the next window")
+    void testOverflow() {
+        FingerprintTracker tracker = new FingerprintTracker(2, WINDOW);
+        tracker.record(tracker.intern("a"), START);
+        assertFalse(tracker.isExpired(START + 2 * WINDOW), "A table that never overflowed is kept");
+        
+        assertEquals(1, tracker.record(tracker.intern("b"), START + 1), 1e-9);
+        assertEquals(2, tracker.record(tracker.intern("c"), START + 2), 1e-9, "Overflowed fingerprints share a count");
+        assertFalse(tracker.isExpired(START + WINDOW - 1));
+        assertTrue(tracker.isExpired(START + WINDOW));
+    }
+    
+    @Test
+    @DisplayName("Test sliding window - the previous window fades out linearly")
+    void testSlidingWindow() {
+        FingerprintTracker tracker = new FingerprintTracker(16, WINDOW);
+        int id = tracker.intern("765|play.example.com|Aaaaa_0000");
+        for (int i = 0; i < 100; i++) {
+            tracker.record(id, START + i);
+        }
+        assertEquals(100, tracker.estimate(id, START + 1000), 1e-9);
+        
+        assertEquals(76, tracker.record(id, START + WINDOW + WINDOW / 4), 1e-9);
+        assertEquals(1, tracker.estimate(id, START + 2 * WINDOW), 1e-9);
+        assertEquals(0.5, tracker.estimate(id, START + 2 * WINDOW + WINDOW / 2), 1e-9);
+        assertEquals(0, tracker.estimate(id, START + 4 * WINDOW), 1e-9);
+        
+        tracker.record(id, START + 4 * WINDOW);
+        List<HeavyHitter> top = tracker.top(10, START + 4 * WINDOW);
+        assertEquals(1, top.size());
+        assertEquals("765|play.example.com|Aaaaa_0000", top.get(0).getKey());
+    }
+}
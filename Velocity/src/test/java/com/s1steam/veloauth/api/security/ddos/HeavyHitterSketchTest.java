@@ -0,0 +1,71 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import com.s1steam.veloauth.api.models.HeavyHitter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for HeavyHitterSketch
+ *
+ * Tests that heavy keys surface among noise, estimates never undercount and counts decay
+ */
+@DisplayName("Heavy Hitter Sketch Tests")
+class HeavyHitterSketchTest {
+    
+    private static final long START = 1_700_000_000_000L;
+    
+    @Test
+    @DisplayName("Test top - heavy keys are found among many light keys")
+    void testHeavyKeysSurface() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 8, 60_000);
+        for (int i = 0; i < 20_000; i++) {
+            sketch.add("10.0." + (i % 5000 >> 8) + "." + (i % 5000 & 255), START);
+            if (i % 10 == 0) {
+                sketch.add("203.0.113.7", START);
+            }
+            if (i % 20 == 0) {
+                sketch.add("198.51.100.9", START);
+            }
+        }
+        
+        List<HeavyHitter> top = sketch.top(START);
+        
+        assertTrue(top.size() <= 8, "Table should stay bounded");
+        assertEquals("203.0.113.7", top.get(0).getKey());
+        assertEquals("198.51.100.9", top.get(1).getKey());
+        assertTrue(top.get(0).getCount() >= 2000, "Estimate should never undercount");
+    }
+    
+    @Test
+    @DisplayName("Test estimate - never below the true count")
+    void testEstimateUpperBound() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(64, 4, 60_000);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("user" + (i % 100), START);
+        }
+        
+        for (int i = 0; i < 100; i++) {
+            assertTrue(sketch.estimate("user" + i, START) >= 10);
+        }
+    }
+    
+    @Test
+    @DisplayName("Test decay - counts halve every window and idle keys drop out")
+    void testDecay() {
+        HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 8, 60_000);
+        for (int i = 0; i < 40; i++) {
+            sketch.add("10.1.0.1", START);
+        }
+        sketch.add("10.1.0.2", START);
+        
+        assertEquals(20, sketch.estimate("10.1.0.1", START + 60_000));
+        List<HeavyHitter> top = sketch.top(START + 60_000);
+        assertEquals(1, top.size(), "Single event should decay to zero and leave the table");
+        assertEquals(20, top.get(0).getCount());
+        assertTrue(sketch.top(START + 600_000).isEmpty());
+    }
+}
@@ -0,0 +1,54 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReconnectChallenge
+ *
+ * Tests token verification via the virtual host and reconnects within the window
+ */
+@DisplayName("Reconnect Challenge Tests")
+class ReconnectChallengeTest {
+    
+    private static final long SLICE = 30_000L;
+    private static final long START = 1_700_000_010_000L - 1_700_000_010_000L % SLICE;
+    
+    @Test
+    @DisplayName("Test token - a token in the virtual host passes only for its IP and secret")
+    void testVirtualHostToken() {
+        ReconnectChallenge challenge = ReconnectChallenge.fromSecret("secret", SLICE, 1024);
+        String token = challenge.token("10.0.0.1", START / SLICE);
+        assertEquals(16, token.length());
+        
+        assertTrue(challenge.verify("10.0.0.1", token + ".play.example.com", START));
+        assertTrue(challenge.verify("10.0.0.1", token.toUpperCase() + ".play.example.com", START + SLICE));
+        assertFalse(challenge.verify("10.0.0.1", token + ".play.example.com", START + 2 * SLICE));
+        assertFalse(challenge.verify("10.0.0.2", token + ".play.example.com", START));
+        assertFalse(ReconnectChallenge.fromSecret("other", SLICE, 1024)
+            .verify("10.0.0.1", token + ".play.example.com", START));
+        assertEquals(token, ReconnectChallenge.fromSecret("secret", SLICE, 1024).token("10.0.0.1", START / SLICE),
+            "Proxies sharing a secret issue the same token");
+    }
+    
+    @Test
+    @DisplayName("Test reconnect - a challenged IP passes within two slices without a token")
+    void testReconnectWindow() {
+        ReconnectChallenge challenge = ReconnectChallenge.fromSecret("", SLICE, 1024);
+        assertFalse(challenge.verify("10.0.0.1", "play.example.com", START));
+        challenge.issue("10.0.0.1", START);
+        
+        assertTrue(challenge.verify("10.0.0.1", "play.example.com", START + 1000));
+        assertTrue(challenge.verify("10.0.0.1", null, START + SLICE + 1000));
+        assertFalse(challenge.verify("10.0.0.2", null, START + 1000));
+        
+        // Rotating slices drops old marks
+        challenge.issue("10.0.0.3", START + SLICE);
+        challenge.issue("10.0.0.4", START + 2 * SLICE);
+        assertFalse(challenge.verify("10.0.0.1", null, START + 2 * SLICE));
+        assertTrue(challenge.verify("10.0.0.3", null, START + 2 * SLICE));
+        assertEquals(START + 3 * SLICE, challenge.expiresAt(START + SLICE));
+    }
+}
@@ -0,0 +1,65 @@
+package com.s1steam.veloauth.api.security.ddos;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RollingHyperLogLog
+ *
+ * Tests estimate accuracy, duplicate handling and window expiry
+ */
+@DisplayName("Rolling HyperLogLog Tests")
+class RollingHyperLogLogTest {
+    
+    private static final long START = 1_700_000_000_000L;
+    private static final long MINUTE = 60_000L;
+    
+    @Test
+    @DisplayName("Test estimate - within the expected error and duplicates are not counted")
+    void testAccuracy() {
+        RollingHyperLogLog counter = new RollingHyperLogLog(8, 15, MINUTE);
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int i = 0; i < 10_000; i++) {
+                counter.add("10." + (i >> 16) + "." + ((i >> 8) & 255) + "." + (i & 255), START);
+            }
+        }
+        
+        long estimate = counter.estimate(MINUTE, START);
+        assertTrue(Math.abs(estimate - 10_000) < 2_000, "Estimate too far off: " + estimate);
+        
+        RollingHyperLogLog small = new RollingHyperLogLog(8, 15, MINUTE);
+        for (int i = 0; i < 20; i++) {
+            small.add("user" + i, START);
+        }
+        assertEquals(20, small.estimate(MINUTE, START), 2, "Small counts should use linear counting");
+    }
+    
+    @Test
+    @DisplayName("Test windows - longer windows merge older buckets, expired buckets drop out")
+    void testWindows() {
+        RollingHyperLogLog counter = new RollingHyperLogLog(8, 15, MINUTE);
+        for (int i = 0; i < 50; i++) {
+            counter.add("a" + i, START);
+        }
+        for (int i = 0; i < 50; i++) {
+            counter.add("b" + i, START + 3 * MINUTE);
+        }
+        long now = START + 3 * MINUTE;
+        
+        assertEquals(50, counter.estimate(MINUTE, now), 5);
+        assertEquals(100, counter.estimate(5 * MINUTE, now), 10);
+        assertEquals(0, counter.estimate(15 * MINUTE, START + 20 * MINUTE));
+    }
+    
+    @Test
+    @DisplayName("Test reuse - a ring slot is reset when its period comes around again")
+    void testSlotReuse() {
+        RollingHyperLogLog counter = new RollingHyperLogLog(8, 2, MINUTE);
+        counter.add("10.0.0.1", START);
+        counter.add("10.0.0.2", START + 2 * MINUTE);
+        
+        assertEquals(1, counter.estimate(MINUTE, START + 2 * MINUTE));
+    }
+}
@@ -0,0 +1,122 @@
+package com.s1steam.veloauth.api.storage;
+
+import com.s1steam.veloauth.api.models.BlockReason;
+import com.s1steam.veloauth.api.models.IPReputationData;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FileReputationStore
+ *
+ * Tests persistence across reopen, slot reuse and file growth
+ */
+@DisplayName("File Reputation Store Tests")
+class FileReputationStoreTest {
+    
+    private static final long NOW = 1_700_000_000_000L;
+    
+    @TempDir
+    Path dataDirectory;
+    
+    private FileReputationStore open() throws IOException {
+        return FileReputationStore.open(dataDirectory.resolve("reputation.dat"), 60_000L, 100,
+            NOPLogger.NOP_LOGGER);
+    }
+    
+    private static ReputationRecord record(String ip, long lastAttempt, long blockUntil, String reason) {
+        return new ReputationRecord(ip, 3, 2.5, 10, NOW - 1000, lastAttempt, blockUntil, reason,
+            false, false, true);
+    }
+    
+    @Test
+    @DisplayName("Test reopen - records survive restart and repeated saves of one IP coalesce")
+    void testReopen() throws IOException {
+        FileReputationStore store = open();
+        store.save(record("192.168.1.1", NOW, 0, null));
+        store.save(record("192.168.1.1", NOW + 1, NOW + 60_000, "Превышен лимит подключений в секунду"));
+        for (int i = 0; i < 3000; i++) {
+            store.save(record("10.0." + (i / 256) + "." + (i % 256), NOW, 0, null));
+        }
+        assertEquals(3001, store.getPending());
+        store.flush();
+        assertEquals(0, store.getPending());
+        assertEquals(3001, store.getWritten());
+        store.close();
+        
+        FileReputationStore reopened = open();
+        Map<String, ReputationRecord> records = reopened.loadAll().join().stream()
+                .collect(Collectors.toMap(ReputationRecord::getIp, Function.identity()));
+        assertEquals(3001, records.size(), "File grows beyond the initial slots");
+        
+        ReputationRecord blocked = records.get("192.168.1.1");
+        assertEquals(NOW + 1, blocked.getLastAttempt(), "Latest snapshot wins");
+        assertEquals(NOW + 60_000, blocked.getBlockUntil());
+        assertEquals(2.5, blocked.getFailureScore());
+        assertTrue(blocked.isVPN());
+        assertTrue("Превышен лимит подключений в секунду".startsWith(blocked.getBlockReason()),
+            "Long reason is truncated on a character boundary");
+        assertNull(records.get("10.0.0.1").getBlockReason());
+        reopened.close();
+    }
+    
+    @Test
+    @DisplayName("Test block history - the ring and snapshot time survive a restart")
+    void testBlockHistory() throws IOException {
+        IPReputationData data = new IPReputationData("192.168.1.1");
+        data.block(60_000, BlockReason.MANUAL, "Blocked", NOW - 5000);
+        data.block(120_000, BlockReason.LOW_REPUTATION, "Blocked", NOW);
+        FileReputationStore store = open();
+        store.save(ReputationRecord.of(data, NOW + 1));
+        store.flush();
+        store.close();
+        
+        FileReputationStore reopened = open();
+        ReputationRecord record = reopened.load("192.168.1.1").join();
+        reopened.close();
+        assertEquals(NOW + 1, record.getUpdatedAt());
+        IPReputationData restored = new IPReputationData("192.168.1.1");
+        record.applyTo(restored);
+        assertEquals(2, restored.getBlockHistory().size());
+        assertEquals(BlockReason.LOW_REPUTATION, restored.getBlockHistory().get(0).getReason(), "Newest first");
+        assertEquals(120_000, restored.getBlockHistory().get(0).getDurationMs());
+        assertEquals(NOW - 5000, restored.getBlockHistory().get(1).getTimestamp());
+        assertEquals(1, restored.countBlocksSince(NOW - 1000));
+    }
+    
+    @Test
+    @DisplayName("Test purge - only inactive unlisted unblocked records are removed and slots are reused")
+    void testPurge() throws IOException {
+        long maxAge = 7 * 24 * 3600_000L;
+        FileReputationStore store = open();
+        store.save(record("192.168.1.1", NOW - maxAge - 1, 0, null));
+        store.save(record("192.168.1.2", NOW - maxAge - 1, NOW + 1000, "Blocked"));
+        store.save(new ReputationRecord("192.168.1.3", 0, 0, 0, 0, NOW - maxAge - 1, 0, null,
+            true, false, false));
+        store.save(record("192.168.1.4", NOW, 0, null));
+        store.flush();
+        
+        assertEquals(1, store.purge(NOW - maxAge, NOW).join());
+        assertEquals(3, store.size());
+        
+        store.save(record("192.168.1.5", NOW, 0, null));
+        store.flush();
+        store.close();
+        
+        FileReputationStore reopened = open();
+        List<ReputationRecord> records = reopened.loadAll().join();
+        assertEquals(4, records.size());
+        assertTrue(records.stream().noneMatch(record -> record.getIp().equals("192.168.1.1")));
+        reopened.close();
+    }
+}
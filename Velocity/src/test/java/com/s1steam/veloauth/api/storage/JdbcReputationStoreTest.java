@@ -0,0 +1,159 @@
+package com.s1steam.veloauth.api.storage;
+
+import com.s1steam.veloauth.api.models.BlockReason;
+import com.s1steam.veloauth.api.models.BlockRecord;
+import com.s1steam.veloauth.api.models.IPReputationData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for JdbcReputationStore against an embedded H2 database
+ *
+ * Tests batched upserts, loading and purge of expired rows
+ */
+@DisplayName("JDBC Reputation Store Tests")
+class JdbcReputationStoreTest {
+    
+    private static final long NOW = 1_700_000_000_000L;
+    
+    private String url;
+    private JdbcReputationStore store;
+    
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        store = open();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+    
+    private JdbcReputationStore open() throws SQLException {
+        return JdbcReputationStore.open(url, "sa", "", 2, 60_000L, 2, NOPLogger.NOP_LOGGER);
+    }
+    
+    @Test
+    @DisplayName("Test upsert - batches insert new rows and replace existing ones")
+    void testUpsert() throws SQLException {
+        for (int i = 1; i <= 5; i++) {
+            store.save(new ReputationRecord("192.168.1." + i, i, 0, 0, 0, NOW, 0, null, false, false, false));
+        }
+        store.flush();
+        store.save(new ReputationRecord("192.168.1.1", 7, 1.5, 20, NOW, NOW + 1, NOW + 60_000, "Bot pattern",
+            false, true, false));
+        store.flush();
+        assertEquals(6, store.getWritten());
+        assertEquals(0, store.getFailures());
+        
+        // Reopening keeps the existing table
+        JdbcReputationStore reopened = open();
+        List<ReputationRecord> records = reopened.loadAll().join();
+        reopened.close();
+        assertEquals(5, records.size());
+        ReputationRecord updated = records.stream()
+                .filter(record -> record.getIp().equals("192.168.1.1"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(7, updated.getSuccessfulLogins());
+        assertEquals(1.5, updated.getFailureScore());
+        assertEquals(NOW + 60_000, updated.getBlockUntil());
+        assertEquals("Bot pattern", updated.getBlockReason());
+        assertTrue(updated.isBlacklisted());
+        
+        assertEquals(7, store.load("192.168.1.1").join().getSuccessfulLogins(), "Single IP read");
+        assertNull(store.load("10.0.0.9").join());
+        store.save(new ReputationRecord("10.0.0.9", 1, 0, 0, 0, NOW, 0, null, false, false, false));
+        assertEquals(1, store.load("10.0.0.9").join().getSuccessfulLogins(), "Queued snapshot is read before flush");
+    }
+    
+    @Test
+    @DisplayName("Test upsert - an older snapshot from another proxy does not replace a newer row")
+    void testStaleSnapshot() {
+        store.save(new ReputationRecord("10.0.0.1", 5, 0, 0, 0, NOW, 0, null, false, false, false,
+            NOW + 10, new long[0]));
+        store.flush();
+        store.save(new ReputationRecord("10.0.0.1", 1, 0, 0, 0, NOW, 0, null, false, false, false,
+            NOW + 5, new long[0]));
+        store.flush();
+        assertEquals(5, store.load("10.0.0.1").join().getSuccessfulLogins());
+        
+        store.save(new ReputationRecord("10.0.0.1", 2, 0, 0, 0, NOW, 0, null, false, false, false,
+            NOW + 10, new long[0]));
+        store.flush();
+        assertEquals(2, store.load("10.0.0.1").join().getSuccessfulLogins(), "Snapshot of the same time replaces");
+    }
+    
+    @Test
+    @DisplayName("Test block history - the ring survives a save and load")
+    void testBlockHistory() {
+        IPReputationData data = new IPReputationData("10.0.0.1");
+        for (int i = 0; i < 10; i++) {
+            data.block(60_000, i % 2 == 0 ? BlockReason.MANUAL : BlockReason.LOW_REPUTATION, "Blocked", NOW + i * 1000);
+        }
+        store.save(ReputationRecord.of(data, NOW + 10_000));
+        store.flush();
+        
+        IPReputationData restored = new IPReputationData("10.0.0.1");
+        store.load("10.0.0.1").join().applyTo(restored);
+        List<BlockRecord> expected = data.getBlockHistory();
+        List<BlockRecord> history = restored.getBlockHistory();
+        assertEquals(IPReputationData.BLOCK_HISTORY_SIZE, history.size());
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), history.get(i).getTimestamp());
+            assertEquals(expected.get(i).getReason(), history.get(i).getReason());
+        }
+        assertEquals(8, restored.countBlocksSince(NOW + 2000));
+    }
+    
+    @Test
+    @DisplayName("Test open - a table without the history columns is upgraded")
+    void testUpgradeTable() throws SQLException {
+        store.close();
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE veloauth_ip_reputation (ip VARCHAR(45) NOT NULL PRIMARY KEY, " +
+                "successful_logins INT NOT NULL, failure_score DOUBLE PRECISION NOT NULL, " +
+                "block_penalty DOUBLE PRECISION NOT NULL, decayed_at BIGINT NOT NULL, last_attempt BIGINT NOT NULL, " +
+                "block_until BIGINT NOT NULL, block_reason VARCHAR(255), whitelisted BOOLEAN NOT NULL, " +
+                "blacklisted BOOLEAN NOT NULL, vpn BOOLEAN NOT NULL)");
+            statement.executeUpdate("INSERT INTO veloauth_ip_reputation VALUES " +
+                "('10.0.0.1', 3, 0, 0, 0, " + NOW + ", 0, NULL, FALSE, FALSE, FALSE)");
+        }
+        store = open();
+        
+        assertEquals(3, store.load("10.0.0.1").join().getSuccessfulLogins());
+        store.save(new ReputationRecord("10.0.0.1", 4, 0, 0, 0, NOW + 1, 0, null, false, false, false));
+        store.flush();
+        assertEquals(0, store.getFailures());
+        assertEquals(4, store.load("10.0.0.1").join().getSuccessfulLogins());
+    }
+    
+    @Test
+    @DisplayName("Test purge - removes rows inactive before the cutoff unless listed or blocked")
+    void testPurge() {
+        long cutoff = NOW - 1000;
+        store.save(new ReputationRecord("10.0.0.1", 0, 5, 0, 0, cutoff - 1, 0, null, false, false, false));
+        store.save(new ReputationRecord("10.0.0.2", 0, 5, 0, 0, cutoff - 1, NOW + 1, "Blocked", false, false, false));
+        store.save(new ReputationRecord("10.0.0.3", 0, 0, 0, 0, cutoff - 1, 0, null, true, false, false));
+        store.save(new ReputationRecord("10.0.0.4", 0, 5, 0, 0, cutoff, 0, null, false, false, false));
+        store.flush();
+        
+        assertEquals(1, store.purge(cutoff, NOW).join());
+        assertEquals(3, store.loadAll().join().size());
+    }
+}